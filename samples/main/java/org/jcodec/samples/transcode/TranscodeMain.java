@@ -17,6 +17,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.imageio.ImageIO;
 
@@ -91,6 +93,7 @@ public class TranscodeMain {
 
         RAOutputStream sink = null;
         MP4Muxer muxer = null;
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         try {
             sink = new FileRAOutputStream(new File(output));
             Rational fps = frames.getFps();
@@ -99,7 +102,7 @@ public class TranscodeMain {
                 fps = new Rational(24, 1);
             }
             muxer = new MP4Muxer(sink);
-            ProresEncoder encoder = new ProresEncoder(Profile.HQ);
+            ProresEncoder encoder = new ProresEncoder(Profile.HQ, executor);
 
             Yuv420pToYuv422p color = new Yuv420pToYuv422p(2, 0);
             CompressedTrack videoTrack = muxer.addVideoTrack("apch", frames.getSize(), APPLE_PRO_RES_422, fps.getNum());
@@ -121,6 +124,7 @@ public class TranscodeMain {
                 muxer.writeHeader();
             if (sink != null)
                 sink.close();
+            executor.shutdown();
         }
 
     }
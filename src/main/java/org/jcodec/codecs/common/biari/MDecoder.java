@@ -3,24 +3,54 @@ package org.jcodec.codecs.common.biari;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jcodec.common.io.Buffer;
+
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
  * under FreeBSD License
- * 
+ *
  * H264 CABAC M-Coder ( decoder module )
- * 
+ *
+ * Works directly on a byte array, a stream is read into a small chunk buffer
+ * that is refilled as the decoding goes. The code register holds 9 bits of the
+ * working area followed by 'nBitsPending' bits already fetched from the
+ * array, so renormalization is done with a single shift and the register is
+ * refilled 16 bits at a time.
+ *
+ * Context models can be either Context objects or packed into a byte array,
+ * each byte holding (stateIdx << 1) | mps.
+ *
  * @author Jay Codec
- * 
+ *
  */
 public class MDecoder {
 
+    private byte[] data;
+    private int pos;
+    private int limit;
     private InputStream in;
+
     private int range;
     private int code;
     private int nBitsPending;
 
     public MDecoder(InputStream in) throws IOException {
         this.in = in;
+        this.data = new byte[4096];
+        range = 510;
+
+        fill();
+        initCodeRegister();
+    }
+
+    public MDecoder(byte[] data) throws IOException {
+        this(new Buffer(data));
+    }
+
+    public MDecoder(Buffer buf) throws IOException {
+        this.data = buf.buffer;
+        this.pos = buf.pos;
+        this.limit = buf.limit;
         range = 510;
 
         initCodeRegister();
@@ -28,74 +58,123 @@ public class MDecoder {
 
     /**
      * Initializes code register. Loads 9 bits from the stream into working area
-     * of code register ( bits 8 - 16) leaving 7 bits in the pending area of
-     * code register (bits 0 - 7)
-     * 
+     * of code register leaving 15 bits in the pending area of code register
+     *
      * @throws IOException
      */
     private void initCodeRegister() throws IOException {
-        readOneByte();
-        if (nBitsPending != 8)
+        if (pos >= limit)
             throw new IOException("Empty stream");
-        code <<= 8;
-        readOneByte();
-        code <<= 1;
-        nBitsPending -= 9;
+        code = (nextByte() << 16) | (nextByte() << 8) | nextByte();
+        nBitsPending = 15;
     }
 
-    private void readOneByte() throws IOException {
-        int b = in.read();
-        if (b != -1) {
-            code |= b;
-            nBitsPending += 8;
+    private int nextByte() {
+        if (pos >= limit && in != null) {
+            try {
+                fill();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
         }
+        return pos < limit ? data[pos++] & 0xff : 0;
+    }
+
+    /**
+     * Reads the next chunk of the stream into the buffer, at the end of the
+     * stream the buffer is left empty and the stream is dropped
+     */
+    private void fill() throws IOException {
+        pos = 0;
+        limit = 0;
+        int read = in.read(data);
+        if (read == -1)
+            in = null;
+        else
+            limit = read;
+    }
+
+    /**
+     * Loads 16 more bits into the pending area of code register, the data
+     * past the end of the stream reads as zeros
+     */
+    private void refill() {
+        code = (code << 16) | (nextByte() << 8) | nextByte();
+        nBitsPending += 16;
     }
 
     /**
      * Decodes one bin from arithmetice code word
-     * 
+     *
      * @param cm
      * @return
      * @throws IOException
      */
     public int decodeBin(Context cm) throws IOException {
+        int res = decodeModel((cm.getState() << 1) | cm.getMps());
+        cm.setState(res >> 2);
+        cm.setMps((res >> 1) & 1);
+
+        return res & 1;
+    }
+
+    /**
+     * Decodes one bin using packed context model
+     *
+     * @param models
+     *            Packed context models, (stateIdx << 1) | mps each
+     * @param m
+     *            Index of the model to use, the model is updated in place
+     * @return
+     */
+    public int decodeBin(byte[] models, int m) {
+        int res = decodeModel(models[m]);
+        models[m] = (byte) (res >> 1);
+
+        return res & 1;
+    }
+
+    /**
+     * @return Updated model shifted left by one with the decoded bin in the
+     *         lowest bit
+     */
+    private int decodeModel(int model) {
+        int state = model >> 1;
+        int mps = model & 1;
         int bin;
 
-        int qIdx = (range >> 6) & 0x3;
-        int rLPS = MConst.rangeLPS[qIdx][cm.getState()];
+        int rLPS = MConst.rangeLPS[(range >> 6) & 0x3][state];
         range -= rLPS;
-        int rs8 = range << 8;
+        int scaled = range << nBitsPending;
 
-        if (code < rs8) {
+        if (code < scaled) {
             // MPS
-            if (cm.getState() < 62)
-                cm.setState(cm.getState() + 1);
-
-            renormalize();
+            if (state < 62)
+                ++state;
 
-            bin = cm.getMps();
+            bin = mps;
         } else {
             // LPS
+            code -= scaled;
             range = rLPS;
-            code -= rs8;
 
-            renormalize();
-
-            bin = 1 - cm.getMps();
+            bin = 1 - mps;
 
-            if (cm.getState() == 0)
-                cm.setMps(1 - cm.getMps());
+            if (state == 0)
+                mps = 1 - mps;
 
-            cm.setState(MConst.transitLPS[cm.getState()]);
+            state = MConst.transitLPS[state];
         }
 
-        return bin;
+        renormalize();
+
+        return (((state << 1) | mps) << 1) | bin;
     }
 
     /**
      * Special decoding process for 'end of slice' flag. Uses probability state
      * 63.
-     * 
+     *
      * @param cm
      * @return
      * @throws IOException
@@ -103,7 +182,7 @@ public class MDecoder {
     public int decodeFinalBin() throws IOException {
         range -= 2;
 
-        if (code < (range << 8)) {
+        if (code < (range << nBitsPending)) {
             renormalize();
             return 0;
         } else {
@@ -113,44 +192,67 @@ public class MDecoder {
 
     /**
      * Special decoding process for symbols with uniform distribution
-     * 
+     *
      * @return
      * @throws IOException
      */
     public int decodeBinBypass() throws IOException {
-        code <<= 1;
-
         --nBitsPending;
-        if (nBitsPending <= 0)
-            readOneByte();
 
-        int tmp = code - (range << 8);
-        if (tmp < 0) {
-            return 0;
-        } else {
-            code = tmp;
-            return 1;
+        int bin = 0;
+        int scaled = range << nBitsPending;
+        if (code >= scaled) {
+            code -= scaled;
+            bin = 1;
         }
+
+        if (nBitsPending < 6)
+            refill();
+
+        return bin;
     }
 
     /**
-     * Shifts the current interval to either 1/2 or 0 (code = (code << 1) &
-     * 0x1ffff) and scales it by 2 (range << 1).
-     * 
-     * Reads new byte from the input stream into code value if there are no more
-     * bits pending
-     * 
-     * @throws IOException
+     * Decodes a run of bypass bins, i.e. suffixes of coefficient levels or
+     * motion vector differences
+     *
+     * @param n
+     *            Number of bins to decode, up to 31
+     * @return Bins packed into an integer, the first decoded bin being the most
+     *         significant
      */
-    private void renormalize() throws IOException {
-        while (range < 256) {
-            range <<= 1;
-            code <<= 1;
-            code &= 0x1ffff;
-
-            --nBitsPending;
-            if (nBitsPending <= 0)
-                readOneByte();
+    public int decodeBypass(int n) {
+        int result = 0;
+        while (n > 0) {
+            int step = Math.min(n, nBitsPending);
+            n -= step;
+            for (; step > 0; step--) {
+                --nBitsPending;
+                int scaled = range << nBitsPending;
+                result <<= 1;
+                if (code >= scaled) {
+                    code -= scaled;
+                    result |= 1;
+                }
+            }
+            if (nBitsPending < 6)
+                refill();
         }
+
+        return result;
+    }
+
+    /**
+     * Scales the current interval by 2^shift so that the range is again 9 bits
+     * wide, the matching bits of the code register are already in the pending
+     * area.
+     */
+    private void renormalize() {
+        int shift = Integer.numberOfLeadingZeros(range) - 23;
+        range <<= shift;
+        nBitsPending -= shift;
+
+        if (nBitsPending < 6)
+            refill();
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,9 @@
 package org.jcodec.codecs.h264;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
+import org.jcodec.codecs.h264.decode.DecodePolicy;
 import org.jcodec.codecs.h264.decode.ErrorResilence;
 import org.jcodec.codecs.h264.decode.SequenceDecoder;
 import org.jcodec.codecs.h264.decode.SequenceDecoder.Sequence;
@@ -21,15 +23,77 @@ import org.jcodec.common.model.Picture;
  */
 public class H264Decoder {
 
+    private H264Demuxer auSource;
     private SequenceDecoder streamDecoder;
     private Sequence curSequence;
 
     public H264Decoder(H264Demuxer auSource) throws IOException {
         ErrorResilence resilence = new SimpleErrorResilence();
 
+        this.auSource = auSource;
         this.streamDecoder = new SequenceDecoder(auSource, resilence);
     }
 
+    /**
+     * Creates multi-threaded decoder, parsing and reconstruction of the
+     * pictures is spread across the executor threads, a picture starts as soon
+     * as the rows of the reference pictures it predicts from are decoded
+     */
+    public H264Decoder(H264Demuxer auSource, ExecutorService executor) throws IOException {
+        ErrorResilence resilence = new SimpleErrorResilence();
+
+        this.auSource = auSource;
+        this.streamDecoder = new SequenceDecoder(auSource, resilence, executor);
+    }
+
+    /**
+     * Restricts decoding to the reference pictures or to the intra pictures,
+     * the rest of the pictures are not parsed and never returned. Takes effect
+     * starting with the next access unit read from the demuxer.
+     */
+    public void setDecodePolicy(DecodePolicy policy) {
+        streamDecoder.setPolicy(policy);
+    }
+
+    /**
+     * @see SequenceDecoder#setBoundedReorder(boolean)
+     */
+    public void setBoundedReorder(boolean boundedReorder) {
+        streamDecoder.setBoundedReorder(boundedReorder);
+    }
+
+    /**
+     * Repositions the decoder so that the next call to nextPicture returns
+     * picture frameNo. Decoding starts over from the IDR picture that
+     * precedes it, the pictures in between are decoded but not returned.
+     * 
+     * @param frameNo
+     *            Number of the picture in display order
+     * @return If the demuxer could get to the picture
+     * @throws IllegalStateException
+     *             If the demuxer doesn't implement H264SeekableDemuxer
+     */
+    public boolean seek(int frameNo) throws IOException {
+        if (!(auSource instanceof H264SeekableDemuxer))
+            throw new IllegalStateException("Demuxer doesn't support seeking");
+
+        streamDecoder.reset();
+        curSequence = null;
+
+        int skip = ((H264SeekableDemuxer) auSource).seek(frameNo);
+        if (skip == -1)
+            return false;
+
+        for (int i = 0; i < skip; i++) {
+            Picture picture = nextPicture();
+            if (picture == null)
+                return false;
+            releasePicture(picture);
+        }
+
+        return true;
+    }
+
     public Picture nextPicture() throws IOException {
         if (curSequence == null) {
             curSequence = streamDecoder.nextSequence();
@@ -49,4 +113,13 @@ public class H264Decoder {
 
         return picture;
     }
+
+    /**
+     * Gives a picture returned by nextPicture back to the decoder so that it's
+     * buffer is reused for the pictures decoded later. The picture must not be
+     * used by the caller after this call.
+     */
+    public void releasePicture(Picture picture) {
+        streamDecoder.releasePicture(picture);
+    }
 }
\ No newline at end of file
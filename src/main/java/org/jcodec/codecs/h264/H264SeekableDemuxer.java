@@ -0,0 +1,28 @@
+package org.jcodec.codecs.h264;
+
+import java.io.IOException;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ * 
+ * H264 demuxer that can reposition to an arbitrary picture
+ * 
+ * @author Jay Codec
+ * 
+ */
+public interface H264SeekableDemuxer extends H264Demuxer {
+
+    /**
+     * Positions the demuxer at the IDR picture that starts the group of
+     * pictures containing picture frameNo. The demuxer may leave out the
+     * non-reference pictures that are displayed before frameNo.
+     * 
+     * @param frameNo
+     *            Number of the picture in display order
+     * @return Number of the pictures the decoder outputs before picture
+     *         frameNo once it starts decoding from the new position, -1 if
+     *         the demuxer can't get to frameNo
+     */
+    int seek(int frameNo) throws IOException;
+}
@@ -0,0 +1,154 @@
+package org.jcodec.codecs.h264;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.jcodec.codecs.h264.decode.SequenceDecoder;
+import org.jcodec.codecs.h264.decode.dpb.DecodedPictureBuffer;
+import org.jcodec.codecs.h264.io.model.NALUnit;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+import org.jcodec.codecs.h264.io.model.PictureParameterSet;
+import org.jcodec.codecs.h264.io.model.SeqParameterSet;
+import org.jcodec.codecs.h264.mp4.AvcCBox;
+import org.jcodec.common.VideoDecoder;
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.model.Picture;
+import org.jcodec.containers.mp4.adaptors.AUFromContainerSample;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Decodes H264 frames pushed one by one, each frame being a sample of MP4 like
+ * container, i.e. NAL units prefixed with 4 byte length
+ *
+ * The frames are given in decoding order and the pictures come out in display
+ * order. Pictures are held back until the queue of frames is deeper than the
+ * number of pictures that may wait for output, so the decoder never runs out
+ * of frames in the middle of the stream and the first few calls return null.
+ * Passing null data at the end of the stream drains the pictures left, one per
+ * call. The frames depend on each other, so one instance decodes the whole
+ * stream and is not shared across threads.
+ *
+ * Parameter sets are taken from avcC box and from the frames themselves.
+ *
+ * @author Jay Codec
+ *
+ */
+public class H264VideoDecoder implements VideoDecoder {
+    // pictures waiting for output plus the access unit read ahead
+    private static final int MAX_DELAY = SequenceDecoder.MAX_DPB_FRAMES + 1;
+
+    private Map<Integer, SeqParameterSet> spsSet = new HashMap<Integer, SeqParameterSet>();
+    private Map<Integer, PictureParameterSet> ppsSet = new HashMap<Integer, PictureParameterSet>();
+    private LinkedList<byte[]> queue = new LinkedList<byte[]>();
+    private H264Decoder decoder;
+    private int delay = MAX_DELAY;
+
+    public H264VideoDecoder() {
+        try {
+            decoder = new H264Decoder(new SampleDemuxer());
+            decoder.setBoundedReorder(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public H264VideoDecoder(AvcCBox avcC) {
+        this();
+
+        for (SeqParameterSet sps : avcC.getSpsList())
+            spsSet.put(sps.seq_parameter_set_id, sps);
+        for (PictureParameterSet pps : avcC.getPpsList())
+            ppsSet.put(pps.pic_parameter_set_id, pps);
+
+        if (avcC.getSpsList().size() == 1) {
+            SeqParameterSet sps = avcC.getSpsList().get(0);
+            int picSizeInMbs = (sps.pic_width_in_mbs_minus1 + 1) * (sps.pic_height_in_map_units_minus1 + 1);
+            int capacity = DecodedPictureBuffer.getForProfileAndDimension(sps.level_idc, picSizeInMbs).getCapacity();
+            delay = SequenceDecoder.getMaxReorder(sps, capacity) + 1;
+        }
+    }
+
+    /**
+     * @param data
+     *            Next frame in decoding order, null once the stream is over
+     * @param buffer
+     *            Planes to put the picture into, must be large enough to hold
+     *            the cropped picture
+     * @return Next picture in display order or null if the decoder needs more
+     *         frames or it's drained
+     */
+    public Picture decodeFrame(Buffer data, int[][] buffer) {
+        if (data != null) {
+            queue.add(data.toArray());
+            if (queue.size() <= delay)
+                return null;
+        }
+
+        try {
+            Picture pic = decoder.nextPicture();
+            if (pic == null)
+                return null;
+
+            Picture result = new Picture(pic.getWidth(), pic.getHeight(), buffer, pic.getColor());
+            for (int i = 0; i < pic.getData().length; i++) {
+                int size = pic.getPlaneWidth(i) * pic.getPlaneHeight(i);
+                if (buffer[i].length < size)
+                    throw new RuntimeException("Buffer too small to hold output picture [" + pic.getWidth() + "x"
+                            + pic.getHeight() + "]");
+                System.arraycopy(pic.getPlaneData(i), 0, buffer[i], 0, size);
+            }
+            decoder.releasePicture(pic);
+
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int probe(Buffer data) {
+        int pos = data.pos, units = 0;
+        while (pos + 4 < data.limit) {
+            int len = ((data.buffer[pos] & 0xff) << 24) | ((data.buffer[pos + 1] & 0xff) << 16)
+                    | ((data.buffer[pos + 2] & 0xff) << 8) | (data.buffer[pos + 3] & 0xff);
+            if (len <= 0 || (data.buffer[pos + 4] & 0x80) != 0
+                    || NALUnitType.fromValue(data.buffer[pos + 4] & 0x1f) == null)
+                return 0;
+            pos += len + 4;
+            ++units;
+        }
+        return pos == data.limit && units > 0 ? 50 : 0;
+    }
+
+    private class SampleDemuxer implements H264Demuxer {
+
+        public AccessUnit nextAcceessUnit() throws IOException {
+            if (queue.isEmpty())
+                return null;
+
+            return new AUFromContainerSample(queue.removeFirst()) {
+                protected void processNonSlice(NALUnit nu, InputStream is) throws IOException {
+                    if (nu.type == NALUnitType.SPS) {
+                        SeqParameterSet sps = SeqParameterSet.read(is);
+                        spsSet.put(sps.seq_parameter_set_id, sps);
+                    } else if (nu.type == NALUnitType.PPS) {
+                        PictureParameterSet pps = PictureParameterSet.read(is);
+                        ppsSet.put(pps.pic_parameter_set_id, pps);
+                    }
+                }
+            };
+        }
+
+        public SeqParameterSet getSPS(int id) {
+            return spsSet.get(id);
+        }
+
+        public PictureParameterSet getPPS(int id) {
+            return ppsSet.get(id);
+        }
+    }
+}
@@ -16,6 +16,7 @@ import org.jcodec.codecs.h264.io.model.SeqParameterSet;
 import org.jcodec.codecs.h264.io.model.SliceHeader;
 import org.jcodec.codecs.h264.io.read.SliceHeaderReader;
 import org.jcodec.common.io.BitstreamReader;
+import org.jcodec.common.io.Buffer;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
@@ -23,6 +24,10 @@ import org.jcodec.common.io.BitstreamReader;
  * 
  * Extracts an access unit coded as a sequence of NAL unit in Annex B format
  * 
+ * When reading with NALUnitReader NAL units are kept as views into it's
+ * buffer, emulation prevention is only removed from the units that are
+ * actually parsed, i.e. slices and parameter sets.
+ * 
  * @author Jay Codec
  * 
  */
@@ -32,7 +37,8 @@ public class AnnexBDemuxer implements H264Demuxer {
 
     private SliceHeaderReader sliceHeaderReader;
     private NALUnitSource nuSource;
-    private byte[] currentUnit;
+    private NALUnitReader nuReader;
+    private Buffer currentUnit;
 
     private class AnnexBAccessUnit implements AccessUnit {
         private NALUnit oldNu;
@@ -50,16 +56,22 @@ public class AnnexBDemuxer implements H264Demuxer {
             if (currentUnit == null)
                 return null;
 
-            ByteArrayInputStream stream = new ByteArrayInputStream(currentUnit);
-
-            NALUnit nu = NALUnit.read(stream);
+            NALUnit nu = NALUnit.read(new ByteArrayInputStream(currentUnit.buffer, currentUnit.pos, currentUnit
+                    .remaining()));
 
             if (nu.type != NALUnitType.IDR_SLICE && nu.type != NALUnitType.NON_IDR_SLICE) {
-                processNonPictureUnit(nu, stream);
+                if (nu.type == NALUnitType.SPS || nu.type == NALUnitType.PPS) {
+                    InputStream stream = open(currentUnit);
+                    stream.read();
+                    processNonPictureUnit(nu, stream);
+                }
                 currentUnit = readNextUnit();
                 return NON_SLICE;
             }
 
+            ByteArrayInputStream stream = open(currentUnit);
+            stream.read();
+
             SliceHeader sh = sliceHeaderReader.read(nu, new BitstreamReader(stream));
 
             if (oldNu != null && oldSh != null && !sameAccessUnit(oldNu, nu, oldSh, sh)) {
@@ -81,10 +93,28 @@ public class AnnexBDemuxer implements H264Demuxer {
         this(src, new NALUnitReader(src));
     }
 
+    /**
+     * Demuxes Annex B stream stored in memory, NAL units are not copied
+     */
+    public AnnexBDemuxer(Buffer src) throws IOException {
+        this(null, new NALUnitReader(src));
+    }
+
     public AnnexBDemuxer(InputStream src, NALUnitSource nuSource) throws IOException {
 
         sliceHeaderReader = new SliceHeaderReader(this);
+
+        reset(nuSource);
+    }
+
+    /**
+     * Continues demuxing with the NAL units of a different source, i.e. once
+     * the underlying stream was repositioned. The parameter sets seen so far
+     * are kept.
+     */
+    public void reset(NALUnitSource nuSource) throws IOException {
         this.nuSource = nuSource;
+        nuReader = nuSource instanceof NALUnitReader ? (NALUnitReader) nuSource : null;
 
         currentUnit = readNextUnit();
     }
@@ -95,13 +125,26 @@ public class AnnexBDemuxer implements H264Demuxer {
         }
     };
 
-    private byte[] readNextUnit() throws IOException {
+    private Buffer readNextUnit() throws IOException {
+        if (nuReader != null)
+            return nuReader.nextNALUnitBuffer();
+
         InputStream is = nuSource.nextNALUnit();
         if (is != null)
-            return IOUtils.toByteArray(is);
+            return new Buffer(IOUtils.toByteArray(is));
         return null;
     }
 
+    /**
+     * @return Stream over the NAL unit payload with emulation prevention
+     *         removed, positioned at the NAL unit header
+     */
+    private ByteArrayInputStream open(Buffer unit) {
+        Buffer rbsp = nuReader != null ? NALUnitReader.unescape(unit) : unit;
+
+        return new ByteArrayInputStream(rbsp.buffer, rbsp.pos, rbsp.remaining());
+    }
+
     private void processNonPictureUnit(NALUnit nu, InputStream is) throws IOException {
         if (nu.type == NALUnitType.SPS) {
             SeqParameterSet sps = SeqParameterSet.read(is);
@@ -113,15 +156,18 @@ public class AnnexBDemuxer implements H264Demuxer {
 
     }
 
-    private boolean sameAccessUnit(NALUnit nu1, NALUnit nu2, SliceHeader sh1, SliceHeader sh2) {
+    /**
+     * Checks if two consecutive slices belong to the same picture by
+     * comparing the fields of their headers that differ between pictures
+     */
+    public static boolean sameAccessUnit(NALUnit nu1, NALUnit nu2, SliceHeader sh1, SliceHeader sh2) {
         if (sh1.pic_parameter_set_id != sh2.pic_parameter_set_id)
             return false;
 
         if (sh1.frame_num != sh2.frame_num)
             return false;
 
-        PictureParameterSet pps = ppsSet.get(sh1.pic_parameter_set_id);
-        SeqParameterSet sps = spsSet.get(pps.seq_parameter_set_id);
+        SeqParameterSet sps = sh1.sps;
 
         if ((sps.pic_order_cnt_type == 0 && sh1.pic_order_cnt_lsb != sh2.pic_order_cnt_lsb))
             return false;
@@ -1,97 +1,201 @@
 package org.jcodec.codecs.h264.annexb;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.jcodec.codecs.h264.annexb.AnnexBDemuxer.NALUnitSource;
+import org.jcodec.common.io.Buffer;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
  * under FreeBSD License
- * 
- * Input stream that automatically unwraps NAL units and allows for NAL unit
- * navigation
- * 
+ *
+ * Splits Annex B byte stream into NAL units
+ *
+ * Works on a byte buffer, when created on top of an input stream the data is
+ * fetched in chunks. NAL units are returned as views into this buffer, the
+ * emulation prevention bytes are only removed on demand.
+ *
  * @author Jay Codec
- * 
+ *
  */
 public class NALUnitReader implements NALUnitSource {
-    private final InputStream src;
-    private int next0;
-    private int next1;
-    private int next2;
-    private int prev0;
-    private int prev1;
-    private int curByte;
-
-    private BufferedInputStream proxy = new BufferedInputStream(new InputStream() {
-        @Override
-        public int read() throws IOException {
-            return readByte();
-        }
-    });
+    public static final int CHUNK_SIZE = 1 << 16;
+
+    private InputStream src;
+    private byte[] data;
+    private int pos;
+    private int limit;
+    // stream offset of data[0]
+    private long base;
+    private long unitOffset;
 
     public NALUnitReader(InputStream src) throws IOException {
         this.src = src;
-        fillBuffer();
+        this.data = new byte[0];
     }
 
-    private int readByte() throws IOException {
-        boolean marker = curByte == 0 && next0 == 0 && ((next1 == 0 && next2 == 1) || next1 == 1);
-        if (marker)
-            return -1;
+    public NALUnitReader(Buffer buf) {
+        this.data = buf.buffer;
+        this.pos = buf.pos;
+        this.limit = buf.limit;
+        this.base = -buf.pos;
+    }
 
-        if (curByte == 3 && prev0 == 0 && prev1 == 0) {
-            advance();
-        }
+    public NALUnitReader(byte[] data) {
+        this(new Buffer(data));
+    }
 
-        int b = curByte;
+    /**
+     * Reads next NAL unit
+     *
+     * @return NAL unit payload with the emulation prevention bytes removed
+     */
+    public InputStream nextNALUnit() throws IOException {
+        Buffer nal = nextNALUnitBuffer();
+        if (nal == null)
+            return null;
 
-        advance();
+        nal = unescape(nal);
 
-        return b;
+        return new ByteArrayInputStream(nal.buffer, nal.pos, nal.remaining());
     }
 
-    private void advance() throws IOException {
+    /**
+     * Reads next NAL unit without copying
+     *
+     * @return View of the next NAL unit without the start code, emulation
+     *         prevention bytes are still in there. The content of the view is
+     *         never overwritten by the reader.
+     */
+    public Buffer nextNALUnitBuffer() throws IOException {
+        int start = scan(0);
+        if (start == -1)
+            return null;
+        unitOffset = base + pos + start;
+        pos += start + 3;
+
+        int end = scan(0);
+        if (end == -1) {
+            end = limit - pos;
+        } else if (end > 0 && data[pos + end - 1] == 0) {
+            // 4 byte start code of the next unit
+            --end;
+        }
 
-        prev1 = prev0;
-        prev0 = curByte;
-        curByte = next0;
-        next0 = next1;
-        next1 = next2;
-        next2 = src.read();
+        Buffer result = new Buffer(data, pos, pos + end);
+        pos += end;
 
+        return result;
     }
 
-    private void fillBuffer() throws IOException {
-        this.curByte = src.read();
-        this.next0 = src.read();
-        this.next1 = src.read();
-        this.next2 = src.read();
-        this.prev0 = -1;
-        this.prev1 = -1;
+    /**
+     * @return Offset of the start code of the NAL unit returned last, counted
+     *         from the beginning of the stream
+     */
+    public long getUnitOffset() {
+        return unitOffset;
     }
 
-    public InputStream nextNALUnit() throws IOException {
-        boolean valid = false;
-        int headerLen = 0;
-        if (curByte == 0 && next0 == 0) {
-            if (next1 == 1) {
-                valid = true;
-                headerLen = 3;
-            } else if (next1 == 0 && next2 == 1) {
-                valid = true;
-                headerLen = 4;
-            }
+    /**
+     * Finds next start code at or after pos + off fetching more data if needed
+     *
+     * @return Offset of the start code relative to pos or -1 if the data is
+     *         over
+     */
+    private int scan(int off) throws IOException {
+        while (true) {
+            int found = findStartCode(data, pos + off, limit);
+            if (found != -1)
+                return found - pos;
+
+            off = Math.max(0, limit - pos - 2);
+            if (!fetch())
+                return -1;
         }
-        if (!valid)
-            return null;
+    }
 
-        for (int i = 0; i < headerLen; i++) {
-            advance();
+    /**
+     * Fetches next chunk of data into a new array so that the views returned
+     * before stay intact
+     */
+    private boolean fetch() throws IOException {
+        if (src == null)
+            return false;
+
+        int remaining = limit - pos;
+        int chunk = Math.max(CHUNK_SIZE, remaining);
+        byte[] newData = new byte[remaining + chunk];
+        System.arraycopy(data, pos, newData, 0, remaining);
+
+        int read = 0, r;
+        while (read < chunk && (r = src.read(newData, remaining + read, chunk - read)) != -1)
+            read += r;
+
+        if (read == 0) {
+            src = null;
+            return false;
         }
 
-        return proxy;
+        data = newData;
+        base += pos;
+        pos = 0;
+        limit = remaining + read;
+
+        return true;
+    }
+
+    /**
+     * Looks for 0x000001 sequence
+     *
+     * Examines every third byte, the one that can't be a part of a start code
+     * lets the search skip it's two neighbours as well
+     *
+     * @return Index of the first byte of the start code within buf or -1 if
+     *         there's none
+     */
+    public static int findStartCode(byte[] buf, int from, int to) {
+        return findMarker(buf, from, to, 1);
+    }
+
+    private static int findMarker(byte[] buf, int from, int to, int last) {
+        for (int i = from + 2; i < to;) {
+            byte b = buf[i];
+            if (b == 0) {
+                ++i;
+            } else if (b == last && buf[i - 1] == 0 && buf[i - 2] == 0) {
+                return i - 2;
+            } else {
+                i += 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes emulation prevention bytes from the escaped NAL unit in one pass
+     *
+     * @return nal itself if there are no emulation prevention bytes, a copy
+     *         otherwise
+     */
+    public static Buffer unescape(Buffer nal) {
+        int found = findMarker(nal.buffer, nal.pos, nal.limit, 3);
+        if (found == -1)
+            return nal;
+
+        byte[] result = new byte[nal.remaining()];
+        int from = nal.pos, off = 0;
+        do {
+            int len = found + 2 - from;
+            System.arraycopy(nal.buffer, from, result, off, len);
+            off += len;
+            from = found + 3;
+        } while ((found = findMarker(nal.buffer, from, nal.limit, 3)) != -1);
+
+        System.arraycopy(nal.buffer, from, result, off, nal.limit - from);
+        off += nal.limit - from;
+
+        return new Buffer(result, 0, off);
     }
-}
\ No newline at end of file
+}
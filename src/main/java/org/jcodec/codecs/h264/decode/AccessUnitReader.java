@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedList;
 
 import org.jcodec.codecs.h264.AccessUnit;
 import org.jcodec.codecs.h264.StreamParams;
@@ -41,6 +42,8 @@ public class AccessUnitReader {
     private AccessUnit au;
     private SliceHeaderReader headerReader;
     private SliceDataReader dataReader;
+    private LinkedList<Collection<CodedSlice>> preloaded;
+    private boolean skipped;
 
     public AccessUnitReader(AccessUnit au, StreamParams streamParams) throws IOException {
         headerReader = new SliceHeaderReader(streamParams);
@@ -80,7 +83,25 @@ public class AccessUnitReader {
         return new FetchedSlice(in, nu, sh);
     }
 
+    /**
+     * Parses all the pictures of this access unit upfront so that the
+     * subsequent calls to readOnePicture don't touch the underlying stream.
+     * Used to parse an access unit on a different thread while the previous
+     * one is being reconstructed.
+     * 
+     * @throws IOException
+     */
+    public void preload() throws IOException {
+        LinkedList<Collection<CodedSlice>> pictures = new LinkedList<Collection<CodedSlice>>();
+        Collection<CodedSlice> pic;
+        while ((pic = readOnePicture()) != null)
+            pictures.add(pic);
+        preloaded = pictures;
+    }
+
     public Collection<CodedSlice> readOnePicture() throws IOException {
+        if (preloaded != null)
+            return preloaded.isEmpty() ? null : preloaded.removeFirst();
 
         Collection<CodedSlice> slices = new ArrayList<CodedSlice>();
 
@@ -106,6 +127,19 @@ public class AccessUnitReader {
         }
     }
 
+    /**
+     * Reads past the rest of the access unit without parsing the slice data,
+     * the access unit is not going to be decoded
+     */
+    public void skip() throws IOException {
+        finish();
+        skipped = true;
+    }
+
+    public boolean isSkipped() {
+        return skipped;
+    }
+
     public SliceHeader getSliceHeader() {
         return firstSh;
     }
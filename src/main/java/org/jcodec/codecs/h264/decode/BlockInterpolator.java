@@ -1,6 +1,7 @@
 package org.jcodec.codecs.h264.decode;
 
 import org.jcodec.codecs.h264.decode.model.PixelBuffer;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Rect;
 
@@ -10,12 +11,31 @@ import org.jcodec.common.model.Rect;
  * 
  * Interpolator that operates on block level
  * 
+ * Reads the pixels from the edge extended copy of the reference picture, the
+ * block position is clipped so that the block never leaves it. A reference
+ * picture that is still being reconstructed is waited for up to the last row
+ * the block needs. A reference that is not edge extended gets the pixels
+ * around the block copied with the coordinates clamped to the picture.
+ * 
  * @author Jay Codec
  * 
  */
 public class BlockInterpolator {
+    /**
+     * Size of the edge extension of the reference pictures, enough for any
+     * motion vector once the block is clipped to lie within it
+     */
+    public static final int PAD = 32;
+
+    /**
+     * Pixels the luma filters read to the left of / above the block and to the
+     * right of / below it
+     */
+    private static final int MARGIN_BEFORE = 3;
+    private static final int MARGIN_AFTER = 5;
 
     private int[] tmp1 = new int[1024];
+    private int[] clamped = new int[(16 + MARGIN_BEFORE + MARGIN_AFTER) * (16 + MARGIN_BEFORE + MARGIN_AFTER)];
 
     /**
      * Get block of ( possibly interpolated ) luma pixels
@@ -23,20 +43,31 @@ public class BlockInterpolator {
     public void getBlockLuma(Picture pic, PixelBuffer blk, Rect rect) {
         int x = rect.getX();
         int y = rect.getY();
+        int blkW = rect.getWidth();
+        int blkH = rect.getHeight();
 
         int xInd = x & 0x3;
         int yInd = y & 0x3;
 
-        int xFp = x >> 2;
-        int yFp = y >> 2;
-        if (xFp < 2 || yFp < 2 || xFp > pic.getWidth() - rect.getWidth() - 5
-                || yFp > pic.getHeight() - rect.getHeight() - 5) {
-            unsafe[(yInd << 2) + xInd].getLuma(pic.getData()[0], pic.getWidth(), pic.getHeight(), blk.getPred(),
-                    blk.getStart(), 1 << blk.getLogStride(), xFp, yFp, rect.getWidth(), rect.getHeight());
-        } else {
-            safe[(yInd << 2) + xInd].getLuma(pic.getData()[0], pic.getWidth(), pic.getHeight(), blk.getPred(),
-                    blk.getStart(), 1 << blk.getLogStride(), xFp, yFp, rect.getWidth(), rect.getHeight());
+        if (!(pic instanceof PaddedPicture)) {
+            int stride = blkW + MARGIN_BEFORE + MARGIN_AFTER;
+            copyClamped(pic.getPlaneData(0), pic.getPlaneWidth(0), pic.getPlaneHeight(0), (x >> 2) - MARGIN_BEFORE,
+                    (y >> 2) - MARGIN_BEFORE, stride, blkH + MARGIN_BEFORE + MARGIN_AFTER);
+            luma[(yInd << 2) + xInd].getLuma(clamped, stride, blk.getPred(), blk.getStart(),
+                    1 << blk.getLogStride(), MARGIN_BEFORE, MARGIN_BEFORE, blkW, blkH);
+            return;
         }
+        PaddedPicture ref = (PaddedPicture) pic;
+
+        // beyond these limits every tap of the filter reads the edge pixel
+        int xFp = iClip3(-blkW - 4, ref.getWidth() + 1, x >> 2) + ref.getPadX(0);
+        int yFp = iClip3(-blkH - 4, ref.getHeight() + 1, y >> 2) + ref.getPadY(0);
+
+        // 6 tap filter reads 3 rows below the block
+        waitForRows(ref, (y >> 2) + blkH + 3);
+
+        luma[(yInd << 2) + xInd].getLuma(ref.getPaddedPlaneData(0), ref.getPaddedStride(0), blk.getPred(),
+                blk.getStart(), 1 << blk.getLogStride(), xFp, yFp, blkW, blkH);
     }
 
     /**
@@ -52,8 +83,8 @@ public class BlockInterpolator {
      * @param blkH
      */
     public void getBlockCb(Picture pic, PixelBuffer blk, Rect rect) {
-        getBlockChroma(pic.getData()[1], pic.getWidth() >> 1, pic.getHeight() >> 1, blk.getPred(), blk.getStart(),
-                1 << blk.getLogStride(), rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
+        getBlockChroma(pic, 1, blk.getPred(), blk.getStart(), 1 << blk.getLogStride(), rect.getX(),
+                rect.getY(), rect.getWidth(), rect.getHeight());
     }
 
     /**
@@ -69,42 +100,64 @@ public class BlockInterpolator {
      * @param blkH
      */
     public void getBlockCr(Picture pic, PixelBuffer blk, Rect rect) {
-        getBlockChroma(pic.getData()[2], pic.getWidth() >> 1, pic.getHeight() >> 1, blk.getPred(), blk.getStart(),
-                1 << blk.getLogStride(), rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
+        getBlockChroma(pic, 2, blk.getPred(), blk.getStart(), 1 << blk.getLogStride(), rect.getX(),
+                rect.getY(), rect.getWidth(), rect.getHeight());
     }
 
-    private void getBlockChroma(int[] pels, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
+    /**
+     * Copies the w x h area at (x, y) of the plane to clamped, the pixels
+     * outside of the plane repeat it's edge. Only as much as the block reads is
+     * copied, reference pictures from the DPB are edge extended once instead.
+     */
+    private void copyClamped(int[] plane, int planeW, int planeH, int x, int y, int w, int h) {
+        for (int j = 0, off = 0; j < h; j++) {
+            int lineOff = iClip3(0, planeH - 1, y + j) * planeW;
+            for (int i = 0; i < w; i++, off++)
+                clamped[off] = plane[lineOff + iClip3(0, planeW - 1, x + i)];
+        }
+    }
+
+    /**
+     * Waits for the luma rows up to 'rows', the padding above and below the
+     * picture comes with the first and the last row
+     */
+    private static void waitForRows(PaddedPicture ref, int rows) {
+        ref.waitForRows(Math.max(1, Math.min(rows, ref.getHeight())));
+    }
+
+    private void getBlockChroma(Picture pic, int plane, int[] blk, int blkOff, int blkStride, int x, int y,
             int blkW, int blkH) {
         int xInd = x & 0x7;
         int yInd = y & 0x7;
 
-        int xFull = x >> 3;
-        int yFull = y >> 3;
-
-        if (xFull < 0 || xFull > picW - blkW - 1 || yFull < 0 || yFull > picH - blkH - 1) {
-            if (xInd == 0 && yInd == 0) {
-                getChroma00Unsafe(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, blkW, blkH);
-            } else if (yInd == 0) {
+        if (!(pic instanceof PaddedPicture)) {
+            // bilinear filter reads one pixel to the right of / below the block
+            copyClamped(pic.getPlaneData(plane), pic.getPlaneWidth(plane), pic.getPlaneHeight(plane), x >> 3,
+                    y >> 3, blkW + 1, blkH + 1);
+            getChroma(clamped, blkW + 1, blk, blkOff, blkStride, 0, 0, xInd, yInd, blkW, blkH);
+            return;
+        }
+        PaddedPicture ref = (PaddedPicture) pic;
 
-                getChromaX0Unsafe(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, xInd, blkW, blkH);
+        int xFull = iClip3(-blkW, ref.getPlaneWidth(plane) - 1, x >> 3) + ref.getPadX(plane);
+        int yFull = iClip3(-blkH, ref.getPlaneHeight(plane) - 1, y >> 3) + ref.getPadY(plane);
 
-            } else if (xInd == 0) {
-                getChroma0XUnsafe(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, yInd, blkW, blkH);
-            } else {
-                getChromaXXUnsafe(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, xInd, yInd, blkW, blkH);
-            }
-        } else {
-            if (xInd == 0 && yInd == 0) {
-                getChroma00(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, blkW, blkH);
-            } else if (yInd == 0) {
+        waitForRows(ref, ((y >> 3) + blkH + 1) << ref.getColor().compHeight[plane]);
 
-                getChromaX0(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, xInd, blkW, blkH);
+        getChroma(ref.getPaddedPlaneData(plane), ref.getPaddedStride(plane), blk, blkOff, blkStride, xFull, yFull,
+                xInd, yInd, blkW, blkH);
+    }
 
-            } else if (xInd == 0) {
-                getChroma0X(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, yInd, blkW, blkH);
-            } else {
-                getChromaXX(pels, picW, picH, blk, blkOff, blkStride, xFull, yFull, xInd, yInd, blkW, blkH);
-            }
+    private void getChroma(int[] pels, int stride, int[] blk, int blkOff, int blkStride, int xFull, int yFull,
+            int xInd, int yInd, int blkW, int blkH) {
+        if (xInd == 0 && yInd == 0) {
+            getChroma00(pels, stride, blk, blkOff, blkStride, xFull, yFull, blkW, blkH);
+        } else if (yInd == 0) {
+            getChromaX0(pels, stride, blk, blkOff, blkStride, xFull, yFull, xInd, blkW, blkH);
+        } else if (xInd == 0) {
+            getChroma0X(pels, stride, blk, blkOff, blkStride, xFull, yFull, yInd, blkW, blkH);
+        } else {
+            getChromaXX(pels, stride, blk, blkOff, blkStride, xFull, yFull, xInd, yInd, blkW, blkH);
         }
     }
 
@@ -121,24 +174,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Fullpel (0, 0) unsafe
-     */
-    private void getLuma00Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        for (int j = 0; j < blkH; j++) {
-            int lineStart = iClip3(0, maxH, j + y) * picW;
-
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = pic[lineStart + iClip3(0, maxW, x + i)];
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Halfpel (2,0) horizontal
      */
@@ -173,50 +208,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Halfpel (2, 0) horizontal unsafe
-     */
-    private void getLuma20UnsafeNoRound(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x,
-            int y, int blkW, int blkH) {
-        int maxW = picW - 1;
-        int maxH = picH - 1;
-
-        for (int i = 0; i < blkW; i++) {
-            int ipos_m2 = iClip3(0, maxW, x + i - 2);
-            int ipos_m1 = iClip3(0, maxW, x + i - 1);
-            int ipos = iClip3(0, maxW, x + i);
-            int ipos_p1 = iClip3(0, maxW, x + i + 1);
-            int ipos_p2 = iClip3(0, maxW, x + i + 2);
-            int ipos_p3 = iClip3(0, maxW, x + i + 3);
-
-            int boff = blkOff;
-            for (int j = 0; j < blkH; j++) {
-                int lineStart = iClip3(0, maxH, j + y) * picW;
-
-                int result = (pic[lineStart + ipos_m2] + pic[lineStart + ipos_p3])
-                        - (pic[lineStart + ipos_m1] + pic[lineStart + ipos_p2]) * 5
-                        + (pic[lineStart + ipos] + pic[lineStart + ipos_p1]) * 20;
-
-                blk[boff + i] = result;
-                boff += blkStride;
-            }
-        }
-    }
-
-    private void getLuma20Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-
-        getLuma20UnsafeNoRound(pic, picW, picH, blk, blkOff, blkStride, x, y, blkW, blkH);
-
-        for (int i = 0; i < blkW; i++) {
-            int boff = blkOff;
-            for (int j = 0; j < blkH; j++) {
-                blk[boff + i] = iClip3(0, 255, (blk[boff + i] + 16) >> 5);
-                boff += blkStride;
-            }
-        }
-    }
-
     /**
      * Halfpel (0, 2) vertical
      */
@@ -247,46 +238,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Hpel (0, 2) vertical unsafe
-     */
-    private void getLuma02UnsafeNoRound(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x,
-            int y, int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        for (int j = 0; j < blkH; j++) {
-            int offP0 = iClip3(0, maxH, y + j - 2) * picW;
-            int offP1 = iClip3(0, maxH, y + j - 1) * picW;
-            int offP2 = iClip3(0, maxH, y + j) * picW;
-            int offP3 = iClip3(0, maxH, y + j + 1) * picW;
-            int offP4 = iClip3(0, maxH, y + j + 2) * picW;
-            int offP5 = iClip3(0, maxH, y + j + 3) * picW;
-
-            for (int i = 0; i < blkW; i++) {
-                int pres_x = iClip3(0, maxW, x + i);
-
-                int result = (pic[pres_x + offP0] + pic[pres_x + offP5]) - (pic[pres_x + offP1] + pic[pres_x + offP4])
-                        * 5 + (pic[pres_x + offP2] + pic[pres_x + offP3]) * 20;
-                blk[blkOff + i] = result;
-            }
-            blkOff += blkStride;
-        }
-    }
-
-    private void getLuma02Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-
-        getLuma02UnsafeNoRound(pic, picW, picH, blk, blkOff, blkStride, x, y, blkW, blkH);
-
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = iClip3(0, 255, (blk[blkOff + i] + 16) >> 5);
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Qpel: (1,0) horizontal
      */
@@ -306,26 +257,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel: (1,0) horizontal unsafe
-     */
-    private void getLuma10Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        getLuma20Unsafe(pic, picW, picH, blk, blkOff, blkStride, x, y, blkW, blkH);
-
-        for (int j = 0; j < blkH; j++) {
-            int lineStart = iClip3(0, maxH, j + y) * picW;
-
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = (blk[blkOff + i] + pic[lineStart + iClip3(0, maxW, x + i)] + 1) >> 1;
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Qpel (3,0) horizontal
      */
@@ -343,26 +274,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel horizontal (3, 0) unsafe
-     */
-    private void getLuma30Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        getLuma20Unsafe(pic, picW, picH, blk, blkOff, blkStride, x, y, blkW, blkH);
-
-        for (int j = 0; j < blkH; j++) {
-            int lineStart = iClip3(0, maxH, j + y) * picW;
-
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = (blk[blkOff + i] + pic[lineStart + iClip3(0, maxW, x + i + 1)] + 1) >> 1;
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Qpel vertical (0, 1)
      */
@@ -380,25 +291,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel vertical (0, 1) unsafe
-     */
-    private void getLuma01Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        getLuma02Unsafe(pic, picW, picH, blk, blkOff, blkStride, x, y, blkW, blkH);
-
-        for (int j = 0; j < blkH; j++) {
-            int lineStart = iClip3(0, maxH, y + j) * picW;
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = (blk[blkOff + i] + pic[lineStart + iClip3(0, maxW, x + i)] + 1) >> 1;
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Qpel vertical (0, 3)
      */
@@ -417,25 +309,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel vertical (0, 3) unsafe
-     */
-    private void getLuma03Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        getLuma02Unsafe(pic, picW, picH, blk, blkOff, blkStride, x, y, blkW, blkH);
-
-        for (int j = 0; j < blkH; j++) {
-            int lineStart = iClip3(0, maxH, y + j + 1) * picW;
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = (blk[blkOff + i] + pic[lineStart + iClip3(0, maxW, x + i)] + 1) >> 1;
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Hpel horizontal, Qpel vertical (2, 1)
      * 
@@ -456,26 +329,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel vertical (2, 1) unsafe
-     */
-    private void getLuma21Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        getLuma20UnsafeNoRound(pic, picW, imgH, tmp1, 0, blkW, x, y - 2, blkW, blkH + 7);
-        getLuma02NoRound(tmp1, blkW, blk, blkOff, blkStride, 0, 2, blkW, blkH);
-
-        int off = blkW << 1;
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                int rounded = iClip3(0, 255, (blk[blkOff + i] + 512) >> 10);
-                int rounded2 = iClip3(0, 255, (tmp1[off + i] + 16) >> 5);
-                blk[blkOff + i] = (rounded + rounded2 + 1) >> 1;
-            }
-            blkOff += blkStride;
-            off += blkW;
-        }
-    }
-
     /**
      * Hpel horizontal, Hpel vertical (2, 2)
      */
@@ -491,22 +344,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Hpel (2, 2) unsafe
-     */
-    private void getLuma22Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        getLuma20UnsafeNoRound(pic, picW, imgH, tmp1, 0, blkW, x, y - 2, blkW, blkH + 7);
-        getLuma02NoRound(tmp1, blkW, blk, blkOff, blkStride, 0, 2, blkW, blkH);
-
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = iClip3(0, 255, (blk[blkOff + i] + 512) >> 10);
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Hpel horizontal, Qpel vertical (2, 3)
      * 
@@ -527,26 +364,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel (2, 3) unsafe
-     */
-    private void getLuma23Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        getLuma20UnsafeNoRound(pic, picW, imgH, tmp1, 0, blkW, x, y - 2, blkW, blkH + 7);
-        getLuma02NoRound(tmp1, blkW, blk, blkOff, blkStride, 0, 2, blkW, blkH);
-
-        int off = blkW << 1;
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                int rounded = iClip3(0, 255, (blk[blkOff + i] + 512) >> 10);
-                int rounded2 = iClip3(0, 255, (tmp1[off + i + blkW] + 16) >> 5);
-                blk[blkOff + i] = (rounded + rounded2 + 1) >> 1;
-            }
-            blkOff += blkStride;
-            off += blkW;
-        }
-    }
-
     /**
      * Qpel horizontal, Hpel vertical (1, 2)
      */
@@ -569,28 +386,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel (1, 2) unsafe
-     */
-    private void getLuma12Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int tmpW = blkW + 7;
-
-        getLuma02UnsafeNoRound(pic, picW, imgH, tmp1, 0, tmpW, x - 2, y, tmpW, blkH);
-        getLuma20NoRound(tmp1, tmpW, blk, blkOff, blkStride, 2, 0, blkW, blkH);
-
-        int off = 2;
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                int rounded = iClip3(0, 255, (blk[blkOff + i] + 512) >> 10);
-                int rounded2 = iClip3(0, 255, (tmp1[off + i] + 16) >> 5);
-                blk[blkOff + i] = (rounded + rounded2 + 1) >> 1;
-            }
-            blkOff += blkStride;
-            off += tmpW;
-        }
-    }
-
     /**
      * Qpel horizontal, Hpel vertical (3, 2)
      */
@@ -612,28 +407,6 @@ public class BlockInterpolator {
         }
     }
 
-    /**
-     * Qpel (3, 2) unsafe
-     */
-    private void getLuma32Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int tmpW = blkW + 7;
-
-        getLuma02UnsafeNoRound(pic, picW, imgH, tmp1, 0, tmpW, x - 2, y, tmpW, blkH);
-        getLuma20NoRound(tmp1, tmpW, blk, blkOff, blkStride, 2, 0, blkW, blkH);
-
-        int off = 2;
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                int rounded = iClip3(0, 255, (blk[blkOff + i] + 512) >> 10);
-                int rounded2 = iClip3(0, 255, (tmp1[off + i + 1] + 16) >> 5);
-                blk[blkOff + i] = (rounded + rounded2 + 1) >> 1;
-            }
-            blkOff += blkStride;
-            off += tmpW;
-        }
-    }
-
     /**
      * Qpel horizontal, Qpel vertical (3, 3)
      */
@@ -644,17 +417,6 @@ public class BlockInterpolator {
         mergeCrap(blk, blkOff, blkStride, blkW, blkH);
     }
 
-    /**
-     * Qpel (3, 3) unsafe
-     */
-    private void getLuma33Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        getLuma20Unsafe(pic, picW, imgH, blk, blkOff, blkStride, x, y + 1, blkW, blkH);
-        getLuma02Unsafe(pic, picW, imgH, tmp1, 0, blkW, x + 1, y, blkW, blkH);
-
-        mergeCrap(blk, blkOff, blkStride, blkW, blkH);
-    }
-
     /**
      * Qpel horizontal, Qpel vertical (1, 1)
      */
@@ -665,17 +427,6 @@ public class BlockInterpolator {
         mergeCrap(blk, blkOff, blkStride, blkW, blkH);
     }
 
-    /**
-     * Qpel (1, 1) unsafe
-     */
-    private void getLuma11Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        getLuma20Unsafe(pic, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        getLuma02Unsafe(pic, picW, imgH, tmp1, 0, blkW, x, y, blkW, blkH);
-
-        mergeCrap(blk, blkOff, blkStride, blkW, blkH);
-    }
-
     /**
      * Qpel horizontal, Qpel vertical (1, 3)
      */
@@ -686,17 +437,6 @@ public class BlockInterpolator {
         mergeCrap(blk, blkOff, blkStride, blkW, blkH);
     }
 
-    /**
-     * Qpel (1, 3) unsafe
-     */
-    private void getLuma13Unsafe(int[] pic, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        getLuma20Unsafe(pic, picW, imgH, blk, blkOff, blkStride, x, y + 1, blkW, blkH);
-        getLuma02Unsafe(pic, picW, imgH, tmp1, 0, blkW, x, y, blkW, blkH);
-
-        mergeCrap(blk, blkOff, blkStride, blkW, blkH);
-    }
-
     /**
      * Qpel horizontal, Qpel vertical (3, 1)
      */
@@ -707,17 +447,6 @@ public class BlockInterpolator {
         mergeCrap(blk, blkOff, blkStride, blkW, blkH);
     }
 
-    /**
-     * Qpel (3, 1) unsafe
-     */
-    private void getLuma31Unsafe(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        getLuma20Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        getLuma02Unsafe(pels, picW, imgH, tmp1, 0, blkW, x + 1, y, blkW, blkH);
-
-        mergeCrap(blk, blkOff, blkStride, blkW, blkH);
-    }
-
     private int iClip3(int min, int max, int val) {
         return val < min ? min : (val > max ? max : val);
     }
@@ -736,8 +465,8 @@ public class BlockInterpolator {
     /**
      * Chroma (0,0)
      */
-    private void getChroma00(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
+    private void getChroma00(int[] pic, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+            int blkH) {
         int off = y * picW + x;
         for (int j = 0; j < blkH; j++) {
             System.arraycopy(pic, off, blk, blkOff, blkW);
@@ -746,28 +475,13 @@ public class BlockInterpolator {
         }
     }
 
-    private void getChroma00Unsafe(int[] pic, int picW, int picH, int[] blk, int blkOff, int blkStride, int x, int y,
-            int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        for (int j = 0; j < blkH; j++) {
-            int lineStart = iClip3(0, maxH, j + y) * picW;
-
-            for (int i = 0; i < blkW; i++) {
-                blk[blkOff + i] = pic[lineStart + iClip3(0, maxW, x + i)];
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
-     * Chroma (X,0)
+     * Chroma (0,X)
      */
-    private void getChroma0X(int[] pels, int picW, int picH, int[] blk, int blkOff, int blkStride, int fullX,
-            int fullY, int fracY, int blkW, int blkH) {
+    private void getChroma0X(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int fullX, int fullY,
+            int fracY, int blkW, int blkH) {
         int w00 = fullY * picW + fullX;
-        int w01 = w00 + (fullY < picH - 1 ? picW : 0);
+        int w01 = w00 + picW;
         int eMy = 8 - fracY;
 
         for (int j = 0; j < blkH; j++) {
@@ -781,34 +495,13 @@ public class BlockInterpolator {
         }
     }
 
-    private void getChroma0XUnsafe(int[] pels, int picW, int picH, int[] blk, int blkOff, int blkStride, int fullX,
-            int fullY, int fracY, int blkW, int blkH) {
-
-        int maxW = picW - 1;
-        int maxH = picH - 1;
-        int eMy = 8 - fracY;
-
-        for (int j = 0; j < blkH; j++) {
-            int off00 = iClip3(0, maxH, fullY + j) * picW;
-            int off01 = iClip3(0, maxH, fullY + j + 1) * picW;
-
-            for (int i = 0; i < blkW; i++) {
-                int w00 = iClip3(0, maxW, fullX + i) + off00;
-                int w01 = iClip3(0, maxW, fullX + i) + off01;
-
-                blk[blkOff + i] = (eMy * pels[w00] + fracY * pels[w01] + 4) >> 3;
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Chroma (X,0)
      */
-    private void getChromaX0(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int fullX,
-            int fullY, int fracX, int blkW, int blkH) {
+    private void getChromaX0(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int fullX, int fullY,
+            int fracX, int blkW, int blkH) {
         int w00 = fullY * picW + fullX;
-        int w10 = w00 + (fullX < picW - 1 ? 1 : 0);
+        int w10 = w00 + 1;
         int eMx = 8 - fracX;
 
         for (int j = 0; j < blkH; j++) {
@@ -821,32 +514,15 @@ public class BlockInterpolator {
         }
     }
 
-    private void getChromaX0Unsafe(int[] pels, int picW, int picH, int[] blk, int blkOff, int blkStride, int fullX,
-            int fullY, int fracX, int blkW, int blkH) {
-        int eMx = 8 - fracX;
-        int maxW = picW - 1;
-        int maxH = picH - 1;
-
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                int w00 = iClip3(0, maxH, fullY + j) * picW + iClip3(0, maxW, fullX + i);
-                int w10 = iClip3(0, maxH, fullY + j) * picW + iClip3(0, maxW, fullX + i + 1);
-
-                blk[blkOff + i] = (eMx * pels[w00] + fracX * pels[w10] + 4) >> 3;
-            }
-            blkOff += blkStride;
-        }
-    }
-
     /**
      * Chroma (X,X)
      */
-    private void getChromaXX(int[] pels, int picW, int picH, int[] blk, int blkOff, int blkStride, int fullX,
-            int fullY, int fracX, int fracY, int blkW, int blkH) {
+    private void getChromaXX(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int fullX, int fullY,
+            int fracX, int fracY, int blkW, int blkH) {
         int w00 = fullY * picW + fullX;
-        int w01 = w00 + (fullY < picH - 1 ? picW : 0);
-        int w10 = w00 + (fullX < picW - 1 ? 1 : 0);
-        int w11 = w10 + w01 - w00;
+        int w01 = w00 + picW;
+        int w10 = w00 + 1;
+        int w11 = w01 + 1;
         int eMx = 8 - fracX;
         int eMy = 8 - fracY;
 
@@ -864,230 +540,107 @@ public class BlockInterpolator {
         }
     }
 
-    private void getChromaXXUnsafe(int[] pels, int picW, int picH, int[] blk, int blkOff, int blkStride, int fullX,
-            int fullY, int fracX, int fracY, int blkW, int blkH) {
-        int maxH = picH - 1;
-        int maxW = picW - 1;
-
-        int eMx = 8 - fracX;
-        int eMy = 8 - fracY;
-
-        for (int j = 0; j < blkH; j++) {
-            for (int i = 0; i < blkW; i++) {
-                int w00 = iClip3(0, maxH, fullY + j) * picW + iClip3(0, maxW, fullX + i);
-                int w01 = iClip3(0, maxH, fullY + j + 1) * picW + iClip3(0, maxW, fullX + i);
-                int w10 = iClip3(0, maxH, fullY + j) * picW + iClip3(0, maxW, fullX + i + 1);
-                int w11 = iClip3(0, maxH, fullY + j + 1) * picW + iClip3(0, maxW, fullX + i + 1);
-
-                blk[blkOff + i] = (eMx * eMy * pels[w00] + fracX * eMy * pels[w10] + eMx * fracY * pels[w01] + fracX
-                        * fracY * pels[w11] + 32) >> 6;
-            }
-            blkOff += blkStride;
-        }
-    }
-
     private interface LumaInterpolator {
-        void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
-                int blkH);
+        void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW, int blkH);
     }
 
-    private LumaInterpolator[] safe = new LumaInterpolator[] {
+    private LumaInterpolator[] luma = new LumaInterpolator[] {
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma00(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma10(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma20(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma30(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma01(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma11(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma21(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma31(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma02(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma12(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma22(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma32(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma03(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma13(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     },
 
     new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma23(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
+        public void getLuma(int[] pels, int picW, int[] blk, int blkOff, int blkStride, int x, int y, int blkW,
+                int blkH) {
             getLuma33(pels, picW, blk, blkOff, blkStride, x, y, blkW, blkH);
         }
     } };
-
-    private LumaInterpolator[] unsafe = new LumaInterpolator[] {
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma00Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma10Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma20Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma30Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma01Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma11Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma21Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma31Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma02Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma12Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma22Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma32Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma03Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma13Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    },
-
-    new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma23Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    }, new LumaInterpolator() {
-        public void getLuma(int[] pels, int picW, int imgH, int[] blk, int blkOff, int blkStride, int x, int y,
-                int blkW, int blkH) {
-            getLuma33Unsafe(pels, picW, imgH, blk, blkOff, blkStride, x, y, blkW, blkH);
-        }
-    } };
 }
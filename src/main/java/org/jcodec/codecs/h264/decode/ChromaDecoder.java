@@ -31,6 +31,10 @@ public class ChromaDecoder {
 
     private int[] chromaQpOffset;
 
+    private int[] residual = new int[64];
+    private int[] pred4x4 = new int[16];
+    private int[] pred8x8 = new int[64];
+
     public ChromaDecoder(int[] chromaQpOffset, int bitDepthChroma, ChromaFormat chromaFormat) {
         transform = new CoeffTransformer(null);
         intraPredictionBuilder = new ChromaIntraPredictionBuilder(bitDepthChroma, chromaFormat);
@@ -41,54 +45,81 @@ public class ChromaDecoder {
 
     public DecodedChroma decodeChromaIntra(CodedChroma chroma, int chromaMode, int qp, NearbyPixels.Plane nCb,
             NearbyPixels.Plane nCr) {
+        int[] cb = new int[64], cr = new int[64];
+        DecodedChroma qps = decodeChromaIntra(chroma, chromaMode, qp, nCb, nCr, cb, cr, 0, 8);
+
+        return new DecodedChroma(cb, cr, qps.getQpCb(), qps.getQpCr());
+    }
+
+    /**
+     * Decodes the chroma of a macroblock straight into the planes
+     * 
+     * @param off
+     *            Offset of the top left sample of the macroblock in the planes
+     * @return Chroma qps of the macroblock, no samples
+     */
+    public DecodedChroma decodeChromaIntra(CodedChroma chroma, int chromaMode, int qp, NearbyPixels.Plane nCb,
+            NearbyPixels.Plane nCr, int[] cb, int[] cr, int off, int stride) {
 
-        int[] crQp = new int[] { calcQpChroma(qp, chromaQpOffset[0]), calcQpChroma(qp, chromaQpOffset[1]) };
+        int qpCb = calcQpChroma(qp, chromaQpOffset[0]), qpCr = calcQpChroma(qp, chromaQpOffset[1]);
 
-        int[] dCb = decodeOneComponent(chroma.getCbDC(), chroma.getCbAC(), nCb, crQp[0], chromaMode);
-        int[] dCr = decodeOneComponent(chroma.getCrDC(), chroma.getCrAC(), nCr, crQp[1], chromaMode);
+        decodeOneComponent(chroma.getCbDC(), chroma.getCbAC(), nCb, qpCb, chromaMode, cb, off, stride);
+        decodeOneComponent(chroma.getCrDC(), chroma.getCrAC(), nCr, qpCr, chromaMode, cr, off, stride);
 
-        return new DecodedChroma(dCb, dCr, crQp[0], crQp[1]);
+        return new DecodedChroma(null, null, qpCb, qpCr);
     }
 
     public DecodedChroma decodeChromaInter(CodedChroma chroma, Picture[] reference, MVMatrix mvMat, Point origin, int qp) {
+        int[] cb = new int[64], cr = new int[64];
+        DecodedChroma qps = decodeChromaInter(chroma, reference, mvMat, origin, qp, cb, cr, 0, 8);
 
-        int[] crQp = new int[] { calcQpChroma(qp, chromaQpOffset[0]), calcQpChroma(qp, chromaQpOffset[1]) };
+        return new DecodedChroma(cb, cr, qps.getQpCb(), qps.getQpCr());
+    }
 
-        int[] predictionCb = interPredictionBuilder.predictCb(reference, mvMat, origin);
-        int[] residualCb = buildResidual(chroma.getCbDC(), chroma.getCbAC(), crQp[0]);
+    /**
+     * @see #decodeChromaIntra(CodedChroma, int, int, NearbyPixels.Plane,
+     *      NearbyPixels.Plane, int[], int[], int, int)
+     */
+    public DecodedChroma decodeChromaInter(CodedChroma chroma, Picture[] reference, MVMatrix mvMat, Point origin,
+            int qp, int[] cb, int[] cr, int off, int stride) {
 
-        mergePixels(residualCb, predictionCb);
+        int qpCb = calcQpChroma(qp, chromaQpOffset[0]), qpCr = calcQpChroma(qp, chromaQpOffset[1]);
 
-        int[] predictionCr = interPredictionBuilder.predictCr(reference, mvMat, origin);
-        int[] residualCr = buildResidual(chroma.getCrDC(), chroma.getCrAC(), crQp[1]);
+        interPredictionBuilder.predictCb(reference, mvMat, origin, pred8x8);
+        mergePixels(buildResidual(chroma.getCbDC(), chroma.getCbAC(), qpCb, residual), pred8x8, cb, off, stride);
 
-        mergePixels(residualCr, predictionCr);
+        interPredictionBuilder.predictCr(reference, mvMat, origin, pred8x8);
+        mergePixels(buildResidual(chroma.getCrDC(), chroma.getCrAC(), qpCr, residual), pred8x8, cr, off, stride);
 
-        return new DecodedChroma(residualCb, residualCr, crQp[0], crQp[1]);
+        return new DecodedChroma(null, null, qpCb, qpCr);
     }
 
     public int[] decodeOneComponent(ResidualBlock dcBlock, ResidualBlock[] acBlocks, NearbyPixels.Plane neighbors,
             int qp, int predictionMode) {
+        int[] result = new int[64];
+        decodeOneComponent(dcBlock, acBlocks, neighbors, qp, predictionMode, result, 0, 8);
+        return result;
+    }
+
+    private void decodeOneComponent(ResidualBlock dcBlock, ResidualBlock[] acBlocks, NearbyPixels.Plane neighbors,
+            int qp, int predictionMode, int[] dst, int off, int stride) {
 
-        int[] residual = buildResidual(dcBlock, acBlocks, qp);
+        int[] residual = buildResidual(dcBlock, acBlocks, qp, this.residual);
 
         if (predictionMode == 0) {
-            int[] pred = new int[16];
             for (int i4x4 = 0; i4x4 < 4; i4x4++) {
                 int blkX = i4x4 % 2;
                 int blkY = i4x4 / 2;
                 BlockBorder border = buildBlockBorder4(neighbors, residual, blkX, blkY);
-                intraPredictionBuilder.predictWithMode(predictionMode, blkX, blkY, border, new PixelBuffer(pred, 0, 2));
-                mergePixels(residual, pred, blkX, blkY);
+                intraPredictionBuilder.predictWithMode(predictionMode, blkX, blkY, border, new PixelBuffer(pred4x4, 0,
+                        2));
+                mergePixels(residual, pred4x4, blkX, blkY, dst, off, stride);
             }
         } else {
-            int[] pred = new int[64];
             BlockBorder border = buildBlockBorder8(neighbors);
-            intraPredictionBuilder.predictWithMode(predictionMode, 0, 0, border, new PixelBuffer(pred, 0, 3));
-            mergePixels(residual, pred);
+            intraPredictionBuilder.predictWithMode(predictionMode, 0, 0, border, new PixelBuffer(pred8x8, 0, 3));
+            mergePixels(residual, pred8x8, dst, off, stride);
         }
-
-        return residual;
     }
 
     private int calcQpChroma(int qp, int crQpOffset) {
@@ -99,8 +130,7 @@ public class ChromaDecoder {
         return QP_SCALE_CR[result];
     }
 
-    private int[] buildResidual(ResidualBlock dcBlk, ResidualBlock[] acBlks, int qp) {
-        int[] residual = new int[64];
+    private int[] buildResidual(ResidualBlock dcBlk, ResidualBlock[] acBlks, int qp, int[] residual) {
 
         // DC
         int[] dc;
@@ -138,8 +168,13 @@ public class ChromaDecoder {
         return residual;
     }
 
-    private void mergePixels(int[] residual, int[] pred, int blkX, int blkY) {
+    /**
+     * Reconstructed samples go to the residual as well, the prediction of the
+     * next 4x4 block may need them
+     */
+    private void mergePixels(int[] residual, int[] pred, int blkX, int blkY, int[] dst, int off, int stride) {
         int start = blkX * 4 + blkY * 8 * 4;
+        int dstStart = off + (blkY << 2) * stride + (blkX << 2);
         for (int j = 0; j < 4; j++) {
             for (int i = 0; i < 4; i++) {
                 int posR = start + i + j * 8;
@@ -147,6 +182,7 @@ public class ChromaDecoder {
                 int val = residual[posR] + pred[posP];
                 val = (val > 255 ? 255 : (val < 0 ? 0 : val));
                 residual[posR] = val;
+                dst[dstStart + i + j * stride] = val;
             }
         }
     }
@@ -185,13 +221,11 @@ public class ChromaDecoder {
         return new BlockBorder(left, top, topLeft);
     }
 
-    private void mergePixels(int[] residual, int[] pred) {
-        for (int j = 0; j < 8; j++) {
+    private void mergePixels(int[] residual, int[] pred, int[] dst, int off, int stride) {
+        for (int j = 0; j < 8; j++, off += stride) {
             for (int i = 0; i < 8; i++) {
-                int pos = i + j * 8;
-                int val = residual[pos] + pred[pos];
-                val = (val > 255 ? 255 : (val < 0 ? 0 : val));
-                residual[pos] = val;
+                int val = residual[i + j * 8] + pred[i + j * 8];
+                dst[off + i] = (val > 255 ? 255 : (val < 0 ? 0 : val));
             }
         }
     }
@@ -222,12 +256,28 @@ public class ChromaDecoder {
     }
 
     public DecodedChroma decodeChromaSkip(Picture[] reference, MVMatrix mvMat, Point origin, int qp) {
-        int[] crQp = new int[] { calcQpChroma(qp, chromaQpOffset[0]), calcQpChroma(qp, chromaQpOffset[1]) };
+        int[] cb = new int[64], cr = new int[64];
+        DecodedChroma qps = decodeChromaSkip(reference, mvMat, origin, qp, cb, cr, 0, 8);
 
-        int[] predictionCb = interPredictionBuilder.predictCb(reference, mvMat, origin);
+        return new DecodedChroma(cb, cr, qps.getQpCb(), qps.getQpCr());
+    }
 
-        int[] predictionCr = interPredictionBuilder.predictCr(reference, mvMat, origin);
+    /**
+     * @see #decodeChromaIntra(CodedChroma, int, int, NearbyPixels.Plane,
+     *      NearbyPixels.Plane, int[], int[], int, int)
+     */
+    public DecodedChroma decodeChromaSkip(Picture[] reference, MVMatrix mvMat, Point origin, int qp, int[] cb,
+            int[] cr, int off, int stride) {
+        int qpCb = calcQpChroma(qp, chromaQpOffset[0]), qpCr = calcQpChroma(qp, chromaQpOffset[1]);
+
+        putBlock(interPredictionBuilder.predictCb(reference, mvMat, origin, pred8x8), cb, off, stride);
+        putBlock(interPredictionBuilder.predictCr(reference, mvMat, origin, pred8x8), cr, off, stride);
+
+        return new DecodedChroma(null, null, qpCb, qpCr);
+    }
 
-        return new DecodedChroma(predictionCb, predictionCr, crQp[0], crQp[1]);
+    private static void putBlock(int[] block, int[] dst, int off, int stride) {
+        for (int j = 0; j < 8; j++, off += stride)
+            System.arraycopy(block, j << 3, dst, off, 8);
     }
 }
@@ -27,16 +27,25 @@ public class ChromaInterPredictionBuilder {
     }
 
     public int[] predictCb(Picture[] reference, MVMatrix mvs, Point origin) {
-        return predictChroma(reference, mvs, origin, true);
+        return predictChroma(reference, mvs, origin, true, new int[64]);
     }
 
     public int[] predictCr(Picture[] reference, MVMatrix mvs, Point origin) {
-        return predictChroma(reference, mvs, origin, false);
+        return predictChroma(reference, mvs, origin, false, new int[64]);
     }
 
-    private int[] predictChroma(Picture[] reference, MVMatrix mvs, Point origin, boolean cb) {
+    /**
+     * Predicts into result, an 8x8 block
+     */
+    public int[] predictCb(Picture[] reference, MVMatrix mvs, Point origin, int[] result) {
+        return predictChroma(reference, mvs, origin, true, result);
+    }
+
+    public int[] predictCr(Picture[] reference, MVMatrix mvs, Point origin, int[] result) {
+        return predictChroma(reference, mvs, origin, false, result);
+    }
 
-        int[] result = new int[64];
+    private int[] predictChroma(Picture[] reference, MVMatrix mvs, Point origin, boolean cb, int[] result) {
 
         for (int blkY = 0; blkY < 4; blkY++) {
             for (int blkX = 0; blkX < 4; blkX++) {
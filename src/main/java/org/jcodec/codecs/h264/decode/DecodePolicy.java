@@ -0,0 +1,52 @@
+package org.jcodec.codecs.h264.decode;
+
+import org.jcodec.codecs.h264.io.model.NALUnit;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+import org.jcodec.codecs.h264.io.model.SliceHeader;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Selects the pictures that are reconstructed. The slice data of the other
+ * pictures is not even parsed, only their headers are read to keep frame
+ * numbering, picture order count and reference marking right.
+ *
+ * @author Jay Codec
+ *
+ */
+public enum DecodePolicy {
+    /**
+     * Every picture
+     */
+    ALL,
+
+    /**
+     * Reference pictures only, the non-reference pictures are dropped
+     */
+    REFERENCE,
+
+    /**
+     * IDR pictures and the pictures that start with an intra slice. Nothing
+     * can be predicted from the skipped pictures so the streams that mix
+     * intra and inter slices within a picture can't be decoded this way.
+     */
+    INTRA;
+
+    /**
+     * @param nu
+     *            NAL unit header of the first slice of the picture
+     * @param sh
+     *            First slice header of the picture
+     */
+    public boolean decodes(NALUnit nu, SliceHeader sh) {
+        switch (this) {
+        case REFERENCE:
+            return nu.nal_ref_idc != 0;
+        case INTRA:
+            return nu.type == NALUnitType.IDR_SLICE || sh.slice_type.isIntra();
+        default:
+            return true;
+        }
+    }
+}
@@ -14,6 +14,23 @@ import org.jcodec.common.model.Picture;
  */
 public interface ErrorResilence {
 
-    Picture decodeAccessUnit(AccessUnitReader accessUnit, DecodedPicture[] references) throws IOException;
+    /**
+     * Decodes the access unit
+     * 
+     * @param out
+     *            Picture the size of the frame in macroblocks to decode into,
+     *            it's content is undefined and will be overwritten. A
+     *            PaddedPicture gets it's padded planes filled as the rows
+     *            become final, at the latest when the picture is done.
+     * @return Decoded picture, out
+     */
+    Picture decodeAccessUnit(AccessUnitReader accessUnit, DecodedPicture[] references, Picture out)
+            throws IOException;
 
+    /**
+     * Creates a new instance with the same settings that reconstructs the
+     * pictures on the calling thread only, used by the worker threads of the
+     * frame-threaded decoder
+     */
+    ErrorResilence copy();
 }
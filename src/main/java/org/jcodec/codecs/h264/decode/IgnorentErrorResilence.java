@@ -1,6 +1,7 @@
 package org.jcodec.codecs.h264.decode;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 import org.jcodec.codecs.h264.decode.dpb.DecodedPicture;
 import org.jcodec.codecs.h264.io.model.CodedPicture;
@@ -24,7 +25,22 @@ public class IgnorentErrorResilence implements ErrorResilence {
     private SeqParameterSet curSPS;
     private PictureParameterSet curPPS;
 
-    public Picture decodeAccessUnit(AccessUnitReader accessUnit, DecodedPicture[] references) throws IOException {
+    private ExecutorService executor;
+
+    public IgnorentErrorResilence() {
+    }
+
+    /**
+     * @param executor
+     *            Executor used to reconstruct the slices of a picture
+     *            concurrently
+     */
+    public IgnorentErrorResilence(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public Picture decodeAccessUnit(AccessUnitReader accessUnit, DecodedPicture[] references, Picture out)
+            throws IOException {
         PictureParameterSet newPPS = accessUnit.getPPS();
         SeqParameterSet newSPS = accessUnit.getSPS();
 
@@ -32,11 +48,16 @@ public class IgnorentErrorResilence implements ErrorResilence {
             curSPS = newSPS;
             curPPS = newPPS;
 
-            picDecoder = new PictureDecoder(curSPS, curPPS);
+            picDecoder = executor != null ? new PictureDecoder(curSPS, curPPS, executor) : new PictureDecoder(
+                    curSPS, curPPS);
         }
 
         CodedPicture primary = new CodedPicture(accessUnit.readOnePicture());
 
-        return picDecoder.decodePicture(primary, accessUnit.getMap(), references);
+        return picDecoder.decodePicture(primary, accessUnit.getMap(), references, out);
+    }
+
+    public ErrorResilence copy() {
+        return new IgnorentErrorResilence();
     }
 }
\ No newline at end of file
@@ -30,8 +30,13 @@ public class InterPredictionBuilder {
     }
 
     public int[] predict16x16(Picture[] reference, Vector[] mVectors, Point origin) {
-        int[] result = new int[256];
+        return predict16x16(reference, mVectors, origin, new int[256]);
+    }
 
+    /**
+     * Predicts into result, a 16x16 block. Same for the other partitions.
+     */
+    public int[] predict16x16(Picture[] reference, Vector[] mVectors, Point origin, int[] result) {
         PixelBuffer pixels = new PixelBuffer(result, 0, 4);
 
         Vector mv = mVectors[0];
@@ -43,8 +48,10 @@ public class InterPredictionBuilder {
     }
 
     public int[] predict16x8(Picture[] reference, Vector[] mVectors, Point origin) {
-        int[] result = new int[256];
+        return predict16x8(reference, mVectors, origin, new int[256]);
+    }
 
+    public int[] predict16x8(Picture[] reference, Vector[] mVectors, Point origin, int[] result) {
         Vector mv0 = mVectors[0];
         Rect rect1 = new Rect((origin.getX() << 2) + mv0.getX(), (origin.getY() << 2) + mv0.getY(), 16, 8);
         interpolator.getBlockLuma(reference[mv0.getRefId()], PixelBuffer.wrap(result, 0, 4), rect1);
@@ -57,9 +64,10 @@ public class InterPredictionBuilder {
     }
 
     public int[] predict8x16(Picture[] reference, Vector[] mVectors, Point origin) {
+        return predict8x16(reference, mVectors, origin, new int[256]);
+    }
 
-        int[] result = new int[256];
-
+    public int[] predict8x16(Picture[] reference, Vector[] mVectors, Point origin, int[] result) {
         Vector mv0 = mVectors[0];
         Rect rect0 = new Rect((origin.getX() << 2) + mv0.getX(), (origin.getY() << 2) + mv0.getY(), 8, 16);
         interpolator.getBlockLuma(reference[mv0.getRefId()], PixelBuffer.wrap(result, 0, 4), rect0);
@@ -72,9 +80,10 @@ public class InterPredictionBuilder {
     }
 
     public int[] predict8x8(Picture[] Picture, SubMBType[] subPred, Vector[][] mVectors, Point origin) {
+        return predict8x8(Picture, subPred, mVectors, origin, new int[256]);
+    }
 
-        int[] result = new int[256];
-
+    public int[] predict8x8(Picture[] Picture, SubMBType[] subPred, Vector[][] mVectors, Point origin, int[] result) {
         for (int y8x8 = 0; y8x8 < 2; y8x8++) {
             for (int x8x8 = 0; x8x8 < 2; x8x8++) {
 
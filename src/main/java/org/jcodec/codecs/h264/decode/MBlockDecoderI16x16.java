@@ -8,6 +8,7 @@ import org.jcodec.codecs.h264.decode.model.PixelBuffer;
 import org.jcodec.codecs.h264.io.model.ChromaFormat;
 import org.jcodec.codecs.h264.io.model.MBlockIntra16x16;
 import org.jcodec.codecs.h264.io.model.ResidualBlock;
+import org.jcodec.common.model.Picture;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
@@ -25,16 +26,25 @@ public class MBlockDecoderI16x16 {
     private Intra16x16PredictionBuilder intraPredictionBuilder;
     private ChromaDecoder chromaDecoder;
 
+    private int[] pixelsLuma = new int[256];
+    private int[] residualLuma = new int[256];
+
     public MBlockDecoderI16x16(int[] chromaQpOffset, int bitDepthLuma, int bitDepthChroma) {
         transform = new CoeffTransformer(null);
         intraPredictionBuilder = new Intra16x16PredictionBuilder(bitDepthLuma);
         chromaDecoder = new ChromaDecoder(chromaQpOffset, bitDepthChroma, ChromaFormat.YUV_420);
     }
 
-    public DecodedMBlock decodeI16x16(MBlockIntra16x16 coded, int qp, NearbyPixels nearPixels) {
+    /**
+     * Reconstructs the macroblock straight into the planes of the picture
+     * 
+     * @return Decoded macroblock without the samples
+     */
+    public DecodedMBlock decodeI16x16(MBlockIntra16x16 coded, int qp, NearbyPixels nearPixels, Picture out, int mbX,
+            int mbY) {
 
         // Prediction
-        int[] pixelsLuma = predict16x16(coded.getLumaMode(), nearPixels.getLuma());
+        int[] pixelsLuma = predict16x16(coded.getLumaMode(), nearPixels.getLuma(), this.pixelsLuma);
 
         // DC
         int[] reorderedDC = transform.reorderCoeffs(coded.getLumaDC().getCoeffs());
@@ -46,7 +56,6 @@ public class MBlockDecoderI16x16 {
         // AC
 
         // //////
-        int[] residualLuma = new int[256];
         for (int i8x8 = 0; i8x8 < 4; i8x8++) {
             for (int i4x4 = 0; i4x4 < 4; i4x4++) {
                 ResidualBlock block = coded.getLumaAC()[(i8x8 << 2) + i4x4];
@@ -75,27 +84,30 @@ public class MBlockDecoderI16x16 {
             }
         }
 
-        mergePixels(pixelsLuma, residualLuma);
+        int stride = out.getWidth();
+        mergePixels(pixelsLuma, residualLuma, out.getPlaneData(0), (mbY << 4) * stride + (mbX << 4), stride);
 
         DecodedChroma decodedChroma = chromaDecoder.decodeChromaIntra(coded.getChroma(), coded.getChromaMode(), qp,
-                nearPixels.getCb(), nearPixels.getCr());
+                nearPixels.getCb(), nearPixels.getCr(), out.getPlaneData(1), out.getPlaneData(2), (mbY << 3)
+                        * (stride >> 1) + (mbX << 3), stride >> 1);
 
-        return new DecodedMBlock(pixelsLuma, decodedChroma, qp, null, null, coded);
+        return new DecodedMBlock(null, decodedChroma, qp, null, null, coded);
     }
 
-    private void mergePixels(int[] pixelsLuma, int[] residualLuma) {
-        for (int i = 0; i < 256; i++) {
-            int val = pixelsLuma[i] + residualLuma[i];
-            val = val < 0 ? 0 : (val > 255 ? 255 : val);
-
-            pixelsLuma[i] = val;
+    private void mergePixels(int[] pixelsLuma, int[] residualLuma, int[] dst, int off, int stride) {
+        for (int j = 0; j < 16; j++, off += stride) {
+            for (int i = 0; i < 16; i++) {
+                int val = pixelsLuma[(j << 4) + i] + residualLuma[(j << 4) + i];
+                dst[off + i] = val < 0 ? 0 : (val > 255 ? 255 : val);
+            }
         }
-
     }
 
     public int[] predict16x16(int predMode, NearbyPixels.Plane neighbours) {
+        return predict16x16(predMode, neighbours, new int[256]);
+    }
 
-        int[] pixels = new int[256];
+    private int[] predict16x16(int predMode, NearbyPixels.Plane neighbours, int[] pixels) {
 
         BlockBorder border = collectPixelsFromBorder(neighbours, pixels);
 
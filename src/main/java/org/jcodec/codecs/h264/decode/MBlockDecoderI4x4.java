@@ -9,6 +9,7 @@ import org.jcodec.codecs.h264.io.model.ChromaFormat;
 import org.jcodec.codecs.h264.io.model.IntraNxNPrediction;
 import org.jcodec.codecs.h264.io.model.MBlockIntraNxN;
 import org.jcodec.codecs.h264.io.model.ResidualBlock;
+import org.jcodec.common.model.Picture;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
@@ -27,6 +28,9 @@ public class MBlockDecoderI4x4 {
     private Intra4x4PredictionBuilder intraPredictionBuilder;
     private ChromaDecoder chromaDecoder;
 
+    private int[] residualLuma = new int[256];
+    private int[] pixels = new int[308];
+
     int[][] indicesLeft = { { 260, 261, 262, 263 }, { 3, 19, 35, 51 }, { 264, 265, 266, 267 }, { 67, 83, 99, 115 },
 
     { 7, 23, 39, 55 }, { 11, 27, 43, 59 }, { 71, 87, 103, 119 }, { 75, 91, 107, 123 },
@@ -55,8 +59,13 @@ public class MBlockDecoderI4x4 {
         chromaDecoder = new ChromaDecoder(chromaQpOffset, bitDepthChroma, ChromaFormat.YUV_420);
     }
 
-    public DecodedMBlock decodeINxN(MBlockIntraNxN coded, int qp, NearbyPixels nearPixels) {
-        int[] residualLuma = new int[256];
+    /**
+     * Reconstructs the macroblock straight into the planes of the picture
+     * 
+     * @return Decoded macroblock without the samples
+     */
+    public DecodedMBlock decodeINxN(MBlockIntraNxN coded, int qp, NearbyPixels nearPixels, Picture out, int mbX,
+            int mbY) {
         for (int i8x8 = 0; i8x8 < 4; i8x8++) {
             for (int i4x4 = 0; i4x4 < 4; i4x4++) {
                 ResidualBlock block = coded.getLuma()[(i8x8 << 2) + i4x4];
@@ -77,18 +86,32 @@ public class MBlockDecoderI4x4 {
                 pb.put(pt, 4, 4);
             }
         }
-        int[] pixelsLuma = predict4x4(coded.getPrediction(), residualLuma, nearPixels.getLuma());
+        int stride = out.getWidth();
+        predict4x4(coded.getPrediction(), residualLuma, nearPixels.getLuma(), pixels, out.getPlaneData(0),
+                (mbY << 4) * stride + (mbX << 4), stride);
 
         DecodedChroma decodedChroma = chromaDecoder.decodeChromaIntra(coded.getChroma(), coded.getPrediction()
-                .getChromaMode(), qp, nearPixels.getCb(), nearPixels.getCr());
+                .getChromaMode(), qp, nearPixels.getCb(), nearPixels.getCr(), out.getPlaneData(1), out
+                .getPlaneData(2), (mbY << 3) * (stride >> 1) + (mbX << 3), stride >> 1);
 
-        return new DecodedMBlock(pixelsLuma, decodedChroma, qp, null, null, coded);
+        return new DecodedMBlock(null, decodedChroma, qp, null, null, coded);
     }
 
     public int[] predict4x4(IntraNxNPrediction pred, int[] residual, NearbyPixels.Plane neighbours) {
-
         int[] pixels = new int[308];
 
+        predict4x4(pred, residual, neighbours, pixels, pixels, 0, 16);
+
+        return pixels;
+    }
+
+    /**
+     * Predicts the blocks in pixels, the reconstructed samples go to dst as
+     * well
+     */
+    private void predict4x4(IntraNxNPrediction pred, int[] residual, NearbyPixels.Plane neighbours, int[] pixels,
+            int[] dst, int off, int stride) {
+
         collectPixelsFromBorder(neighbours, pixels);
 
         int[] lumaModes = pred.getLumaModes();
@@ -103,11 +126,9 @@ public class MBlockDecoderI4x4 {
 
                 intraPredictionBuilder.predictWithMode(lumaModes[(i8x8 << 2) + i4x4], border, pb);
 
-                mergeResidualIn(pixels, residual, pelY + pelX);
+                mergeResidualIn(pixels, residual, pelY + pelX, dst, off + (pelY >> 4) * stride + pelX, stride);
             }
         }
-
-        return pixels;
     }
 
     private BlockBorder getBorderPixels(int blkX, int blkY, int[] result, NearbyPixels.Plane neighbours) {
@@ -126,14 +147,15 @@ public class MBlockDecoderI4x4 {
         return new BlockBorder(left, top, topLeft);
     }
 
-    private void mergeResidualIn(int[] prev, int[] residual, int blkTopLeft) {
+    private void mergeResidualIn(int[] prev, int[] residual, int blkTopLeft, int[] dst, int dstOff, int stride) {
 
-        for (int y = 0; y < 4; y++) {
+        for (int y = 0; y < 4; y++, dstOff += stride) {
             for (int x = 0; x < 4; x++) {
                 int offset = blkTopLeft + x + (y << 4);
                 int val = prev[offset] + residual[offset];
                 val = val < 0 ? 0 : (val > 255 ? 255 : val);
                 prev[offset] = val;
+                dst[dstOff + x] = val;
             }
         }
 
@@ -9,6 +9,7 @@ import org.jcodec.codecs.h264.io.model.ChromaFormat;
 import org.jcodec.codecs.h264.io.model.Inter8x8Prediction;
 import org.jcodec.codecs.h264.io.model.MBlockInter;
 import org.jcodec.codecs.h264.io.model.MBlockInter8x8;
+import org.jcodec.codecs.h264.io.model.MBlockWithResidual;
 import org.jcodec.codecs.h264.io.model.ResidualBlock;
 import org.jcodec.codecs.h264.io.model.SubMBType;
 import org.jcodec.codecs.h264.io.model.Vector;
@@ -31,6 +32,9 @@ public class MBlockDecoderInter {
     private MVPredictor mvPredictor;
     private ChromaDecoder chromaDecoder;
 
+    private int[] predLuma = new int[256];
+    private int[] residualLuma = new int[256];
+
     public MBlockDecoderInter(int[] chromaQpOffset) {
         predictionBuilder = new InterPredictionBuilder();
         transform = new CoeffTransformer(null);
@@ -38,74 +42,60 @@ public class MBlockDecoderInter {
         chromaDecoder = new ChromaDecoder(chromaQpOffset, 8, ChromaFormat.YUV_420);
     }
 
+    /**
+     * Reconstructs the macroblock straight into the planes of the picture, same
+     * for the other macroblock types
+     * 
+     * @return Decoded macroblock without the samples
+     */
     public DecodedMBlock decodeP8x8(Picture[] reference, MBlockInter8x8 mb, NearbyMotionVectors nearMV, Point origin,
-            int qp) {
+            int qp, Picture out, int mbX, int mbY) {
 
         Inter8x8Prediction prediction = mb.getPrediction();
         Vector[][] predictedMVs = mvPredictor.predictMotionVectors8x8(nearMV, prediction);
 
-        int[] pred = predictionBuilder.predict8x8(reference, prediction.getSubMbTypes(), predictedMVs, origin);
-
-        int[] residualLuma = buildResidualLuma(mb.getLuma(), qp);
-
-        int[] luma = mergePixels(pred, residualLuma);
+        int[] pred = predictionBuilder.predict8x8(reference, prediction.getSubMbTypes(), predictedMVs, origin,
+                predLuma);
 
         MVMatrix mvMat = calcFor8x8(prediction.getSubMbTypes(), predictedMVs);
 
-        DecodedChroma decodeChroma = chromaDecoder.decodeChromaInter(mb.getChroma(), reference, mvMat, origin, qp);
-
-        return new DecodedMBlock(luma, decodeChroma, qp, mvMat, reference, mb);
+        return reconstruct(reference, mb, pred, mvMat, origin, qp, out, mbX, mbY);
     }
 
     public DecodedMBlock decodeP16x8(Picture[] reference, MBlockInter mb, NearbyMotionVectors nearMV, Point origin,
-            int qp) {
+            int qp, Picture out, int mbX, int mbY) {
 
         Vector[] predictedMVs = mvPredictor.predictMotionVectors16x8(nearMV, mb.getPrediction());
 
-        int[] prediction = predictionBuilder.predict16x8(reference, predictedMVs, origin);
-
-        int[] residualLuma = buildResidualLuma(mb.getLuma(), qp);
-
-        int[] luma = mergePixels(prediction, residualLuma);
+        int[] prediction = predictionBuilder.predict16x8(reference, predictedMVs, origin, predLuma);
 
         MVMatrix mvMat = calcForInter16x8(predictedMVs);
-        DecodedChroma decodeChroma = chromaDecoder.decodeChromaInter(mb.getChroma(), reference, mvMat, origin, qp);
 
-        return new DecodedMBlock(luma, decodeChroma, qp, mvMat, reference, mb);
+        return reconstruct(reference, mb, prediction, mvMat, origin, qp, out, mbX, mbY);
     }
 
     public DecodedMBlock decodeP8x16(Picture[] reference, MBlockInter mb, NearbyMotionVectors nearMV, Point origin,
-            int qp) {
+            int qp, Picture out, int mbX, int mbY) {
 
         Vector[] predictedMVs = mvPredictor.predictMotionVectors8x16(nearMV, mb.getPrediction());
 
-        int[] prediction = predictionBuilder.predict8x16(reference, predictedMVs, origin);
-
-        int[] residualLuma = buildResidualLuma(mb.getLuma(), qp);
-
-        int[] luma = mergePixels(prediction, residualLuma);
+        int[] prediction = predictionBuilder.predict8x16(reference, predictedMVs, origin, predLuma);
 
         MVMatrix mvMat = calcForInter8x16(predictedMVs);
-        DecodedChroma decodeChroma = chromaDecoder.decodeChromaInter(mb.getChroma(), reference, mvMat, origin, qp);
 
-        return new DecodedMBlock(luma, decodeChroma, qp, mvMat, reference, mb);
+        return reconstruct(reference, mb, prediction, mvMat, origin, qp, out, mbX, mbY);
     }
 
     public DecodedMBlock decodeP16x16(Picture[] reference, MBlockInter mb, NearbyMotionVectors nearMV, Point origin,
-            int qp) {
+            int qp, Picture out, int mbX, int mbY) {
 
         Vector[] predictedMVs = mvPredictor.predictMotionVectors16x16(nearMV, mb.getPrediction());
 
-        int[] prediction = predictionBuilder.predict16x16(reference, predictedMVs, origin);
-
-        int[] residualLuma = buildResidualLuma(mb.getLuma(), qp);
-
-        int[] luma = mergePixels(prediction, residualLuma);
+        int[] prediction = predictionBuilder.predict16x16(reference, predictedMVs, origin, predLuma);
 
         MVMatrix mvMat = calcForInter16x16(predictedMVs);
-        DecodedChroma decodeChroma = chromaDecoder.decodeChromaInter(mb.getChroma(), reference, mvMat, origin, qp);
 
-        return new DecodedMBlock(luma, decodeChroma, qp, mvMat, reference, mb);
+        return reconstruct(reference, mb, prediction, mvMat, origin, qp, out, mbX, mbY);
     }
 
     public static MVMatrix calcFor8x8(SubMBType[] subMBTypes, Vector[][] mvs) {
@@ -149,20 +139,39 @@ public class MBlockDecoderInter {
         return new MVMatrix(dmvs);
     }
 
-    public DecodedMBlock decodePSkip(Picture[] reference, NearbyMotionVectors nearMV, Point origin, int qp) {
+    public DecodedMBlock decodePSkip(Picture[] reference, NearbyMotionVectors nearMV, Point origin, int qp,
+            Picture out, int mbX, int mbY) {
 
         Vector[] predictedMVs = mvPredictor.predictMotionVectorsSkip(nearMV);
 
-        int[] prediction = predictionBuilder.predict16x16(reference, predictedMVs, origin);
+        int[] prediction = predictionBuilder.predict16x16(reference, predictedMVs, origin, predLuma);
+
+        int stride = out.getWidth();
+        int[] luma = out.getPlaneData(0);
+        for (int j = 0, off = (mbY << 4) * stride + (mbX << 4); j < 16; j++, off += stride)
+            System.arraycopy(prediction, j << 4, luma, off, 16);
 
         MVMatrix mvMat = calcForInter16x16(predictedMVs);
-        DecodedChroma chroma = chromaDecoder.decodeChromaSkip(reference, mvMat, origin, qp);
+        DecodedChroma chroma = chromaDecoder.decodeChromaSkip(reference, mvMat, origin, qp, out.getPlaneData(1),
+                out.getPlaneData(2), (mbY << 3) * (stride >> 1) + (mbX << 3), stride >> 1);
+
+        return new DecodedMBlock(null, chroma, qp, mvMat, reference, null);
+    }
 
-        return new DecodedMBlock(prediction, chroma, qp, mvMat, reference, null);
+    private DecodedMBlock reconstruct(Picture[] reference, MBlockWithResidual mb, int[] prediction, MVMatrix mvMat,
+            Point origin, int qp, Picture out, int mbX, int mbY) {
+
+        int stride = out.getWidth();
+        mergePixels(prediction, buildResidualLuma(mb.getLuma(), qp), out.getPlaneData(0), (mbY << 4) * stride
+                + (mbX << 4), stride);
+
+        DecodedChroma chroma = chromaDecoder.decodeChromaInter(mb.getChroma(), reference, mvMat, origin, qp,
+                out.getPlaneData(1), out.getPlaneData(2), (mbY << 3) * (stride >> 1) + (mbX << 3), stride >> 1);
+
+        return new DecodedMBlock(null, chroma, qp, mvMat, reference, mb);
     }
 
     private int[] buildResidualLuma(ResidualBlock[] luma, int qp) {
-        int[] residualLuma = new int[256];
         for (int i8x8 = 0; i8x8 < 4; i8x8++) {
             for (int i4x4 = 0; i4x4 < 4; i4x4++) {
                 ResidualBlock block = luma[(i8x8 << 2) + i4x4];
@@ -186,23 +195,24 @@ public class MBlockDecoderInter {
         return residualLuma;
     }
 
-    private int[] mergePixels(int[] prediction, int[] residualLuma) {
-        for (int i = 0; i < 256; i++) {
-            int val = prediction[i] + residualLuma[i];
-            val = val < 0 ? 0 : (val > 255 ? 255 : val);
-            prediction[i] = val;
+    private void mergePixels(int[] prediction, int[] residualLuma, int[] dst, int off, int stride) {
+        for (int j = 0; j < 16; j++, off += stride) {
+            for (int i = 0; i < 16; i++) {
+                int val = prediction[(j << 4) + i] + residualLuma[(j << 4) + i];
+                dst[off + i] = val < 0 ? 0 : (val > 255 ? 255 : val);
+            }
         }
-        return prediction;
     }
 
-    public DecodedMBlock decodeP(Picture[] reference, MBlockInter mb, NearbyMotionVectors nearMV, Point origin, int qp) {
+    public DecodedMBlock decodeP(Picture[] reference, MBlockInter mb, NearbyMotionVectors nearMV, Point origin,
+            int qp, Picture out, int mbX, int mbY) {
         switch (mb.getType()) {
         case MB_16x16:
-            return decodeP16x16(reference, mb, nearMV, origin, qp);
+            return decodeP16x16(reference, mb, nearMV, origin, qp, out, mbX, mbY);
         case MB_16x8:
-            return decodeP16x8(reference, mb, nearMV, origin, qp);
+            return decodeP16x8(reference, mb, nearMV, origin, qp, out, mbX, mbY);
         case MB_8x16:
-            return decodeP8x16(reference, mb, nearMV, origin, qp);
+            return decodeP8x16(reference, mb, nearMV, origin, qp, out, mbX, mbY);
         }
 
         throw new RuntimeException("Shit man!");
@@ -0,0 +1,155 @@
+package org.jcodec.codecs.h264.decode;
+
+import org.jcodec.codecs.h264.io.model.NALUnit;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+import org.jcodec.codecs.h264.io.model.RefPicMarking;
+import org.jcodec.codecs.h264.io.model.RefPicMarking.InstrType;
+import org.jcodec.codecs.h264.io.model.SeqParameterSet;
+import org.jcodec.codecs.h264.io.model.SliceHeader;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Keeps track of frame numbers and calculates picture order count of the
+ * pictures within one coded video sequence. Needs nothing but slice headers
+ * so it's shared by the decoder and the stream indexer.
+ *
+ * @author Jay Codec
+ *
+ */
+public class POCManager {
+    private SeqParameterSet sps;
+
+    private int prevFrameNumOffset;
+    private int prevFrameNum;
+
+    private int prevPicOrderCntMsb;
+    private int prevPicOrderCntLsb;
+
+    private int maxFrameNum;
+    private int maxPicOrderCntLsb;
+
+    public POCManager(SeqParameterSet sps) {
+        this.sps = sps;
+
+        maxFrameNum = 1 << (sps.log2_max_frame_num_minus4 + 4);
+        maxPicOrderCntLsb = 1 << (sps.log2_max_pic_order_cnt_lsb_minus4 + 4);
+    }
+
+    public int getMaxFrameNum() {
+        return maxFrameNum;
+    }
+
+    public static boolean detectMMCO5(RefPicMarking refPicMarkingNonIDR) {
+        if (refPicMarkingNonIDR == null)
+            return false;
+
+        for (RefPicMarking.Instruction instr : refPicMarkingNonIDR.getInstructions()) {
+            if (instr.getType() == InstrType.CLEAR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean detectGap(SliceHeader sh) {
+        return sh.frame_num != prevFrameNum && sh.frame_num != ((prevFrameNum + 1) % maxFrameNum);
+    }
+
+    /**
+     * Accounts for a frame lost in the gap
+     *
+     * @return Frame number of the lost frame
+     */
+    public int nextNonExisting() {
+        prevFrameNum = (prevFrameNum + 1) % maxFrameNum;
+        return prevFrameNum;
+    }
+
+    /**
+     * @return Frame number that doesn't wrap around
+     */
+    public int updateFrameNumber(int frameNo, boolean mmco5) {
+        int frameNumOffset;
+        if (prevFrameNum > frameNo)
+            frameNumOffset = prevFrameNumOffset + maxFrameNum;
+        else
+            frameNumOffset = prevFrameNumOffset;
+
+        int absFrameNum = frameNumOffset + frameNo;
+
+        prevFrameNum = mmco5 ? 0 : frameNo;
+        prevFrameNumOffset = frameNumOffset;
+        return absFrameNum;
+    }
+
+    public int calcPoc(int absFrameNum, NALUnit nu, SliceHeader sh) {
+        if (nu.type == NALUnitType.IDR_SLICE) {
+            return 0;
+        } else if (sps.pic_order_cnt_type == 0) {
+            return calcPOC0(absFrameNum, nu, sh);
+        } else if (sps.pic_order_cnt_type == 1) {
+            return calcPOC1(absFrameNum, nu, sh);
+        } else {
+            return calcPOC2(absFrameNum, nu, sh);
+        }
+    }
+
+    private int calcPOC2(int absFrameNum, NALUnit nu, SliceHeader sh) {
+
+        if (nu.nal_ref_idc == 0)
+            return 2 * absFrameNum - 1;
+        else
+            return 2 * absFrameNum;
+    }
+
+    private int calcPOC1(int absFrameNum, NALUnit nu, SliceHeader sh) {
+
+        if (sps.num_ref_frames_in_pic_order_cnt_cycle == 0)
+            absFrameNum = 0;
+        if (nu.nal_ref_idc == 0 && absFrameNum > 0)
+            absFrameNum = absFrameNum - 1;
+
+        int expectedDeltaPerPicOrderCntCycle = 0;
+        for (int i = 0; i < sps.num_ref_frames_in_pic_order_cnt_cycle; i++)
+            expectedDeltaPerPicOrderCntCycle += sps.offsetForRefFrame[i];
+
+        int expectedPicOrderCnt;
+        if (absFrameNum > 0) {
+            int picOrderCntCycleCnt = (absFrameNum - 1) / sps.num_ref_frames_in_pic_order_cnt_cycle;
+            int frameNumInPicOrderCntCycle = (absFrameNum - 1) % sps.num_ref_frames_in_pic_order_cnt_cycle;
+
+            expectedPicOrderCnt = picOrderCntCycleCnt * expectedDeltaPerPicOrderCntCycle;
+            for (int i = 0; i <= frameNumInPicOrderCntCycle; i++)
+                expectedPicOrderCnt = expectedPicOrderCnt + sps.offsetForRefFrame[i];
+        } else {
+            expectedPicOrderCnt = 0;
+        }
+        if (nu.nal_ref_idc == 0)
+            expectedPicOrderCnt = expectedPicOrderCnt + sps.offset_for_non_ref_pic;
+
+        return expectedPicOrderCnt + sh.delta_pic_order_cnt[0];
+    }
+
+    private int calcPOC0(int absFrameNum, NALUnit nu, SliceHeader sh) {
+
+        int pocCntLsb = sh.pic_order_cnt_lsb;
+
+        // TODO prevPicOrderCntMsb should be wrapped!!
+        int picOrderCntMsb;
+        if ((pocCntLsb < prevPicOrderCntLsb) && ((prevPicOrderCntLsb - pocCntLsb) >= (maxPicOrderCntLsb / 2)))
+            picOrderCntMsb = prevPicOrderCntMsb + maxPicOrderCntLsb;
+        else if ((pocCntLsb > prevPicOrderCntLsb) && ((pocCntLsb - prevPicOrderCntLsb) > (maxPicOrderCntLsb / 2)))
+            picOrderCntMsb = prevPicOrderCntMsb - maxPicOrderCntLsb;
+        else
+            picOrderCntMsb = prevPicOrderCntMsb;
+
+        if (nu.nal_ref_idc != 0) {
+            prevPicOrderCntMsb = picOrderCntMsb;
+            prevPicOrderCntLsb = pocCntLsb;
+        }
+
+        return picOrderCntMsb + pocCntLsb;
+    }
+}
@@ -0,0 +1,97 @@
+package org.jcodec.codecs.h264.decode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jcodec.codecs.h264.decode.aso.MBlockMapper;
+import org.jcodec.codecs.h264.decode.model.DecodedSlice;
+import org.jcodec.codecs.h264.io.model.CodedSlice;
+import org.jcodec.codecs.h264.io.model.PictureParameterSet;
+import org.jcodec.codecs.h264.io.model.SeqParameterSet;
+import org.jcodec.common.model.Picture;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ * 
+ * Reconstructs all the slices of a picture concurrently.
+ * 
+ * Slices don't use each other's samples or motion vectors for prediction so
+ * they can be reconstructed independently up to the deblocking. Each executor
+ * thread gets it's own slice decoder because macroblock decoders keep scratch
+ * buffers.
+ * 
+ * @author Jay Codec
+ * 
+ */
+public class ParallelSliceDecoder {
+
+    private ExecutorService executor;
+    private ThreadLocal<SliceDecoder> decoders;
+
+    public ParallelSliceDecoder(final SeqParameterSet sps, final PictureParameterSet pps, ExecutorService executor) {
+        this.executor = executor;
+        this.decoders = new ThreadLocal<SliceDecoder>() {
+            protected SliceDecoder initialValue() {
+                int[] chromaQpOffset = new int[] {
+                        pps.chroma_qp_index_offset,
+                        pps.extended != null ? pps.extended.second_chroma_qp_index_offset
+                                : pps.chroma_qp_index_offset };
+
+                return new SliceDecoder(pps.pic_init_qp_minus26 + 26, chromaQpOffset, sps.pic_width_in_mbs_minus1 + 1,
+                        sps.bit_depth_luma_minus8 + 8, sps.bit_depth_chroma_minus8 + 8, pps.constrained_intra_pred_flag);
+            }
+        };
+    }
+
+    /**
+     * Decodes the slices into the planes of the output picture and waits for
+     * all of them to finish. Slices never overlap so the workers write to
+     * disjoint areas of the picture.
+     * 
+     * @return Decoded slices in the same order as the coded ones
+     */
+    public DecodedSlice[] decodeSlices(List<CodedSlice> slices, List<Picture[]> refLists, List<MBlockMapper> mappers,
+            Picture out) {
+
+        List<Future<DecodedSlice>> jobs = new ArrayList<Future<DecodedSlice>>();
+        for (int i = 0; i < slices.size(); i++) {
+            jobs.add(executor.submit(new SliceJob(slices.get(i), refLists.get(i), mappers.get(i), out)));
+        }
+
+        DecodedSlice[] result = new DecodedSlice[jobs.size()];
+        for (int i = 0; i < result.length; i++) {
+            try {
+                result[i] = jobs.get(i).get();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        return result;
+    }
+
+    private class SliceJob implements Callable<DecodedSlice> {
+        private CodedSlice slice;
+        private Picture[] refList;
+        private MBlockMapper mapper;
+        private Picture out;
+
+        public SliceJob(CodedSlice slice, Picture[] refList, MBlockMapper mapper, Picture out) {
+            this.slice = slice;
+            this.refList = refList;
+            this.mapper = mapper;
+            this.out = out;
+        }
+
+        public DecodedSlice call() {
+            return decoders.get().decodeSlice(slice, refList, mapper, out);
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package org.jcodec.codecs.h264.decode;
 
+import static org.jcodec.common.model.ColorSpace.YUV420;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
+import org.jcodec.codecs.h264.decode.SliceDecoder.MBlockSink;
 import org.jcodec.codecs.h264.decode.aso.MBlockMapper;
 import org.jcodec.codecs.h264.decode.aso.MapManager;
 import org.jcodec.codecs.h264.decode.deblock.DeblockingFilter;
@@ -9,7 +15,6 @@ import org.jcodec.codecs.h264.decode.deblock.FilterParameter;
 import org.jcodec.codecs.h264.decode.deblock.FilterParameterBuilder;
 import org.jcodec.codecs.h264.decode.dpb.DecodedPicture;
 import org.jcodec.codecs.h264.decode.dpb.RefListBuilder;
-import org.jcodec.codecs.h264.decode.imgop.Flattener;
 import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
 import org.jcodec.codecs.h264.decode.model.DecodedSlice;
 import org.jcodec.codecs.h264.io.model.CodedPicture;
@@ -17,6 +22,7 @@ import org.jcodec.codecs.h264.io.model.CodedSlice;
 import org.jcodec.codecs.h264.io.model.PictureParameterSet;
 import org.jcodec.codecs.h264.io.model.SeqParameterSet;
 import org.jcodec.codecs.h264.io.model.SliceHeader;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 
 /**
@@ -33,6 +39,7 @@ public class PictureDecoder {
     private SeqParameterSet sps;
     private RefListBuilder refListBuilder;
     private DeblockingFilter filter;
+    private ParallelSliceDecoder parallelDecoder;
 
     public PictureDecoder(SeqParameterSet sps, PictureParameterSet pps) {
 
@@ -51,7 +58,30 @@ public class PictureDecoder {
 
     }
 
+    /**
+     * Creates a picture decoder that reconstructs the slices of a picture
+     * concurrently on the executor threads
+     */
+    public PictureDecoder(SeqParameterSet sps, PictureParameterSet pps, ExecutorService executor) {
+        this(sps, pps);
+
+        parallelDecoder = new ParallelSliceDecoder(sps, pps, executor);
+        filter = new DeblockingFilter(sps.pic_width_in_mbs_minus1 + 1, sps.pic_height_in_map_units_minus1 + 1,
+                sps.bit_depth_luma_minus8 + 8, sps.bit_depth_chroma_minus8 + 8, executor);
+    }
+
     public Picture decodePicture(CodedPicture coded, MapManager map, DecodedPicture[] references) throws IOException {
+        return decodePicture(coded, map, references, Picture.create((sps.pic_width_in_mbs_minus1 + 1) << 4,
+                (sps.pic_height_in_map_units_minus1 + 1) << 4, YUV420));
+    }
+
+    /**
+     * Decodes the picture into the planes of pic. When pic is a PaddedPicture
+     * it's padded planes are filled as the macroblock rows become final, see
+     * RowProgress.
+     */
+    public Picture decodePicture(CodedPicture coded, MapManager map, DecodedPicture[] references, Picture pic)
+            throws IOException {
 
         int picWidthInMbs = sps.pic_width_in_mbs_minus1 + 1;
         int picHeightInMbs = sps.pic_height_in_map_units_minus1 + 1;
@@ -60,6 +90,27 @@ public class PictureDecoder {
         DecodedMBlock[] mblocks = new DecodedMBlock[mblocksInFrame];
         SliceHeader[] headers = new SliceHeader[mblocksInFrame];
 
+        if (parallelDecoder != null) {
+            decodeSlicesParallel(coded, map, references, mblocks, headers, pic);
+        } else if (pic instanceof PaddedPicture) {
+            RowProgress progress = new RowProgress(picWidthInMbs, picHeightInMbs, mblocks, headers, filter,
+                    (PaddedPicture) pic);
+            decodeSlices(coded, map, references, mblocks, headers, pic, progress);
+            progress.finish(progress.remainingParams());
+            return pic;
+        } else {
+            decodeSlices(coded, map, references, mblocks, headers, pic, null);
+        }
+
+        FilterParameter[] dbfInput = buildDeblockerParams(picWidthInMbs, mblocks, headers);
+
+        filter.applyDeblocking(pic, dbfInput);
+
+        return pic;
+    }
+
+    private void decodeSlices(CodedPicture coded, MapManager map, DecodedPicture[] references,
+            final DecodedMBlock[] mblocks, final SliceHeader[] headers, Picture pic, final RowProgress progress) {
         for (CodedSlice codedSlice : coded.getSlices()) {
 
             if (codedSlice.getHeader().redundant_pic_cnt != 0)
@@ -70,18 +121,47 @@ public class PictureDecoder {
             Picture[] refList = refListBuilder.buildRefList(references, codedSlice.getHeader().refPicReorderingL0,
                     codedSlice.getHeader().frame_num);
 
-            DecodedSlice decodeSlice = sliceDecoder.decodeSlice(codedSlice, refList, mBlockMap);
+            if (progress == null) {
+                DecodedSlice decodeSlice = sliceDecoder.decodeSlice(codedSlice, refList, mBlockMap, pic);
 
-            mapDecodedMBlocks(decodeSlice, codedSlice, headers, mblocks, mBlockMap);
+                mapDecodedMBlocks(decodeSlice, codedSlice, headers, mblocks, mBlockMap);
+                continue;
+            }
+
+            final SliceHeader header = codedSlice.getHeader();
+            sliceDecoder.decodeSlice(codedSlice, refList, mBlockMap, pic, new MBlockSink() {
+                public void put(int mbAddr, DecodedMBlock mb) {
+                    boolean first = mblocks[mbAddr] == null;
+                    mblocks[mbAddr] = mb;
+                    headers[mbAddr] = header;
+                    if (first)
+                        progress.put(mbAddr);
+                }
+            });
         }
+    }
 
-        FilterParameter[] dbfInput = buildDeblockerParams(picWidthInMbs, mblocks, headers);
+    private void decodeSlicesParallel(CodedPicture coded, MapManager map, DecodedPicture[] references,
+            DecodedMBlock[] mblocks, SliceHeader[] headers, Picture pic) {
+        List<CodedSlice> slices = new ArrayList<CodedSlice>();
+        List<Picture[]> refLists = new ArrayList<Picture[]>();
+        List<MBlockMapper> mappers = new ArrayList<MBlockMapper>();
+        for (CodedSlice codedSlice : coded.getSlices()) {
 
-        filter.applyDeblocking(mblocks, dbfInput);
+            if (codedSlice.getHeader().redundant_pic_cnt != 0)
+                continue;
 
-        Picture pic = Flattener.flattern(mblocks, picWidthInMbs, picHeightInMbs);
+            slices.add(codedSlice);
+            mappers.add(map.getMapper(codedSlice.getHeader()));
+            refLists.add(refListBuilder.buildRefList(references, codedSlice.getHeader().refPicReorderingL0,
+                    codedSlice.getHeader().frame_num));
+        }
 
-        return pic;
+        DecodedSlice[] decoded = parallelDecoder.decodeSlices(slices, refLists, mappers, pic);
+
+        for (int i = 0; i < decoded.length; i++) {
+            mapDecodedMBlocks(decoded[i], slices.get(i), headers, mblocks, mappers.get(i));
+        }
     }
 
     public static FilterParameter[] buildDeblockerParams(int picWidthInMbs, DecodedMBlock[] decoded,
@@ -89,12 +169,26 @@ public class PictureDecoder {
 
         FilterParameter[] result = new FilterParameter[decoded.length];
 
-        for (int i = 0; i < decoded.length; i++) {
+        buildDeblockerParams(picWidthInMbs, decoded, headers, result, 0, decoded.length);
+
+        return result;
+    }
+
+    /**
+     * Builds the deblocker parameters of the macroblocks [from, to) into
+     * result, the macroblocks above and to the left must be decoded
+     */
+    public static void buildDeblockerParams(int picWidthInMbs, DecodedMBlock[] decoded, SliceHeader[] headers,
+            FilterParameter[] result, int from, int to) {
+
+        for (int i = from; i < to; i++) {
 
             SliceHeader header = headers[i];
 
-            if (header == null)
+            if (header == null) {
+                result[i] = null;
                 continue;
+            }
 
             DecodedMBlock leftDec = null;
             SliceHeader leftHead = null;
@@ -114,8 +208,6 @@ public class PictureDecoder {
                     header.slice_alpha_c0_offset_div2 << 1, header.slice_beta_offset_div2 << 1, decoded[i], leftDec,
                     topDec, leftHead == header, topHead == header);
         }
-
-        return result;
     }
 
     protected static void mapDecodedMBlocks(DecodedSlice slice, CodedSlice coded, SliceHeader[] headers,
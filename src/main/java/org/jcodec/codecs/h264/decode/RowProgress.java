@@ -0,0 +1,98 @@
+package org.jcodec.codecs.h264.decode;
+
+import org.jcodec.codecs.h264.decode.deblock.DeblockingFilter;
+import org.jcodec.codecs.h264.decode.deblock.FilterParameter;
+import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
+import org.jcodec.codecs.h264.io.model.SliceHeader;
+import org.jcodec.common.model.PaddedPicture;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ * 
+ * Deblocks the macroblock rows of a reference picture while it's being
+ * reconstructed and hands the rows that won't change anymore to the pictures
+ * predicting from it.
+ * 
+ * Intra prediction takes the unfiltered samples of the row above, so a row is
+ * filtered once the row below it is complete. Filtering a row modifies the
+ * bottom samples of the row above it, so a row is final once the row below it
+ * is filtered. The output is the same as when the whole picture is filtered
+ * at the end.
+ * 
+ * @author Jay Codec
+ * 
+ */
+public class RowProgress {
+    private int picWidthInMbs;
+    private int picHeightInMbs;
+    private DecodedMBlock[] decoded;
+    private SliceHeader[] headers;
+    private DeblockingFilter filter;
+    private PaddedPicture pic;
+    private FilterParameter[] params;
+
+    private int[] rowMbs;
+    // rows from the top that have all the macroblocks
+    private int complete;
+    private int deblocked;
+
+    /**
+     * @param decoded
+     *            Macroblocks of the picture, filled in as they're decoded
+     * @param headers
+     *            Slice headers of the macroblocks, filled in along with them
+     */
+    public RowProgress(int picWidthInMbs, int picHeightInMbs, DecodedMBlock[] decoded, SliceHeader[] headers,
+            DeblockingFilter filter, PaddedPicture pic) {
+        this.picWidthInMbs = picWidthInMbs;
+        this.picHeightInMbs = picHeightInMbs;
+        this.decoded = decoded;
+        this.headers = headers;
+        this.filter = filter;
+        this.pic = pic;
+        this.params = new FilterParameter[decoded.length];
+        this.rowMbs = new int[picHeightInMbs];
+    }
+
+    /**
+     * Takes a macroblock once it's reconstructed and put to decoded and
+     * headers, each macroblock must come once
+     */
+    public void put(int mbAddr) {
+        if (++rowMbs[mbAddr / picWidthInMbs] < picWidthInMbs)
+            return;
+        while (complete < picHeightInMbs && rowMbs[complete] == picWidthInMbs)
+            complete++;
+
+        int rows = complete - 1;
+        if (rows <= deblocked)
+            return;
+        PictureDecoder.buildDeblockerParams(picWidthInMbs, decoded, headers, params, deblocked * picWidthInMbs, rows
+                * picWidthInMbs);
+        filter.applyDeblocking(pic, params, deblocked, rows);
+        deblocked = rows;
+
+        pic.fillRows((deblocked - 1) << 4);
+    }
+
+    /**
+     * @return Deblocker parameters with the rows that are not filtered yet
+     *         filled in, to be adjusted and passed to finish
+     */
+    public FilterParameter[] remainingParams() {
+        PictureDecoder.buildDeblockerParams(picWidthInMbs, decoded, headers, params, deblocked * picWidthInMbs,
+                decoded.length);
+        return params;
+    }
+
+    /**
+     * Filters the rest of the picture once all the macroblocks are there,
+     * every row of the picture becomes final
+     */
+    public void finish(FilterParameter[] params) {
+        filter.applyDeblocking(pic, params, deblocked, picHeightInMbs);
+        deblocked = picHeightInMbs;
+        pic.fillRows(pic.getHeight());
+    }
+}
@@ -1,22 +1,35 @@
 package org.jcodec.codecs.h264.decode;
 
+import static java.lang.Math.abs;
+import static org.jcodec.codecs.h264.decode.BlockInterpolator.PAD;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.jcodec.codecs.h264.AccessUnit;
 import org.jcodec.codecs.h264.H264Demuxer;
 import org.jcodec.codecs.h264.decode.dpb.DecodedPicture;
 import org.jcodec.codecs.h264.decode.dpb.DecodedPictureBuffer;
+import org.jcodec.codecs.h264.decode.dpb.PendingPicture;
+import org.jcodec.codecs.h264.decode.dpb.PicturePool;
 import org.jcodec.codecs.h264.decode.dpb.RefPicManager;
 import org.jcodec.codecs.h264.decode.imgop.Cropper;
 import org.jcodec.codecs.h264.decode.model.DecodedFrame;
 import org.jcodec.codecs.h264.decode.model.IDRFrame;
 import org.jcodec.codecs.h264.decode.model.NonIDRFrame;
-import org.jcodec.codecs.h264.io.model.NALUnit;
 import org.jcodec.codecs.h264.io.model.NALUnitType;
-import org.jcodec.codecs.h264.io.model.RefPicMarking;
 import org.jcodec.codecs.h264.io.model.SeqParameterSet;
 import org.jcodec.codecs.h264.io.model.SliceHeader;
-import org.jcodec.codecs.h264.io.model.RefPicMarking.InstrType;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.tools.Debug;
 
@@ -26,6 +39,19 @@ import org.jcodec.common.tools.Debug;
  * 
  * Iterates through the pictures in the access unit
  * 
+ * When created with an executor works in frame-threaded mode: access unit N+1
+ * is parsed on a worker thread while access unit N is reconstructed, and the
+ * pictures are reconstructed on worker threads concurrently with the pictures
+ * that follow them in decoding order. A reference picture hands its
+ * macroblock rows to the pictures predicting from it as soon as they're
+ * deblocked, motion compensation waits for the rows of the reference pictures
+ * it reads, see RowProgress.
+ * 
+ * Picture buffers are recycled through a bounded pool. Pictures bumped out of
+ * the DPB go back to the pool when they are not held by the caller and no
+ * worker thread may still read them. Pictures returned to the caller can be
+ * handed back with releasePicture.
+ * 
  * @author Jay Codec
  * 
  */
@@ -35,36 +61,55 @@ public class SequenceDecoder {
     private ErrorResilence er;
     private AccessUnitReader currentAU;
 
+    private ExecutorService executor;
+    private Future<AccessUnitReader> nextAUJob;
+    private ThreadLocal<ErrorResilence> workerEr;
+
+    private PicturePool pool = new PicturePool(0);
+    private Sequence current;
+    private List<Future<Picture>> inFlight = new ArrayList<Future<Picture>>();
+    private List<Retired> retired = new ArrayList<Retired>();
+    private volatile DecodePolicy policy = DecodePolicy.ALL;
+    private boolean boundedReorder;
+
+    // no level allows for more frames in DPB
+    public static final int MAX_DPB_FRAMES = 16;
+
     public class Sequence {
         private DecodedPictureBuffer dpb;
         private RefPicManager refPictureManager;
         private SeqParameterSet sps;
         private Cropper cropper;
 
+        private POCManager poc;
+
         private int seqId;
+        // the IDR picture this sequence starts with is processed
+        private boolean started;
         private int nextPOC;
+        private int maxReorder;
 
-        private int prevFrameNumOffset;
-        private int prevFrameNum;
+        private List<Picture> released = new ArrayList<Picture>();
 
-        private int prevPicOrderCntMsb;
-        private int prevPicOrderCntLsb;
-
-        private int maxFrameNum;
-        private int maxPicOrderCntLsb;
+        // a skipped picture had MMCO5, the pictures before it go out first
+        private boolean flushPending;
 
         public Sequence() throws IOException {
             sps = currentAU.getSPS();
             seqId = currentAU.getSliceHeader().idr_pic_id;
 
-            maxFrameNum = 1 << (sps.log2_max_frame_num_minus4 + 4);
-            maxPicOrderCntLsb = 1 << (sps.log2_max_pic_order_cnt_lsb_minus4 + 4);
+            poc = new POCManager(sps);
 
             int picSizeInMbs = (sps.pic_width_in_mbs_minus1 + 1) * (sps.pic_height_in_map_units_minus1 + 1);
 
             dpb = DecodedPictureBuffer.getForProfileAndDimension(sps.level_idc, picSizeInMbs);
-            refPictureManager = new RefPicManager(dpb, sps.num_ref_frames, maxFrameNum);
+            refPictureManager = new RefPicManager(dpb, sps.num_ref_frames, poc.getMaxFrameNum());
             cropper = new Cropper(sps);
+            maxReorder = boundedReorder ? getMaxReorder(sps, dpb.getCapacity()) : Integer.MAX_VALUE;
+
+            // DPB plus the picture being decoded, along with their padded
+            // copies
+            pool.setCapacity((dpb.getCapacity() + 1) << 1);
         }
 
         public SeqParameterSet getSPS() {
@@ -77,14 +122,17 @@ public class SequenceDecoder {
                 DecodedPicture needle = null;
                 DecodedPicture leastPOC = null;
                 DecodedPicture last = null;
+                int waiting = 0;
                 for (DecodedPicture pic : dpb) {
-                    if (pic.getPoc() == nextPOC) {
+                    if (pic.isDisplay() && pic.getPoc() == nextPOC) {
                         needle = pic;
                         break;
                     }
                     if (pic.isDisplay() && (leastPOC == null || pic.getPoc() < leastPOC.getPoc())) {
                         leastPOC = pic;
                     }
+                    if (pic.isDisplay())
+                        ++waiting;
                     last = pic;
                 }
 
@@ -94,22 +142,23 @@ public class SequenceDecoder {
                         nextPOC = needle.getPoc() + 1;
                     else
                         nextPOC = 1;
-                    dpb.bumpPictures();
-                    return cropper.crop(needle.getPicture());
+                    return output(needle);
                 }
 
                 boolean lastMMCO5 = last != null && last.hasMMCO5() && last.isDisplay();
+                if (leastPOC == null)
+                    flushPending = false;
 
-                if (dpb.isFull() || lastMMCO5 || !processNextAccessUnit()) {
+                if (dpb.isFull() || waiting > maxReorder || lastMMCO5 || flushPending || !processNextAccessUnit()) {
                     if (leastPOC != null) {
                         leastPOC.setDisplayed();
                         if (!leastPOC.hasMMCO5())
                             nextPOC = leastPOC.getPoc() + 1;
                         else
                             nextPOC = 1;
-                        dpb.bumpPictures();
-                        return cropper.crop(leastPOC.getPicture());
+                        return output(leastPOC);
                     } else {
+                        close();
                         return null;
                     }
                 }
@@ -117,6 +166,81 @@ public class SequenceDecoder {
             } while (true);
         }
 
+        private Picture output(DecodedPicture pic) {
+            Picture result = cropper.crop(pic.getPicture(), pool);
+            dpb.bumpPictures();
+            recycle();
+            return result;
+        }
+
+        /**
+         * Retires the pictures bumped out of the DPB. Uncropped pictures are
+         * shared with the caller so they are only retired once the caller has
+         * released them.
+         */
+        private void recycle() {
+            for (DecodedPicture pic : dpb.takeRemoved()) {
+                if (pic.getPadded() != null && !inUse(pic.getPadded().getPadded()))
+                    retire(pic.getPadded().getPadded());
+                Picture picture = pic.peekPicture();
+                if (picture == null || inUse(picture))
+                    continue;
+                if (cropper.isCropping() || released.remove(picture))
+                    retire(picture);
+            }
+        }
+
+        /**
+         * @return If a picture left in the DPB still predicts from pic, a
+         *         skipped reference picture borrows the pixels of a decoded
+         *         one
+         */
+        private boolean inUse(Picture pic) {
+            for (DecodedPicture decoded : dpb) {
+                if (decoded.peekPicture() == pic
+                        || (decoded.getPadded() != null && decoded.getPadded().getPadded() == pic))
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Retires all the pictures including the ones still waiting for
+         * output
+         */
+        private void drop() {
+            for (DecodedPicture pic : dpb) {
+                if (pic.isDisplay() && pic.peekPicture() != null)
+                    retire(pic.peekPicture());
+            }
+            close();
+        }
+
+        private void close() {
+            Set<Picture> done = Collections.newSetFromMap(new IdentityHashMap<Picture, Boolean>());
+            for (DecodedPicture pic : dpb) {
+                if (pic.getPadded() != null && done.add(pic.getPadded().getPadded()))
+                    retire(pic.getPadded().getPadded());
+                if (!pic.isDisplay() && pic.peekPicture() != null && done.add(pic.peekPicture())
+                        && (cropper.isCropping() || released.remove(pic.peekPicture())))
+                    retire(pic.peekPicture());
+            }
+            released.clear();
+        }
+
+        /**
+         * @return If pic was returned to the caller and is still in the DPB
+         */
+        private boolean holds(Picture pic) {
+            if (cropper.isCropping())
+                return false;
+            for (DecodedPicture decoded : dpb) {
+                if (!decoded.isDisplay() && decoded.peekPicture() == pic)
+                    return true;
+            }
+            return false;
+        }
+
         private boolean processNextAccessUnit() throws IOException {
 
             if (currentAU == null)
@@ -124,14 +248,15 @@ public class SequenceDecoder {
 
             SeqParameterSet curSPS = currentAU.getSPS();
 
+            // idr_pic_id only differs between adjacent IDR pictures
             boolean nextSequence = currentAU.getNU().type == NALUnitType.IDR_SLICE
-                    && currentAU.getSliceHeader().idr_pic_id != seqId;
+                    && (started || currentAU.getSliceHeader().idr_pic_id != seqId);
             if (nextSequence || curSPS.seq_parameter_set_id != sps.seq_parameter_set_id)
                 return false;
 
             SliceHeader sh = currentAU.getSliceHeader();
 
-            if (!detectGap(sh)) {
+            if (!poc.detectGap(sh)) {
                 return reallyProcessNextAU(sh);
             } else {
                 issueNonExistingPic(sh);
@@ -140,157 +265,262 @@ public class SequenceDecoder {
         }
 
         private boolean reallyProcessNextAU(SliceHeader sh) throws IOException {
-            boolean mmco5 = detectMMCO5(sh.refPicMarkingNonIDR);
+            started = true;
+            boolean mmco5 = POCManager.detectMMCO5(sh.refPicMarkingNonIDR);
 
-            int absFrameNum = updateFrameNumber(sh.frame_num, mmco5);
+            int absFrameNum = poc.updateFrameNumber(sh.frame_num, mmco5);
 
-            int poc = 0;
-            if (currentAU.getNU().type == NALUnitType.NON_IDR_SLICE) {
-                poc = calcPoc(absFrameNum, currentAU.getNU(), currentAU.getSliceHeader());
-            }
+            int curPoc = poc.calcPoc(absFrameNum, currentAU.getNU(), sh);
 
-            Debug.println("\n****** POC: " + poc + " ********* ");
+            Debug.println("\n****** POC: " + curPoc + " ********* ");
+
+            if (currentAU.isSkipped()) {
+                skip(sh, curPoc, mmco5);
+                return true;
+            }
 
             DecodedPicture[] refList = refPictureManager.getAllRefs();
-            Picture picture = er.decodeAccessUnit(currentAU, refList);
+            flushRetired();
+            Picture out = pool.get((sps.pic_width_in_mbs_minus1 + 1) << 4,
+                    (sps.pic_height_in_map_units_minus1 + 1) << 4);
+            PaddedPicture padded = null;
+            if (currentAU.getNU().nal_ref_idc != 0)
+                padded = new PaddedPicture(out, pool.get(out.getWidth() + (PAD << 1), out.getHeight() + (PAD << 1)),
+                        PAD, false);
+            Picture picture = null;
+            Future<Picture> job = null;
+            if (executor != null) {
+                job = executor.submit(new DecodeJob(currentAU, detach(refList), out, padded));
+                inFlight.add(job);
+            } else {
+                picture = decode(er, currentAU, refList, out, padded);
+            }
 
             DecodedFrame frame;
             if (currentAU.getNU().type == NALUnitType.IDR_SLICE) {
                 frame = new IDRFrame(picture, currentAU.getNU(), 0, 0, sh.refPicMarkingIDR);
             } else {
 
-                frame = new NonIDRFrame(picture, currentAU.getNU(), mmco5 ? 0 : sh.frame_num, poc,
+                frame = new NonIDRFrame(picture, currentAU.getNU(), mmco5 ? 0 : sh.frame_num, curPoc,
                         sh.refPicMarkingNonIDR);
             }
 
             currentAU = nextAU();
 
-            saveReference(frame, mmco5);
+            saveReference(frame, job, out, padded, mmco5);
+
+            recycle();
 
             return true;
         }
 
-        private boolean detectMMCO5(RefPicMarking refPicMarkingNonIDR) {
-            if (refPicMarkingNonIDR == null)
-                return false;
-
-            for (RefPicMarking.Instruction instr : refPicMarkingNonIDR.getInstructions()) {
-                if (instr.getType() == InstrType.CLEAR) {
-                    return true;
+        /**
+         * Drops the picture without parsing it's slice data. A reference
+         * picture still goes through the reference marking as a picture that
+         * is never displayed, so that the sliding window and the memory
+         * management operations of the following pictures see the same DPB.
+         * It borrows the pixels of the closest decoded reference picture in
+         * case a decoded picture predicts from it, much like a missing
+         * macroblock is concealed with it's neighbour.
+         */
+        private void skip(SliceHeader sh, int poc, boolean mmco5) throws IOException {
+            if (currentAU.getNU().nal_ref_idc != 0) {
+                DecodedPicture nearest = null;
+                for (DecodedPicture pic : refPictureManager.getAllRefs()) {
+                    if (pic != null && pic.peekPicture() != null
+                            && (nearest == null || abs(pic.getPoc() - poc) < abs(nearest.getPoc() - poc)))
+                        nearest = pic;
                 }
+                DecodedPicture picture = new DecodedPicture(nearest == null ? null : nearest.peekPicture(), poc,
+                        false, true, mmco5 ? 0 : sh.frame_num, false, mmco5);
+                if (nearest != null)
+                    picture.setPadded(nearest.getPadded());
+                refPictureManager.performMarking(sh.refPicMarkingNonIDR, picture);
+                flushPending |= mmco5;
             }
-            return false;
+
+            currentAU = nextAU();
+
+            recycle();
         }
 
-        private void issueNonExistingPic(SliceHeader sh) {
-            int nextFrameNum = (prevFrameNum + 1) % maxFrameNum;
-            refPictureManager.addNonExisting(nextFrameNum);
-            prevFrameNum = nextFrameNum;
+        private DecodedPicture[] detach(DecodedPicture[] refList) {
+            DecodedPicture[] result = new DecodedPicture[refList.length];
+            for (int i = 0; i < refList.length; i++) {
+                if (refList[i] != null)
+                    result[i] = new DecodedPicture(refList[i]);
+            }
+            return result;
         }
 
-        private boolean detectGap(SliceHeader sh) {
-            return sh.frame_num != prevFrameNum && sh.frame_num != ((prevFrameNum + 1) % maxFrameNum);
+        private void issueNonExistingPic(SliceHeader sh) {
+            refPictureManager.addNonExisting(poc.nextNonExisting());
         }
 
-        private int updateFrameNumber(int frameNo, boolean mmco5) {
-            int frameNumOffset;
-            if (prevFrameNum > frameNo)
-                frameNumOffset = prevFrameNumOffset + maxFrameNum;
+        private void saveReference(DecodedFrame frame, Future<Picture> job, Picture out, PaddedPicture padded,
+                boolean mmco5) {
+            DecodedPicture picture;
+            if (job != null)
+                picture = new PendingPicture(job, out, frame.getPOC(), frame.getNU().nal_ref_idc != 0,
+                        frame.getFrameNum(), mmco5);
             else
-                frameNumOffset = prevFrameNumOffset;
+                picture = new DecodedPicture(frame.getPicture(), frame.getPOC(), true,
+                        frame.getNU().nal_ref_idc != 0, frame.getFrameNum(), false, mmco5);
+            picture.setPadded(padded);
 
-            int absFrameNum = frameNumOffset + frameNo;
+            if (frame instanceof IDRFrame) {
+                refPictureManager.performIDRMarking(((IDRFrame) frame).getMarking(), picture);
+            } else {
+                refPictureManager.performMarking(((NonIDRFrame) frame).getMarking(), picture);
+            }
+        }
+    }
 
-            prevFrameNum = mmco5 ? 0 : frameNo;
-            prevFrameNumOffset = frameNumOffset;
-            return absFrameNum;
+    /**
+     * Puts the picture to the pool when no worker thread can read it anymore,
+     * i.e. when all the pictures that were being decoded at the moment it was
+     * retired are done
+     */
+    private void retire(Picture pic) {
+        for (Iterator<Future<Picture>> it = inFlight.iterator(); it.hasNext();) {
+            if (it.next().isDone())
+                it.remove();
         }
+        retired.add(new Retired(pic, new ArrayList<Future<Picture>>(inFlight)));
 
-        private int calcPoc(int absFrameNum, NALUnit nu, SliceHeader sh) {
-            if (sps.pic_order_cnt_type == 0) {
-                return calcPOC0(absFrameNum, nu, sh);
-            } else if (sps.pic_order_cnt_type == 1) {
-                return calcPOC1(absFrameNum, nu, sh);
-            } else {
-                return calcPOC2(absFrameNum, nu, sh);
+        flushRetired();
+    }
+
+    private void flushRetired() {
+        for (Iterator<Retired> it = retired.iterator(); it.hasNext();) {
+            Retired ret = it.next();
+            if (ret.isFree()) {
+                pool.put(ret.pic);
+                it.remove();
             }
         }
+    }
 
-        private int calcPOC2(int absFrameNum, NALUnit nu, SliceHeader sh) {
+    private static class Retired {
+        private Picture pic;
+        private List<Future<Picture>> blockers;
 
-            if (nu.nal_ref_idc == 0)
-                return 2 * absFrameNum - 1;
-            else
-                return 2 * absFrameNum;
+        public Retired(Picture pic, List<Future<Picture>> blockers) {
+            this.pic = pic;
+            this.blockers = blockers;
         }
 
-        private int calcPOC1(int absFrameNum, NALUnit nu, SliceHeader sh) {
+        public boolean isFree() {
+            for (Future<Picture> job : blockers) {
+                if (!job.isDone())
+                    return false;
+            }
+            return true;
+        }
+    }
 
-            if (sps.num_ref_frames_in_pic_order_cnt_cycle == 0)
-                absFrameNum = 0;
-            if (nu.nal_ref_idc == 0 && absFrameNum > 0)
-                absFrameNum = absFrameNum - 1;
+    /**
+     * Hands a picture returned by the decoder back for reuse. Must be called
+     * from the thread that pulls the pictures and the picture must not be used
+     * afterwards.
+     * 
+     * Cropped pictures are copies owned by the caller only so they go to the
+     * pool right away.
+     */
+    public void releasePicture(Picture pic) {
+        if (current != null && current.cropper.isCropping())
+            pool.put(pic);
+        else if (current != null && current.holds(pic))
+            current.released.add(pic);
+        else
+            retire(pic);
+    }
 
-            int expectedDeltaPerPicOrderCntCycle = 0;
-            for (int i = 0; i < sps.num_ref_frames_in_pic_order_cnt_cycle; i++)
-                expectedDeltaPerPicOrderCntCycle += sps.offsetForRefFrame[i];
+    private AccessUnitReader nextAU() throws IOException {
+        if (executor == null)
+            return readAU();
 
-            int expectedPicOrderCnt;
-            if (absFrameNum > 0) {
-                int picOrderCntCycleCnt = (absFrameNum - 1) / sps.num_ref_frames_in_pic_order_cnt_cycle;
-                int frameNumInPicOrderCntCycle = (absFrameNum - 1) % sps.num_ref_frames_in_pic_order_cnt_cycle;
+        if (nextAUJob == null)
+            nextAUJob = executor.submit(new ParseJob());
 
-                expectedPicOrderCnt = picOrderCntCycleCnt * expectedDeltaPerPicOrderCntCycle;
-                for (int i = 0; i <= frameNumInPicOrderCntCycle; i++)
-                    expectedPicOrderCnt = expectedPicOrderCnt + sps.offsetForRefFrame[i];
-            } else {
-                expectedPicOrderCnt = 0;
-            }
-            if (nu.nal_ref_idc == 0)
-                expectedPicOrderCnt = expectedPicOrderCnt + sps.offset_for_non_ref_pic;
+        AccessUnitReader result = join(nextAUJob);
+        nextAUJob = result != null ? executor.submit(new ParseJob()) : null;
 
-            return expectedPicOrderCnt + sh.delta_pic_order_cnt[0];
-        }
+        return result;
+    }
 
-        private int calcPOC0(int absFrameNum, NALUnit nu, SliceHeader sh) {
+    private AccessUnitReader readAU() throws IOException {
+        AccessUnit au = auSource.nextAcceessUnit();
+        if (au == null)
+            return null;
 
-            int pocCntLsb = sh.pic_order_cnt_lsb;
+        AccessUnitReader reader = new AccessUnitReader(au, auSource);
+        if (!policy.decodes(reader.getNU(), reader.getSliceHeader()))
+            reader.skip();
 
-            // TODO prevPicOrderCntMsb should be wrapped!!
-            int picOrderCntMsb;
-            if ((pocCntLsb < prevPicOrderCntLsb) && ((prevPicOrderCntLsb - pocCntLsb) >= (maxPicOrderCntLsb / 2)))
-                picOrderCntMsb = prevPicOrderCntMsb + maxPicOrderCntLsb;
-            else if ((pocCntLsb > prevPicOrderCntLsb) && ((pocCntLsb - prevPicOrderCntLsb) > (maxPicOrderCntLsb / 2)))
-                picOrderCntMsb = prevPicOrderCntMsb - maxPicOrderCntLsb;
-            else
-                picOrderCntMsb = prevPicOrderCntMsb;
+        return reader;
+    }
 
-            if (nu.nal_ref_idc != 0) {
-                prevPicOrderCntMsb = picOrderCntMsb;
-                prevPicOrderCntLsb = pocCntLsb;
-            }
+    private static <T> T join(Future<T> job) throws IOException {
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-            return picOrderCntMsb + pocCntLsb;
+    private class ParseJob implements Callable<AccessUnitReader> {
+        public AccessUnitReader call() throws IOException {
+            AccessUnitReader au = readAU();
+            if (au != null && !au.isSkipped())
+                au.preload();
+            return au;
         }
+    }
 
-        private void saveReference(DecodedFrame frame, boolean mmco5) {
-            DecodedPicture picture = new DecodedPicture(frame.getPicture(), frame.getPOC(), true,
-                    frame.getNU().nal_ref_idc != 0, frame.getFrameNum(), false, mmco5);
+    private class DecodeJob implements Callable<Picture> {
+        private AccessUnitReader au;
+        private DecodedPicture[] refList;
+        private Picture out;
+        private PaddedPicture padded;
+
+        public DecodeJob(AccessUnitReader au, DecodedPicture[] refList, Picture out, PaddedPicture padded) {
+            this.au = au;
+            this.refList = refList;
+            this.out = out;
+            this.padded = padded;
+        }
 
-            if (frame instanceof IDRFrame) {
-                refPictureManager.performIDRMarking(((IDRFrame) frame).getMarking(), picture);
-            } else {
-                refPictureManager.performMarking(((NonIDRFrame) frame).getMarking(), picture);
-            }
+        public Picture call() throws IOException {
+            return decode(workerEr.get(), au, refList, out, padded);
         }
     }
 
-    private AccessUnitReader nextAU() throws IOException {
-        AccessUnit au = auSource.nextAcceessUnit();
-        if (au != null)
-            return new AccessUnitReader(au, auSource);
-
-        return null;
+    /**
+     * Decodes the access unit into out, a reference picture fills its padded
+     * planes as it goes. The pictures predicting from a reference picture that
+     * failed to decode fail as well instead of waiting forever.
+     */
+    private static Picture decode(ErrorResilence er, AccessUnitReader au, DecodedPicture[] refList, Picture out,
+            PaddedPicture padded) throws IOException {
+        if (padded == null)
+            return er.decodeAccessUnit(au, refList, out);
+
+        try {
+            er.decodeAccessUnit(au, refList, padded);
+        } catch (IOException e) {
+            padded.fail(e);
+            throw e;
+        } catch (RuntimeException e) {
+            padded.fail(e);
+            throw e;
+        }
+        padded.fillRows(padded.getHeight());
+        return out;
     }
 
     public SequenceDecoder(H264Demuxer auSource, ErrorResilence er) {
@@ -298,6 +528,79 @@ public class SequenceDecoder {
         this.er = er;
     }
 
+    /**
+     * Creates frame-threaded sequence decoder
+     * 
+     * @param executor
+     *            Executor that will run parsing of the next access unit and
+     *            reconstruction of the pictures, the jobs are submitted in
+     *            decoding order and must start in that order. Worker threads
+     *            get their own copy of the error resilence, see
+     *            ErrorResilence.copy
+     */
+    public SequenceDecoder(H264Demuxer auSource, final ErrorResilence er, ExecutorService executor) {
+        this(auSource, er);
+        this.executor = executor;
+        this.workerEr = new ThreadLocal<ErrorResilence>() {
+            protected ErrorResilence initialValue() {
+                return er.copy();
+            }
+        };
+    }
+
+    /**
+     * Selects the pictures to reconstruct, takes effect starting with the
+     * next access unit read from the demuxer
+     */
+    public void setPolicy(DecodePolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Makes the sequences output the least POC picture as soon as more
+     * pictures wait for output than the stream may reorder instead of holding
+     * them until the DPB is full. For the decoders fed one frame at a time.
+     * Takes effect starting with the next sequence.
+     */
+    public void setBoundedReorder(boolean boundedReorder) {
+        this.boundedReorder = boundedReorder;
+    }
+
+    /**
+     * Drops the pictures being decoded along with the ones waiting for output
+     * so that decoding starts over with the next sequence. Must be called
+     * before the demuxer is repositioned, it waits for the access unit being
+     * parsed ahead.
+     */
+    public void reset() throws IOException {
+        if (nextAUJob != null) {
+            try {
+                join(nextAUJob);
+            } catch (IOException e) {
+                // this access unit is thrown away anyway
+            }
+            nextAUJob = null;
+        }
+        currentAU = null;
+
+        if (current != null) {
+            current.drop();
+            current = null;
+        }
+    }
+
+    /**
+     * Maximum number of pictures that wait for output, once there's more the
+     * one with the least POC goes out. Signalled in VUI, otherwise every frame
+     * of the DPB may precede in decoding order the picture displayed next.
+     */
+    public static int getMaxReorder(SeqParameterSet sps, int dpbCapacity) {
+        if (sps.vuiParams != null && sps.vuiParams.bitstreamRestriction != null)
+            return sps.vuiParams.bitstreamRestriction.num_reorder_frames;
+
+        return Math.min(dpbCapacity, MAX_DPB_FRAMES);
+    }
+
     public Sequence nextSequence() throws IOException {
         if (currentAU == null)
             currentAU = nextAU();
@@ -309,6 +612,8 @@ public class SequenceDecoder {
         if (currentAU == null)
             return null;
 
-        return new Sequence();
+        current = new Sequence();
+
+        return current;
     }
 }
\ No newline at end of file
@@ -36,6 +36,17 @@ public class SliceDecoder {
     private int picWidthInMbs;
     private boolean constrainedIntraPred;
 
+    /**
+     * Receives the macroblocks of a slice as soon as they're reconstructed
+     */
+    public interface MBlockSink {
+        void put(int mbAddr, DecodedMBlock mb);
+    }
+
+    private int[][] lumaBorder = new int[4][256];
+    private int[][] cbBorder = new int[4][64];
+    private int[][] crBorder = new int[4][64];
+
     public SliceDecoder(int initialQp, int[] chromaQpOffset, int picWidthInMbs, int bitDepthLuma, int bitDepthChroma,
             boolean constrainedIntraPred) {
         decoderI4x4 = new MBlockDecoderI4x4(chromaQpOffset, bitDepthLuma, bitDepthChroma);
@@ -61,7 +72,27 @@ public class SliceDecoder {
         this.initialQp = initialQp;
     }
 
-    public DecodedSlice decodeSlice(CodedSlice slice, Picture[] reference, MBlockMapper mBlockMap) {
+    /**
+     * Decodes a slice straight into the planes of the output picture, each
+     * macroblock is reconstructed at it's position in the planes.
+     * 
+     * Intra prediction takes the neighbouring samples from the output picture
+     * as well, the returned macroblocks only carry what's needed by the
+     * deblocking filter and motion vector prediction
+     * 
+     * @param out
+     *            Picture of the size of the whole frame, macroblock aligned
+     */
+    public DecodedSlice decodeSlice(CodedSlice slice, Picture[] reference, MBlockMapper mBlockMap, Picture out) {
+        return decodeSlice(slice, reference, mBlockMap, out, null);
+    }
+
+    /**
+     * Same as above, every macroblock goes to the sink right after it's
+     * reconstructed
+     */
+    public DecodedSlice decodeSlice(CodedSlice slice, Picture[] reference, MBlockMapper mBlockMap, Picture out,
+            MBlockSink sink) {
 
         int qp = initialQp + slice.getHeader().slice_qp_delta;
 
@@ -80,20 +111,21 @@ public class SliceDecoder {
             }
 
             int mbAddr = addresses[i];
-            Point origin = new Point((mbAddr % picWidthInMbs) << 4, (mbAddr / picWidthInMbs) << 4);
+            int mbX = mbAddr % picWidthInMbs, mbY = mbAddr / picWidthInMbs;
+            Point origin = new Point(mbX << 4, mbY << 4);
             DecodedMBlock decodedMblock;
             if (mblock instanceof MBlockIntraNxN) {
-                NearbyPixels np = getNearbyPixels(i, decoded, mBlockMap, mblocks);
-                decodedMblock = decoderI4x4.decodeINxN((MBlockIntraNxN) mblock, qp, np);
+                decodedMblock = decoderI4x4.decodeINxN((MBlockIntraNxN) mblock, qp,
+                        getNearbyPixels(i, addresses, mBlockMap, mblocks, out), out, mbX, mbY);
             } else if (mblock instanceof MBlockIntra16x16) {
-                NearbyPixels np = getNearbyPixels(i, decoded, mBlockMap, mblocks);
-                decodedMblock = decoderI16x16.decodeI16x16((MBlockIntra16x16) mblock, qp, np);
+                decodedMblock = decoderI16x16.decodeI16x16((MBlockIntra16x16) mblock, qp,
+                        getNearbyPixels(i, addresses, mBlockMap, mblocks, out), out, mbX, mbY);
             } else if (mblock instanceof MBlockInter) {
                 if (reference == null)
                     throw new RuntimeException("Not allowed P frame before I frame");
                 NearbyMotionVectors nearMV = getNearbyMotionVectors(i, decoded, mBlockMap);
                 MBlockInter mb = (MBlockInter) mblock;
-                decodedMblock = decoderInter.decodeP(reference, mb, nearMV, origin, qp);
+                decodedMblock = decoderInter.decodeP(reference, mb, nearMV, origin, qp, out, mbX, mbY);
 
             } else if (mblock instanceof MBlockInter8x8) {
                 if (reference == null)
@@ -102,18 +134,20 @@ public class SliceDecoder {
 
                 NearbyMotionVectors nearMV = getNearbyMotionVectors(i, decoded, mBlockMap);
 
-                decodedMblock = decoderInter.decodeP8x8(reference, mb, nearMV, origin, qp);
+                decodedMblock = decoderInter.decodeP8x8(reference, mb, nearMV, origin, qp, out, mbX, mbY);
 
             } else {
                 if (mblock != null)
                     throw new RuntimeException();
                 else {
                     NearbyMotionVectors nearMV = getNearbyMotionVectors(i, decoded, mBlockMap);
-                    decodedMblock = decoderInter.decodePSkip(reference, nearMV, origin, qp);
+                    decodedMblock = decoderInter.decodePSkip(reference, nearMV, origin, qp, out, mbX, mbY);
                 }
             }
 
             decoded[i] = decodedMblock;
+            if (sink != null)
+                sink.put(mbAddr, decodedMblock);
         }
 
         return new DecodedSlice(decoded);
@@ -199,65 +233,81 @@ public class SliceDecoder {
         return null;
     }
 
-    private NearbyPixels getNearbyPixels(int mbAddr, DecodedMBlock[] decoded, MBlockMapper mBlockMap, Macroblock[] coded) {
-        int[] lumaLeft = null;
-        int[] cbLeft = null;
-        int[] crLeft = null;
-        int leftAddr = mBlockMap.getLeftMBIdx(mbAddr);
-        if (leftAddr != -1) {
-            boolean leftIntra = (coded[leftAddr] instanceof MBlockIntra16x16)
-                    || (coded[leftAddr] instanceof MBlockIntraNxN);
-            if (!constrainedIntraPred || leftIntra) {
-                lumaLeft = decoded[leftAddr].getLuma();
-                cbLeft = decoded[leftAddr].getChroma().getCb();
-                crLeft = decoded[leftAddr].getChroma().getCr();
-            }
+    private NearbyPixels getNearbyPixels(int mbIdx, int[] addresses, MBlockMapper mBlockMap, Macroblock[] coded,
+            Picture out) {
+        int stride = out.getWidth();
+        int strideChroma = stride >> 1;
+        int[] luma = out.getPlaneData(0);
+        int[] cb = out.getPlaneData(1);
+        int[] cr = out.getPlaneData(2);
+
+        int[] lumaLeft = null, cbLeft = null, crLeft = null;
+        int leftIdx = mBlockMap.getLeftMBIdx(mbIdx);
+        if (available(leftIdx, coded)) {
+            lumaLeft = lumaBorder[0];
+            cbLeft = cbBorder[0];
+            crLeft = crBorder[0];
+            int mbAddr = addresses[leftIdx], mbX = mbAddr % picWidthInMbs, mbY = mbAddr / picWidthInMbs;
+            copyColumn(luma, ((mbY << 4) * stride) + (mbX << 4) + 15, stride, lumaLeft, 15, 16);
+            copyColumn(cb, ((mbY << 3) * strideChroma) + (mbX << 3) + 7, strideChroma, cbLeft, 7, 8);
+            copyColumn(cr, ((mbY << 3) * strideChroma) + (mbX << 3) + 7, strideChroma, crLeft, 7, 8);
         }
 
-        int[] lumaTop = null;
-        int[] cbTop = null;
-        int[] crTop = null;
-        int topAddr = mBlockMap.getTopMBIdx(mbAddr);
-        if (topAddr != -1) {
-            boolean topIntra = (coded[topAddr] instanceof MBlockIntra16x16)
-                    || (coded[topAddr] instanceof MBlockIntraNxN);
-            if (!constrainedIntraPred || topIntra) {
-                lumaTop = decoded[topAddr].getLuma();
-                cbTop = decoded[topAddr].getChroma().getCb();
-                crTop = decoded[topAddr].getChroma().getCr();
-            }
+        int[] lumaTop = null, cbTop = null, crTop = null;
+        int topIdx = mBlockMap.getTopMBIdx(mbIdx);
+        if (available(topIdx, coded)) {
+            lumaTop = lumaBorder[1];
+            cbTop = cbBorder[1];
+            crTop = crBorder[1];
+            copyBottomRow(addresses[topIdx], luma, cb, cr, stride, lumaTop, cbTop, crTop);
+
+            // 4x4 chroma prediction picks it's top left sample from the first
+            // row of the top macroblock
+            int mbAddr = addresses[topIdx], mbX = mbAddr % picWidthInMbs, mbY = mbAddr / picWidthInMbs;
+            cbTop[3] = cb[((mbY << 3) * strideChroma) + (mbX << 3) + 3];
+            crTop[3] = cr[((mbY << 3) * strideChroma) + (mbX << 3) + 3];
         }
 
-        int[] lumaTopLeft = null;
-        int[] cbTopLeft = null;
-        int[] crTopLeft = null;
-        int topLeftAddr = mBlockMap.getTopLeftMBIndex(mbAddr);
-        if (topLeftAddr != -1) {
-            boolean topLeftIntra = (coded[topLeftAddr] instanceof MBlockIntra16x16)
-                    || (coded[topLeftAddr] instanceof MBlockIntraNxN);
-            if (!constrainedIntraPred || topLeftIntra) {
-                lumaTopLeft = decoded[topLeftAddr].getLuma();
-                cbTopLeft = decoded[topLeftAddr].getChroma().getCb();
-                crTopLeft = decoded[topLeftAddr].getChroma().getCr();
-            }
+        int[] lumaTopLeft = null, cbTopLeft = null, crTopLeft = null;
+        int topLeftIdx = mBlockMap.getTopLeftMBIndex(mbIdx);
+        if (available(topLeftIdx, coded)) {
+            lumaTopLeft = lumaBorder[2];
+            cbTopLeft = cbBorder[2];
+            crTopLeft = crBorder[2];
+            copyBottomRow(addresses[topLeftIdx], luma, cb, cr, stride, lumaTopLeft, cbTopLeft, crTopLeft);
         }
 
-        int[] lumaTopRight = null;
-        int[] cbTopRight = null;
-        int[] crTopRight = null;
-        int topRightAddr = mBlockMap.getTopRightMBIndex(mbAddr);
-        if (topRightAddr != -1) {
-            boolean topRightIntra = (coded[topRightAddr] instanceof MBlockIntra16x16)
-                    || (coded[topRightAddr] instanceof MBlockIntraNxN);
-            if (!constrainedIntraPred || topRightIntra) {
-                lumaTopRight = decoded[topRightAddr].getLuma();
-                cbTopRight = decoded[topRightAddr].getChroma().getCb();
-                crTopRight = decoded[topRightAddr].getChroma().getCr();
-            }
+        int[] lumaTopRight = null, cbTopRight = null, crTopRight = null;
+        int topRightIdx = mBlockMap.getTopRightMBIndex(mbIdx);
+        if (available(topRightIdx, coded)) {
+            lumaTopRight = lumaBorder[3];
+            cbTopRight = cbBorder[3];
+            crTopRight = crBorder[3];
+            copyBottomRow(addresses[topRightIdx], luma, cb, cr, stride, lumaTopRight, cbTopRight, crTopRight);
         }
 
         return new NearbyPixels(new Plane(lumaLeft, lumaTop, lumaTopLeft, lumaTopRight), new Plane(cbLeft, cbTop,
                 cbTopLeft, cbTopRight), new Plane(crLeft, crTop, crTopLeft, crTopRight));
     }
 
+    private boolean available(int idx, Macroblock[] coded) {
+        if (idx == -1)
+            return false;
+        return !constrainedIntraPred || (coded[idx] instanceof MBlockIntra16x16)
+                || (coded[idx] instanceof MBlockIntraNxN);
+    }
+
+    private void copyBottomRow(int mbAddr, int[] luma, int[] cb, int[] cr, int stride, int[] lumaDst, int[] cbDst,
+            int[] crDst) {
+        int mbX = mbAddr % picWidthInMbs, mbY = mbAddr / picWidthInMbs;
+        int strideChroma = stride >> 1;
+        System.arraycopy(luma, (((mbY << 4) + 15) * stride) + (mbX << 4), lumaDst, 240, 16);
+        System.arraycopy(cb, (((mbY << 3) + 7) * strideChroma) + (mbX << 3), cbDst, 56, 8);
+        System.arraycopy(cr, (((mbY << 3) + 7) * strideChroma) + (mbX << 3), crDst, 56, 8);
+    }
+
+    private static void copyColumn(int[] src, int srcOff, int stride, int[] dst, int dstOff, int size) {
+        for (int i = 0; i < size; i++, srcOff += stride, dstOff += size)
+            dst[dstOff] = src[srcOff];
+    }
 }
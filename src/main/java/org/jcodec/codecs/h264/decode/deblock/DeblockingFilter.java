@@ -1,7 +1,9 @@
 package org.jcodec.codecs.h264.decode.deblock;
 
+import java.util.concurrent.ExecutorService;
+
 import org.jcodec.codecs.h264.decode.deblock.FilterParameter.Threshold;
-import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
+import org.jcodec.common.model.Picture;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
@@ -13,6 +15,10 @@ import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
  * adjusted to the likelyhood of appearence of blocking artifacts on the
  * specific edges.
  * 
+ * When created with an executor filters macroblock rows in parallel as a
+ * wavefront. Filtering a macroblock modifies the samples of it's left and top
+ * neighbours, so a row may only filter macroblock X after the row above has
+ * finished macroblock X + 1, that's a two macroblock lag between the rows.
  * 
  * @author Jay Codec
  * 
@@ -39,6 +45,7 @@ public class DeblockingFilter {
     private int maxChroma;
     private int picWidthInMbs;
     private int picHeightInMbs;
+    private ExecutorService executor;
 
     public DeblockingFilter(int picWidthInMbs, int picHeightInMbs, int bitDepthLuma, int bitDepthChroma) {
         this.maxLuma = (1 << bitDepthLuma) - 1;
@@ -48,167 +55,271 @@ public class DeblockingFilter {
         this.picHeightInMbs = picHeightInMbs;
     }
 
-    public void applyDeblocking(DecodedMBlock[] decoded, FilterParameter[] FilterParameters) {
+    /**
+     * Creates a filter that processes macroblock rows in parallel on the
+     * executor threads. The calling thread takes part in filtering, so any
+     * executor will do, including the one that runs the caller.
+     */
+    public DeblockingFilter(int picWidthInMbs, int picHeightInMbs, int bitDepthLuma, int bitDepthChroma,
+            ExecutorService executor) {
+        this(picWidthInMbs, picHeightInMbs, bitDepthLuma, bitDepthChroma);
+        this.executor = executor;
+    }
+
+    /**
+     * Filters the planes of a decoded picture in place
+     */
+    public void applyDeblocking(Picture pic, FilterParameter[] FilterParameters) {
+        if (executor != null && picHeightInMbs > 1) {
+            applyDeblockingWavefront(pic, FilterParameters);
+            return;
+        }
 
         for (int mbY = 0; mbY < picHeightInMbs; mbY++) {
             for (int mbX = 0; mbX < picWidthInMbs; mbX++) {
+                filterMBlock(pic, FilterParameters, mbX, mbY);
+            }
+        }
+    }
+
+    /**
+     * Filters the macroblock rows [fromRow, toRow) on the calling thread. The
+     * rows above fromRow must be filtered already, filtering a row modifies
+     * the bottom samples of the row above it.
+     */
+    public void applyDeblocking(Picture pic, FilterParameter[] FilterParameters, int fromRow, int toRow) {
+        for (int mbY = fromRow; mbY < toRow; mbY++) {
+            for (int mbX = 0; mbX < picWidthInMbs; mbX++) {
+                filterMBlock(pic, FilterParameters, mbX, mbY);
+            }
+        }
+    }
+
+    private void applyDeblockingWavefront(Picture pic, FilterParameter[] FilterParameters) {
+        Wavefront wavefront = new Wavefront(pic, FilterParameters);
+
+        for (int i = 1; i < picHeightInMbs; i++)
+            executor.submit(new RowWorker(wavefront));
+
+        // the calling thread takes rows as well so the picture gets filtered
+        // even when none of the helpers is started
+        try {
+            wavefront.filterRows();
+        } catch (RuntimeException e) {
+            wavefront.fail(e);
+            throw e;
+        }
+        wavefront.waitDone();
+    }
+
+    private void filterMBlock(Picture pic, FilterParameter[] FilterParameters, int mbX, int mbY) {
+        FilterParameter param = FilterParameters[mbY * picWidthInMbs + mbX];
+
+        fillVerticalEdge(pic, param, mbY, mbX);
+        fillHorizontalEdge(pic, param, mbY, mbX);
+    }
+
+    /**
+     * Rows of the picture being filtered. Threads claim the rows in order and
+     * filter a row till the end, the row above is always claimed by a thread
+     * that is running, so the waits for it's progress never deadlock.
+     */
+    private class Wavefront {
+        private Picture pic;
+        private FilterParameter[] params;
+        private int nextRow;
+        private int[] done;
+        private Throwable error;
+
+        public Wavefront(Picture pic, FilterParameter[] params) {
+            this.pic = pic;
+            this.params = params;
+            this.done = new int[picHeightInMbs];
+        }
+
+        public void filterRows() {
+            int mbY;
+            while ((mbY = claimRow()) != -1) {
+                for (int mbX = 0; mbX < picWidthInMbs; mbX++) {
+                    if (mbY > 0)
+                        waitFor(mbY - 1, Math.min(mbX + 2, picWidthInMbs));
 
-                int mbAddr = mbY * picWidthInMbs + mbX;
+                    filterMBlock(pic, params, mbX, mbY);
 
-                DecodedMBlock leftMb = null;
-                if (mbX > 0) {
-                    leftMb = decoded[mbAddr - 1];
+                    advance(mbY);
                 }
+            }
+        }
+
+        private synchronized int claimRow() {
+            return error == null && nextRow < picHeightInMbs ? nextRow++ : -1;
+        }
+
+        private synchronized void advance(int mbY) {
+            done[mbY]++;
+            notifyAll();
+        }
 
-                DecodedMBlock topMb = null;
-                if (mbY > 0) {
-                    topMb = decoded[mbAddr - picWidthInMbs];
+        private synchronized void waitFor(int mbY, int count) {
+            while (done[mbY] < count) {
+                if (error != null)
+                    throw new RuntimeException(error);
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
                 }
+            }
+        }
+
+        public synchronized void fail(Throwable t) {
+            error = t;
+            notifyAll();
+        }
+
+        public void waitDone() {
+            for (int mbY = 0; mbY < picHeightInMbs; mbY++)
+                waitFor(mbY, picWidthInMbs);
+        }
+    }
+
+    private class RowWorker implements Runnable {
+        private Wavefront wavefront;
 
-                DecodedMBlock curMb = decoded[mbAddr];
+        public RowWorker(Wavefront wavefront) {
+            this.wavefront = wavefront;
+        }
 
-                fillVerticalEdge(leftMb, curMb, FilterParameters[mbAddr], mbY, mbX);
-                fillHorizontalEdge(topMb, curMb, FilterParameters[mbAddr], mbY, mbX);
+        public void run() {
+            try {
+                wavefront.filterRows();
+            } catch (Throwable t) {
+                wavefront.fail(t);
             }
         }
     }
 
-    private void fillHorizontalEdge(DecodedMBlock topMb, DecodedMBlock curMb, FilterParameter param, int mbY, int mbX) {
+    private void fillHorizontalEdge(Picture pic, FilterParameter param, int mbY, int mbX) {
 
         if (!param.isEnabled())
             return;
 
-        DecodedMBlock mbP, mbQ = curMb;
-        int blkY;
-        if (param.isFilterTop()) {
-            blkY = 0;
-            mbP = topMb;
-        } else {
-            blkY = 1;
-            mbP = curMb;
-        }
+        int stride = pic.getWidth();
+        int strideChroma = stride >> 1;
 
-        for (; blkY < 4; blkY++) {
+        for (int blkY = param.isFilterTop() ? 0 : 1; blkY < 4; blkY++) {
 
             for (int blkX = 0; blkX < 4; blkX++) {
 
                 int bs = param.getBsH()[(blkY << 2) + blkX];
 
                 Threshold lumaThresh = param.getLumaThresh();
-                filterBlockEdgeHoris(mbP.getLuma(), mbQ.getLuma(), blkX, blkY, lumaThresh.getAlphaH()[blkY],
+                int offLuma = ((mbY << 4) + (blkY << 2)) * stride + (mbX << 4) + (blkX << 2);
+                filterBlockEdgeHoris(pic.getPlaneData(0), offLuma, stride, lumaThresh.getAlphaH()[blkY],
                         lumaThresh.getBetaH()[blkY], bs, false);
 
                 // Chroma
                 if ((blkY % 2) == 0) {
+                    int offChroma = ((mbY << 3) + (blkY << 1)) * strideChroma + (mbX << 3) + (blkX << 1);
 
                     Threshold cbThresh = param.getCbThresh();
-                    filterBlockEdgeHoris(mbP.getChroma().getCb(), mbQ.getChroma().getCb(), blkX, blkY,
-                            cbThresh.getAlphaH()[blkY], param.getCbThresh().getBetaH()[blkY], bs, true);
+                    filterBlockEdgeHoris(pic.getPlaneData(1), offChroma, strideChroma, cbThresh.getAlphaH()[blkY],
+                            cbThresh.getBetaH()[blkY], bs, true);
 
                     Threshold crThresh = param.getCrThresh();
-                    filterBlockEdgeHoris(mbP.getChroma().getCr(), mbQ.getChroma().getCr(), blkX, blkY,
-                            crThresh.getAlphaH()[blkY], crThresh.getBetaH()[blkY], bs, true);
+                    filterBlockEdgeHoris(pic.getPlaneData(2), offChroma, strideChroma, crThresh.getAlphaH()[blkY],
+                            crThresh.getBetaH()[blkY], bs, true);
                 }
             }
-
-            mbP = curMb;
         }
     }
 
-    private void fillVerticalEdge(DecodedMBlock leftMb, DecodedMBlock curMb, FilterParameter param, int mbY, int mbX) {
+    private void fillVerticalEdge(Picture pic, FilterParameter param, int mbY, int mbX) {
 
         if (!param.isEnabled())
             return;
 
-        DecodedMBlock mbP, mbQ = curMb;
-        int blkX;
-        if (param.isFilterLeft()) {
-            blkX = 0;
-            mbP = leftMb;
-        } else {
-            blkX = 1;
-            mbP = curMb;
-        }
+        int stride = pic.getWidth();
+        int strideChroma = stride >> 1;
 
-        for (; blkX < 4; blkX++) {
+        for (int blkX = param.isFilterLeft() ? 0 : 1; blkX < 4; blkX++) {
 
             for (int blkY = 0; blkY < 4; blkY++) {
 
                 int bs = param.getBsV()[(blkY << 2) + blkX];
 
                 Threshold lumaThresh = param.getLumaThresh();
-                filterBlockEdgeVert(mbP.getLuma(), mbQ.getLuma(), blkX, blkY, lumaThresh.getAlphaV()[blkX],
+                int offLuma = ((mbY << 4) + (blkY << 2)) * stride + (mbX << 4) + (blkX << 2);
+                filterBlockEdgeVert(pic.getPlaneData(0), offLuma, stride, lumaThresh.getAlphaV()[blkX],
                         lumaThresh.getBetaV()[blkX], bs, false);
 
                 // Chroma
                 if ((blkX % 2) == 0) {
+                    int offChroma = ((mbY << 3) + (blkY << 1)) * strideChroma + (mbX << 3) + (blkX << 1);
 
                     Threshold cbThresh = param.getCbThresh();
-                    filterBlockEdgeVert(mbP.getChroma().getCb(), mbQ.getChroma().getCb(), blkX, blkY,
-                            cbThresh.getAlphaV()[blkX], cbThresh.getBetaV()[blkX], bs, true);
+                    filterBlockEdgeVert(pic.getPlaneData(1), offChroma, strideChroma, cbThresh.getAlphaV()[blkX],
+                            cbThresh.getBetaV()[blkX], bs, true);
 
                     Threshold crThresh = param.getCrThresh();
-                    filterBlockEdgeVert(mbP.getChroma().getCr(), mbQ.getChroma().getCr(), blkX, blkY,
-                            crThresh.getAlphaV()[blkX], crThresh.getBetaV()[blkX], bs, true);
+                    filterBlockEdgeVert(pic.getPlaneData(2), offChroma, strideChroma, crThresh.getAlphaV()[blkX],
+                            crThresh.getBetaV()[blkX], bs, true);
                 }
             }
-
-            mbP = curMb;
         }
     }
 
-    private void filterBlockEdgeHoris(int[] pelsP, int[] pelsQ, int blkX, int blkY, int indexAlpha, int indexBeta,
-            int bs, boolean isChroma) {
+    /**
+     * Filters a horizontal edge of a block, offset points at the first sample
+     * below the edge
+     */
+    private void filterBlockEdgeHoris(int[] pels, int offset, int stride, int indexAlpha, int indexBeta, int bs,
+            boolean isChroma) {
         int pelsInBlock = isChroma ? 2 : 4;
-        int stride = isChroma ? 8 : 16;
-
-        int pBlkY = ((blkY + 3) % 4) + 1;
-        int offsetQ = (blkY * pelsInBlock) * stride + blkX * pelsInBlock;
-        int offsetP = (pBlkY * pelsInBlock) * stride + blkX * pelsInBlock;
 
         for (int pixOff = 0; pixOff < pelsInBlock; pixOff++) {
-            int p2Idx = offsetP - 3 * stride + pixOff;
-            int p1Idx = offsetP - 2 * stride + pixOff;
-            int p0Idx = offsetP - stride + pixOff;
-            int q0Idx = offsetQ + pixOff;
-            int q1Idx = offsetQ + stride + pixOff;
-            int q2Idx = offsetQ + 2 * stride + pixOff;
+            int q0Idx = offset + pixOff;
+            int p2Idx = q0Idx - 3 * stride;
+            int p1Idx = q0Idx - 2 * stride;
+            int p0Idx = q0Idx - stride;
+            int q1Idx = q0Idx + stride;
+            int q2Idx = q0Idx + 2 * stride;
 
             if (bs == 4) {
-                int p3Idx = offsetP - 4 * stride + pixOff;
-                int q3Idx = offsetQ + 3 * stride + pixOff;
+                int p3Idx = q0Idx - 4 * stride;
+                int q3Idx = q0Idx + 3 * stride;
 
-                filterBs4(indexAlpha, indexBeta, pelsP, pelsQ, p3Idx, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, q3Idx,
+                filterBs4(indexAlpha, indexBeta, pels, pels, p3Idx, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, q3Idx,
                         isChroma);
             } else if (bs > 0) {
 
-                filterBs(bs, indexAlpha, indexBeta, pelsP, pelsQ, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, isChroma);
+                filterBs(bs, indexAlpha, indexBeta, pels, pels, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, isChroma);
             }
         }
     }
 
-    private void filterBlockEdgeVert(int[] pelsP, int[] pelsQ, int blkX, int blkY, int indexAlpha, int indexBeta,
-            int bs, boolean isChroma) {
-        int pBlkX = ((blkX + 3) % 4) + 1;
-
+    /**
+     * Filters a vertical edge of a block, offset points at the first sample to
+     * the right of the edge
+     */
+    private void filterBlockEdgeVert(int[] pels, int offset, int stride, int indexAlpha, int indexBeta, int bs,
+            boolean isChroma) {
         int pelsInBlock = isChroma ? 2 : 4;
-        int stride = isChroma ? 8 : 16;
+
         for (int i = 0; i < pelsInBlock; i++) {
-            int offsetQ = (blkY * pelsInBlock + i) * stride + blkX * pelsInBlock;
-            int offsetP = (blkY * pelsInBlock + i) * stride + pBlkX * pelsInBlock;
-            int p2Idx = offsetP - 3;
-            int p1Idx = offsetP - 2;
-            int p0Idx = offsetP - 1;
-            int q0Idx = offsetQ;
-            int q1Idx = offsetQ + 1;
-            int q2Idx = offsetQ + 2;
+            int q0Idx = offset + i * stride;
+            int p2Idx = q0Idx - 3;
+            int p1Idx = q0Idx - 2;
+            int p0Idx = q0Idx - 1;
+            int q1Idx = q0Idx + 1;
+            int q2Idx = q0Idx + 2;
             if (bs == 4) {
-                int p3Idx = offsetP - 4;
-                int q3Idx = offsetQ + 3;
-                filterBs4(indexAlpha, indexBeta, pelsP, pelsQ, p3Idx, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, q3Idx,
+                int p3Idx = q0Idx - 4;
+                int q3Idx = q0Idx + 3;
+                filterBs4(indexAlpha, indexBeta, pels, pels, p3Idx, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, q3Idx,
                         isChroma);
             } else if (bs > 0) {
-                filterBs(bs, indexAlpha, indexBeta, pelsP, pelsQ, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, isChroma);
+                filterBs(bs, indexAlpha, indexBeta, pels, pels, p2Idx, p1Idx, p0Idx, q0Idx, q1Idx, q2Idx, isChroma);
             }
         }
     }
@@ -1,5 +1,6 @@
 package org.jcodec.codecs.h264.decode.dpb;
 
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 
 /**
@@ -13,6 +14,7 @@ import org.jcodec.common.model.Picture;
  */
 public class DecodedPicture {
     private Picture picture;
+    private PaddedPicture padded;
     private int poc;
     private boolean display;
     private boolean ref;
@@ -32,10 +34,44 @@ public class DecodedPicture {
         this.mmco5 = mmco5;
     }
 
+    /**
+     * Creates a detached copy of the reference marking state of other picture,
+     * the pixels are shared
+     */
+    public DecodedPicture(DecodedPicture other) {
+        this(other.picture, other.poc, other.display, other.ref, other.frameNum, other.longTerm, other.mmco5);
+        this.ltPicId = other.ltPicId;
+        this.padded = other.padded;
+    }
+
     public Picture getPicture() {
         return picture;
     }
 
+    /**
+     * @return The picture without waiting for it's pixels, to tell the
+     *         pictures apart
+     */
+    public Picture peekPicture() {
+        return picture;
+    }
+
+    /**
+     * @return Picture to predict from, the edge extended copy of the pixels
+     *         when there's one
+     */
+    public Picture getRefPicture() {
+        return padded != null ? padded : getPicture();
+    }
+
+    public PaddedPicture getPadded() {
+        return padded;
+    }
+
+    public void setPadded(PaddedPicture padded) {
+        this.padded = padded;
+    }
+
     public int getPoc() {
         return poc;
     }
@@ -1,7 +1,9 @@
 package org.jcodec.codecs.h264.decode.dpb;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +16,7 @@ import java.util.Map;
 public class DecodedPictureBuffer implements Iterable<DecodedPicture> {
     private DecodedPicture[] buf;
     private int size;
+    private List<DecodedPicture> removed;
 
     private static Map<Integer, Integer> bufferSize;
     static {
@@ -46,6 +49,7 @@ public class DecodedPictureBuffer implements Iterable<DecodedPicture> {
     public DecodedPictureBuffer(int refListSize) {
         this.size = 0;
         this.buf = new DecodedPicture[refListSize];
+        this.removed = new ArrayList<DecodedPicture>();
     }
 
     public void bumpPictures() {
@@ -55,6 +59,8 @@ public class DecodedPictureBuffer implements Iterable<DecodedPicture> {
             boolean leave = (buf[iR] != null) && (buf[iR].isDisplay() || buf[iR].isRef());
             if (leave) {
                 buf[iW++] = buf[iR];
+            } else if (buf[iR] != null) {
+                removed.add(buf[iR]);
             }
         }
         size = iW;
@@ -101,4 +107,18 @@ public class DecodedPictureBuffer implements Iterable<DecodedPicture> {
     public boolean isFull() {
         return size >= buf.length;
     }
+
+    public int getCapacity() {
+        return buf.length;
+    }
+
+    /**
+     * Returns the pictures bumped out of the buffer since the last call, their
+     * buffers may be reused once nobody else holds them
+     */
+    public List<DecodedPicture> takeRemoved() {
+        List<DecodedPicture> result = removed;
+        removed = new ArrayList<DecodedPicture>();
+        return result;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package org.jcodec.codecs.h264.decode.dpb;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.jcodec.common.model.Picture;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ * 
+ * A picture from a decoded picture buffer that is still being reconstructed on
+ * a worker thread. The pixels are waited for when the picture is output, the
+ * pictures predicting from a reference picture wait for the rows they need
+ * in it's padded planes.
+ * 
+ * @author Jay Codec
+ * 
+ */
+public class PendingPicture extends DecodedPicture {
+    private Future<Picture> job;
+
+    /**
+     * @param out
+     *            Picture the job decodes into
+     */
+    public PendingPicture(Future<Picture> job, Picture out, int poc, boolean ref, int frameNum, boolean mmco5) {
+        super(out, poc, true, ref, frameNum, false, mmco5);
+        this.job = job;
+    }
+
+    @Override
+    public Picture getPicture() {
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
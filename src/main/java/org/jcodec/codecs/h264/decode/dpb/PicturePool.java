@@ -0,0 +1,65 @@
+package org.jcodec.codecs.h264.decode.dpb;
+
+import static org.jcodec.common.model.ColorSpace.YUV420;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.jcodec.common.model.Picture;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * A bounded pool of picture buffers.
+ *
+ * Keeps at most 'capacity' free pictures, when full the oldest one is dropped
+ * to the garbage collector. Pictures of different dimensions can live in the
+ * pool side by side, i.e. decoded and cropped frames.
+ *
+ * @author Jay Codec
+ *
+ */
+public class PicturePool {
+    private LinkedList<Picture> free;
+    private int capacity;
+
+    public PicturePool(int capacity) {
+        this.capacity = capacity;
+        this.free = new LinkedList<Picture>();
+    }
+
+    /**
+     * Takes a free 4:2:0 picture of the given dimensions from the pool or
+     * creates a new one. The content of the returned picture is undefined.
+     */
+    public synchronized Picture get(int width, int height) {
+        for (Iterator<Picture> it = free.iterator(); it.hasNext();) {
+            Picture pic = it.next();
+            if (pic.getWidth() == width && pic.getHeight() == height) {
+                it.remove();
+                return pic;
+            }
+        }
+        return Picture.create(width, height, YUV420);
+    }
+
+    /**
+     * Gives a picture back to the pool, the picture must not be used by the
+     * caller after this point
+     */
+    public synchronized void put(Picture pic) {
+        if (pic == null || capacity == 0)
+            return;
+
+        if (free.size() >= capacity)
+            free.removeFirst();
+        free.add(pic);
+    }
+
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        while (free.size() > capacity)
+            free.removeFirst();
+    }
+}
@@ -74,7 +74,7 @@ public class RefListBuilder {
         int len = orderRefList(copy, frameNo);
 
         for (int i = 0; refIdx < refList.length && i < len; refIdx++, i++) {
-            refList[refIdx] = copy[i].getPicture();
+            refList[refIdx] = copy[i].getRefPicture();
         }
 
         return refList;
@@ -83,7 +83,7 @@ public class RefListBuilder {
     private Picture withdrawLongTerm(DecodedPicture[] buf, int picNo) {
         for (int i = 0; i < buf.length; i++) {
             if (buf[i] != null && buf[i].isLongTerm() == true && buf[i].getLtPicId() == picNo) {
-                Picture picture = buf[i].getPicture();
+                Picture picture = buf[i].getRefPicture();
                 buf[i] = null;
                 return picture;
             }
@@ -94,7 +94,7 @@ public class RefListBuilder {
     private Picture withdrawShortTerm(DecodedPicture[] buf, int picNo, int curFrameNo) {
         for (int i = 0; i < buf.length; i++) {
             if (buf[i] != null && buf[i].isLongTerm() == false && getRefPicNum(buf[i], curFrameNo) == picNo) {
-                Picture picture = buf[i].getPicture();
+                Picture picture = buf[i].getRefPicture();
                 buf[i] = null;
                 return picture;
             }
@@ -119,7 +119,7 @@ public class RefListBuilder {
 
         Picture[] list = new Picture[buf.length];
         for (int i = 0; i < len; i++) {
-            list[i] = copy[i].getPicture();
+            list[i] = copy[i].getRefPicture();
         }
 
         return list;
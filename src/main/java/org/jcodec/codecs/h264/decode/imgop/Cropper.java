@@ -2,6 +2,7 @@ package org.jcodec.codecs.h264.decode.imgop;
 
 import static org.jcodec.common.model.ColorSpace.YUV420;
 
+import org.jcodec.codecs.h264.decode.dpb.PicturePool;
 import org.jcodec.codecs.h264.io.model.SeqParameterSet;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Rect;
@@ -42,20 +43,39 @@ public class Cropper {
     public Picture crop(Picture src) {
 
         if (lumaRect != null) {
-            int[] luma = new int[lumaRect.getWidth() * lumaRect.getHeight()];
-            int[] cb = new int[chromaRect.getWidth() * chromaRect.getHeight()];
-            int[] cr = new int[chromaRect.getWidth() * chromaRect.getHeight()];
+            return crop(src, Picture.create(lumaRect.getWidth(), lumaRect.getHeight(), YUV420));
+        }
 
-            copy(src.getData()[0], src.getWidth(), luma, lumaRect);
-            copy(src.getData()[1], src.getWidth() >> 1, cb, chromaRect);
-            copy(src.getData()[2], src.getWidth() >> 1, cr, chromaRect);
+        return src;
+    }
 
-            return new Picture(lumaRect.getWidth(), lumaRect.getHeight(), new int[][] { luma, cb, cr }, YUV420);
+    /**
+     * Same as crop but takes the cropped picture from the pool
+     */
+    public Picture crop(Picture src, PicturePool pool) {
+
+        if (lumaRect != null) {
+            return crop(src, pool.get(lumaRect.getWidth(), lumaRect.getHeight()));
         }
 
         return src;
     }
 
+    /**
+     * @return If crop returns a copy of the source picture
+     */
+    public boolean isCropping() {
+        return lumaRect != null;
+    }
+
+    private Picture crop(Picture src, Picture dst) {
+        copy(src.getData()[0], src.getWidth(), dst.getData()[0], lumaRect);
+        copy(src.getData()[1], src.getWidth() >> 1, dst.getData()[1], chromaRect);
+        copy(src.getData()[2], src.getWidth() >> 1, dst.getData()[2], chromaRect);
+
+        return dst;
+    }
+
     private void copy(int[] src, int srcStride, int[] dst, Rect dstRect) {
         int dstStride = dstRect.getWidth();
         int srcOff = dstRect.getX() + dstRect.getY() * srcStride;
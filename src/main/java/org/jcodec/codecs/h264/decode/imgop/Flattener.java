@@ -1,96 +1,85 @@
 package org.jcodec.codecs.h264.decode.imgop;
 
-import static org.jcodec.common.model.ColorSpace.YUV420;
-
+import org.jcodec.codecs.h264.decode.model.DecodedChroma;
 import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
-import org.jcodec.codecs.h264.io.model.SeqParameterSet;
 import org.jcodec.common.model.Picture;
-import org.jcodec.common.model.Rect;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
  * under FreeBSD License
  * 
- * Converts a collection of macroblocks into picture
+ * Moves the samples of the macroblocks in and out of the picture planes
  * 
  * @author Jay Codec
  * 
  */
 public class Flattener {
-    private Rect lumaRect;
-    private Rect chromaRect;
-    private int picWidthInMbs;
-    private int picHeightInMbs;
 
-    public Flattener(SeqParameterSet sps) {
-        calcCropRectangle(sps);
-        this.picWidthInMbs = sps.pic_width_in_mbs_minus1 + 1;
-        this.picHeightInMbs = sps.pic_height_in_map_units_minus1 + 1;
-    }
+    /**
+     * Copies the samples of a macroblock into the planes of a 4:2:0 picture
+     */
+    public static void putMBlock(Picture pic, int mbX, int mbY, DecodedMBlock mb) {
+        int stride = pic.getWidth();
+        int strideChroma = stride >> 1;
 
-    private void calcCropRectangle(SeqParameterSet sps) {
-        int picWidth = (sps.pic_width_in_mbs_minus1 + 1) << 4;
-        int picHeight = (sps.pic_height_in_map_units_minus1 + 1) << 4;
-        if (sps.frame_cropping_flag) {
-            int sX = sps.frame_crop_left_offset << 1;
-            int sY = sps.frame_crop_top_offset << 1;
-            int w = picWidth - (sps.frame_crop_right_offset << 1);
-            int h = picHeight - (sps.frame_crop_bottom_offset << 1);
-            lumaRect = new Rect(sX, sY, w, h);
-            chromaRect = new Rect(sX >> 1, sY >> 1, w >> 1, h >> 1);
-        } else {
-            lumaRect = new Rect(0, 0, picWidth, picHeight);
-            chromaRect = new Rect(0, 0, picWidth >> 1, picHeight >> 1);
+        int[] luma = pic.getPlaneData(0);
+        for (int i = 0, dOff = (mbY << 4) * stride + (mbX << 4); i < 16; i++, dOff += stride) {
+            System.arraycopy(mb.getLuma(), i << 4, luma, dOff, 16);
         }
-    }
 
-    public Picture flattern(DecodedMBlock[] decoded) {
+        int[] cb = pic.getPlaneData(1);
+        int[] cr = pic.getPlaneData(2);
+        for (int i = 0, dOff = (mbY << 3) * strideChroma + (mbX << 3); i < 8; i++, dOff += strideChroma) {
+            System.arraycopy(mb.getChroma().getCb(), i << 3, cb, dOff, 8);
+            System.arraycopy(mb.getChroma().getCr(), i << 3, cr, dOff, 8);
+        }
+    }
 
-        ClippingPlane luma = new ClippingPlane(lumaRect);
-        ClippingPlane cb = new ClippingPlane(chromaRect);
-        ClippingPlane cr = new ClippingPlane(chromaRect);
+    /**
+     * Copies the samples of a macroblock out of the planes of a 4:2:0 picture
+     */
+    public static void getMBlock(Picture pic, int mbX, int mbY, int[] luma, int[] cb, int[] cr) {
+        int stride = pic.getWidth();
+        int strideChroma = stride >> 1;
 
-        for (int mbY = 0; mbY < picHeightInMbs; mbY++) {
-            for (int mbX = 0; mbX < picWidthInMbs; mbX++) {
-                DecodedMBlock mb = decoded[mbY * picWidthInMbs + mbX];
-                luma.putBlock(mbX << 4, mbY << 4, mb.getLuma(), 16, 16);
-                cb.putBlock(mbX << 3, mbY << 3, mb.getChroma().getCb(), 8, 8);
-                cr.putBlock(mbX << 3, mbY << 3, mb.getChroma().getCr(), 8, 8);
-            }
+        int[] lumaPlane = pic.getPlaneData(0);
+        for (int i = 0, sOff = (mbY << 4) * stride + (mbX << 4); i < 16; i++, sOff += stride) {
+            System.arraycopy(lumaPlane, sOff, luma, i << 4, 16);
         }
 
-        return new Picture(lumaRect.getWidth(), lumaRect.getHeight(), new int[][] { luma.getBuf(), cb.getBuf(),
-                cr.getBuf() }, YUV420);
+        int[] cbPlane = pic.getPlaneData(1);
+        int[] crPlane = pic.getPlaneData(2);
+        for (int i = 0, sOff = (mbY << 3) * strideChroma + (mbX << 3); i < 8; i++, sOff += strideChroma) {
+            System.arraycopy(cbPlane, sOff, cb, i << 3, 8);
+            System.arraycopy(crPlane, sOff, cr, i << 3, 8);
+        }
     }
 
-    public static Picture flattern(DecodedMBlock[] decoded, int picWidthInMbs, int picHeightInMbs) {
-        int[] luma = new int[decoded.length << 8];
-        int stride = picWidthInMbs << 4;
-
-        int[] cb = new int[decoded.length << 6];
-        int[] cr = new int[decoded.length << 6];
-        int strideChroma = picWidthInMbs << 3;
+    /**
+     * Creates a macroblock with a copy of the samples of the picture at the
+     * given position. Used by the error concealment that works on the
+     * macroblock pixels.
+     */
+    public static DecodedMBlock getMBlock(Picture pic, int mbX, int mbY) {
+        int[] luma = new int[256], cb = new int[64], cr = new int[64];
+        getMBlock(pic, mbX, mbY, luma, cb, cr);
+        return new DecodedMBlock(luma, new DecodedChroma(cb, cr, 0, 0), 0, null, null, null);
+    }
 
-        for (int mbY = 0; mbY < picHeightInMbs; mbY++) {
-            for (int mbX = 0; mbX < picWidthInMbs; mbX++) {
-                int mbAddr = mbY * picWidthInMbs + mbX;
+    /**
+     * Copies the samples of a macroblock from one picture to the other, both
+     * pictures are the same size
+     */
+    public static void copyMBlock(Picture from, Picture to, int mbX, int mbY) {
+        int stride = from.getWidth();
+        int strideChroma = stride >> 1;
 
-                int dOff = 0;
-                for (int i = 0; i < 16; i++) {
-                    System.arraycopy(decoded[mbAddr].getLuma(), dOff, luma, (mbY * 16 + i) * stride + mbX * 16, 16);
-                    dOff += 16;
-                }
-                for (int i = 0; i < 8; i++) {
-                    System.arraycopy(decoded[mbAddr].getChroma().getCb(), i * 8, cb, (mbY * 8 + i) * strideChroma + mbX
-                            * 8, 8);
-                }
-                for (int i = 0; i < 8; i++) {
-                    System.arraycopy(decoded[mbAddr].getChroma().getCr(), i * 8, cr, (mbY * 8 + i) * strideChroma + mbX
-                            * 8, 8);
-                }
-            }
+        for (int i = 0, off = (mbY << 4) * stride + (mbX << 4); i < 16; i++, off += stride) {
+            System.arraycopy(from.getPlaneData(0), off, to.getPlaneData(0), off, 16);
+        }
+        for (int i = 0, off = (mbY << 3) * strideChroma + (mbX << 3); i < 8; i++, off += strideChroma) {
+            System.arraycopy(from.getPlaneData(1), off, to.getPlaneData(1), off, 8);
+            System.arraycopy(from.getPlaneData(2), off, to.getPlaneData(2), off, 8);
         }
-
-        return new Picture(picWidthInMbs * 16, picHeightInMbs * 16, new int[][] { luma, cb, cr }, YUV420);
     }
-}
\ No newline at end of file
+}
@@ -36,4 +36,9 @@ public class DecodedChroma {
     public int getQpCr() {
         return qpCr;
     }
+
+    public void releasePixels() {
+        cb = null;
+        cr = null;
+    }
 }
@@ -55,4 +55,15 @@ public class DecodedMBlock {
     public CodedMacroblock getCoded() {
         return coded;
     }
+
+    /**
+     * Drops the samples of this macroblock once they are in the picture
+     * planes, what's left is needed by the deblocking filter and motion vector
+     * prediction
+     */
+    public void releasePixels() {
+        luma = null;
+        if (chroma != null)
+            chroma.releasePixels();
+    }
 }
@@ -1,12 +1,20 @@
 package org.jcodec.codecs.h264.decode.resilence;
 
+import static org.jcodec.common.model.ColorSpace.YUV420;
+
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.jcodec.codecs.h264.decode.AccessUnitReader;
 import org.jcodec.codecs.h264.decode.ErrorResilence;
+import org.jcodec.codecs.h264.decode.ParallelSliceDecoder;
 import org.jcodec.codecs.h264.decode.PictureDecoder;
+import org.jcodec.codecs.h264.decode.RowProgress;
 import org.jcodec.codecs.h264.decode.SliceDecoder;
+import org.jcodec.codecs.h264.decode.SliceDecoder.MBlockSink;
 import org.jcodec.codecs.h264.decode.aso.MBlockMapper;
 import org.jcodec.codecs.h264.decode.aso.MapManager;
 import org.jcodec.codecs.h264.decode.deblock.DeblockingFilter;
@@ -20,6 +28,7 @@ import org.jcodec.codecs.h264.io.model.CodedSlice;
 import org.jcodec.codecs.h264.io.model.PictureParameterSet;
 import org.jcodec.codecs.h264.io.model.SeqParameterSet;
 import org.jcodec.codecs.h264.io.model.SliceHeader;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 
 /**
@@ -49,11 +58,30 @@ public class SimpleErrorResilence implements ErrorResilence {
     private DeblockingFilter filter;
     private Painter painter;
 
+    private ExecutorService executor;
+    private ParallelSliceDecoder parallelDecoder;
+    private Picture scratch;
+
     public SimpleErrorResilence() {
         painter = new Painter();
     }
 
-    public Picture decodeAccessUnit(AccessUnitReader accessUnit, DecodedPicture[] references) throws IOException {
+    /**
+     * @param executor
+     *            Executor used to reconstruct the slices of a picture
+     *            concurrently
+     */
+    public SimpleErrorResilence(ExecutorService executor) {
+        this();
+        this.executor = executor;
+    }
+
+    public ErrorResilence copy() {
+        return new SimpleErrorResilence();
+    }
+
+    public Picture decodeAccessUnit(AccessUnitReader accessUnit, DecodedPicture[] references, Picture decPic)
+            throws IOException {
 
         updateParameterSet(accessUnit);
 
@@ -64,15 +92,27 @@ public class SimpleErrorResilence implements ErrorResilence {
         DecodedMBlock[] decoded = new DecodedMBlock[picSizeInMBS];
         SliceHeader[] headers = new SliceHeader[picSizeInMBS];
 
-        assemblePicture(accessUnit, references, decoded, headers);
+        // the rows of a reference picture are filtered and handed to the
+        // pictures predicting from it as they're reconstructed
+        RowProgress progress = null;
+        if (parallelDecoder == null && decPic instanceof PaddedPicture)
+            progress = new RowProgress(picWidthInMbs, picHeightInMbs, decoded, headers, filter,
+                    (PaddedPicture) decPic);
 
-        FilterParameter[] dbfParams = PictureDecoder.buildDeblockerParams(picWidthInMbs, decoded, headers);
+        if (parallelDecoder != null)
+            assemblePictureParallel(accessUnit, references, decoded, headers, decPic);
+        else
+            assemblePicture(accessUnit, references, decoded, headers, decPic, progress);
 
-        suppressErrors(picWidthInMbs, picHeightInMbs, decoded, dbfParams);
+        FilterParameter[] dbfParams = progress != null ? progress.remainingParams() : PictureDecoder
+                .buildDeblockerParams(picWidthInMbs, decoded, headers);
 
-        filter.applyDeblocking(decoded, dbfParams);
+        suppressErrors(picWidthInMbs, picHeightInMbs, decoded, dbfParams, decPic);
 
-        Picture decPic = Flattener.flattern(decoded, picWidthInMbs, picHeightInMbs);
+        if (progress != null)
+            progress.finish(dbfParams);
+        else
+            filter.applyDeblocking(decPic, dbfParams);
 
         return decPic;
     }
@@ -97,53 +137,161 @@ public class SimpleErrorResilence implements ErrorResilence {
             refListBuilder = new RefListBuilder(1 << (curSPS.log2_max_frame_num_minus4 + 4));
             filter = new DeblockingFilter(curSPS.pic_width_in_mbs_minus1 + 1,
                     curSPS.pic_height_in_map_units_minus1 + 1, curSPS.bit_depth_luma_minus8 + 8,
-                    curSPS.bit_depth_chroma_minus8 + 8);
+                    curSPS.bit_depth_chroma_minus8 + 8, executor);
+
+            if (executor != null)
+                parallelDecoder = new ParallelSliceDecoder(curSPS, curPPS, executor);
         }
     }
 
     private void assemblePicture(AccessUnitReader accessUnit, DecodedPicture[] references, DecodedMBlock[] decoded,
-            SliceHeader[] headers) throws IOException {
+            SliceHeader[] headers, Picture decPic, RowProgress progress) throws IOException {
 
         MapManager map = accessUnit.getMap();
-        int totalMbs = 0;
+        Assembly assembly = new Assembly(decoded, headers, progress);
         Collection<CodedSlice> pic;
         while ((pic = accessUnit.readOnePicture()) != null) {
             for (CodedSlice codedSlice : pic) {
                 MBlockMapper mapper = map.getMapper(codedSlice.getHeader());
-                boolean keepSlice = false;
+                boolean keepSlice = false, overlaps = false;
                 int[] addresses = mapper.getAddresses(codedSlice.getMblocks().length);
                 for (int addr : addresses) {
-                    if (decoded[addr] == null) {
+                    if (decoded[addr] == null)
                         keepSlice = true;
-                        break;
-                    }
+                    else
+                        overlaps = true;
                 }
                 if (keepSlice) {
                     Picture[] refList = refListBuilder.buildRefList(references,
                             codedSlice.getHeader().refPicReorderingL0, codedSlice.getHeader().frame_num);
 
-                    DecodedSlice decodeSlice = sliceDecoder.decodeSlice(codedSlice, refList, mapper);
-
-                    DecodedMBlock[] dMbs = decodeSlice.getMblocks();
-                    for (int i = 0; i < dMbs.length; i++) {
-                        int addr = addresses[i];
-                        if (decoded[addr] == null) {
-                            decoded[addr] = dMbs[i];
-                            headers[addr] = codedSlice.getHeader();
-                            totalMbs++;
+                    assembly.header = codedSlice.getHeader();
+                    if (!overlaps) {
+                        sliceDecoder.decodeSlice(codedSlice, refList, mapper, decPic, assembly);
+                    } else {
+                        Picture out = getScratch(decPic);
+                        DecodedSlice decodeSlice = sliceDecoder.decodeSlice(codedSlice, refList, mapper, out);
+
+                        DecodedMBlock[] dMbs = decodeSlice.getMblocks();
+                        for (int i = 0; i < dMbs.length; i++) {
+                            int addr = addresses[i];
+                            if (decoded[addr] == null) {
+                                copyMBlock(out, decPic, addr);
+                                assembly.put(addr, dMbs[i]);
+                            }
                         }
                     }
                 }
-                if (totalMbs == decoded.length)
+                if (assembly.total == decoded.length)
                     break;
             }
+            if (assembly.total == decoded.length)
+                break;
+        }
+    }
+
+    /**
+     * Puts the kept macroblocks to the picture being assembled
+     */
+    private static class Assembly implements MBlockSink {
+        private DecodedMBlock[] decoded;
+        private SliceHeader[] headers;
+        private RowProgress progress;
+        private SliceHeader header;
+        private int total;
+
+        public Assembly(DecodedMBlock[] decoded, SliceHeader[] headers, RowProgress progress) {
+            this.decoded = decoded;
+            this.headers = headers;
+            this.progress = progress;
+        }
+
+        public void put(int mbAddr, DecodedMBlock mb) {
+            decoded[mbAddr] = mb;
+            headers[mbAddr] = header;
+            total++;
+            if (progress != null)
+                progress.put(mbAddr);
+        }
+    }
+
+    /**
+     * Same as assemblePicture but reconstructs the kept slices of each picture
+     * concurrently. Slices are selected against the macroblocks decoded from
+     * the previous pictures, slices of one picture never overlap.
+     */
+    private void assemblePictureParallel(AccessUnitReader accessUnit, DecodedPicture[] references,
+            DecodedMBlock[] decoded, SliceHeader[] headers, Picture decPic) throws IOException {
+
+        MapManager map = accessUnit.getMap();
+        int totalMbs = 0;
+        Collection<CodedSlice> pic;
+        while ((pic = accessUnit.readOnePicture()) != null) {
+            List<CodedSlice> slices = new ArrayList<CodedSlice>();
+            List<Picture[]> refLists = new ArrayList<Picture[]>();
+            List<MBlockMapper> mappers = new ArrayList<MBlockMapper>();
+            boolean overlaps = false;
+            for (CodedSlice codedSlice : pic) {
+                MBlockMapper mapper = map.getMapper(codedSlice.getHeader());
+                int[] addresses = mapper.getAddresses(codedSlice.getMblocks().length);
+                boolean keepSlice = false;
+                for (int addr : addresses) {
+                    if (decoded[addr] == null)
+                        keepSlice = true;
+                    else
+                        overlaps = true;
+                }
+                if (keepSlice) {
+                    slices.add(codedSlice);
+                    mappers.add(mapper);
+                    refLists.add(refListBuilder.buildRefList(references, codedSlice.getHeader().refPicReorderingL0,
+                            codedSlice.getHeader().frame_num));
+                }
+            }
+
+            Picture out = overlaps ? getScratch(decPic) : decPic;
+            DecodedSlice[] decodedSlices = parallelDecoder.decodeSlices(slices, refLists, mappers, out);
+
+            for (int s = 0; s < decodedSlices.length; s++) {
+                DecodedMBlock[] dMbs = decodedSlices[s].getMblocks();
+                int[] addresses = mappers.get(s).getAddresses(dMbs.length);
+                for (int i = 0; i < dMbs.length; i++) {
+                    int addr = addresses[i];
+                    if (decoded[addr] == null) {
+                        if (out != decPic)
+                            copyMBlock(out, decPic, addr);
+                        decoded[addr] = dMbs[i];
+                        headers[addr] = slices.get(s).getHeader();
+                        totalMbs++;
+                    }
+                }
+            }
             if (totalMbs == decoded.length)
                 break;
         }
     }
 
+    /**
+     * Redundant slices may cover the macroblocks that are already decoded, such
+     * slices are reconstructed into a scratch picture and only the missing
+     * macroblocks are copied. The scratch picture is allocated once and reused
+     * while the frame size stays the same, slices only read the macroblocks
+     * they've reconstructed themselves so it's previous content doesn't matter.
+     */
+    private Picture getScratch(Picture decPic) {
+        if (scratch == null || scratch.getWidth() != decPic.getWidth() || scratch.getHeight() != decPic.getHeight())
+            scratch = Picture.create(decPic.getWidth(), decPic.getHeight(), YUV420);
+        return scratch;
+    }
+
+    private void copyMBlock(Picture from, Picture to, int mbAddr) {
+        int picWidthInMbs = curSPS.pic_width_in_mbs_minus1 + 1;
+        int mbX = mbAddr % picWidthInMbs, mbY = mbAddr / picWidthInMbs;
+        Flattener.copyMBlock(from, to, mbX, mbY);
+    }
+
     private void suppressErrors(int picWidthInMbs, int picHeightInMbs, DecodedMBlock[] decoded,
-            FilterParameter[] dbfParams) {
+            FilterParameter[] dbfParams, Picture decPic) {
         int[] alphaBeta = new int[] { 51, 0, 0, 0 };
         int[] bs = new int[] { 4, 0, 0, 0, 4, 0, 0, 0, 4, 0, 0, 0, 4, 0, 0, 0 };
         FilterParameter.Threshold thresh = new FilterParameter.Threshold(alphaBeta, alphaBeta, alphaBeta, alphaBeta);
@@ -153,12 +301,12 @@ public class SimpleErrorResilence implements ErrorResilence {
 
         int painted;
         do {
-            painted = doOneIteration(picWidthInMbs, decoded, dbfParams, parameter, picSizeInMbs);
+            painted = doOneIteration(picWidthInMbs, decoded, dbfParams, parameter, picSizeInMbs, decPic);
         } while (painted > 0);
     }
 
     private int doOneIteration(int picWidthInMbs, DecodedMBlock[] decoded, FilterParameter[] dbfParams,
-            FilterParameter parameter, int picSizeInMbs) {
+            FilterParameter parameter, int picSizeInMbs, Picture decPic) {
         int painted = 0;
         for (int i = 0; i < decoded.length; i++) {
             if (decoded[i] == null) {
@@ -185,7 +333,13 @@ public class SimpleErrorResilence implements ErrorResilence {
                 if (top == null && left == null && right == null && bottom == null)
                     continue;
 
-                decoded[i] = painter.paintMBlock(left, top, right, bottom);
+                int mbX = i % picWidthInMbs, mbY = i / picWidthInMbs;
+                DecodedMBlock mb = painter.paintMBlock(samples(decPic, left, mbX - 1, mbY),
+                        samples(decPic, top, mbX, mbY - 1), samples(decPic, right, mbX + 1, mbY),
+                        samples(decPic, bottom, mbX, mbY + 1));
+                Flattener.putMBlock(decPic, mbX, mbY, mb);
+                mb.releasePixels();
+                decoded[i] = mb;
 
                 dbfParams[i] = parameter;
 
@@ -217,4 +371,12 @@ public class SimpleErrorResilence implements ErrorResilence {
         }
         return painted;
     }
-}
\ No newline at end of file
+
+    /**
+     * Macroblocks only keep their samples in the picture planes, the painter
+     * works on the macroblock pixels
+     */
+    private DecodedMBlock samples(Picture decPic, DecodedMBlock mb, int mbX, int mbY) {
+        return mb == null ? null : Flattener.getMBlock(decPic, mbX, mbY);
+    }
+}
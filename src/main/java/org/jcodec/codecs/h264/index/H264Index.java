@@ -0,0 +1,213 @@
+package org.jcodec.codecs.h264.index;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+import org.jcodec.codecs.h264.io.model.SliceType;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Index of the access units of an H.264 stream, in decoding order
+ *
+ * Every property is kept in a primitive array with one entry per access unit.
+ * The binary file holds a small header followed by these arrays one after
+ * another in big endian byte order, so it's read with one mapping and a bulk
+ * copy per array.
+ *
+ * @author Jay Codec
+ *
+ */
+public class H264Index {
+    private static final int MAGIC = 0x4A483649; // 'JH6I'
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 8 + 1 + 1 + 4 + 1 + 4;
+
+    private int size;
+    private long[] offsets;
+    private byte[] nalTypes;
+    private byte[] sliceTypes;
+    private int[] pocs;
+    private byte[] refs;
+    private int[] displayOrder;
+    private int[] decodeOrder;
+
+    /**
+     * @param offsets
+     *            Stream offsets of the access units
+     * @param nalTypes
+     *            NAL unit types of the first slices
+     * @param sliceTypes
+     *            Slice types of the pictures, see getSliceType
+     * @param pocs
+     *            Picture order counts
+     * @param refs
+     *            nal_ref_idc of the first slices
+     * @param displayOrder
+     *            Display position of every access unit, -1 for the pictures
+     *            that are not output
+     */
+    public H264Index(int size, long[] offsets, byte[] nalTypes, byte[] sliceTypes, int[] pocs, byte[] refs,
+            int[] displayOrder) {
+        this.size = size;
+        this.offsets = offsets;
+        this.nalTypes = nalTypes;
+        this.sliceTypes = sliceTypes;
+        this.pocs = pocs;
+        this.refs = refs;
+        this.displayOrder = displayOrder;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    public NALUnitType getNALType(int i) {
+        return NALUnitType.fromValue(nalTypes[i]);
+    }
+
+    public boolean isIDR(int i) {
+        return nalTypes[i] == NALUnitType.IDR_SLICE.getValue();
+    }
+
+    /**
+     * @return I if all the slices of the picture are intra, B if there's at
+     *         least one B slice, P otherwise
+     */
+    public SliceType getSliceType(int i) {
+        return SliceType.fromValue(sliceTypes[i]);
+    }
+
+    public int getPOC(int i) {
+        return pocs[i];
+    }
+
+    public boolean isRef(int i) {
+        return refs[i] != 0;
+    }
+
+    /**
+     * @return Position of the picture in display order or -1 if it's never
+     *         output, i.e. it precedes the first IDR picture of the stream
+     */
+    public int getDisplayOrder(int i) {
+        return displayOrder[i];
+    }
+
+    /**
+     * @return Number of the pictures that are output
+     */
+    public int getDisplayCount() {
+        return getDecodeOrder().length;
+    }
+
+    /**
+     * @return Index of the access unit of the picture displayed at position
+     *         displayNo
+     */
+    public int getDecodeOrder(int displayNo) {
+        return getDecodeOrder()[displayNo];
+    }
+
+    private int[] getDecodeOrder() {
+        if (decodeOrder == null) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (displayOrder[i] != -1)
+                    ++count;
+            }
+            int[] result = new int[count];
+            for (int i = 0; i < size; i++) {
+                if (displayOrder[i] != -1)
+                    result[displayOrder[i]] = i;
+            }
+            decodeOrder = result;
+        }
+        return decodeOrder;
+    }
+
+    /**
+     * @return Index of the last IDR picture at or before access unit i or -1
+     *         if there's none
+     */
+    public int getKeyFrame(int i) {
+        for (; i >= 0; i--) {
+            if (isIDR(i))
+                return i;
+        }
+        return -1;
+    }
+
+    public void write(File file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + size * ENTRY_SIZE);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putInt(size);
+
+        buf.asLongBuffer().put(offsets, 0, size);
+        buf.position(buf.position() + (size << 3));
+        buf.put(nalTypes, 0, size);
+        buf.put(sliceTypes, 0, size);
+        buf.asIntBuffer().put(pocs, 0, size);
+        buf.position(buf.position() + (size << 2));
+        buf.put(refs, 0, size);
+        buf.asIntBuffer().put(displayOrder, 0, size);
+        buf.position(buf.position() + (size << 2));
+        buf.flip();
+
+        FileChannel ch = new FileOutputStream(file).getChannel();
+        try {
+            while (buf.hasRemaining())
+                ch.write(buf);
+        } finally {
+            ch.close();
+        }
+    }
+
+    public static H264Index read(File file) throws IOException {
+        FileChannel ch = new FileInputStream(file).getChannel();
+        try {
+            MappedByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+                throw new IOException("Not an H264 index");
+            if (buf.getInt() != VERSION)
+                throw new IOException("Unsupported H264 index version");
+            int size = buf.getInt();
+            if (buf.remaining() < size * ENTRY_SIZE)
+                throw new IOException("H264 index is truncated");
+
+            long[] offsets = new long[size];
+            byte[] nalTypes = new byte[size];
+            byte[] sliceTypes = new byte[size];
+            int[] pocs = new int[size];
+            byte[] refs = new byte[size];
+            int[] displayOrder = new int[size];
+
+            buf.asLongBuffer().get(offsets);
+            buf.position(buf.position() + (size << 3));
+            buf.get(nalTypes);
+            buf.get(sliceTypes);
+            buf.asIntBuffer().get(pocs);
+            buf.position(buf.position() + (size << 2));
+            buf.get(refs);
+            buf.asIntBuffer().get(displayOrder);
+
+            return new H264Index(size, offsets, nalTypes, sliceTypes, pocs, refs, displayOrder);
+        } finally {
+            ch.close();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.jcodec.codecs.h264.index;
+
+import static org.jcodec.codecs.h264.io.model.SliceType.B;
+import static org.jcodec.codecs.h264.io.model.SliceType.I;
+import static org.jcodec.codecs.h264.io.model.SliceType.P;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jcodec.codecs.h264.StreamParams;
+import org.jcodec.codecs.h264.annexb.AnnexBDemuxer;
+import org.jcodec.codecs.h264.annexb.NALUnitReader;
+import org.jcodec.codecs.h264.decode.POCManager;
+import org.jcodec.codecs.h264.io.model.NALUnit;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+import org.jcodec.codecs.h264.io.model.PictureParameterSet;
+import org.jcodec.codecs.h264.io.model.SeqParameterSet;
+import org.jcodec.codecs.h264.io.model.SliceHeader;
+import org.jcodec.codecs.h264.io.model.SliceType;
+import org.jcodec.codecs.h264.io.read.SliceHeaderReader;
+import org.jcodec.common.io.BitstreamReader;
+import org.jcodec.common.io.Buffer;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Builds an index of H.264 stream reading nothing but NAL unit headers,
+ * parameter sets and slice headers
+ *
+ * Slice data is never parsed and emulation prevention is only removed from
+ * the first few bytes of a slice, the ones that can hold the header. Display
+ * order is derived from picture order count the same way the decoder outputs
+ * the pictures: in order of POC between IDR pictures and memory management
+ * operations that reset the numbering.
+ *
+ * @author Jay Codec
+ *
+ */
+public class H264Indexer implements StreamParams {
+    // no slice header is that long
+    private static final int MAX_HEADER = 4096;
+
+    private Map<Integer, SeqParameterSet> spsSet = new HashMap<Integer, SeqParameterSet>();
+    private Map<Integer, PictureParameterSet> ppsSet = new HashMap<Integer, PictureParameterSet>();
+    private SliceHeaderReader headerReader = new SliceHeaderReader(this);
+
+    private int size;
+    private long[] offsets = new long[256];
+    private byte[] nalTypes = new byte[256];
+    private byte[] sliceTypes = new byte[256];
+    private int[] pocs = new int[256];
+    private byte[] refs = new byte[256];
+    private int[] periods = new int[256];
+
+    private long pendingOffset = -1;
+    private NALUnit prevNu;
+    private SliceHeader prevSh;
+
+    private POCManager poc;
+    private int period = -1;
+
+    /**
+     * Indexes Annex B stream, the offsets are relative to the current
+     * position of the stream
+     */
+    public static H264Index index(InputStream is) throws IOException {
+        return index(new NALUnitReader(is));
+    }
+
+    /**
+     * Indexes Annex B stream stored in memory, the offsets are relative to
+     * buf.pos
+     */
+    public static H264Index index(Buffer buf) throws IOException {
+        return index(new NALUnitReader(buf));
+    }
+
+    private static H264Index index(NALUnitReader reader) throws IOException {
+        H264Indexer indexer = new H264Indexer();
+        Buffer nal;
+        while ((nal = reader.nextNALUnitBuffer()) != null)
+            indexer.addNALUnit(nal, reader.getUnitOffset());
+
+        return indexer.getIndex();
+    }
+
+    /**
+     * Feeds next NAL unit of the stream to the indexer
+     *
+     * @param nal
+     *            NAL unit with the emulation prevention bytes still in there
+     * @param offset
+     *            Where this NAL unit starts, the offset of an access unit is
+     *            the one of it's first NAL unit
+     */
+    public void addNALUnit(Buffer nal, long offset) throws IOException {
+        if (nal.remaining() == 0)
+            return;
+
+        NALUnit nu = NALUnit.read(new ByteArrayInputStream(nal.buffer, nal.pos, 1));
+
+        if (nu.type == NALUnitType.IDR_SLICE || nu.type == NALUnitType.NON_IDR_SLICE) {
+            // the stream is cut, the parameter sets are not there yet
+            if (ppsSet.isEmpty())
+                return;
+
+            Buffer head = NALUnitReader.unescape(new Buffer(nal.buffer, nal.pos + 1, Math.min(nal.limit, nal.pos
+                    + MAX_HEADER)));
+            SliceHeader sh = headerReader.read(nu, new BitstreamReader(new ByteArrayInputStream(head.buffer,
+                    head.pos, head.remaining())));
+
+            if (prevSh == null || !AnnexBDemuxer.sameAccessUnit(prevNu, nu, prevSh, sh))
+                addAccessUnit(nu, sh, pendingOffset != -1 ? pendingOffset : offset);
+            else if (sh.redundant_pic_cnt == 0)
+                sliceTypes[size - 1] = (byte) merge(SliceType.fromValue(sliceTypes[size - 1]), sh.slice_type)
+                        .ordinal();
+
+            prevNu = nu;
+            prevSh = sh;
+            pendingOffset = -1;
+        } else {
+            if (nu.type == NALUnitType.SPS || nu.type == NALUnitType.PPS)
+                processParameterSet(nu, NALUnitReader.unescape(new Buffer(nal.buffer, nal.pos + 1, nal.limit)));
+
+            if (pendingOffset == -1 && nu.type != NALUnitType.END_OF_SEQ && nu.type != NALUnitType.END_OF_STREAM)
+                pendingOffset = offset;
+        }
+    }
+
+    private void processParameterSet(NALUnit nu, Buffer rbsp) throws IOException {
+        InputStream is = new ByteArrayInputStream(rbsp.buffer, rbsp.pos, rbsp.remaining());
+        if (nu.type == NALUnitType.SPS) {
+            SeqParameterSet sps = SeqParameterSet.read(is);
+            spsSet.put(sps.seq_parameter_set_id, sps);
+        } else {
+            PictureParameterSet pps = PictureParameterSet.read(is);
+            ppsSet.put(pps.pic_parameter_set_id, pps);
+        }
+    }
+
+    private void addAccessUnit(NALUnit nu, SliceHeader sh, long offset) {
+        boolean idr = nu.type == NALUnitType.IDR_SLICE;
+        boolean mmco5 = !idr && POCManager.detectMMCO5(sh.refPicMarkingNonIDR);
+
+        if (idr) {
+            poc = new POCManager(sh.sps);
+            ++period;
+        }
+
+        int curPoc = 0;
+        if (poc != null) {
+            while (poc.detectGap(sh))
+                poc.nextNonExisting();
+            curPoc = poc.calcPoc(poc.updateFrameNumber(sh.frame_num, mmco5), nu, sh);
+        }
+
+        if (size == offsets.length)
+            grow();
+
+        offsets[size] = offset;
+        nalTypes[size] = (byte) nu.type.getValue();
+        sliceTypes[size] = (byte) merge(sh.slice_type, sh.slice_type).ordinal();
+        pocs[size] = curPoc;
+        refs[size] = (byte) nu.nal_ref_idc;
+        periods[size] = poc != null ? period : -1;
+        ++size;
+
+        // the pictures that follow are numbered from scratch
+        if (mmco5 && poc != null)
+            ++period;
+    }
+
+    private static SliceType merge(SliceType a, SliceType b) {
+        if (a == B || b == B)
+            return B;
+        else if (a.isInter() || b.isInter())
+            return P;
+        else
+            return I;
+    }
+
+    private void grow() {
+        int newSize = offsets.length << 1;
+        offsets = Arrays.copyOf(offsets, newSize);
+        nalTypes = Arrays.copyOf(nalTypes, newSize);
+        sliceTypes = Arrays.copyOf(sliceTypes, newSize);
+        pocs = Arrays.copyOf(pocs, newSize);
+        refs = Arrays.copyOf(refs, newSize);
+        periods = Arrays.copyOf(periods, newSize);
+    }
+
+    /**
+     * @return Index of the access units fed so far
+     */
+    public H264Index getIndex() {
+        int[] displayOrder = new int[size];
+        Arrays.fill(displayOrder, -1);
+
+        int displayNo = 0;
+        long[] keys = new long[size];
+        for (int start = 0, end; start < size; start = end) {
+            for (end = start + 1; end < size && periods[end] == periods[start]; end++)
+                ;
+            if (periods[start] == -1)
+                continue;
+
+            // POC in the upper half, decoding order breaks ties
+            for (int i = start; i < end; i++)
+                keys[i] = ((long) pocs[i] << 32) | i;
+            Arrays.sort(keys, start, end);
+            for (int i = start; i < end; i++)
+                displayOrder[(int) keys[i]] = displayNo++;
+        }
+
+        return new H264Index(size, Arrays.copyOf(offsets, size), Arrays.copyOf(nalTypes, size), Arrays.copyOf(
+                sliceTypes, size), Arrays.copyOf(pocs, size), Arrays.copyOf(refs, size), displayOrder);
+    }
+
+    public SeqParameterSet getSPS(int id) {
+        return spsSet.get(id);
+    }
+
+    public PictureParameterSet getPPS(int id) {
+        return ppsSet.get(id);
+    }
+}
@@ -0,0 +1,105 @@
+package org.jcodec.codecs.h264.index;
+
+import java.io.IOException;
+
+import org.jcodec.codecs.h264.AccessUnit;
+import org.jcodec.codecs.h264.H264SeekableDemuxer;
+import org.jcodec.codecs.h264.annexb.AnnexBDemuxer;
+import org.jcodec.codecs.h264.annexb.NALUnitReader;
+import org.jcodec.codecs.h264.io.model.PictureParameterSet;
+import org.jcodec.codecs.h264.io.model.SeqParameterSet;
+import org.jcodec.common.io.RAInputStream;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Annex B demuxer that seeks with the help of the stream index
+ *
+ * When seeking the demuxer jumps to the IDR picture that starts the group of
+ * pictures and leaves out the non-reference pictures of this group that are
+ * displayed before the target, they are not needed for decoding.
+ *
+ * @author Jay Codec
+ *
+ */
+public class IndexedAnnexBDemuxer implements H264SeekableDemuxer {
+    private RAInputStream input;
+    private H264Index index;
+    private AnnexBDemuxer demuxer;
+
+    // next access unit to be read
+    private int cur;
+    private int target;
+    private int gopEnd;
+
+    /**
+     * @param index
+     *            Index of the stream, the offsets are relative to the
+     *            beginning of input
+     */
+    public IndexedAnnexBDemuxer(RAInputStream input, H264Index index) throws IOException {
+        this.input = input;
+        this.index = index;
+
+        input.seek(0);
+        demuxer = new AnnexBDemuxer(input);
+    }
+
+    public AccessUnit nextAcceessUnit() throws IOException {
+        for (; cur < gopEnd && isDropped(cur); cur++)
+            drain(demuxer.nextAcceessUnit());
+
+        ++cur;
+        return demuxer.nextAcceessUnit();
+    }
+
+    private boolean isDropped(int i) {
+        return !index.isRef(i) && index.getDisplayOrder(i) < target;
+    }
+
+    private void drain(AccessUnit au) throws IOException {
+        if (au == null)
+            return;
+        while (au.nextNALUnit() != null)
+            ;
+    }
+
+    public int seek(int frameNo) throws IOException {
+        if (frameNo < 0 || frameNo >= index.getDisplayCount())
+            return -1;
+
+        int key = index.getKeyFrame(index.getDecodeOrder(frameNo));
+        if (key == -1)
+            return -1;
+
+        // picks up the parameter sets at the beginning of the stream, the
+        // pictures that follow may rely on them
+        if (cur == 0)
+            drain(nextAcceessUnit());
+
+        input.seek(index.getOffset(key));
+        demuxer.reset(new NALUnitReader(input));
+
+        cur = key;
+        target = frameNo;
+        for (gopEnd = key + 1; gopEnd < index.size() && !index.isIDR(gopEnd); gopEnd++)
+            ;
+
+        int skip = frameNo - index.getDisplayOrder(key);
+        for (int i = key; i < gopEnd; i++) {
+            if (isDropped(i))
+                --skip;
+        }
+
+        return skip;
+    }
+
+    public PictureParameterSet getPPS(int id) {
+        return demuxer.getPPS(id);
+    }
+
+    public SeqParameterSet getSPS(int id) {
+        return demuxer.getSPS(id);
+    }
+}
@@ -0,0 +1,74 @@
+package org.jcodec.codecs.h264.io;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.jcodec.common.io.InBits;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Direct lookup table for variable length codes
+ *
+ * The table is indexed with the next 'maxLen' bits of the stream, every entry
+ * holds the value of the code that is a prefix of these bits along with the
+ * length of this code. So one peek, one table hit and one skip decode a code
+ * of any length.
+ *
+ * @author Jay Codec
+ *
+ */
+public class VLCTable {
+    private int[] table;
+    private int maxLen;
+
+    /**
+     * Creates lookup table for a set of prefix codes
+     *
+     * @param codes
+     *            Codes as strings of '0' and '1', up to 16 bits each
+     * @param values
+     *            Non-negative values of the codes, up to 2^23 - 1
+     */
+    public VLCTable(String[] codes, int[] values) {
+        for (String code : codes)
+            maxLen = Math.max(maxLen, code.length());
+
+        table = new int[1 << maxLen];
+        Arrays.fill(table, -1);
+
+        for (int i = 0; i < codes.length; i++) {
+            int len = codes[i].length();
+            int code = len == 0 ? 0 : Integer.parseInt(codes[i], 2);
+            int from = code << (maxLen - len);
+            int to = (code + 1) << (maxLen - len);
+            Arrays.fill(table, from, to, (values[i] << 8) | len);
+        }
+    }
+
+    public VLCTable(String[] codes) {
+        this(codes, sequence(codes.length));
+    }
+
+    private static int[] sequence(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++)
+            result[i] = i;
+        return result;
+    }
+
+    /**
+     * Reads one code from the bitstream
+     *
+     * @return Value of the code
+     */
+    public int read(InBits in) throws IOException {
+        int entry = table[in.checkNBit(maxLen)];
+        if (entry == -1)
+            throw new RuntimeException("Illegal code");
+        in.skip(entry & 0xff);
+
+        return entry >> 8;
+    }
+}
@@ -1,10 +1,8 @@
 package org.jcodec.codecs.h264.io.model;
 
-import static org.jcodec.codecs.h264.io.read.CAVLCReader.readCE;
-
 import java.io.IOException;
 
-import org.jcodec.codecs.h264.io.BTree;
+import org.jcodec.codecs.h264.io.VLCTable;
 import org.jcodec.common.io.InBits;
 
 /**
@@ -30,14 +28,11 @@ public class RunBeforeToken {
             { "111", "110", "101", "100", "011", "010", "001", "0001", "00001",
                     "000001", "0000001", "00000001", "000000001", "0000000001",
                     "00000000001" } };
-    static BTree[] btrees = new BTree[7];
+    static VLCTable[] tables = new VLCTable[7];
 
     static {
         for (int i = 0; i < 7; i++) {
-            btrees[i] = new BTree();
-            for (int j = 0; j < codes[i].length; j++) {
-                btrees[i].addString(codes[i][j], new Integer(j));
-            }
+            tables[i] = new VLCTable(codes[i]);
         }
     }
 
@@ -45,8 +40,6 @@ public class RunBeforeToken {
             throws IOException {
         if (zeros_left > 7)
             zeros_left = 7;
-        Object value = readCE(in, btrees[zeros_left - 1], "Luma run");
-        int intValue = ((Integer) value).intValue();
-        return intValue;
+        return tables[zeros_left - 1].read(in);
     }
 }
\ No newline at end of file
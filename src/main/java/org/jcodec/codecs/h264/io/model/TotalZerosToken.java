@@ -1,10 +1,8 @@
 package org.jcodec.codecs.h264.io.model;
 
-import static org.jcodec.codecs.h264.io.read.CAVLCReader.readCE;
-
 import java.io.IOException;
 
-import org.jcodec.codecs.h264.io.BTree;
+import org.jcodec.codecs.h264.io.VLCTable;
 import org.jcodec.common.io.InBits;
 
 /**
@@ -73,46 +71,33 @@ public class TotalZerosToken {
 
     { "0", "1" } };
 
-    static BTree[] btrees = new BTree[15];
-    static BTree[] btrees2x2 = new BTree[3];
-    static BTree[] btrees4x2 = new BTree[7];
+    static VLCTable[] tables = new VLCTable[15];
+    static VLCTable[] tables2x2 = new VLCTable[3];
+    static VLCTable[] tables4x2 = new VLCTable[7];
 
     static {
         for (int i = 0; i < 15; i++) {
-            btrees[i] = new BTree();
-            for (int j = 0; j < codes4x4[i].length; j++) {
-                btrees[i].addString(codes4x4[i][j], new Integer(j));
-            }
+            tables[i] = new VLCTable(codes4x4[i]);
         }
 
         for (int i = 0; i < 3; i++) {
-            btrees2x2[i] = new BTree();
-            for (int j = 0; j < codes_cr_2x2[i].length; j++) {
-                btrees2x2[i].addString(codes_cr_2x2[i][j], new Integer(j));
-            }
+            tables2x2[i] = new VLCTable(codes_cr_2x2[i]);
         }
 
         for (int i = 0; i < 7; i++) {
-            btrees4x2[i] = new BTree();
-            for (int j = 0; j < codes_cr_4x2[i].length; j++) {
-                btrees4x2[i].addString(codes_cr_4x2[i][j], new Integer(j));
-            }
+            tables4x2[i] = new VLCTable(codes_cr_4x2[i]);
         }
     }
 
     public static int read4x4(InBits in, int totalCoeff) throws IOException {
-        Object value = readCE(in, btrees[totalCoeff - 1], "Zeros left");
-        int intValue = ((Integer) value).intValue();
-        return intValue;
+        return tables[totalCoeff - 1].read(in);
     }
 
     public static int readCr2x2(InBits in, int totalCoeff) throws IOException {
-        Object value = readCE(in, btrees2x2[totalCoeff - 1], "Zeros left");
-        return ((Integer) value).intValue();
+        return tables2x2[totalCoeff - 1].read(in);
     }
 
     public static int readCr4x2(InBits in, int totalCoeff) throws IOException {
-        Object value = readCE(in, btrees4x2[totalCoeff - 1], "Zeros left");
-        return ((Integer) value).intValue();
+        return tables4x2[totalCoeff - 1].read(in);
     }
 }
\ No newline at end of file
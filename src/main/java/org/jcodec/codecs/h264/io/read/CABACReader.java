@@ -6,7 +6,6 @@ import static org.jcodec.common.tools.MathUtil.clip;
 import java.io.IOException;
 import java.io.InputStream;
 
-import org.jcodec.codecs.common.biari.Context;
 import org.jcodec.codecs.common.biari.MDecoder;
 import org.jcodec.codecs.h264.decode.MBlockDecoderInter;
 import org.jcodec.codecs.h264.decode.model.MVMatrix;
@@ -26,23 +25,35 @@ import org.jcodec.codecs.h264.io.model.ResidualBlock;
 import org.jcodec.codecs.h264.io.model.SliceType;
 import org.jcodec.codecs.h264.io.model.SubMBType;
 import org.jcodec.codecs.h264.io.model.Vector;
+import org.jcodec.common.io.Buffer;
 import org.jcodec.common.model.Point;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
  * under FreeBSD License
  * 
+ * Reads macroblocks of a CABAC coded slice. Not yet plugged into the slice
+ * reader, SliceDataReader parses CABAC slices on its own.
+ * 
  * @author JCodec project
  * 
  */
 public class CABACReader {
 
-    private Context[] contexts;
+    private byte[] contexts;
     private MDecoder decoder;
     private SliceType sliceType;
 
     public CABACReader(InputStream in, SliceType sliceType, int cabacIdc, int sliceQp) throws IOException {
-        decoder = new MDecoder(in);
+        this(new MDecoder(in), sliceType, cabacIdc, sliceQp);
+    }
+
+    public CABACReader(Buffer slice, SliceType sliceType, int cabacIdc, int sliceQp) throws IOException {
+        this(new MDecoder(slice), sliceType, cabacIdc, sliceQp);
+    }
+
+    private CABACReader(MDecoder decoder, SliceType sliceType, int cabacIdc, int sliceQp) {
+        this.decoder = decoder;
         this.sliceType = sliceType;
 
         int[] tabA = sliceType.isIntra() ? CABACContst.cabac_context_init_I_A
@@ -50,33 +61,33 @@ public class CABACReader {
         int[] tabB = sliceType.isIntra() ? CABACContst.cabac_context_init_I_B
                 : CABACContst.cabac_context_init_PB_B[cabacIdc];
 
-        contexts = new Context[1024];
+        contexts = new byte[1024];
         for (int i = 0; i < 1024; i++) {
             int preCtxState = clip(((tabA[i] * clip(sliceQp, 0, 51)) >> 4) + tabB[i], 1, 126);
             if (preCtxState <= 63)
-                contexts[i] = new Context(63 - preCtxState, 0);
+                contexts[i] = (byte) ((63 - preCtxState) << 1);
             else
-                contexts[i] = new Context(preCtxState - 64, 1);
+                contexts[i] = (byte) (((preCtxState - 64) << 1) | 1);
         }
     }
 
     public int readCBP16x16() throws IOException {
         int ctx = sliceType.isIntra() ? 6 : (sliceType == SliceType.B ? 33 : 18);
 
-        int cbpLuma = decoder.decodeBin(contexts[ctx++]);
+        int cbpLuma = decoder.decodeBin(contexts, ctx++);
         if (sliceType.isIntra()) {
-            int cbpChroma = decoder.decodeBin(contexts[ctx++]);
+            int cbpChroma = decoder.decodeBin(contexts, ctx++);
             if (cbpChroma != 0) {
-                cbpChroma += decoder.decodeBin(contexts[ctx++]);
+                cbpChroma += decoder.decodeBin(contexts, ctx++);
             }
-            int predMode = (decoder.decodeBin(contexts[ctx++]) << 1) | decoder.decodeBin(contexts[ctx]);
+            int predMode = (decoder.decodeBin(contexts, ctx++) << 1) | decoder.decodeBin(contexts, ctx);
         } else {
-            int cbpChroma = decoder.decodeBin(contexts[ctx]);
+            int cbpChroma = decoder.decodeBin(contexts, ctx);
             if (cbpChroma != 0) {
-                cbpChroma += decoder.decodeBin(contexts[ctx]);
+                cbpChroma += decoder.decodeBin(contexts, ctx);
             }
             ctx++;
-            int predMode = (decoder.decodeBin(contexts[ctx]) << 1) | decoder.decodeBin(contexts[ctx]);
+            int predMode = (decoder.decodeBin(contexts, ctx) << 1) | decoder.decodeBin(contexts, ctx);
         }
         throw new RuntimeException();
     }
@@ -102,16 +113,16 @@ public class CABACReader {
         ctx += (left == null) || (left instanceof MBlockBDirect16x16) ? 0 : 1;
         ctx += (top == null) || (top instanceof MBlockBDirect16x16) ? 0 : 1;
 
-        if (decoder.decodeBin(contexts[ctx]) == 0)
+        if (decoder.decodeBin(contexts, ctx) == 0)
             return MBType.B_Direct_16x16;
 
-        if (decoder.decodeBin(contexts[30]) == 0) {
-            return decoder.decodeBin(contexts[32]) == 0 ? MBType.B_L0_16x16 : MBType.B_L1_16x16;
+        if (decoder.decodeBin(contexts, 30) == 0) {
+            return decoder.decodeBin(contexts, 32) == 0 ? MBType.B_L0_16x16 : MBType.B_L1_16x16;
         }
 
-        if (decoder.decodeBin(contexts[31]) == 0) {
-            switch ((decoder.decodeBin(contexts[32]) << 2) | (decoder.decodeBin(contexts[32]) << 1)
-                    | decoder.decodeBin(contexts[32])) {
+        if (decoder.decodeBin(contexts, 31) == 0) {
+            switch ((decoder.decodeBin(contexts, 32) << 2) | (decoder.decodeBin(contexts, 32) << 1)
+                    | decoder.decodeBin(contexts, 32)) {
             case 0:
                 return MBType.B_Bi_16x16;
             case 1:
@@ -132,8 +143,8 @@ public class CABACReader {
                 return null;
             }
         } else {
-            int tmp = (decoder.decodeBin(contexts[32]) << 2) | (decoder.decodeBin(contexts[32]) << 1)
-                    | decoder.decodeBin(contexts[32]);
+            int tmp = (decoder.decodeBin(contexts, 32) << 2) | (decoder.decodeBin(contexts, 32) << 1)
+                    | decoder.decodeBin(contexts, 32);
             if (tmp == 5)
                 return readMBTypeI_Inter(32);
             else if (tmp == 6)
@@ -141,7 +152,7 @@ public class CABACReader {
             else if (tmp == 7)
                 return MBType.B_8x8;
             else {
-                switch ((tmp << 1) | decoder.decodeBin(contexts[32])) {
+                switch ((tmp << 1) | decoder.decodeBin(contexts, 32)) {
                 case 0:
                     return MBType.B_L0_Bi_16x8;
                 case 1:
@@ -172,12 +183,12 @@ public class CABACReader {
     private MBType readMBTypeP(Macroblock left, Macroblock top) throws IOException {
         int ctx = 14;
 
-        if (decoder.decodeBin(contexts[ctx++]) == 1) {
+        if (decoder.decodeBin(contexts, ctx++) == 1) {
             return readMBTypeI_Inter(17);
         }
 
-        int b1 = decoder.decodeBin(contexts[ctx++]);
-        int b2 = decoder.decodeBin(contexts[ctx + b1]);
+        int b1 = decoder.decodeBin(contexts, ctx++);
+        int b2 = decoder.decodeBin(contexts, ctx + b1);
 
         switch ((b1 << 1) + b2) {
         case 0:
@@ -196,7 +207,7 @@ public class CABACReader {
         ctx += (left == null) || (left instanceof MBlockIntraNxN) ? 0 : 1;
         ctx += (top == null) || (top instanceof MBlockIntraNxN) ? 0 : 1;
 
-        if (decoder.decodeBin(contexts[ctx]) == 0) {
+        if (decoder.decodeBin(contexts, ctx) == 0) {
             return MBType.I_NxN;
         } else {
             return decoder.decodeFinalBin() == 1 ? MBType.I_PCM : MBType.I_16x16;
@@ -204,7 +215,7 @@ public class CABACReader {
     }
 
     private MBType readMBTypeI_Inter(int ctx) throws IOException {
-        if (decoder.decodeBin(contexts[ctx]) == 0) {
+        if (decoder.decodeBin(contexts, ctx) == 0) {
             return MBType.I_NxN;
         } else {
             return decoder.decodeFinalBin() == 1 ? MBType.I_PCM : MBType.I_16x16;
@@ -217,9 +228,9 @@ public class CABACReader {
 
     public boolean readMBSkipFlag() throws IOException {
         if (sliceType == SliceType.B)
-            return decoder.decodeBin(contexts[24]) == 1;
+            return decoder.decodeBin(contexts, 24) == 1;
         else
-            return decoder.decodeBin(contexts[11]) == 1;
+            return decoder.decodeBin(contexts, 11) == 1;
     }
 
     public int readMVD(int baseCtx, Macroblock left, Macroblock top, Macroblock cur, int blkIdx, int subBlkIdx, int comp)
@@ -234,13 +245,13 @@ public class CABACReader {
         int tot = absMVDLeft + absMVDTop;
         int inc = tot < 3 ? 0 : (tot > 32 ? 2 : 1);
 
-        int bit = decoder.decodeBin(contexts[baseCtx + inc]);
+        int bit = decoder.decodeBin(contexts, baseCtx + inc);
         int n = 0, ctx = baseCtx + 3, ctxMax = baseCtx + 6;
         while (bit == 1) {
             n++;
             if (n == 9)
                 break;
-            bit = decoder.decodeBin(contexts[ctx++]);
+            bit = decoder.decodeBin(contexts, ctx++);
             if (ctx > ctxMax)
                 ctx = ctxMax;
         }
@@ -256,8 +267,8 @@ public class CABACReader {
         ResidualBlock dcTop = top != null && top instanceof CodedMacroblock ? (cb ? ((CodedMacroblock) top).getChroma()
                 .getCbDC() : ((CodedMacroblock) top).getChroma().getCrDC()) : null;
 
-        return decoder.decodeBin(contexts[blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, dcLeft) + 2
-                * transBlockToCBF(top, cur, dcTop)]);
+        return decoder.decodeBin(contexts, blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, dcLeft) + 2
+                * transBlockToCBF(top, cur, dcTop));
 
     }
 
@@ -275,8 +286,8 @@ public class CABACReader {
             ResidualBlock[] AC = cb ? mb.getChroma().getCbAC() : mb.getChroma().getCrAC();
             blkLeft = AC[topChromaIdx[blkIdx]];
         }
-        return decoder.decodeBin(contexts[blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, blkLeft) + 2
-                * transBlockToCBF(top, cur, blkTop)]);
+        return decoder.decodeBin(contexts, blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, blkLeft) + 2
+                * transBlockToCBF(top, cur, blkTop));
     }
 
     public int readCodedBlockFlag16x16DC(BlockType blkType, Macroblock left, Macroblock top, Macroblock cur)
@@ -289,8 +300,8 @@ public class CABACReader {
         ResidualBlock dcTop = top != null && top instanceof MBlockIntra16x16 ? ((MBlockIntra16x16) top).getLumaDC()
                 : null;
 
-        return decoder.decodeBin(contexts[blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, dcLeft) + 2
-                * transBlockToCBF(top, cur, dcTop)]);
+        return decoder.decodeBin(contexts, blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, dcLeft) + 2
+                * transBlockToCBF(top, cur, dcTop));
     }
 
     public int readCodedBlockFlag16x16AC(BlockType blkType, int blkIdx, Macroblock cur, Macroblock left, Macroblock top)
@@ -308,8 +319,8 @@ public class CABACReader {
         if (srcTop instanceof MBlockIntra16x16) {
             blkTop = ((MBlockIntra16x16) srcTop).getLumaAC()[topBlockIdx[blkIdx]];
         }
-        return decoder.decodeBin(contexts[blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, blkLeft) + 2
-                * transBlockToCBF(top, cur, blkTop)]);
+        return decoder.decodeBin(contexts, blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, blkLeft) + 2
+                * transBlockToCBF(top, cur, blkTop));
     }
 
     public int readCodedBlockFlagNxN(BlockType blkType, int blkIdx, Macroblock cur, Macroblock left, Macroblock top)
@@ -326,8 +337,8 @@ public class CABACReader {
         if (srcTop instanceof MBlockWithResidual) {
             blkTop = ((MBlockWithResidual) srcTop).getLuma()[topBlockIdx[blkIdx]];
         }
-        return decoder.decodeBin(contexts[blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, blkLeft) + 2
-                * transBlockToCBF(top, cur, blkTop)]);
+        return decoder.decodeBin(contexts, blkType.codedBlockFlagCtx + transBlockToCBF(left, cur, blkLeft) + 2
+                * transBlockToCBF(top, cur, blkTop));
     }
 
     private int transBlockToCBF(Macroblock mbN, Macroblock mbCur, ResidualBlock transBlk) {
@@ -358,34 +369,34 @@ public class CABACReader {
 
     public int readSigCoeffFlagChromaDC(BlockType blkType, int coeffIdx, int numChromaDC, boolean field)
             throws IOException {
-        return decoder.decodeBin(contexts[(field ? blkType.sigCoeffFlagFldCtx : blkType.sigCoeffFlagCtx)
-                + Math.min(coeffIdx / numChromaDC, 2)]);
+        return decoder.decodeBin(contexts, (field ? blkType.sigCoeffFlagFldCtx : blkType.sigCoeffFlagCtx)
+                + Math.min(coeffIdx / numChromaDC, 2));
     }
 
     public int readSigCoeffFlag8x8(BlockType blkType, int coeffIdx, boolean field) throws IOException {
-        return decoder.decodeBin(contexts[(field ? blkType.sigCoeffFlagFldCtx : blkType.sigCoeffFlagCtx)
-                + (field ? sigCoeff64To16Fld[coeffIdx] : sigCoeff64To16[coeffIdx])]);
+        return decoder.decodeBin(contexts, (field ? blkType.sigCoeffFlagFldCtx : blkType.sigCoeffFlagCtx)
+                + (field ? sigCoeff64To16Fld[coeffIdx] : sigCoeff64To16[coeffIdx]));
     }
 
     public int readSigCoeffFlag(BlockType blkType, int coeffIdx, boolean field) throws IOException {
-        return decoder.decodeBin(contexts[(field ? blkType.sigCoeffFlagFldCtx : blkType.sigCoeffFlagCtx) + coeffIdx]);
+        return decoder.decodeBin(contexts, (field ? blkType.sigCoeffFlagFldCtx : blkType.sigCoeffFlagCtx) + coeffIdx);
     }
 
     public int readLastSigCoeffFlagChromaDC(BlockType blkType, int coeffIdx, int numChromaDC, boolean field)
             throws IOException {
-        return decoder.decodeBin(contexts[(field ? blkType.lastSigCoeffFlagFldCtx : blkType.lastSigCoeffFlagCtx)
-                + Math.min(coeffIdx / numChromaDC, 2)]);
+        return decoder.decodeBin(contexts, (field ? blkType.lastSigCoeffFlagFldCtx : blkType.lastSigCoeffFlagCtx)
+                + Math.min(coeffIdx / numChromaDC, 2));
     }
 
     public int readLastSigCoeffFlag8x8(BlockType blkType, int coeffIdx, int numChromaDC, boolean field)
             throws IOException {
-        return decoder.decodeBin(contexts[(field ? blkType.lastSigCoeffFlagFldCtx : blkType.lastSigCoeffFlagCtx)
-                + lastSigCoeff64To16[coeffIdx]]);
+        return decoder.decodeBin(contexts, (field ? blkType.lastSigCoeffFlagFldCtx : blkType.lastSigCoeffFlagCtx)
+                + lastSigCoeff64To16[coeffIdx]);
     }
 
     public int readLastSigCoeffFlag(BlockType blkType, int coeffIdx, int numChromaDC, boolean field) throws IOException {
-        return decoder.decodeBin(contexts[(field ? blkType.lastSigCoeffFlagFldCtx : blkType.lastSigCoeffFlagCtx)
-                + coeffIdx]);
+        return decoder.decodeBin(contexts, (field ? blkType.lastSigCoeffFlagFldCtx : blkType.lastSigCoeffFlagCtx)
+                + coeffIdx);
     }
 
     int sigCoeff64To16[] = { 0, 1, 2, 3, 4, 5, 5, 4, 4, 3, 3, 4, 4, 4, 5, 5, 4, 4, 4, 4, 3, 3, 6, 7, 7, 7, 8, 9, 10, 9,
@@ -405,13 +416,13 @@ public class CABACReader {
 
     public int readCoeffAbsLevel(BlockType blkType, int eq1, int gt1) throws IOException {
         int n = 0;
-        int bit = decoder.decodeBin(contexts[blkType.coeffLevelCtx + (gt1 != 0 ? 0 : min(4, 1 + eq1))]);
-        Context bn = contexts[blkType.coeffLevelCtx + (5 + min(blkType.maxGt1, gt1))];
+        int bit = decoder.decodeBin(contexts, blkType.coeffLevelCtx + (gt1 != 0 ? 0 : min(4, 1 + eq1)));
+        int bn = blkType.coeffLevelCtx + (5 + min(blkType.maxGt1, gt1));
         while (bit == 1) {
             n++;
             if (n == 14)
                 break;
-            bit = decoder.decodeBin(bn);
+            bit = decoder.decodeBin(contexts, bn);
         }
 
         return n < 14 ? n : n + readGolomb(0);
@@ -421,12 +432,7 @@ public class CABACReader {
         while (decoder.decodeBinBypass() == 1)
             k++;
 
-        int result = 0;
-        while (k-- > 0) {
-            result = (result << 1) | decoder.decodeBinBypass();
-        }
-
-        return result;
+        return decoder.decodeBypass(k);
     }
 
     public static enum BlockType {
@@ -475,12 +481,12 @@ public class CABACReader {
     }
 
     public SubMBType readSubMbTypeP() throws IOException {
-        if (decoder.decodeBin(contexts[21]) == 1)
+        if (decoder.decodeBin(contexts, 21) == 1)
             return SubMBType.L0_8x8;
-        else if (decoder.decodeBin(contexts[22]) == 0) {
+        else if (decoder.decodeBin(contexts, 22) == 0) {
             return SubMBType.L0_8x4;
         } else {
-            return decoder.decodeBin(contexts[23]) == 1 ? SubMBType.L0_4x8 : SubMBType.L0_4x4;
+            return decoder.decodeBin(contexts, 23) == 1 ? SubMBType.L0_4x8 : SubMBType.L0_4x4;
         }
     }
 
@@ -489,15 +495,15 @@ public class CABACReader {
             SubMBType.L1_4x4, null, SubMBType.Bi_4x4 };
 
     public SubMBType readSubMbTypeB() throws IOException {
-        if (decoder.decodeBin(contexts[36]) == 0)
+        if (decoder.decodeBin(contexts, 36) == 0)
             return SubMBType.Direct_8x8;
-        else if (decoder.decodeBin(contexts[37]) == 0) {
-            return decoder.decodeBin(contexts[39]) == 0 ? SubMBType.L0_8x8 : SubMBType.L1_8x8;
+        else if (decoder.decodeBin(contexts, 37) == 0) {
+            return decoder.decodeBin(contexts, 39) == 0 ? SubMBType.L0_8x8 : SubMBType.L1_8x8;
         } else {
-            int tmp = (decoder.decodeBin(contexts[38]) << 3) | (decoder.decodeBin(contexts[39]) << 2)
-                    | (decoder.decodeBin(contexts[39]) << 1);
+            int tmp = (decoder.decodeBin(contexts, 38) << 3) | (decoder.decodeBin(contexts, 39) << 2)
+                    | (decoder.decodeBin(contexts, 39) << 1);
             if (tmp == 8 || tmp == 10)
-                tmp |= decoder.decodeBin(contexts[39]);
+                tmp |= decoder.decodeBin(contexts, 39);
             return bSubMB[tmp];
         }
     }
@@ -529,12 +535,12 @@ public class CABACReader {
 
         int bin0Off = (cool[0] == null || cool[0].getRefId() == 0 ? 0 : 1)
                 + ((cool[1] == null || cool[1].getRefId() == 0 ? 0 : 1) << 1);
-        if (decoder.decodeBin(contexts[54 + bin0Off]) == 0)
+        if (decoder.decodeBin(contexts, 54 + bin0Off) == 0)
             return 0;
-        if (decoder.decodeBin(contexts[58]) == 0)
+        if (decoder.decodeBin(contexts, 58) == 0)
             return 1;
         int num = 2;
-        while (decoder.decodeBin(contexts[59]) == 1)
+        while (decoder.decodeBin(contexts, 59) == 1)
             num++;
         return num;
     }
@@ -625,8 +631,8 @@ public class CABACReader {
         int condTermTop = mbTop == null || (mbTop instanceof MBlockIPCM)
                 || ((MBlockWithResidual) mbTop).getLuma()[blk8x8Top[blk8x8Idx] << 2] != null ? 0 : 1;
         int off = condTermLeft + 2 * condTermTop;
-        return (decoder.decodeBin(contexts[73 + off]) << 3) | (decoder.decodeBin(contexts[73 + off]) << 2)
-                | (decoder.decodeBin(contexts[73 + off]) << 1) | decoder.decodeBin(contexts[73 + off]);
+        return (decoder.decodeBin(contexts, 73 + off) << 3) | (decoder.decodeBin(contexts, 73 + off) << 2)
+                | (decoder.decodeBin(contexts, 73 + off) << 1) | decoder.decodeBin(contexts, 73 + off);
     }
 
     public int readCBPChroma(Macroblock left, Macroblock top) throws IOException {
@@ -635,14 +641,14 @@ public class CABACReader {
         int condTermTop0 = top == null
                 || ((top instanceof CodedMacroblock) && ((CodedMacroblock) top).getCbpChroma() == 0) ? 0 : 1;
 
-        if (decoder.decodeBin(contexts[77 + condTermLeft0 + 2 * condTermTop0]) == 0)
+        if (decoder.decodeBin(contexts, 77 + condTermLeft0 + 2 * condTermTop0) == 0)
             return 0;
         else {
             int condTermLeft2 = left == null
                     || ((left instanceof CodedMacroblock) && ((CodedMacroblock) left).getCbpChroma() == 2) ? 0 : 1;
             int condTermTop2 = top == null
                     || ((top instanceof CodedMacroblock) && ((CodedMacroblock) top).getCbpChroma() == 2) ? 0 : 1;
-            return 1 + decoder.decodeBin(contexts[81 + condTermLeft2 + 2 * condTermTop2]);
+            return 1 + decoder.decodeBin(contexts, 81 + condTermLeft2 + 2 * condTermTop2);
         }
     }
 }
\ No newline at end of file
@@ -111,7 +111,9 @@ public class ChromaReader {
         if (!entropyCoding) {
             CoeffToken coeffToken = coeffTokenReader.readForChromaDC(reader);
 
-            blk = new ResidualBlock(cavlcReader.readCoeffs(reader, ResidualBlock.BlockType.BLOCK_CHROMA_DC, coeffToken));
+            int[] coeffs = new int[cavlcReader.getMaxCoeff(ResidualBlock.BlockType.BLOCK_CHROMA_DC)];
+            cavlcReader.readCoeffs(reader, ResidualBlock.BlockType.BLOCK_CHROMA_DC, coeffToken, coeffs);
+            blk = new ResidualBlock(coeffs);
         } else {
             blk = new ResidualBlock(cabacReader.readCoeffs(reader));
         }
@@ -182,8 +184,9 @@ public class ChromaReader {
                 int blkAddr = i8x8 * 4 + i4x4;
                 CoeffToken coeffToken = coeffTokenReader.read(reader, pred[mapLeft[blkAddr]], pred[mapTop[blkAddr]]);
 
-                chromaACLevel[blkAddr] = new ResidualBlock(cavlcReader.readCoeffs(reader,
-                        ResidualBlock.BlockType.BLOCK_CHROMA_AC, coeffToken));
+                int[] coeffs = new int[cavlcReader.getMaxCoeff(ResidualBlock.BlockType.BLOCK_CHROMA_AC)];
+                cavlcReader.readCoeffs(reader, ResidualBlock.BlockType.BLOCK_CHROMA_AC, coeffToken, coeffs);
+                chromaACLevel[blkAddr] = new ResidualBlock(coeffs);
 
                 pred[blkAddr] = coeffToken;
                 tokens[blkAddr] = coeffToken;
@@ -135,8 +135,9 @@ public abstract class CodedMblockReader {
                     CoeffToken coeffToken = coeffTokenReader.read(reader, pred[mappingLeft4x4[blkAddr]],
                             pred[mappingTop4x4[blkAddr]]);
 
-                    lumaLevel[blkAddr] = new ResidualBlock(cavlcReader.readCoeffs(reader,
-                            ResidualBlock.BlockType.BLOCK_LUMA_4x4, coeffToken));
+                    int[] coeffs = new int[cavlcReader.getMaxCoeff(ResidualBlock.BlockType.BLOCK_LUMA_4x4)];
+                    cavlcReader.readCoeffs(reader, ResidualBlock.BlockType.BLOCK_LUMA_4x4, coeffToken, coeffs);
+                    lumaLevel[blkAddr] = new ResidualBlock(coeffs);
 
                     pred[blkAddr] = coeffToken;
                     tokens[blkAddr] = coeffToken;
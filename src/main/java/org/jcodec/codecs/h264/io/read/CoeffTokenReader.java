@@ -1,10 +1,8 @@
 package org.jcodec.codecs.h264.io.read;
 
-import static org.jcodec.codecs.h264.io.read.CAVLCReader.readCE;
-
 import java.io.IOException;
 
-import org.jcodec.codecs.h264.io.BTree;
+import org.jcodec.codecs.h264.io.VLCTable;
 import org.jcodec.codecs.h264.io.model.ChromaFormat;
 import org.jcodec.codecs.h264.io.model.CoeffToken;
 import org.jcodec.common.io.InBits;
@@ -137,32 +135,35 @@ public class CoeffTokenReader {
             new Item(0, 8, "0000000000111"), new Item(1, 8, "000000000101"), new Item(2, 8, "000000000100"),
             new Item(3, 8, "00000000100") };
 
-    static BTree nc0_2_bt = new BTree();
-    static BTree nc2_4_bt = new BTree();
-    static BTree nc4_8_bt = new BTree();
-    static BTree nc8p_bt = new BTree();
-    static BTree ncm1_bt = new BTree();
-    static BTree ncm2_bt = new BTree();
+    static VLCTable nc0_2_vlc = createTable(nc0_2);
+    static VLCTable nc2_4_vlc = createTable(nc2_4);
+    static VLCTable nc4_8_vlc = createTable(nc4_8);
+    static VLCTable nc8p_vlc = createTable(nc8p);
+    static VLCTable ncm1_vlc = createTable(ncm1);
+    static VLCTable ncm2_vlc = createTable(ncm2);
+
+    /**
+     * Tokens are immutable so one instance of each is shared, indexed by
+     * (totalCoeff << 2) | trailingOnes
+     */
+    static CoeffToken[] tokens = new CoeffToken[17 << 2];
 
     static {
-        for (int i = 0; i < nc0_2.length; i++) {
-            nc0_2_bt.addString(nc0_2[i].str, nc0_2[i]);
-        }
-        for (int i = 0; i < nc2_4.length; i++) {
-            nc2_4_bt.addString(nc2_4[i].str, nc2_4[i]);
-        }
-        for (int i = 0; i < nc4_8.length; i++) {
-            nc4_8_bt.addString(nc4_8[i].str, nc4_8[i]);
-        }
-        for (int i = 0; i < nc8p.length; i++) {
-            nc8p_bt.addString(nc8p[i].str, nc8p[i]);
-        }
-        for (int i = 0; i < ncm1.length; i++) {
-            ncm1_bt.addString(ncm1[i].str, ncm1[i]);
+        for (int totalCoeff = 0; totalCoeff <= 16; totalCoeff++) {
+            for (int trailingOnes = 0; trailingOnes < 4; trailingOnes++) {
+                tokens[(totalCoeff << 2) | trailingOnes] = new CoeffToken(totalCoeff, trailingOnes);
+            }
         }
-        for (int i = 0; i < ncm2.length; i++) {
-            ncm2_bt.addString(ncm2[i].str, ncm2[i]);
+    }
+
+    private static VLCTable createTable(Item[] items) {
+        String[] codes = new String[items.length];
+        int[] values = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            codes[i] = items[i].str;
+            values[i] = (items[i].totalCoeff << 2) | items[i].trailingOnes;
         }
+        return new VLCTable(codes, values);
     }
 
     /**
@@ -221,25 +222,22 @@ public class CoeffTokenReader {
 
     protected static CoeffToken read(InBits in, int nC) throws IOException {
 
-        BTree bt = null;
+        VLCTable vlc = null;
         if (nC == -2) {
-            bt = ncm2_bt;
+            vlc = ncm2_vlc;
         } else if (nC == -1) {
-            bt = ncm1_bt;
+            vlc = ncm1_vlc;
         } else if (nC >= 0 && nC < 2) {
-            bt = nc0_2_bt;
+            vlc = nc0_2_vlc;
         } else if (nC >= 2 && nC < 4) {
-            bt = nc2_4_bt;
+            vlc = nc2_4_vlc;
         } else if (nC >= 4 && nC < 8) {
-            bt = nc4_8_bt;
+            vlc = nc4_8_vlc;
         } else if (nC >= 8) {
-            bt = nc8p_bt;
+            vlc = nc8p_vlc;
         }
-        if (bt != null) {
-            Item i = (Item) readCE(in, bt, "Coeff token, nc = " + nC);
-            if (i != null) {
-                return new CoeffToken(i.totalCoeff, i.trailingOnes);
-            }
+        if (vlc != null) {
+            return tokens[vlc.read(in)];
         }
         return null;
     }
@@ -100,8 +100,9 @@ public class IntraMBlockReader extends CodedMblockReader {
         {
             CoeffToken coeffToken = coeffTokenReader.read(reader, pred[mappingLeft4x4[0]], pred[mappingTop4x4[0]]);
 
-            lumaDC = new ResidualBlock(cavlcReader.readCoeffs(reader, ResidualBlock.BlockType.BLOCK_LUMA_16x16_DC,
-                    coeffToken));
+            int[] coeffs = new int[cavlcReader.getMaxCoeff(ResidualBlock.BlockType.BLOCK_LUMA_16x16_DC)];
+            cavlcReader.readCoeffs(reader, ResidualBlock.BlockType.BLOCK_LUMA_16x16_DC, coeffToken, coeffs);
+            lumaDC = new ResidualBlock(coeffs);
         }
 
         ResidualBlock[] lumaAC = new ResidualBlock[16];
@@ -112,8 +113,9 @@ public class IntraMBlockReader extends CodedMblockReader {
                     CoeffToken coeffToken = coeffTokenReader.read(reader, pred[mappingLeft4x4[blkAddr]],
                             pred[mappingTop4x4[blkAddr]]);
 
-                    lumaAC[blkAddr] = new ResidualBlock(cavlcReader.readCoeffs(reader,
-                            ResidualBlock.BlockType.BLOCK_LUMA_16x16_AC, coeffToken));
+                    int[] coeffs = new int[cavlcReader.getMaxCoeff(ResidualBlock.BlockType.BLOCK_LUMA_16x16_AC)];
+                    cavlcReader.readCoeffs(reader, ResidualBlock.BlockType.BLOCK_LUMA_16x16_AC, coeffToken, coeffs);
+                    lumaAC[blkAddr] = new ResidualBlock(coeffs);
                     pred[blkAddr] = coeffToken;
                     tokens[blkAddr] = coeffToken;
                 } else {
@@ -1,10 +1,9 @@
 package org.jcodec.codecs.h264.io.read;
 
-import static org.jcodec.codecs.h264.io.read.CAVLCReader.readBool;
-import static org.jcodec.codecs.h264.io.read.CAVLCReader.readU;
 import static org.jcodec.codecs.h264.io.read.CAVLCReader.readZeroBitCount;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.jcodec.codecs.h264.io.model.ChromaFormat;
 import org.jcodec.codecs.h264.io.model.CoeffToken;
@@ -28,88 +27,116 @@ public class ResidualCoeffsCAVLCReader {
         this.chromaFormat = chromaFormat;
     }
 
-    public int[] readCoeffs(InBits in, BlockType blockType, CoeffToken coeffToken) throws IOException {
+    private int[] level = new int[16];
+    private int[] run = new int[16];
+
+    /**
+     * @return Number of the coefficients in the block of this type, the size
+     *         of the array passed to readCoeffs
+     */
+    public int getMaxCoeff(BlockType blockType) {
+        if (blockType == BlockType.BLOCK_CHROMA_DC)
+            return 16 / (chromaFormat.getSubHeight() * chromaFormat.getSubHeight());
+        return blockType.getMaxCoeffs();
+    }
 
-        int maxCoeff = blockType.getMaxCoeffs();
-        if (blockType == blockType.BLOCK_CHROMA_DC)
-            maxCoeff = 16 / (chromaFormat.getSubHeight() * chromaFormat.getSubHeight());
+    /**
+     * Reads the coefficients of one block into coeffLevel, the first
+     * getMaxCoeff(blockType) entries are overwritten so the same array may be
+     * passed for every block
+     */
+    public void readCoeffs(InBits in, BlockType blockType, CoeffToken coeffToken, int[] coeffLevel)
+            throws IOException {
+
+        int maxCoeff = getMaxCoeff(blockType);
+        Arrays.fill(coeffLevel, 0, maxCoeff, 0);
+        int totalCoeff = coeffToken.totalCoeff;
+        int trailingOnes = coeffToken.trailingOnes;
+        if (totalCoeff == 0)
+            return;
+
+        int suffixLength;
+        if (totalCoeff > 10 && trailingOnes < 3) {
+            suffixLength = 1;
+        } else {
+            suffixLength = 0;
+        }
 
-        int[] coeffLevel = new int[maxCoeff];
+        if (trailingOnes > 0) {
+            int signs = in.readNBit(trailingOnes);
+            for (int i = 0; i < trailingOnes; i++)
+                level[i] = 1 - (((signs >> (trailingOnes - i - 1)) & 1) << 1);
+        }
 
-        if (coeffToken.totalCoeff > 0) {
-            int suffixLength;
-            if (coeffToken.totalCoeff > 10 && coeffToken.trailingOnes < 3) {
+        for (int i = trailingOnes; i < totalCoeff; i++) {
+            int level_prefix = readLevelPrefix(in);
+            int levelSuffixSize = suffixLength;
+            if (level_prefix == 14 && suffixLength == 0)
+                levelSuffixSize = 4;
+            if (level_prefix >= 15)
+                levelSuffixSize = level_prefix - 3;
+
+            int levelCode = (Min(15, level_prefix) << suffixLength);
+            if (levelSuffixSize > 0) {
+                int level_suffix = in.readNBit(levelSuffixSize);
+                levelCode += level_suffix;
+            }
+            if (level_prefix >= 15 && suffixLength == 0)
+                levelCode += 15;
+            if (level_prefix >= 16)
+                levelCode += (1 << (level_prefix - 3)) - 4096;
+            if (i == trailingOnes && trailingOnes < 3)
+                levelCode += 2;
+            if (levelCode % 2 == 0)
+                level[i] = (levelCode + 2) >> 1;
+            else
+                level[i] = (-levelCode - 1) >> 1;
+            if (suffixLength == 0)
                 suffixLength = 1;
+            if (Abs(level[i]) > (3 << (suffixLength - 1)) && suffixLength < 6)
+                suffixLength++;
+        }
+
+        int zerosLeft;
+        if (totalCoeff < maxCoeff) {
+            if (blockType == BlockType.BLOCK_CHROMA_DC && chromaFormat == ChromaFormat.YUV_420) {
+                zerosLeft = TotalZerosToken.readCr2x2(in, totalCoeff);
+            } else if (blockType == BlockType.BLOCK_CHROMA_DC && chromaFormat == ChromaFormat.YUV_422) {
+                zerosLeft = TotalZerosToken.readCr2x2(in, totalCoeff);
             } else {
-                suffixLength = 0;
+                zerosLeft = TotalZerosToken.read4x4(in, totalCoeff);
             }
+        } else
+            zerosLeft = 0;
 
-            int[] level = new int[coeffToken.totalCoeff];
-            for (int i = 0; i < coeffToken.totalCoeff; i++) {
-                if (i < coeffToken.trailingOnes) {
-                    boolean trailing_ones_sign_flag = readBool(in, "RB: trailing_ones_sign_flag");
-                    level[i] = 1 - 2 * (trailing_ones_sign_flag ? 1 : 0);
-                } else {
-                    int level_prefix = readZeroBitCount(in, blockType.getLabel() + " level prefix");
-                    int levelSuffixSize = suffixLength;
-                    if (level_prefix == 14 && suffixLength == 0)
-                        levelSuffixSize = 4;
-                    if (level_prefix >= 15)
-                        levelSuffixSize = level_prefix - 3;
-
-                    int levelCode = (Min(15, level_prefix) << suffixLength);
-                    if (levelSuffixSize > 0) {
-                        int level_suffix = readU(in, levelSuffixSize, "RB: level_suffix");
-                        levelCode += level_suffix;
-                    }
-                    if (level_prefix >= 15 && suffixLength == 0)
-                        levelCode += 15;
-                    if (level_prefix >= 16)
-                        levelCode += (1 << (level_prefix - 3)) - 4096;
-                    if (i == coeffToken.trailingOnes && coeffToken.trailingOnes < 3)
-                        levelCode += 2;
-                    if (levelCode % 2 == 0)
-                        level[i] = (levelCode + 2) >> 1;
-                    else
-                        level[i] = (-levelCode - 1) >> 1;
-                    if (suffixLength == 0)
-                        suffixLength = 1;
-                    if (Abs(level[i]) > (3 << (suffixLength - 1)) && suffixLength < 6)
-                        suffixLength++;
-                }
-            }
-            int zerosLeft;
-            if (coeffToken.totalCoeff < maxCoeff) {
-                int total_zeros;
-                if (blockType == BlockType.BLOCK_CHROMA_DC && chromaFormat == ChromaFormat.YUV_420) {
-                    total_zeros = TotalZerosToken.readCr2x2(in, coeffToken.totalCoeff);
-                } else if (blockType == BlockType.BLOCK_CHROMA_DC && chromaFormat == ChromaFormat.YUV_422) {
-                    total_zeros = TotalZerosToken.readCr2x2(in, coeffToken.totalCoeff);
-                } else {
-                    total_zeros = TotalZerosToken.read4x4(in, coeffToken.totalCoeff);
-                }
-
-                zerosLeft = total_zeros;
+        for (int i = 0; i < totalCoeff - 1; i++) {
+            if (zerosLeft > 0) {
+                run[i] = RunBeforeToken.read(in, zerosLeft);
             } else
-                zerosLeft = 0;
-            int[] run = new int[coeffToken.totalCoeff];
-            for (int i = 0; i < coeffToken.totalCoeff - 1; i++) {
-                if (zerosLeft > 0) {
-                    int run_before = RunBeforeToken.read(in, zerosLeft);
-                    run[i] = run_before;
-                } else
-                    run[i] = 0;
-                zerosLeft = zerosLeft - run[i];
-            }
-            run[coeffToken.totalCoeff - 1] = zerosLeft;
-            int coeffNum = -1;
-            for (int i = coeffToken.totalCoeff - 1; i >= 0; i--) {
-                coeffNum += run[i] + 1;
-                coeffLevel[coeffNum] = level[i];
-            }
+                run[i] = 0;
+            zerosLeft = zerosLeft - run[i];
+        }
+        run[totalCoeff - 1] = zerosLeft;
+
+        int coeffNum = -1;
+        for (int i = totalCoeff - 1; i >= 0; i--) {
+            coeffNum += run[i] + 1;
+            coeffLevel[coeffNum] = level[i];
         }
+    }
+
+    /**
+     * Reads level_prefix, counts up to 15 leading zeros with one peek
+     */
+    private static int readLevelPrefix(InBits in) throws IOException {
+        int bits = in.checkNBit(16);
+        if (bits == 0)
+            return readZeroBitCount(in, "RB: level prefix");
+
+        int level_prefix = Integer.numberOfLeadingZeros(bits) - 16;
+        in.skip(level_prefix + 1);
 
-        return coeffLevel;
+        return level_prefix;
     }
 
     private static int Min(int i, int level_prefix) {
@@ -146,8 +146,6 @@ public class SliceHeaderReader {
         return uiRet;
     }
 
-    static int i = 0;
-
     private static void readDecoderPicMarking(NALUnit nalUnit, SliceHeader sh, InBits in) throws IOException {
         if (nalUnit.type == NALUnitType.IDR_SLICE) {
             boolean no_output_of_prior_pics_flag = readBool(in, "SH: no_output_of_prior_pics_flag");
@@ -259,7 +257,6 @@ public class SliceHeaderReader {
     }
 
     private static void readRefPicListReordering(SliceHeader sh, InBits in) throws IOException {
-        System.out.println(i++);
         if (sh.slice_type.isInter()) {
             boolean ref_pic_list_reordering_flag_l0 = readBool(in, "SH: ref_pic_list_reordering_flag_l0");
             if (ref_pic_list_reordering_flag_l0) {
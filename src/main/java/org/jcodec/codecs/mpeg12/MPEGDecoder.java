@@ -18,6 +18,7 @@ import static org.jcodec.codecs.mpeg12.MPEGConst.vlcCoeff1;
 import static org.jcodec.codecs.mpeg12.MPEGConst.vlcDCSizeChroma;
 import static org.jcodec.codecs.mpeg12.MPEGConst.vlcDCSizeLuma;
 import static org.jcodec.codecs.mpeg12.MPEGConst.vlcMBType;
+import static org.jcodec.codecs.mpeg12.MPEGPred.PAD;
 import static org.jcodec.codecs.mpeg12.bitstream.PictureCodingExtension.Frame;
 import static org.jcodec.codecs.mpeg12.bitstream.SequenceExtension.Chroma420;
 import static org.jcodec.codecs.mpeg12.bitstream.SequenceExtension.Chroma422;
@@ -30,6 +31,12 @@ import static org.jcodec.common.model.ColorSpace.YUV422;
 import static org.jcodec.common.model.ColorSpace.YUV444;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import org.jcodec.codecs.mpeg12.MPEGConst.MBType;
 import org.jcodec.codecs.mpeg12.bitstream.GOPHeader;
@@ -44,9 +51,11 @@ import org.jcodec.common.io.Buffer;
 import org.jcodec.common.io.InBits;
 import org.jcodec.common.io.VLC;
 import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Rect;
 import org.jcodec.common.model.Size;
+import org.jcodec.common.tools.JobUtil;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
@@ -58,6 +67,13 @@ import org.jcodec.common.model.Size;
  * 
  * Conforms to H.262 ( ISO/IEC 13818-2, ISO/IEC 11172-2 ) specifications
  * 
+ * Given an executor the slices of a picture are decoded concurrently, they
+ * don't depend on each other and cover disjoint areas of the picture.
+ * 
+ * Can decode pictures downscaled by 2, 4 or 8, the blocks are reconstructed
+ * right at the reduced size and motion compensation works on the reduced
+ * reference pictures.
+ * 
  * @author The JCodec project
  * 
  */
@@ -66,8 +82,19 @@ public class MPEGDecoder implements VideoDecoder {
     protected SequenceHeader sh;
     protected GOPHeader gh;
     private int maxCoeff;
-    private Picture[] refFrames = new Picture[2];
-    private Picture[] refFields = new Picture[2];
+    private PaddedPicture[] refFrames = new PaddedPicture[2];
+    private PaddedPicture[] refFields = new PaddedPicture[2];
+    // both fields of a reference frame, for the field prediction
+    private PaddedPicture[][] refFrameFields = new PaddedPicture[2][2];
+    private ExecutorService executor;
+    private int downscale;
+    // the scale of the current group of pictures, the references must match
+    private int curDownscale;
+    private ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
 
     public MPEGDecoder(SequenceHeader sh, GOPHeader gh) {
         this.sh = sh;
@@ -82,10 +109,27 @@ public class MPEGDecoder implements VideoDecoder {
         this.maxCoeff = maxCoeff;
     }
 
+    public MPEGDecoder(ExecutorService executor) {
+        this();
+        this.executor = executor;
+    }
+
+    /**
+     * Makes the decoder output pictures scaled down by 2^downscale in both
+     * directions, 0 is the full size, 3 is 1/8 where only DC of the blocks
+     * is used. Takes effect on the next intra picture.
+     */
+    public void setDownscale(int downscale) {
+        if (downscale < 0 || downscale > 3)
+            throw new IllegalArgumentException("Unsupported downscale: " + downscale);
+        this.downscale = downscale;
+    }
+
     public class Context {
         int[] intra_dc_predictor = new int[3];
         public int mbWidth;
         int mbNo;
+        int sliceStart;
         public int codedWidth;
         public int codedHeight;
         public int mbHeight;
@@ -93,6 +137,55 @@ public class MPEGDecoder implements VideoDecoder {
         public MBType lastPredB;
         public int[][] qMats;
         public int[] scan;
+        int[][] fCode;
+        Scratch scratch;
+
+        /**
+         * @return Context of the same picture with it's own slice state
+         */
+        private Context copy() {
+            Context result = new Context();
+            result.mbWidth = mbWidth;
+            result.codedWidth = codedWidth;
+            result.codedHeight = codedHeight;
+            result.mbHeight = mbHeight;
+            result.color = color;
+            result.qMats = qMats;
+            result.scan = scan;
+            result.fCode = fCode;
+            return result;
+        }
+    }
+
+    /**
+     * Buffers reused from one macroblock to another, so that decoding doesn't
+     * allocate anything past the first picture. Each thread decoding slices
+     * has it's own.
+     */
+    private static class Scratch {
+        private int chromaFormat = -1;
+        private int downscale = -1;
+        private int[][] predFwd;
+        private int[][] predBack;
+        private int[][] predTmp;
+        private int[] block = new int[64];
+        private int[] qScaleCode = new int[1];
+        private MPEGPred pred = new MPEGPred(null, Chroma420, true);
+
+        private void setFormat(int chromaFormat, int downscale) {
+            if (this.chromaFormat == chromaFormat && this.downscale == downscale)
+                return;
+            this.chromaFormat = chromaFormat;
+            this.downscale = downscale;
+            predFwd = mbPix(chromaFormat, downscale);
+            predBack = mbPix(chromaFormat, downscale);
+            predTmp = mbPix(chromaFormat, downscale);
+        }
+
+        private static int[][] mbPix(int chromaFormat, int downscale) {
+            int lumaSize = 256 >> (downscale << 1), chromaSize = (1 << (chromaFormat + 5)) >> (downscale << 1);
+            return new int[][] { new int[lumaSize], new int[chromaSize], new int[chromaSize] };
+        }
     }
 
     public Picture decodeFrame(Buffer buffer, int[][] buf) {
@@ -104,9 +197,11 @@ public class MPEGDecoder implements VideoDecoder {
                 throw new RuntimeException("Not enough references to decode "
                         + (ph.picture_coding_type == 1 ? "P" : "B") + " frame");
             }
+            if (ph.picture_coding_type == PictureHeader.IntraCoded)
+                curDownscale = downscale;
             Context context = initContext(sh, ph);
-            Picture pic = new Picture(context.codedWidth, context.codedHeight, buf, context.color, new Rect(0, 0,
-                    sh.horizontal_size, sh.vertical_size));
+            Picture pic = new Picture(context.codedWidth >> curDownscale, context.codedHeight >> curDownscale, buf,
+                    context.color, new Rect(0, 0, sh.horizontal_size >> curDownscale, sh.vertical_size >> curDownscale));
             if (ph.pictureCodingExtension != null && ph.pictureCodingExtension.picture_structure != Frame) {
                 decodePicture(context, ph, buffer, buf, ph.pictureCodingExtension.picture_structure - 1, 1);
                 ph = readHeader(buffer);
@@ -118,9 +213,11 @@ public class MPEGDecoder implements VideoDecoder {
 
             if (ph.picture_coding_type == PictureHeader.IntraCoded
                     || ph.picture_coding_type == PictureHeader.PredictiveCoded) {
-                Picture unused = refFrames[1];
+                PaddedPicture unused = refFrames[1];
                 refFrames[1] = refFrames[0];
                 refFrames[0] = copyAndCreateIfNeeded(pic, unused);
+                for (int i = 0; i < 2; i++)
+                    refFrameFields[i][0] = refFrameFields[i][1] = refFrames[i];
             }
 
             return pic;
@@ -129,11 +226,17 @@ public class MPEGDecoder implements VideoDecoder {
         }
     }
 
-    private Picture copyAndCreateIfNeeded(Picture src, Picture dst) {
-        if (dst == null || !dst.compatible(src)) {
-            dst = src.createCompatible();
-        }
+    /**
+     * Copies the picture into the reference, the output buffers are reused by
+     * the caller. The edges are extended once here so that motion compensation
+     * never clips.
+     */
+    private PaddedPicture copyAndCreateIfNeeded(Picture src, PaddedPicture dst) {
+        if (dst == null || !dst.compatible(src))
+            dst = PaddedPicture.create(src.createCompatible(), PAD);
+
         dst.copyFrom(src);
+        dst.fill();
         return dst;
     }
 
@@ -188,6 +291,9 @@ public class MPEGDecoder implements VideoDecoder {
         int[] intra = sh.intra_quantiser_matrix == null ? zigzag(MPEGConst.defaultQMatIntra, context.scan)
                 : sh.intra_quantiser_matrix;
         context.qMats = new int[][] { inter, inter, intra, intra };
+        context.fCode = ph.pictureCodingExtension != null ? ph.pictureCodingExtension.f_code : new int[][] {
+                new int[] { ph.forward_f_code, ph.forward_f_code },
+                new int[] { ph.backward_f_code, ph.backward_f_code } };
 
         if (ph.quantMatrixExtension != null) {
             if (ph.quantMatrixExtension.non_intra_quantiser_matrix != null)
@@ -218,22 +324,23 @@ public class MPEGDecoder implements VideoDecoder {
     public Picture decodePicture(Context context, PictureHeader ph, Buffer buffer, int[][] buf, int vertOff,
             int vertStep) {
 
-        int planeSize = context.codedWidth * context.codedHeight;
+        int width = context.codedWidth >> curDownscale, height = context.codedHeight >> curDownscale;
+        int planeSize = width * height;
         if (buf.length < 3 || buf[0].length < planeSize || buf[1].length < planeSize || buf[2].length < planeSize) {
-            throw new RuntimeException("Buffer too small to hold output picture [" + context.codedWidth + "x"
-                    + context.codedHeight + "]");
+            throw new RuntimeException("Buffer too small to hold output picture [" + width + "x" + height + "]");
         }
 
         try {
+            List<FutureTask<Object>> jobs = new ArrayList<FutureTask<Object>>();
             Buffer segment;
             while ((segment = nextSegment(buffer)) != null) {
                 if (segment.get(3) >= SLICE_START_CODE_FIRST && segment.get(3) <= SLICE_START_CODE_LAST) {
-                    try {
+                    if (executor != null)
+                        jobs.add(JobUtil.submit(executor, new SliceJob(ph, segment, context.copy(), buf, vertOff,
+                                vertStep)));
+                    else
                         decodeSlice(ph, segment.get(3) & 0xff, context, buf, new BitstreamReaderBB(segment.from(4)),
                                 vertOff, vertStep);
-                    } catch (RuntimeException e) {
-                        e.printStackTrace();
-                    }
                 } else if (segment.get(3) >= 0xB3 && segment.get(3) != 0xB6 && segment.get(3) != 0xB7) {
                     throw new RuntimeException("Unexpected start code " + segment.get(3));
                 } else if (segment.get(3) == 0x0) {
@@ -241,8 +348,9 @@ public class MPEGDecoder implements VideoDecoder {
                     break;
                 }
             }
+            JobUtil.join(jobs);
 
-            Picture pic = new Picture(context.codedWidth, context.codedHeight, buf, context.color);
+            Picture pic = new Picture(width, height, buf, context.color);
             if ((ph.picture_coding_type == PictureHeader.IntraCoded || ph.picture_coding_type == PictureHeader.PredictiveCoded)
                     && ph.pictureCodingExtension != null && ph.pictureCodingExtension.picture_structure != Frame) {
                 refFields[ph.pictureCodingExtension.picture_structure - 1] = copyAndCreateIfNeeded(pic,
@@ -255,6 +363,30 @@ public class MPEGDecoder implements VideoDecoder {
         }
     }
 
+    private class SliceJob implements Callable<Object> {
+        private PictureHeader ph;
+        private Buffer segment;
+        private Context context;
+        private int[][] buf;
+        private int vertOff;
+        private int vertStep;
+
+        public SliceJob(PictureHeader ph, Buffer segment, Context context, int[][] buf, int vertOff, int vertStep) {
+            this.ph = ph;
+            this.segment = segment;
+            this.context = context;
+            this.buf = buf;
+            this.vertOff = vertOff;
+            this.vertStep = vertStep;
+        }
+
+        public Object call() throws IOException {
+            decodeSlice(ph, segment.get(3) & 0xff, context, buf, new BitstreamReaderBB(segment.from(4)), vertOff,
+                    vertStep);
+            return null;
+        }
+    }
+
     private ColorSpace getColor(int chromaFormat) {
         switch (chromaFormat) {
         case Chroma420:
@@ -284,7 +416,7 @@ public class MPEGDecoder implements VideoDecoder {
     public void decodeSlice(PictureHeader ph, int verticalPos, Context context, int[][] buf, InBits in, int vertOff,
             int vertStep) throws IOException {
 
-        int stride = sh.horizontal_size;
+        int stride = sh.horizontal_size >> curDownscale;
 
         resetDCPredictors(context, ph);
 
@@ -304,15 +436,19 @@ public class MPEGDecoder implements VideoDecoder {
                 in.readNBit(8);
         }
 
-        MPEGPred pred = new MPEGPred(ph.pictureCodingExtension != null ? ph.pictureCodingExtension.f_code
-                : new int[][] { new int[] { ph.forward_f_code, ph.forward_f_code },
-                        new int[] { ph.backward_f_code, ph.backward_f_code } },
-                sh.sequenceExtension != null ? sh.sequenceExtension.chroma_format : Chroma420,
-                ph.pictureCodingExtension != null && ph.pictureCodingExtension.top_field_first == 0 ? false : true);
+        int chromaFormat = sh.sequenceExtension != null ? sh.sequenceExtension.chroma_format : Chroma420;
+        context.scratch = scratch.get();
+        context.scratch.setFormat(chromaFormat, curDownscale);
+
+        MPEGPred pred = context.scratch.pred;
+        pred.init(context.fCode, chromaFormat, ph.pictureCodingExtension != null
+                && ph.pictureCodingExtension.top_field_first == 0 ? false : true, curDownscale);
 
-        int[] ctx = new int[] { qScaleCode };
+        int[] ctx = context.scratch.qScaleCode;
+        ctx[0] = qScaleCode;
 
-        for (int prevAddr = mbRow * context.mbWidth - 1; in.checkNBit(23) != 0;) {
+        context.sliceStart = mbRow * context.mbWidth - 1;
+        for (int prevAddr = context.sliceStart; in.checkNBit(23) != 0;) {
             // TODO: decode skipped!!!
             prevAddr = decodeMacroblock(ph, context, prevAddr, ctx, buf, stride, in, vertOff, vertStep, pred);
             context.mbNo++;
@@ -339,9 +475,11 @@ public class MPEGDecoder implements VideoDecoder {
         if (sh.sequenceExtension != null)
             chromaFormat = sh.sequenceExtension.chroma_format;
 
-        for (int i = prevAddr + 1; i < mbAddr; i++) {
-            int[][] predFwd = new int[][] { new int[256], new int[1 << (chromaFormat + 5)],
-                    new int[1 << (chromaFormat + 5)] };
+        // the first macroblock of a slice is positioned with the address
+        // increment, the ones before it belong to the previous slice
+        int firstSkipped = prevAddr == context.sliceStart ? mbAddr : prevAddr + 1;
+        for (int i = firstSkipped; i < mbAddr; i++) {
+            int[][] predFwd = context.scratch.predFwd;
             int mbX = i % context.mbWidth;
             int mbY = i / context.mbWidth;
             if (ph.picture_coding_type == PictureHeader.PredictiveCoded)
@@ -399,7 +537,7 @@ public class MPEGDecoder implements VideoDecoder {
                 pred.reset();
         } else if (mbType.macroblock_motion_forward != 0) {
             int refIdx = ph.picture_coding_type == PictureHeader.PredictiveCoded ? 0 : 1;
-            predFwd = new int[][] { new int[256], new int[1 << (chromaFormat + 5)], new int[1 << (chromaFormat + 5)] };
+            predFwd = context.scratch.predFwd;
             if (ph.pictureCodingExtension == null || ph.pictureCodingExtension.picture_structure == Frame) {
                 pred.predictInFrame(refFrames[refIdx], mbX << 4, mbY << 4, predFwd, in, motion_type, 0,
                         spatial_temporal_weight_code);
@@ -408,30 +546,27 @@ public class MPEGDecoder implements VideoDecoder {
                     pred.predictInField(refFields, mbX << 4, mbY << 4, predFwd, in, motion_type, 0,
                             ph.pictureCodingExtension.picture_structure - 1);
                 } else {
-                    pred.predictInField(new Picture[] { refFrames[refIdx], refFrames[refIdx] }, mbX << 4, mbY << 4,
-                            predFwd, in, motion_type, 0, ph.pictureCodingExtension.picture_structure - 1);
+                    pred.predictInField(refFrameFields[refIdx], mbX << 4, mbY << 4, predFwd, in, motion_type, 0, ph.pictureCodingExtension.picture_structure - 1);
                 }
             }
         } else if (ph.picture_coding_type == PictureHeader.PredictiveCoded) {
-            predFwd = new int[][] { new int[256], new int[1 << (chromaFormat + 5)], new int[1 << (chromaFormat + 5)] };
+            predFwd = context.scratch.predFwd;
             pred.reset();
             mvZero(context, ph, pred, mbX, mbY, predFwd);
         }
 
         int[][] predBack = null;
         if (mbType.macroblock_motion_backward != 0) {
-            predBack = new int[][] { new int[256], new int[1 << (chromaFormat + 5)], new int[1 << (chromaFormat + 5)] };
+            predBack = context.scratch.predBack;
             if (ph.pictureCodingExtension == null || ph.pictureCodingExtension.picture_structure == Frame) {
                 pred.predictInFrame(refFrames[0], mbX << 4, mbY << 4, predBack, in, motion_type, 1,
                         spatial_temporal_weight_code);
             } else {
-                pred.predictInField(new Picture[] { refFrames[0], refFrames[0] }, mbX << 4, mbY << 4, predBack, in,
-                        motion_type, 1, ph.pictureCodingExtension.picture_structure - 1);
+                pred.predictInField(refFrameFields[0], mbX << 4, mbY << 4, predBack, in, motion_type, 1, ph.pictureCodingExtension.picture_structure - 1);
             }
         }
         context.lastPredB = mbType;
-        int[][] pp = mbType.macroblock_intra == 1 ? new int[][] { new int[256], new int[1 << (chromaFormat + 5)],
-                new int[1 << (chromaFormat + 5)] } : buildPred(predFwd, predBack);
+        int[][] pp = mbType.macroblock_intra == 1 ? clear(context.scratch.predFwd) : buildPred(predFwd, predBack);
 
         if (mbType.macroblock_intra != 0 && concealmentMv)
             assertEquals(1, in.read1Bit()); // Marker
@@ -455,17 +590,17 @@ public class MPEGDecoder implements VideoDecoder {
             intra_dc_mult = 8 >> ph.pictureCodingExtension.intra_dc_precision;
 
         int blkCount = 6 + (chromaFormat == Chroma420 ? 0 : (chromaFormat == Chroma422 ? 2 : 6));
-        int[] block = new int[64];
+        int[] block = context.scratch.block;
         for (int i = 0, cbpMask = 1 << (blkCount - 1); i < blkCount; i++, cbpMask >>= 1) {
             if ((cbp & cbpMask) == 0)
                 continue;
             int[] qmat = context.qMats[(i >= 4 ? 1 : 0) + (mbType.macroblock_intra << 1)];
 
             if (mbType.macroblock_intra == 1)
-                blockIntra(in, vlcCoeff, pp[BLOCK_TO_CC[i]], context.intra_dc_predictor, i, context.scan,
+                blockIntra(in, vlcCoeff, block, context.intra_dc_predictor, i, context.scan,
                         sh.hasExtensions() || ph.hasExtensions() ? 12 : 8, intra_dc_mult, qScale, qmat);
             else
-                blockInter(in, vlcCoeff, pp[BLOCK_TO_CC[i]], context.scan,
+                blockInter(in, vlcCoeff, block, context.scan,
                         sh.hasExtensions() || ph.hasExtensions() ? 12 : 8, qScale, qmat);
 
             mapBlock(block, pp[BLOCK_TO_CC[i]], i, dctType, chromaFormat);
@@ -479,12 +614,21 @@ public class MPEGDecoder implements VideoDecoder {
     
     private void mapBlock(int[] block, int[] out, int blkIdx, int dctType, int chromaFormat) {
         int stepVert = chromaFormat == Chroma420 && (blkIdx == 4 || blkIdx == 5) ? 0 : dctType;
-        int log2stride = blkIdx < 4 ? 4 : 4 - SQUEEZE_X[chromaFormat];
+        int log2stride = (blkIdx < 4 ? 4 : 4 - SQUEEZE_X[chromaFormat]) - curDownscale;
 
         int blkIdxExt = blkIdx + (dctType << 4);
-        int x = MPEGConst.BLOCK_POS_X[blkIdxExt];
-        int y = MPEGConst.BLOCK_POS_Y[blkIdxExt];
+        int x = MPEGConst.BLOCK_POS_X[blkIdxExt] >> curDownscale;
+        // line of the field block is the field itself
+        int y = stepVert == 0 ? MPEGConst.BLOCK_POS_Y[blkIdxExt] >> curDownscale : MPEGConst.BLOCK_POS_Y[blkIdxExt];
         int off = (y << log2stride) + x, stride = 1 << (log2stride + stepVert);
+        if (curDownscale != 0) {
+            for (int i = 0, size = 8 >> curDownscale, coeff = 0; i < size; i++) {
+                for (int j = 0; j < size; j++)
+                    out[off + j] += block[coeff++];
+                off += stride;
+            }
+            return;
+        }
         for (int i = 0, coeff = 0; i < 8; i++, coeff += 8) {
             out[off] += block[coeff];
             out[off + 1] += block[coeff + 1];
@@ -499,6 +643,12 @@ public class MPEGDecoder implements VideoDecoder {
         }
     }
 
+    private static final int[][] clear(int[][] mbPix) {
+        for (int i = 0; i < mbPix.length; i++)
+            Arrays.fill(mbPix[i], 0);
+        return mbPix;
+    }
+
     private static final int[][] buildPred(int[][] predFwd, int[][] predBack) {
         if (predFwd != null && predBack != null) {
             avgPred(predFwd, predBack);
@@ -513,12 +663,16 @@ public class MPEGDecoder implements VideoDecoder {
 
     private static final void avgPred(int[][] predFwd, int[][] predBack) {
         for (int i = 0; i < predFwd.length; i++) {
-            for (int j = 0; j < predFwd[i].length; j += 4) {
+            int j = 0;
+            for (; j < predFwd[i].length - 3; j += 4) {
                 predFwd[i][j] = (predFwd[i][j] + predBack[i][j] + 1) >> 1;
                 predFwd[i][j + 1] = (predFwd[i][j + 1] + predBack[i][j + 1] + 1) >> 1;
                 predFwd[i][j + 2] = (predFwd[i][j + 2] + predBack[i][j + 2] + 1) >> 1;
                 predFwd[i][j + 3] = (predFwd[i][j + 3] + predBack[i][j + 3] + 1) >> 1;
             }
+            // tiny blocks of the downscaled pictures
+            for (; j < predFwd[i].length; j++)
+                predFwd[i][j] = (predFwd[i][j] + predBack[i][j] + 1) >> 1;
         }
     }
 
@@ -531,7 +685,7 @@ public class MPEGDecoder implements VideoDecoder {
             if (context.lastPredB.macroblock_motion_backward == 1) {
                 pred.predict16x16NoMV(refFrames[0], mbX << 4, mbY << 4, ph.pictureCodingExtension == null ? Frame
                         : ph.pictureCodingExtension.picture_structure, 1, pp);
-                pp = new int[][] { new int[mbPix[0].length], new int[mbPix[1].length], new int[mbPix[2].length] };
+                pp = context.scratch.predTmp;
             }
             if (context.lastPredB.macroblock_motion_forward == 1) {
                 pred.predict16x16NoMV(refFrames[1], mbX << 4, mbY << 4, ph.pictureCodingExtension == null ? Frame
@@ -546,11 +700,12 @@ public class MPEGDecoder implements VideoDecoder {
             int height, int vertOff, int vertStep) {
 
         int chromaStride = (stride + (1 << SQUEEZE_X[chromaFormat]) - 1) >> SQUEEZE_X[chromaFormat];
-        int chromaMBW = 4 - SQUEEZE_X[chromaFormat];
-        int chromaMBH = 4 - SQUEEZE_Y[chromaFormat];
+        int lumaMB = 4 - curDownscale;
+        int chromaMBW = 4 - SQUEEZE_X[chromaFormat] - curDownscale;
+        int chromaMBH = 4 - SQUEEZE_Y[chromaFormat] - curDownscale;
 
-        putSub(buf[0], (mbY << 4) * (stride << vertStep) + vertOff * stride + (mbX << 4), stride << vertStep, mbPix[0],
-                4, 4);
+        putSub(buf[0], (mbY << lumaMB) * (stride << vertStep) + vertOff * stride + (mbX << lumaMB),
+                stride << vertStep, mbPix[0], lumaMB, lumaMB);
         putSub(buf[1], (mbY << chromaMBH) * (chromaStride << vertStep) + vertOff * chromaStride + (mbX << chromaMBW),
                 chromaStride << vertStep, mbPix[1], chromaMBW, chromaMBH);
         putSub(buf[2], (mbY << chromaMBH) * (chromaStride << vertStep) + vertOff * chromaStride + (mbX << chromaMBW),
@@ -574,6 +729,12 @@ public class MPEGDecoder implements VideoDecoder {
                 blOff += 8;
                 off += stride;
             }
+        } else if (mbW < 3) {
+            for (int i = 0; i < (1 << mbH); i++) {
+                for (int j = 0; j < (1 << mbW); j++)
+                    big[off + j] = clip(block[blOff++]);
+                off += stride;
+            }
         } else {
             for (int i = 0; i < (1 << mbH); i++) {
                 big[off] = clip(block[blOff]);
@@ -618,7 +779,7 @@ public class MPEGDecoder implements VideoDecoder {
         int delta = (size != 0) ? mpegSigned(in, size) : 0;
         intra_dc_predictor[cc] = intra_dc_predictor[cc] + delta;
         int dc = intra_dc_predictor[cc] * intra_dc_mult;
-        SparseIDCT.start(block, dc);
+        SparseIDCT.start(block, dc, curDownscale);
 
         for (int idx = 0; idx < maxCoeff;) {
             int readVLC = vlcCoeff.readVLC(in);
@@ -632,9 +793,9 @@ public class MPEGDecoder implements VideoDecoder {
                 level = level >= 0 ? (level >> 4) : -(-level >> 4);
             } else
                 break;
-            SparseIDCT.coeff(block, scan[idx], level);
+            SparseIDCT.coeff(block, scan[idx], level, curDownscale);
         }
-        SparseIDCT.finish(block);
+        SparseIDCT.finish(block, curDownscale);
     }
 
     private final void blockInter(InBits in, VLC vlcCoeff, int[] block, int[] scan, int escSize, int qScale,
@@ -644,10 +805,10 @@ public class MPEGDecoder implements VideoDecoder {
         if (vlcCoeff == vlcCoeff0 && in.checkNBit(1) == 1) {
             in.read1Bit();
             int dc = toSigned(quantInter(1, qScale * qmat[0]), in.read1Bit());
-            SparseIDCT.start(block, dc);
+            SparseIDCT.start(block, dc, curDownscale);
             idx++;
         } else {
-            SparseIDCT.start(block, 0);
+            SparseIDCT.start(block, 0, curDownscale);
         }
 
         for (; idx < maxCoeff;) {
@@ -661,9 +822,9 @@ public class MPEGDecoder implements VideoDecoder {
                 ac = quantInterSigned(twosSigned(in, escSize), qScale * qmat[idx]);
             } else
                 break;
-            SparseIDCT.coeff(block, scan[idx], ac);
+            SparseIDCT.coeff(block, scan[idx], ac, curDownscale);
         }
-        SparseIDCT.finish(block);
+        SparseIDCT.finish(block, curDownscale);
     }
 
     private static final int twosSigned(InBits in, int size) throws IOException {
@@ -1,11 +1,15 @@
 package org.jcodec.codecs.mpeg12;
 
+import static java.lang.Math.max;
 import static org.jcodec.codecs.mpeg12.MPEGConst.EXTENSION_START_CODE;
 import static org.jcodec.codecs.mpeg12.MPEGConst.GROUP_START_CODE;
 import static org.jcodec.codecs.mpeg12.MPEGConst.PICTURE_START_CODE;
 import static org.jcodec.codecs.mpeg12.MPEGConst.SEQUENCE_END_CODE;
 import static org.jcodec.codecs.mpeg12.MPEGConst.SEQUENCE_ERROR_CODE;
 import static org.jcodec.codecs.mpeg12.MPEGConst.SEQUENCE_HEADER_CODE;
+import static org.jcodec.codecs.mpeg12.MPEGConst.SLICE_START_CODE_FIRST;
+import static org.jcodec.codecs.mpeg12.MPEGConst.SLICE_START_CODE_LAST;
+import static org.jcodec.codecs.mpeg12.MPEGConst.USER_DATA_START_CODE;
 import static org.jcodec.codecs.mpeg12.bitstream.SequenceHeader.Sequence_Display_Extension;
 import static org.jcodec.codecs.mpeg12.bitstream.SequenceHeader.Sequence_Extension;
 import static org.jcodec.codecs.mpeg12.bitstream.SequenceHeader.Sequence_Scalable_Extension;
@@ -13,8 +17,6 @@ import static org.jcodec.codecs.mpeg12.bitstream.SequenceHeader.Sequence_Scalabl
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.jcodec.codecs.mpeg12.bitstream.GOPHeader;
 import org.jcodec.codecs.mpeg12.bitstream.SequenceHeader;
@@ -24,35 +26,52 @@ import org.jcodec.common.model.Packet;
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
  * under FreeBSD License
- * 
+ *
+ * Splits MPEG video elementary stream into pictures
+ *
+ * The stream is read into one array that grows by doubling, a picture is
+ * returned as a view of this array spanning from the picture start code to the
+ * first start code that's not a part of the picture. When the array is full
+ * the unread tail is moved into a new one, so the pictures returned earlier
+ * are never overwritten.
+ *
  * @author The JCodec project
- * 
+ *
  */
 public class MPEGES {
 
     public static final int BUF_SIZE = 4096;
+    private static final int INITIAL_SIZE = 1 << 16;
 
     private GOPHeader gh;
     private SequenceHeader sh;
     private FileInputStream is;
-    private Buffer buf;
     private int frameNo;
 
-    private List<Buffer> debug = new ArrayList<Buffer>();
+    private byte[] data = new byte[INITIAL_SIZE];
+    private int pos;
+    private int limit;
+    // data before mark is not needed any more
+    private int mark;
 
     public long curPts;
 
     protected MPEGES() throws IOException {
-        buf = fetchBuffer();
     }
 
     public MPEGES(File file) throws IOException {
         is = new FileInputStream(file);
-        buf = fetchBuffer();
     }
 
+    /**
+     * Supplies next piece of the stream, called if the stream is not read from
+     * file
+     *
+     * @return Next piece of the stream or null if it's over, the contents is
+     *         copied so the buffer may be reused
+     */
     protected Buffer fetchBuffer() throws IOException {
-        return Buffer.fetchFrom(is, BUF_SIZE);
+        return null;
     }
 
     public SequenceHeader getSequenceHeader() {
@@ -63,97 +82,151 @@ public class MPEGES {
         return gh;
     }
 
+    /**
+     * @return Next picture, the data is a view into the internal buffer
+     */
     public Packet getFrame() throws IOException {
-        List<Buffer> picture = null;
+        boolean picture = false;
+        mark = pos;
         while (true) {
-            if (!nextStartCode()) {
-                return (picture == null || picture.size() == 0) ? null : new Packet(Buffer.combine(picture), curPts,
-                        90000, 0, frameNo++, true, null);
+            int sc = find(pos);
+            if (sc == -1) {
+                Packet result = picture ? frame(mark, limit) : null;
+                pos = limit;
+                return result;
             }
 
-            if (buf.get(3) == PICTURE_START_CODE) {
-                if (picture == null)
-                    picture = new ArrayList<Buffer>();
-                else {
-                    // printDebug();
-                    return new Packet(Buffer.combine(picture), curPts, 90000, 0, frameNo++, true, null);
+            int startCode = data[sc + 3] & 0xff;
+            if (picture) {
+                if (startCode >= SLICE_START_CODE_FIRST && startCode <= SLICE_START_CODE_LAST
+                        || startCode == USER_DATA_START_CODE || startCode == EXTENSION_START_CODE) {
+                    pos = sc + 4;
+                    continue;
                 }
+                pos = sc;
+                return frame(mark, sc);
             }
 
-            Buffer nextSegment = getNextSegment(buf);
-            if (nextSegment == null) {
-                return (picture == null || picture.size() == 0) ? null : new Packet(Buffer.combine(picture), curPts,
-                        90000, 0, frameNo++, true, null);
-            }
-            int startCode = nextSegment.get(3);
-            if (startCode == SEQUENCE_HEADER_CODE) {
-                SequenceHeader newSh = SequenceHeader.read(nextSegment.from(4));
-                if (sh != null) {
-                    newSh.copyExtensions(sh);
-                }
-                sh = newSh;
-            } else if (startCode == GROUP_START_CODE) {
-                gh = GOPHeader.read(nextSegment.from(4));
-            } else if (startCode == SEQUENCE_END_CODE || startCode == SEQUENCE_ERROR_CODE) {
-                buf = buf.from(4);
-            } else if (startCode == EXTENSION_START_CODE) {
-                int extType = nextSegment.get(4) >> 4;
-                if (extType == Sequence_Extension || extType == Sequence_Scalable_Extension
-                        || extType == Sequence_Display_Extension)
-                    SequenceHeader.readExtension(nextSegment.from(4), sh);
-                else if (picture != null)
-                    picture.add(nextSegment);
-                else
-                    buf = buf.from(4);
+            mark = sc;
+            if (startCode == PICTURE_START_CODE) {
+                picture = true;
+                pos = sc + 4;
+            } else if (startCode == SEQUENCE_HEADER_CODE || startCode == GROUP_START_CODE
+                    || startCode == EXTENSION_START_CODE) {
+                int end = find(sc + 4);
+                // find may have moved the data
+                Buffer segment = new Buffer(data, mark + 4, end == -1 ? limit : end);
+                header(startCode, segment);
+                pos = segment.limit;
             } else if (startCode >= 0xB9) {
                 throw new RuntimeException("Unsupported start code: " + startCode);
             } else {
-                if (picture != null) {
-                    picture.add(nextSegment);
-                } else {
-                    buf = buf.from(4);
-                }
+                // slices without a picture, sequence end and error codes
+                pos = sc + 4;
             }
         }
     }
 
-    private boolean nextStartCode() throws IOException {
-        do {
-            int ind = buf.search(0, 0, 1);
-            if (ind != -1)
-                buf = buf.from(ind);
-            if (buf.remaining() < 4 || ind == -1) {
-                Buffer b = fetchBuffer();
-                if (b == null)
-                    return false;
-                buf.extendWith(b);
+    private void header(int startCode, Buffer segment) throws IOException {
+        if (startCode == SEQUENCE_HEADER_CODE) {
+            SequenceHeader newSh = SequenceHeader.read(segment);
+            if (sh != null) {
+                newSh.copyExtensions(sh);
             }
-        } while (buf.get(0) != 0 || buf.get(1) != 0 || buf.get(2) != 1);
-        return true;
+            sh = newSh;
+        } else if (startCode == GROUP_START_CODE) {
+            gh = GOPHeader.read(segment);
+        } else {
+            int extType = segment.get(0) >> 4;
+            if (extType == Sequence_Extension || extType == Sequence_Scalable_Extension
+                    || extType == Sequence_Display_Extension)
+                SequenceHeader.readExtension(segment, sh);
+        }
+    }
+
+    private Packet frame(int start, int end) {
+        return new Packet(new Buffer(data, start, end), curPts, 90000, 0, frameNo++, true, null);
+    }
+
+    /**
+     * Finds next start code reading more data as needed
+     *
+     * @return Position of the start code, there's at least one byte after the
+     *         prefix, or -1 if the stream is over
+     */
+    private int find(int from) throws IOException {
+        while (true) {
+            int sc = nextStartCode(data, from, limit - 1);
+            if (sc != -1)
+                return sc;
+
+            // the prefix may be split between the pieces
+            from = max(from, limit - 3);
+            int shift = fill();
+            if (shift == -1)
+                return -1;
+            from -= shift;
+        }
     }
 
-    public Buffer getNextSegment(Buffer buf) throws IOException {
-        int idx = buf.from(4).search(0, 0, 1);
-        while (idx == -1) {
-            Buffer buffer = fetchBuffer();
-            if (buffer == null)
-                return buf.remaining() == 0 ? null : buf.read(buf.remaining());
-            buf.extendWith(buffer);
-            idx = buf.from(4).search(0, 0, 1);
+    /**
+     * Reads next piece of the stream
+     *
+     * @return How far the data was moved towards the beginning of the array or
+     *         -1 if the stream is over
+     */
+    private int fill() throws IOException {
+        Buffer piece = null;
+        int size = BUF_SIZE;
+        if (is == null) {
+            piece = fetchBuffer();
+            if (piece == null)
+                return -1;
+            size = piece.remaining();
+        }
+
+        int shift = 0;
+        if (limit + size > data.length) {
+            int keep = limit - mark;
+            byte[] newData = new byte[max(INITIAL_SIZE, (keep + size) << 1)];
+            System.arraycopy(data, mark, newData, 0, keep);
+            data = newData;
+            shift = mark;
+            pos -= mark;
+            limit = keep;
+            mark = 0;
         }
 
-        Buffer read = buf.read(idx + 4);
-        debug.add(read);
-        return read;
+        if (piece != null) {
+            System.arraycopy(piece.buffer, piece.pos, data, limit, size);
+            limit += size;
+        } else {
+            int read = is.read(data, limit, data.length - limit);
+            if (read == -1)
+                return -1;
+            limit += read;
+        }
+
+        return shift;
     }
 
-    void printDebug() {
-        Buffer combine = Buffer.combine(debug);
-        byte[] data = combine.buffer;
-        for (int i = 0; i < data.length; i++) {
-            System.out.print((data[i] & 0xff) + ", ");
-            if (i % 100 == 99)
-                System.out.println();
+    /**
+     * Scans for start code prefix 00 00 01 looking at every third byte where
+     * possible
+     *
+     * @return Position of the prefix that ends before limit or -1
+     */
+    public static int nextStartCode(byte[] data, int from, int limit) {
+        for (int i = from + 2; i < limit;) {
+            int b = data[i];
+            if (b == 0) {
+                ++i;
+            } else if (b == 1 && data[i - 1] == 0 && data[i - 2] == 0) {
+                return i - 2;
+            } else {
+                i += 3;
+            }
         }
+        return -1;
     }
-}
\ No newline at end of file
+}
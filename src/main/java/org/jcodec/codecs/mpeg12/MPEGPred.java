@@ -7,7 +7,7 @@ import static org.jcodec.codecs.mpeg12.bitstream.SequenceExtension.Chroma444;
 import java.io.IOException;
 
 import org.jcodec.common.io.InBits;
-import org.jcodec.common.model.Picture;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.tools.MathUtil;
 
 /**
@@ -20,19 +20,43 @@ import org.jcodec.common.tools.MathUtil;
  * 
  */
 public class MPEGPred {
+    /**
+     * Size of the edge extension of the reference pictures, wider than one
+     * macroblock plus the half-pel tap. Field blocks that reach out of the
+     * picture don't use it, see predictPlane
+     */
+    public static final int PAD = 32;
+
     private int[][][] mvPred = new int[2][2][2];
     private int chromaFormat;
     private int[][] fCode;
     private boolean topFieldFirst;
+    private int downscale;
+    private int[][] mbPix1 = new int[3][256];
+    private int[][] mbPix2 = new int[3][256];
+    private int[] sharedLine = new int[16];
 
     public MPEGPred(int[][] fCode, int chromaFormat, boolean topFieldFirst) {
+        init(fCode, chromaFormat, topFieldFirst, 0);
+    }
+
+    /**
+     * Prepares the predictor for the next slice, possibly of another picture
+     * 
+     * @param downscale
+     *            Log2 of the factor the pictures are scaled down by, the
+     *            positions and the vectors are still given at full size
+     */
+    public void init(int[][] fCode, int chromaFormat, boolean topFieldFirst, int downscale) {
         this.fCode = fCode;
         this.chromaFormat = chromaFormat;
         this.topFieldFirst = topFieldFirst;
+        this.downscale = downscale;
+        reset();
     }
 
-    public final void predictEvenEvenSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
-            int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
+    public final void predictEvenEven(int[] ref, int refX, int refY, int refW, int refVertStep, int refVertOff,
+            int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
         int offRef = ((refY << refVertStep) + refVertOff) * refW + refX, offTgt = tgtW * tgtY, lfRef = (refW << refVertStep)
                 - tgtW, lfTgt = tgtVertStep * tgtW;
 
@@ -44,8 +68,8 @@ public class MPEGPred {
         }
     }
 
-    public final void predictEvenOddSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
-            int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
+    public final void predictEvenOdd(int[] ref, int refX, int refY, int refW, int refVertStep, int refVertOff,
+            int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
         int offRef = ((refY << refVertStep) + refVertOff) * refW + refX, offTgt = tgtW * tgtY, lfRef = (refW << refVertStep)
                 - tgtW, lfTgt = tgtVertStep * tgtW;
 
@@ -59,8 +83,8 @@ public class MPEGPred {
         }
     }
 
-    public final void predictOddEvenSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
-            int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
+    public final void predictOddEven(int[] ref, int refX, int refY, int refW, int refVertStep, int refVertOff,
+            int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
         int offRef = ((refY << refVertStep) + refVertOff) * refW + refX, offTgt = tgtW * tgtY, lfRef = (refW << refVertStep)
                 - tgtW, lfTgt = tgtVertStep * tgtW, stride = refW << refVertStep;
 
@@ -74,8 +98,8 @@ public class MPEGPred {
         }
     }
 
-    public final void predictOddOddSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
-            int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
+    public final void predictOddOdd(int[] ref, int refX, int refY, int refW, int refVertStep, int refVertOff,
+            int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
         int offRef = ((refY << refVertStep) + refVertOff) * refW + refX, offTgt = tgtW * tgtY, lfRef = (refW << refVertStep)
                 - tgtW, lfTgt = tgtVertStep * tgtW, stride = refW << refVertStep;
 
@@ -89,128 +113,112 @@ public class MPEGPred {
         }
     }
 
-    private final int getPix1(int[] ref, int refW, int refH, int x, int y, int refVertStep, int refVertOff) {
-        x = MathUtil.clip(x, 0, refW - 1);
-        y = MathUtil.clip(y, 0, refH - (1 << refVertStep) + refVertOff);
-
-        return ref[y * refW + x];
-    }
-
-    private final int getPix2(int[] ref, int refW, int refH, int x1, int y1, int x2, int y2, int refVertStep,
-            int refVertOff) {
-        x1 = MathUtil.clip(x1, 0, refW - 1);
-        int lastLine = refH - (1 << refVertStep) + refVertOff;
-        y1 = MathUtil.clip(y1, 0, lastLine);
-        x2 = MathUtil.clip(x2, 0, refW - 1);
-        y2 = MathUtil.clip(y2, 0, lastLine);
-
-        return (ref[y1 * refW + x1] + ref[y2 * refW + x2] + 1) >> 1;
-    }
-
-    private final int getPix4(int[] ref, int refW, int refH, int x1, int y1, int x2, int y2, int x3, int y3, int x4,
-            int y4, int refVertStep, int refVertOff) {
-        int lastLine = refH - (1 << refVertStep) + refVertOff;
-        x1 = MathUtil.clip(x1, 0, refW - 1);
-        y1 = MathUtil.clip(y1, 0, lastLine);
-        x2 = MathUtil.clip(x2, 0, refW - 1);
-        y2 = MathUtil.clip(y2, 0, lastLine);
-        x3 = MathUtil.clip(x3, 0, refW - 1);
-        y3 = MathUtil.clip(y3, 0, lastLine);
-        x4 = MathUtil.clip(x4, 0, refW - 1);
-        y4 = MathUtil.clip(y4, 0, lastLine);
-
-        return (ref[y1 * refW + x1] + ref[y2 * refW + x2] + ref[y3 * refW + x3] + ref[y4 * refW + x4] + 3) >> 2;
-    }
-
-    public final void predictEvenEvenUnSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
-            int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
-        int tgtOff = tgtW * tgtY, jump = tgtVertStep * tgtW;
-        for (int j = 0; j < tgtH; j++) {
-            int y = ((j + refY) << refVertStep) + refVertOff;
-            for (int i = 0; i < tgtW; i++) {
-                tgt[tgtOff++] = getPix1(ref, refW, refH, i + refX, y, refVertStep, refVertOff);
-            }
-            tgtOff += jump;
-        }
-    }
-
-    public final void predictEvenOddUnSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
+    /**
+     * Predicts a block of one plane from the edge extended reference plane.
+     * The block position is clipped so that it stays within the padding, past
+     * these limits all the pixels of the block come from the edge anyway.
+     * 
+     * @param refX
+     *            Half-pel horizontal position of the block
+     * @param refY
+     *            Half-pel vertical position of the block in the units of the
+     *            field if refVertStep is 1
+     * @param tgtY
+     *            First line of the block within the target, the field of the
+     *            target if tgtVertStep is 1
+     */
+    public final void predictPlane(PaddedPicture ref, int plane, int refX, int refY, int refVertStep,
             int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
-        int tgtOff = tgtW * tgtY, jump = tgtVertStep * tgtW;
-        for (int j = 0; j < tgtH; j++) {
-            int y = ((j + refY) << refVertStep) + refVertOff;
-            for (int i = 0; i < tgtW; i++) {
-                tgt[tgtOff++] = getPix2(ref, refW, refH, i + refX, y, i + refX + 1, y, refVertStep, refVertOff);
+        if (downscale != 0) {
+            // a block too small to have a line of it's own shares it with the
+            // block above, the lower one is averaged into this line
+            boolean top = tgtY == 0;
+            refX >>= downscale;
+            refY >>= downscale;
+            tgtW >>= downscale;
+            tgtH >>= downscale;
+            if (tgtVertStep == 0)
+                tgtY >>= downscale;
+            if (tgtH == 0) {
+                if (!top) {
+                    predictScaled(ref, plane, refX, refY, refVertStep, refVertOff, sharedLine, 0, tgtW, 1, 0);
+                    for (int i = 0, off = tgtVertStep == 0 ? tgtY * tgtW : 0; i < tgtW; i++, off++)
+                        tgt[off] = (tgt[off] + sharedLine[i] + 1) >> 1;
+                    return;
+                }
+                tgtH = 1;
             }
-            tgtOff += jump;
         }
+        predictScaled(ref, plane, refX, refY, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
     }
 
-    public final void predictOddEvenUnSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
-            int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
-        int tgtOff = tgtW * tgtY, jump = tgtVertStep * tgtW;
-        for (int j = 0; j < tgtH; j++) {
-            int y1 = ((j + refY) << refVertStep) + refVertOff;
-            int y2 = ((j + refY + 1) << refVertStep) + refVertOff;
-            for (int i = 0; i < tgtW; i++) {
-                tgt[tgtOff++] = getPix2(ref, refW, refH, i + refX, y1, i + refX, y2, refVertStep, refVertOff);
+    /**
+     * Predicts a block of one plane, the position and the size of the block
+     * are given at the scale of the reference
+     */
+    private void predictScaled(PaddedPicture ref, int plane, int refX, int refY, int refVertStep, int refVertOff,
+            int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
+        if (refVertStep == 1) {
+            // the padding replicates the edge lines of the frame, a field
+            // block reaching past the picture must repeat the line of it's
+            // own field instead
+            int fieldH = ref.getPlaneHeight(plane) >> 1;
+            int fy = refY >> 1;
+            if (fy < 0 || fy + tgtH + (refY & 1) > fieldH) {
+                predictFieldClipped(ref.getPlaneData(plane), ref.getPlaneWidth(plane), fieldH, refX, refY,
+                        refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
+                return;
             }
-            tgtOff += jump;
         }
-    }
+        int rx = MathUtil.clip(refX >> 1, -tgtW - 1, ref.getPlaneWidth(plane)) + ref.getPadX(plane);
+        int ry = MathUtil.clip(refY >> 1, -tgtH - 1, ref.getPlaneHeight(plane) >> refVertStep)
+                + (ref.getPadY(plane) >> refVertStep);
+        int[] pels = ref.getPaddedPlaneData(plane);
+        int stride = ref.getPaddedStride(plane);
 
-    public final void predictOddOddUnSafe(int[] ref, int refX, int refY, int refW, int refH, int refVertStep,
-            int refVertOff, int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
-        int tgtOff = tgtW * tgtY, jump = tgtVertStep * tgtW;
-        for (int j = 0; j < tgtH; j++) {
-            int y1 = ((j + refY) << refVertStep) + refVertOff;
-            int y2 = ((j + refY + 1) << refVertStep) + refVertOff;
-            for (int i = 0; i < tgtW; i++) {
-                int ptX = i + refX;
-                tgt[tgtOff++] = getPix4(ref, refW, refH, ptX, y1, ptX + 1, y1, ptX, y2, ptX + 1, y2, refVertStep,
-                        refVertOff);
-            }
-            tgtOff += jump;
+        if ((refX & 0x1) == 0) {
+            if ((refY & 0x1) == 0)
+                predictEvenEven(pels, rx, ry, stride, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
+            else
+                predictOddEven(pels, rx, ry, stride, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
+        } else if ((refY & 0x1) == 0) {
+            predictEvenOdd(pels, rx, ry, stride, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
+        } else {
+            predictOddOdd(pels, rx, ry, stride, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
         }
     }
 
-    public final void predictPlane(int[] ref, int refX, int refY, int refW, int refH, int refVertStep, int refVertOff,
-            int[] tgt, int tgtY, int tgtW, int tgtH, int tgtVertStep) {
-        int rx = refX >> 1, ry = refY >> 1;
+    /**
+     * Predicts a block from one field of the reference clipping every pixel
+     * position to the picture, the lines outside of the field repeat it's
+     * first or last line
+     * 
+     * @param fieldH
+     *            Number of lines in the field
+     */
+    private void predictFieldClipped(int[] ref, int refW, int fieldH, int refX, int refY, int refVertOff, int[] tgt,
+            int tgtY, int tgtW, int tgtH, int tgtVertStep) {
+        int x = refX >> 1, y = refY >> 1, hx = refX & 1, hy = refY & 1;
+        int offTgt = tgtW * tgtY, lfTgt = tgtVertStep * tgtW;
 
-        boolean safe = rx >= 0 && ry >= 0 && rx + tgtW < refW && (ry + tgtH << refVertStep) < refH;
-        if ((refX & 0x1) == 0) {
-            if ((refY & 0x1) == 0) {
-                if (safe)
-                    predictEvenEvenSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH,
-                            tgtVertStep);
-                else
-                    predictEvenEvenUnSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH,
-                            tgtVertStep);
-            } else {
-                if (safe)
-                    predictOddEvenSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH,
-                            tgtVertStep);
+        for (int i = 0; i < tgtH; i++) {
+            int line1 = ((MathUtil.clip(y + i, 0, fieldH - 1) << 1) + refVertOff) * refW;
+            int line2 = ((MathUtil.clip(y + i + hy, 0, fieldH - 1) << 1) + refVertOff) * refW;
+            for (int j = 0; j < tgtW; j++) {
+                int x1 = MathUtil.clip(x + j, 0, refW - 1);
+                int x2 = MathUtil.clip(x + j + hx, 0, refW - 1);
+                if (hx == 0 && hy == 0)
+                    tgt[offTgt++] = ref[line1 + x1];
+                else if (hx == 0 || hy == 0)
+                    tgt[offTgt++] = (ref[line1 + x1] + ref[line2 + x2] + 1) >> 1;
                 else
-                    predictOddEvenUnSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH,
-                            tgtVertStep);
+                    tgt[offTgt++] = (ref[line1 + x1] + ref[line1 + x2] + ref[line2 + x1] + ref[line2 + x2] + 3) >> 2;
             }
-        } else if ((refY & 0x1) == 0) {
-            if (safe)
-                predictEvenOddSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
-            else
-                predictEvenOddUnSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH,
-                        tgtVertStep);
-        } else {
-            if (safe)
-                predictOddOddSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH, tgtVertStep);
-            else
-                predictOddOddUnSafe(ref, rx, ry, refW, refH, refVertStep, refVertOff, tgt, tgtY, tgtW, tgtH,
-                        tgtVertStep);
+            offTgt += lfTgt;
         }
     }
 
-    public void predictInField(Picture[] reference, int x, int y, int[][] mbPix, InBits in, int motionType,
+    public void predictInField(PaddedPicture[] reference, int x, int y, int[][] mbPix, InBits in, int motionType,
             int backward, int fieldNo) throws IOException {
         switch (motionType) {
         case 1:
@@ -225,9 +233,8 @@ public class MPEGPred {
         }
     }
 
-    public void predictInFrame(Picture reference, int x, int y, int[][] mbPix, InBits in, int motionType, int backward,
-            int spatial_temporal_weight_code) throws IOException {
-        Picture[] refs = new Picture[] { reference, reference };
+    public void predictInFrame(PaddedPicture reference, int x, int y, int[][] mbPix, InBits in, int motionType,
+            int backward, int spatial_temporal_weight_code) throws IOException {
         switch (motionType) {
         case 1:
             predictFieldInFrame(reference, x, y, mbPix, in, backward, spatial_temporal_weight_code);
@@ -236,13 +243,13 @@ public class MPEGPred {
             predict16x16Frame(reference, x, y, in, backward, mbPix);
             break;
         case 3:
-            predict16x16DualPrimeFrame(refs, x, y, in, backward, mbPix);
+            predict16x16DualPrimeFrame(reference, x, y, in, backward, mbPix);
             break;
         }
     }
 
-    private void predict16x16DualPrimeField(Picture[] reference, int x, int y, InBits in, int[][] mbPix, int fieldNo)
-            throws IOException {
+    private void predict16x16DualPrimeField(PaddedPicture[] reference, int x, int y, InBits in, int[][] mbPix,
+            int fieldNo) throws IOException {
         int vect1X = mvectDecode(in, fCode[0][0], mvPred[0][0][0]);
         int dmX = MPEGConst.vlcDualPrime.readVLC(in) - 1;
 
@@ -257,31 +264,23 @@ public class MPEGPred {
         int sh = chromaFormat == Chroma420 ? 2 : 1;
         int sw = chromaFormat == Chroma444 ? 1 : 2;
 
-        int[][] mbPix1 = new int[3][256], mbPix2 = new int[3][256];
-
         int refX1 = (x << 1) + vect1X;
         int refY1 = (y << 1) + vect1Y;
         int refX1Chr = ((x << 1) >> cw) + vect1X / sw;
         int refY1Chr = ((y << 1) >> ch) + vect1Y / sh;
 
-        predictPlane(reference[fieldNo].getPlaneData(0), refX1, refY1, reference[fieldNo].getPlaneWidth(0),
-                reference[fieldNo].getPlaneHeight(0), 1, fieldNo, mbPix1[0], 0, 16, 16, 0);
-        predictPlane(reference[fieldNo].getPlaneData(1), refX1Chr, refY1Chr, reference[fieldNo].getPlaneWidth(1),
-                reference[fieldNo].getPlaneHeight(1), 1, fieldNo, mbPix1[1], 0, 16 >> cw, 16 >> ch, 0);
-        predictPlane(reference[fieldNo].getPlaneData(2), refX1Chr, refY1Chr, reference[fieldNo].getPlaneWidth(2),
-                reference[fieldNo].getPlaneHeight(2), 1, fieldNo, mbPix1[2], 0, 16 >> cw, 16 >> ch, 0);
+        predictPlane(reference[fieldNo], 0, refX1, refY1, 1, fieldNo, mbPix1[0], 0, 16, 16, 0);
+        predictPlane(reference[fieldNo], 1, refX1Chr, refY1Chr, 1, fieldNo, mbPix1[1], 0, 16 >> cw, 16 >> ch, 0);
+        predictPlane(reference[fieldNo], 2, refX1Chr, refY1Chr, 1, fieldNo, mbPix1[2], 0, 16 >> cw, 16 >> ch, 0);
 
         int refX2 = (x << 1) + vect2X;
         int refY2 = (y << 1) + vect2Y;
         int refX2Chr = ((x << 1) >> cw) + vect2X / sw;
         int refY2Chr = ((y << 1) >> ch) + vect2Y / sh;
         int opposite = 1 - fieldNo;
-        predictPlane(reference[opposite].getPlaneData(0), refX2, refY2, reference[opposite].getPlaneWidth(0),
-                reference[opposite].getPlaneHeight(0), 1, opposite, mbPix2[0], 0, 16, 16, 0);
-        predictPlane(reference[opposite].getPlaneData(1), refX2Chr, refY2Chr, reference[opposite].getPlaneWidth(1),
-                reference[opposite].getPlaneHeight(1), 1, opposite, mbPix2[1], 0, 16 >> cw, 16 >> ch, 0);
-        predictPlane(reference[opposite].getPlaneData(2), refX2Chr, refY2Chr, reference[opposite].getPlaneWidth(2),
-                reference[opposite].getPlaneHeight(2), 1, opposite, mbPix2[2], 0, 16 >> cw, 16 >> ch, 0);
+        predictPlane(reference[opposite], 0, refX2, refY2, 1, opposite, mbPix2[0], 0, 16, 16, 0);
+        predictPlane(reference[opposite], 1, refX2Chr, refY2Chr, 1, opposite, mbPix2[1], 0, 16 >> cw, 16 >> ch, 0);
+        predictPlane(reference[opposite], 2, refX2Chr, refY2Chr, 1, opposite, mbPix2[2], 0, 16 >> cw, 16 >> ch, 0);
 
         for (int i = 0; i < 3; i++) {
             for (int j = 0; j < mbPix[i].length; j++)
@@ -300,14 +299,14 @@ public class MPEGPred {
         return ((vect1x + (vect1x > 0 ? 1 : 0)) >> 1) + dmX;
     }
 
-    private void predict16x8MC(Picture[] reference, int x, int y, InBits in, int backward, int[][] mbPix, int vertPos,
-            int vectIdx) throws IOException {
+    private void predict16x8MC(PaddedPicture[] reference, int x, int y, InBits in, int backward, int[][] mbPix,
+            int vertPos, int vectIdx) throws IOException {
         int field = in.read1Bit();
 
         predictGeneric(reference[field], x, y + vertPos, in, backward, mbPix, vertPos, 16, 8, 1, field, 0, vectIdx, 0);
     }
 
-    private void predict16x16Field(Picture[] reference, int x, int y, InBits in, int backward, int[][] mbPix)
+    private void predict16x16Field(PaddedPicture[] reference, int x, int y, InBits in, int backward, int[][] mbPix)
             throws IOException {
         int field = in.read1Bit();
 
@@ -317,8 +316,8 @@ public class MPEGPred {
         mvPred[1][backward][1] = mvPred[0][backward][1];
     }
 
-    private void predict16x16DualPrimeFrame(Picture[] reference, int x, int y, InBits in, int backward, int[][] mbPix)
-            throws IOException {
+    private void predict16x16DualPrimeFrame(PaddedPicture reference, int x, int y, InBits in, int backward,
+            int[][] mbPix) throws IOException {
         int vect1X = mvectDecode(in, fCode[0][0], mvPred[0][0][0]);
         int dmX = MPEGConst.vlcDualPrime.readVLC(in) - 1;
 
@@ -338,48 +337,34 @@ public class MPEGPred {
         int sh = chromaFormat == Chroma420 ? 2 : 1;
         int sw = chromaFormat == Chroma444 ? 1 : 2;
 
-        int[][] mbPix1 = new int[3][256], mbPix2 = new int[3][256];
-
         int refX1 = (x << 1) + vect1X;
         int refY1 = y + vect1Y;
         int refX1Chr = ((x << 1) >> cw) + vect1X / sw;
         int refY1Chr = (y >> ch) + vect1Y / sh;
 
-        predictPlane(reference[0].getPlaneData(0), refX1, refY1, reference[0].getPlaneWidth(0),
-                reference[0].getPlaneHeight(0), 1, 0, mbPix1[0], 0, 16, 8, 1);
-        predictPlane(reference[0].getPlaneData(1), refX1Chr, refY1Chr, reference[0].getPlaneWidth(1),
-                reference[0].getPlaneHeight(1), 1, 0, mbPix1[1], 0, 16 >> cw, 8 >> ch, 1);
-        predictPlane(reference[0].getPlaneData(2), refX1Chr, refY1Chr, reference[0].getPlaneWidth(2),
-                reference[0].getPlaneHeight(2), 1, 0, mbPix1[2], 0, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 0, refX1, refY1, 1, 0, mbPix1[0], 0, 16, 8, 1);
+        predictPlane(reference, 1, refX1Chr, refY1Chr, 1, 0, mbPix1[1], 0, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 2, refX1Chr, refY1Chr, 1, 0, mbPix1[2], 0, 16 >> cw, 8 >> ch, 1);
 
-        predictPlane(reference[1].getPlaneData(0), refX1, refY1, reference[1].getPlaneWidth(0),
-                reference[1].getPlaneHeight(0), 1, 1, mbPix1[0], 1, 16, 8, 1);
-        predictPlane(reference[1].getPlaneData(1), refX1Chr, refY1Chr, reference[1].getPlaneWidth(1),
-                reference[1].getPlaneHeight(1), 1, 1, mbPix1[1], 1, 16 >> cw, 8 >> ch, 1);
-        predictPlane(reference[1].getPlaneData(2), refX1Chr, refY1Chr, reference[1].getPlaneWidth(2),
-                reference[1].getPlaneHeight(2), 1, 1, mbPix1[2], 1, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 0, refX1, refY1, 1, 1, mbPix1[0], 1, 16, 8, 1);
+        predictPlane(reference, 1, refX1Chr, refY1Chr, 1, 1, mbPix1[1], 1, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 2, refX1Chr, refY1Chr, 1, 1, mbPix1[2], 1, 16 >> cw, 8 >> ch, 1);
 
         int refX2 = (x << 1) + vect2X;
         int refY2 = y + vect2Y;
         int refX2Chr = ((x << 1) >> cw) + vect2X / sw;
         int refY2Chr = (y >> ch) + vect2Y / sh;
-        predictPlane(reference[1].getPlaneData(0), refX2, refY2, reference[1].getPlaneWidth(0),
-                reference[1].getPlaneHeight(0), 1, 1, mbPix2[0], 0, 16, 8, 1);
-        predictPlane(reference[1].getPlaneData(1), refX2Chr, refY2Chr, reference[1].getPlaneWidth(1),
-                reference[1].getPlaneHeight(1), 1, 1, mbPix2[1], 0, 16 >> cw, 8 >> ch, 1);
-        predictPlane(reference[1].getPlaneData(2), refX2Chr, refY2Chr, reference[1].getPlaneWidth(2),
-                reference[1].getPlaneHeight(2), 1, 1, mbPix2[2], 0, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 0, refX2, refY2, 1, 1, mbPix2[0], 0, 16, 8, 1);
+        predictPlane(reference, 1, refX2Chr, refY2Chr, 1, 1, mbPix2[1], 0, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 2, refX2Chr, refY2Chr, 1, 1, mbPix2[2], 0, 16 >> cw, 8 >> ch, 1);
 
         int refX3 = (x << 1) + vect3X;
         int refY3 = y + vect3Y;
         int refX3Chr = ((x << 1) >> cw) + vect3X / sw;
         int refY3Chr = (y >> ch) + vect3Y / sh;
-        predictPlane(reference[0].getPlaneData(0), refX3, refY3, reference[0].getPlaneWidth(0),
-                reference[0].getPlaneHeight(0), 1, 0, mbPix2[0], 1, 16, 8, 1);
-        predictPlane(reference[0].getPlaneData(1), refX3Chr, refY3Chr, reference[0].getPlaneWidth(1),
-                reference[0].getPlaneHeight(1), 1, 0, mbPix2[1], 1, 16 >> cw, 8 >> ch, 1);
-        predictPlane(reference[0].getPlaneData(2), refX3Chr, refY3Chr, reference[0].getPlaneWidth(2),
-                reference[0].getPlaneHeight(2), 1, 0, mbPix2[2], 1, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 0, refX3, refY3, 1, 0, mbPix2[0], 1, 16, 8, 1);
+        predictPlane(reference, 1, refX3Chr, refY3Chr, 1, 0, mbPix2[1], 1, 16 >> cw, 8 >> ch, 1);
+        predictPlane(reference, 2, refX3Chr, refY3Chr, 1, 0, mbPix2[2], 1, 16 >> cw, 8 >> ch, 1);
 
         for (int i = 0; i < 3; i++) {
             for (int j = 0; j < mbPix[i].length; j++)
@@ -390,7 +375,7 @@ public class MPEGPred {
         mvPred[1][0][1] = mvPred[0][0][1] = vect1Y << 1;
     }
 
-    private void predict16x16Frame(Picture reference, int x, int y, InBits in, int backward, int[][] mbPix)
+    private void predict16x16Frame(PaddedPicture reference, int x, int y, InBits in, int backward, int[][] mbPix)
             throws IOException {
         predictGeneric(reference, x, y, in, backward, mbPix, 0, 16, 16, 0, 0, 0, 0, 0);
 
@@ -428,7 +413,7 @@ public class MPEGPred {
         return (val << shift) >> shift;
     }
 
-    private void predictGeneric(Picture reference, int x, int y, InBits in, int backward, int[][] mbPix, int tgtY,
+    private void predictGeneric(PaddedPicture reference, int x, int y, InBits in, int backward, int[][] mbPix, int tgtY,
             int blkW, int blkH, int isSrcField, int srcField, int isDstField, int vectIdx, int predScale)
             throws IOException {
         int vectX = mvectDecode(in, fCode[backward][0], mvPred[vectIdx][backward][0]);
@@ -441,7 +426,7 @@ public class MPEGPred {
         mvPred[vectIdx][backward][1] = vectY << predScale;
     }
 
-    private void predictFieldInFrame(Picture reference, int x, int y, int[][] mbPix, InBits in, int backward,
+    private void predictFieldInFrame(PaddedPicture reference, int x, int y, int[][] mbPix, InBits in, int backward,
             int spatial_temporal_weight_code) throws IOException {
         y >>= 1;
         int field = in.read1Bit();
@@ -456,23 +441,25 @@ public class MPEGPred {
         }
     }
 
-    public void predictMB(Picture ref, int refX, int vectX, int refY, int vectY, int blkW, int blkH, int refVertStep,
-            int refVertOff, int[][] tgt, int tgtY, int tgtVertStep) {
+    public void predictMB(PaddedPicture ref, int refX, int vectX, int refY, int vectY, int blkW, int blkH,
+            int refVertStep, int refVertOff, int[][] tgt, int tgtY, int tgtVertStep) {
         int ch = chromaFormat == Chroma420 ? 1 : 0;
         int cw = chromaFormat == Chroma444 ? 0 : 1;
 
         int sh = chromaFormat == Chroma420 ? 2 : 1;
         int sw = chromaFormat == Chroma444 ? 1 : 2;
 
-        predictPlane(ref.getPlaneData(0), refX + vectX, refY + vectY, ref.getPlaneWidth(0), ref.getPlaneHeight(0),
-                refVertStep, refVertOff, tgt[0], tgtY, blkW, blkH, tgtVertStep);
-        predictPlane(ref.getPlaneData(1), (refX >> cw) + vectX / sw, (refY >> ch) + vectY / sh, ref.getPlaneWidth(1),
-                ref.getPlaneHeight(1), refVertStep, refVertOff, tgt[1], tgtY, blkW >> cw, blkH >> ch, tgtVertStep);
-        predictPlane(ref.getPlaneData(2), (refX >> cw) + vectX / sw, (refY >> ch) + vectY / sh, ref.getPlaneWidth(2),
-                ref.getPlaneHeight(2), refVertStep, refVertOff, tgt[2], tgtY, blkW >> cw, blkH >> ch, tgtVertStep);
+        predictPlane(ref, 0, refX + vectX, refY + vectY, refVertStep, refVertOff, tgt[0], tgtY, blkW, blkH,
+                tgtVertStep);
+        int tgtYChr = tgtVertStep == 0 ? tgtY >> ch : tgtY;
+        predictPlane(ref, 1, (refX >> cw) + vectX / sw, (refY >> ch) + vectY / sh, refVertStep, refVertOff, tgt[1],
+                tgtYChr, blkW >> cw, blkH >> ch, tgtVertStep);
+        predictPlane(ref, 2, (refX >> cw) + vectX / sw, (refY >> ch) + vectY / sh, refVertStep, refVertOff, tgt[2],
+                tgtYChr, blkW >> cw, blkH >> ch, tgtVertStep);
     }
 
-    public void predict16x16NoMV(Picture picture, int x, int y, int pictureStructure, int backward, int[][] mbPix) {
+    public void predict16x16NoMV(PaddedPicture picture, int x, int y, int pictureStructure, int backward,
+            int[][] mbPix) {
         if (pictureStructure == 3) {
             predictMB(picture, (x << 1), mvPred[0][backward][0], (y << 1), mvPred[0][backward][1], 16, 16, 0, 0, mbPix,
                     0, 0);
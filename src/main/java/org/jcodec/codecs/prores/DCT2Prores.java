@@ -1,7 +1,5 @@
 package org.jcodec.codecs.prores;
 
-import static org.jcodec.common.model.ColorSpace.YUV422_10;
-
 import java.io.DataOutput;
 import java.io.IOException;
 
@@ -17,41 +15,19 @@ public class DCT2Prores extends ProresEncoder {
     protected int encodeSlice(DataOutput out, int[][] scaledLuma, int[][] scaledChroma, int[] scan, int sliceMbCount,
             int mbX, int mbY, Picture source, int prevQp, int mbWidth, int mbHeight, boolean unsafe) throws IOException {
 
-        Picture striped = sliceData(source, mbX, mbY, mbWidth, sliceMbCount);
-
-        int est = (sliceMbCount >> 2) * profile.bitrate;
-        int low = est - (est >> 3); // 12% bitrate fluctuation
-        int high = est + (est >> 3);
-
-        int qp = prevQp;
-        byte[][] data = encodeSliceData(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped, qp);
-        if (bits(data) > high && qp < profile.lastQp) {
-            do {
-                ++qp;
-                data = encodeSliceData(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped, qp);
-            } while (bits(data) > high && qp < profile.lastQp);
-        } else if (bits(data) < low && qp > profile.firstQp) {
-            do {
-                --qp;
-                data = encodeSliceData(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped, qp);
-            } while (bits(data) < low && qp > profile.firstQp);
-        }
-
-        out.write(6 << 3); // hdr size
-        out.write(qp); // qscale
-        out.writeShort(data[0].length);
-        out.writeShort(data[1].length);
+        SliceBuffers data = buffers();
+        Picture striped = sliceData(data.striped(sliceMbCount), source, mbX, mbY, mbWidth);
 
-        out.write(data[0]);
-        out.write(data[1]);
-        out.write(data[2]);
+        int qp = rateControl(scaledLuma, scaledChroma, scan, sliceMbCount, striped, prevQp,
+                sliceBits(scaledLuma[prevQp - 1], scaledChroma[prevQp - 1], scan, sliceMbCount, striped));
+        encodeSliceData(data, scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped);
+        writeSlice(out, qp, data);
 
         return qp;
     }
 
-    private Picture sliceData(Picture source, int mbX, int mbY, int mbWidth, int sliceMbCount) {
+    private Picture sliceData(Picture pic, Picture source, int mbX, int mbY, int mbWidth) {
 
-        Picture pic = Picture.create(sliceMbCount << 4, 16, YUV422_10);
         int[][] out = pic.getData();
         int[][] in = source.getData();
 
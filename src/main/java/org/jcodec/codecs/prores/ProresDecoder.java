@@ -13,6 +13,11 @@ import static org.jcodec.common.tools.MathUtil.log2;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import org.jcodec.codecs.prores.ProresConsts.FrameHeader;
 import org.jcodec.codecs.prores.ProresConsts.PictureHeader;
@@ -22,6 +27,7 @@ import org.jcodec.common.io.Buffer;
 import org.jcodec.common.io.InBits;
 import org.jcodec.common.model.ColorSpace;
 import org.jcodec.common.model.Picture;
+import org.jcodec.common.tools.JobUtil;
 
 /**
  * 
@@ -33,14 +39,42 @@ import org.jcodec.common.model.Picture;
  * As posted at http://git.videolan.org/?p=ffmpeg.git;a=commitdiff;h=5554d
  * e13b29b9bb812ee5cfd606349873ddf0945
  * 
+ * Given an executor the slices are decoded concurrently, a job per row of
+ * slices. The slices are located up front from the slice size table of the
+ * picture header, they don't depend on each other and are put into disjoint
+ * areas of the output.
+ * 
+ * Can decode pictures downscaled by 2, 4 or 8. The blocks are reconstructed
+ * right at the reduced size from the low frequencies only, the coefficients
+ * past the last one of them in the scan order are not read at all, at 1/8
+ * only DC is left.
+ * 
  * @author The JCodec project
  * 
  */
 public class ProresDecoder implements VideoDecoder {
 
+    private ExecutorService executor;
+    private int downscale;
+
     public ProresDecoder() {
     }
 
+    public ProresDecoder(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Makes the decoder output pictures scaled down by 2^downscale in both
+     * directions, 0 is the full size, 3 is 1/8 where only DC of the blocks is
+     * used
+     */
+    public void setDownscale(int downscale) {
+        if (downscale < 0 || downscale > 3)
+            throw new IllegalArgumentException("Unsupported downscale: " + downscale);
+        this.downscale = downscale;
+    }
+
     static final int[] table = new int[] { 7, 6, 5, 5, 4, 4, 4, 4, 3, 3, 3, 3, 3, 3, 3, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2,
             2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
             1, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
@@ -149,12 +183,13 @@ public class ProresDecoder implements VideoDecoder {
         return ((val * qMat[ind]) >> 2);
     }
 
-    int[] decodeOnePlane(InBits bits, int blocksPerSlice, int[] qMat, int[] scan, int mbX, int mbY, int plane)
-            throws IOException {
+    int[] decodeOnePlane(InBits bits, int blocksPerSlice, int[] qMat, int[] scan, int nCoeffs, int downscale, int mbX,
+            int mbY, int plane) throws IOException {
         int[] out = new int[blocksPerSlice << 6];
         // try {
         readDCCoeffs(bits, qMat, out, blocksPerSlice);
-        readACCoeffs(bits, qMat, out, blocksPerSlice, scan, 64);
+        if (nCoeffs > 1)
+            readACCoeffs(bits, qMat, out, blocksPerSlice, scan, nCoeffs);
         // } catch (RuntimeException e) {
         // int x = mbX << 4;
         // int y = mbY << 4;
@@ -164,20 +199,33 @@ public class ProresDecoder implements VideoDecoder {
         // }
 
         for (int i = 0; i < blocksPerSlice; i++) {
-            idct10(out, i << 6);
+            idct10(out, i << 6, downscale);
         }
 
         return out;
     }
 
+    /**
+     * @return Number of the coefficients in the scan order the blocks
+     *         downscaled by 2^downscale need
+     */
+    static final int neededCoeffs(int[] scan, int downscale) {
+        int size = 8 >> downscale, n = 0;
+        for (int i = 0; i < 64; i++)
+            if ((scan[i] & 7) < size && (scan[i] >> 3) < size)
+                n = i + 1;
+        return n;
+    }
+
     public Picture decodeFrame(Buffer data, int[][] target) {
         try {
             DataInput inp = data.dinp();
 
             FrameHeader fh = readFrameHeader(inp);
+            int downscale = this.downscale;
 
-            int codedWidth = (fh.width + 15) & ~0xf;
-            int codedHeight = (fh.height + 15) & ~0xf;
+            int codedWidth = ((fh.width + 15) & ~0xf) >> downscale;
+            int codedHeight = ((fh.height + 15) & ~0xf) >> downscale;
 
             int lumaSize = codedWidth * codedHeight;
             int chromaSize = lumaSize >> 1;
@@ -187,15 +235,18 @@ public class ProresDecoder implements VideoDecoder {
                 throw new RuntimeException("Provided output picture won't fit into provided buffer");
             }
 
+            List<FutureTask<Object>> jobs = new ArrayList<FutureTask<Object>>();
             if (fh.frameType == 0) {
-                decodePicture(data, target, fh.width, fh.height, fh.qMatLuma, fh.qMatChroma, fh.scan, 0);
+                decodePicture(data, target, fh.width, fh.height, fh.qMatLuma, fh.qMatChroma, fh.scan, 0, downscale,
+                        jobs);
             } else {
                 decodePicture(data, target, fh.width, fh.height >> 1, fh.qMatLuma, fh.qMatChroma, fh.scan,
-                        fh.topFieldFirst ? 1 : 2);
+                        fh.topFieldFirst ? 1 : 2, downscale, jobs);
 
                 decodePicture(data, target, fh.width, fh.height >> 1, fh.qMatLuma, fh.qMatChroma, fh.scan,
-                        fh.topFieldFirst ? 2 : 1);
+                        fh.topFieldFirst ? 2 : 1, downscale, jobs);
             }
+            JobUtil.join(jobs);
 
             return new Picture(codedWidth, codedHeight, target, ColorSpace.YUV422_10);
         } catch (IOException e) {
@@ -208,9 +259,12 @@ public class ProresDecoder implements VideoDecoder {
             DataInput inp = data.dinp();
 
             FrameHeader fh = readFrameHeader(inp);
+            int downscale = this.downscale;
 
-            int codedWidth = (fh.width + 15) & ~0xf;
+            int codedWidth = ((fh.width + 15) & ~0xf) >> downscale;
             int codedHeight = (fh.height + 15) & ~0xf;
+            int fieldHeight = (codedHeight >> 1) >> downscale;
+            codedHeight >>= downscale;
 
             int lumaSize = codedWidth * codedHeight;
             int chromaSize = lumaSize >> 1;
@@ -221,25 +275,30 @@ public class ProresDecoder implements VideoDecoder {
                     throw new RuntimeException("Provided output picture won't fit into provided buffer");
                 }
 
-                decodePicture(data, target[0], fh.width, fh.height, fh.qMatLuma, fh.qMatChroma, fh.scan, 0);
+                List<FutureTask<Object>> jobs = new ArrayList<FutureTask<Object>>();
+                decodePicture(data, target[0], fh.width, fh.height, fh.qMatLuma, fh.qMatChroma, fh.scan, 0, downscale,
+                        jobs);
+                JobUtil.join(jobs);
                 return new Picture[] { new Picture(codedWidth, codedHeight, target[0], ColorSpace.YUV422_10) };
             } else {
-                lumaSize >>= 1;
-                chromaSize >>= 1;
+                lumaSize = codedWidth * fieldHeight;
+                chromaSize = lumaSize >> 1;
                 if (target == null || target[0][0].length < lumaSize || target[0][1].length < chromaSize
                         || target[0][2].length < chromaSize || target[1][0].length < lumaSize
                         || target[1][1].length < chromaSize || target[1][2].length < chromaSize) {
                     throw new RuntimeException("Provided output picture won't fit into provided buffer");
                 }
 
+                List<FutureTask<Object>> jobs = new ArrayList<FutureTask<Object>>();
                 decodePicture(data, target[fh.topFieldFirst ? 0 : 1], fh.width, fh.height >> 1, fh.qMatLuma,
-                        fh.qMatChroma, fh.scan, 0);
+                        fh.qMatChroma, fh.scan, 0, downscale, jobs);
 
                 decodePicture(data, target[fh.topFieldFirst ? 1 : 0], fh.width, fh.height >> 1, fh.qMatLuma,
-                        fh.qMatChroma, fh.scan, 0);
+                        fh.qMatChroma, fh.scan, 0, downscale, jobs);
+                JobUtil.join(jobs);
 
-                return new Picture[] { new Picture(codedWidth, codedHeight >> 1, target[0], ColorSpace.YUV422_10),
-                        new Picture(codedWidth, codedHeight >> 1, target[1], ColorSpace.YUV422_10) };
+                return new Picture[] { new Picture(codedWidth, fieldHeight, target[0], ColorSpace.YUV422_10),
+                        new Picture(codedWidth, fieldHeight, target[1], ColorSpace.YUV422_10) };
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -310,24 +369,34 @@ public class ProresDecoder implements VideoDecoder {
         return new String(sig);
     }
 
+    /**
+     * Locates the slices of the picture and decodes them or, given an
+     * executor, adds the jobs decoding them to the list
+     */
     private void decodePicture(Buffer data, int[][] result, int width, int height, int[] qMatLuma, int[] qMatChroma,
-            int[] scan, int pictureType) throws IOException {
+            int[] scan, int pictureType, int downscale, List<FutureTask<Object>> jobs) throws IOException {
         DataInput inp = data.dinp();
 
         ProresConsts.PictureHeader ph = readPictureHeader(inp);
-        
+
         int mbWidth = (width + 15) >> 4;
-//        int mbHeight = (height + 15) >> 4;
+        int nSlices = ph.sliceSizes.length;
 
+        // the lines of the output are as long as the coded ones
+        int stride = (mbWidth << 4) >> downscale;
+        PictureSlices slices = new PictureSlices(nSlices, result, stride, qMatLuma, qMatChroma, scan, pictureType,
+                downscale);
         int mbX = 0, mbY = 0;
         int sliceMbCount = 1 << ph.log2SliceMbWidth;
-        for (int i = 0; i < ph.sliceSizes.length; i++) {
+        for (int i = 0; i < nSlices; i++) {
 
             while (mbWidth - mbX < sliceMbCount)
                 sliceMbCount >>= 1;
 
-            decodeSlice(data, qMatLuma, qMatChroma, scan, sliceMbCount, mbX, mbY, ph.sliceSizes[i], result, width,
-                    pictureType);
+            slices.data[i] = data.read(ph.sliceSizes[i] & 0xffff);
+            slices.mbX[i] = mbX;
+            slices.mbY[i] = mbY;
+            slices.mbCount[i] = sliceMbCount;
 
             mbX += sliceMbCount;
             if (mbX == mbWidth) {
@@ -336,6 +405,73 @@ public class ProresDecoder implements VideoDecoder {
                 mbY++;
             }
         }
+
+        if (executor == null) {
+            slices.decode(0, nSlices);
+            return;
+        }
+        for (int from = 0, to; from < nSlices; from = to) {
+            for (to = from + 1; to < nSlices && slices.mbY[to] == slices.mbY[from]; to++)
+                ;
+            jobs.add(JobUtil.submit(executor, new SliceJob(slices, from, to)));
+        }
+    }
+
+    /**
+     * Slices of a picture with their positions
+     */
+    private class PictureSlices {
+        private Buffer[] data;
+        private int[] mbX;
+        private int[] mbY;
+        private int[] mbCount;
+        private int[][] result;
+        private int stride;
+        private int[] qMatLuma;
+        private int[] qMatChroma;
+        private int[] scan;
+        private int pictureType;
+        private int downscale;
+        private int nCoeffs;
+
+        public PictureSlices(int nSlices, int[][] result, int stride, int[] qMatLuma, int[] qMatChroma, int[] scan,
+                int pictureType, int downscale) {
+            this.data = new Buffer[nSlices];
+            this.mbX = new int[nSlices];
+            this.mbY = new int[nSlices];
+            this.mbCount = new int[nSlices];
+            this.result = result;
+            this.stride = stride;
+            this.qMatLuma = qMatLuma;
+            this.qMatChroma = qMatChroma;
+            this.scan = scan;
+            this.pictureType = pictureType;
+            this.downscale = downscale;
+            this.nCoeffs = neededCoeffs(scan, downscale);
+        }
+
+        public void decode(int from, int to) throws IOException {
+            for (int i = from; i < to; i++)
+                decodeSlice(data[i], qMatLuma, qMatChroma, scan, nCoeffs, downscale, mbCount[i], mbX[i], mbY[i],
+                        result, stride, pictureType);
+        }
+    }
+
+    private static class SliceJob implements Callable<Object> {
+        private PictureSlices slices;
+        private int from;
+        private int to;
+
+        public SliceJob(PictureSlices slices, int from, int to) {
+            this.slices = slices;
+            this.from = from;
+            this.to = to;
+        }
+
+        public Object call() throws IOException {
+            slices.decode(from, to);
+            return null;
+        }
     }
 
     public static PictureHeader readPictureHeader(DataInput inp) throws IOException {
@@ -353,8 +489,9 @@ public class ProresDecoder implements VideoDecoder {
         return new PictureHeader(log2SliceMbWidth, sliceSizes);
     }
 
-    private void decodeSlice(Buffer data, int[] qMatLuma, int[] qMatChroma, int[] scan, int sliceMbCount, int mbX,
-            int mbY, short sliceSize, int[][] result, int lumaStride, int pictureType) throws IOException {
+    private void decodeSlice(Buffer data, int[] qMatLuma, int[] qMatChroma, int[] scan, int nCoeffs, int downscale,
+            int sliceMbCount, int mbX, int mbY, int[][] result, int lumaStride, int pictureType) throws IOException {
+        int sliceSize = data.remaining();
         DataInput inp = data.dinp();
 
         int hdrSize = (inp.readByte() & 0xff) >> 3;
@@ -362,16 +499,18 @@ public class ProresDecoder implements VideoDecoder {
         qScale = qScale > 128 ? qScale - 96 << 2 : qScale;
         int yDataSize = inp.readShort();
         int uDataSize = inp.readShort();
+        inp.skipBytes(hdrSize - 6);
         int vDataSize = sliceSize - uDataSize - yDataSize - hdrSize;
 
-        int[] y = decodeOnePlane(bitstream(data, yDataSize), sliceMbCount << 2, scaleMat(qMatLuma, qScale), scan, mbX,
-                mbY, 0);
+        int[] y = decodeOnePlane(bitstream(data, yDataSize), sliceMbCount << 2, scaleMat(qMatLuma, qScale), scan,
+                nCoeffs, downscale, mbX, mbY, 0);
         int[] u = decodeOnePlane(bitstream(data, uDataSize), sliceMbCount << 1, scaleMat(qMatChroma, qScale), scan,
-                mbX, mbY, 1);
+                nCoeffs, downscale, mbX, mbY, 1);
         int[] v = decodeOnePlane(bitstream(data, vDataSize), sliceMbCount << 1, scaleMat(qMatChroma, qScale), scan,
-                mbX, mbY, 2);
+                nCoeffs, downscale, mbX, mbY, 2);
 
-        putSlice(result, lumaStride, mbX, mbY, y, u, v, pictureType == 0 ? 0 : 1, pictureType == 2 ? 1 : 0);
+        putSlice(result, lumaStride, mbX, mbY, y, u, v, pictureType == 0 ? 0 : 1, pictureType == 2 ? 1 : 0,
+                downscale);
     }
 
     static final int[] scaleMat(int[] qMatLuma, int qScale) {
@@ -391,43 +530,49 @@ public class ProresDecoder implements VideoDecoder {
     }
 
     private void putSlice(int[][] result, int lumaStride, int mbX, int mbY, int[] y, int[] u, int[] v, int dist,
-            int shift) {
+            int shift, int downscale) {
         int mbPerSlice = y.length >> 8;
 
         int chromaStride = lumaStride >> 1;
 
-        putLuma(result[0], shift * lumaStride, lumaStride << dist, mbX, mbY, y, mbPerSlice, dist, shift);
-        putChroma(result[1], shift * chromaStride, chromaStride << dist, mbX, mbY, u, mbPerSlice, dist, shift);
-        putChroma(result[2], shift * chromaStride, chromaStride << dist, mbX, mbY, v, mbPerSlice, dist, shift);
+        putLuma(result[0], shift * lumaStride, lumaStride << dist, mbX, mbY, y, mbPerSlice, downscale);
+        putChroma(result[1], shift * chromaStride, chromaStride << dist, mbX, mbY, u, mbPerSlice, downscale);
+        putChroma(result[2], shift * chromaStride, chromaStride << dist, mbX, mbY, v, mbPerSlice, downscale);
     }
 
-    private void putLuma(int[] y, int off, int stride, int mbX, int mbY, int[] luma, int mbPerSlice, int dist, int shift) {
-        off += (mbX << 4) + (mbY << 4) * stride;
+    private void putLuma(int[] y, int off, int stride, int mbX, int mbY, int[] luma, int mbPerSlice, int downscale) {
+        int size = 8 >> downscale;
+        off += (mbX << 4 >> downscale) + (mbY << 4 >> downscale) * stride;
         for (int k = 0; k < mbPerSlice; k++) {
-            putBlock(y, off, stride, luma, k << 8, dist, shift);
-            putBlock(y, off + 8, stride, luma, (k << 8) + 64, dist, shift);
-            putBlock(y, off + 8 * stride, stride, luma, (k << 8) + 128, dist, shift);
-            putBlock(y, off + 8 * stride + 8, stride, luma, (k << 8) + 192, dist, shift);
-            off += 16;
+            putBlock(y, off, stride, luma, k << 8, size);
+            putBlock(y, off + size, stride, luma, (k << 8) + 64, size);
+            putBlock(y, off + size * stride, stride, luma, (k << 8) + 128, size);
+            putBlock(y, off + size * stride + size, stride, luma, (k << 8) + 192, size);
+            off += size << 1;
         }
     }
 
-    private void putChroma(int[] y, int off, int stride, int mbX, int mbY, int[] chroma, int mbPerSlice, int dist,
-            int shift) {
-        off += (mbX << 3) + (mbY << 4) * stride;
+    private void putChroma(int[] y, int off, int stride, int mbX, int mbY, int[] chroma, int mbPerSlice,
+            int downscale) {
+        int size = 8 >> downscale;
+        off += (mbX << 3 >> downscale) + (mbY << 4 >> downscale) * stride;
         for (int k = 0; k < mbPerSlice; k++) {
-            putBlock(y, off, stride, chroma, k << 7, dist, shift);
-            putBlock(y, off + 8 * stride, stride, chroma, (k << 7) + 64, dist, shift);
-            off += 8;
+            putBlock(y, off, stride, chroma, k << 7, size);
+            putBlock(y, off + size * stride, stride, chroma, (k << 7) + 64, size);
+            off += size;
         }
     }
 
-    private void putBlock(int[] square, int sqOff, int sqStride, int[] flat, int flOff, int dist, int shift) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++)
+    /**
+     * Puts the block that's stored row by row with the stride of size at the
+     * beginning of it's 64 elements
+     */
+    private void putBlock(int[] square, int sqOff, int sqStride, int[] flat, int flOff, int size) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++)
                 square[j + sqOff] = clip(flat[j + flOff], 4, 1019);
             sqOff += sqStride;
-            flOff += 8;
+            flOff += size;
         }
     }
 
@@ -15,7 +15,7 @@ import static org.jcodec.codecs.prores.ProresConsts.interlaced_scan;
 import static org.jcodec.codecs.prores.ProresConsts.levCodebooks;
 import static org.jcodec.codecs.prores.ProresConsts.progressive_scan;
 import static org.jcodec.codecs.prores.ProresConsts.runCodebooks;
-import static org.jcodec.common.dct.DCTRef.fdct;
+import static org.jcodec.common.dct.FDCT10Bit.fdct10;
 import static org.jcodec.common.model.ColorSpace.YUV422_10;
 import static org.jcodec.common.tools.MathUtil.log2;
 import gnu.trove.list.array.TShortArrayList;
@@ -25,6 +25,11 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import org.jcodec.codecs.prores.ProresConsts.PictureHeader;
 import org.jcodec.common.io.BitstreamWriter;
@@ -32,6 +37,7 @@ import org.jcodec.common.io.OutBits;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Rect;
 import org.jcodec.common.tools.ImageOP;
+import org.jcodec.common.tools.JobUtil;
 
 /**
  * 
@@ -40,6 +46,12 @@ import org.jcodec.common.tools.ImageOP;
  * 
  * Apple ProRes encoder
  * 
+ * Given an executor the rows of slices are encoded concurrently. Each row then
+ * has a rate control of it's own starting from the first qp of the profile
+ * and an output buffer of it's own, the rows are put together in order once
+ * all of them are done. Without an executor the qp carries over from slice to
+ * slice through the whole picture.
+ * 
  * @author The JCodec project
  * 
  */
@@ -73,6 +85,12 @@ public class ProresEncoder {
     protected Profile profile;
     private int[][] scaledLuma;
     private int[][] scaledChroma;
+    private ExecutorService executor;
+    private ThreadLocal<SliceBuffers> buffers = new ThreadLocal<SliceBuffers>() {
+        protected SliceBuffers initialValue() {
+            return new SliceBuffers();
+        }
+    };
 
     public ProresEncoder(Profile profile) {
         this.profile = profile;
@@ -80,6 +98,11 @@ public class ProresEncoder {
         scaledChroma = scaleQMat(profile.qmatChroma, 1, 16);
     }
 
+    public ProresEncoder(Profile profile, ExecutorService executor) {
+        this(profile);
+        this.executor = executor;
+    }
+
     private int[][] scaleQMat(int[] qmatLuma, int start, int count) {
         int[][] result = new int[count][];
         for (int i = 0; i < count; i++) {
@@ -115,6 +138,22 @@ public class ProresEncoder {
         }
     }
 
+    /**
+     * @return Length of the codeword writeCodeword puts for the value
+     */
+    static final int codewordBits(Codebook codebook, int val) {
+        int firstExp = ((codebook.switchBits + 1) << codebook.riceOrder);
+        if (val >= firstExp) {
+            val -= firstExp;
+            val += (1 << codebook.expOrder);
+
+            int exp = log2(val);
+            return (exp << 1) - codebook.expOrder + codebook.switchBits + 2;
+        } else {
+            return (val >> codebook.riceOrder) + 1 + codebook.riceOrder;
+        }
+    }
+
     private static final int qScale(int[] qMat, int ind, int val) {
         return val / qMat[ind];
     }
@@ -183,6 +222,47 @@ public class ProresEncoder {
         }
     }
 
+    static final int countDCBits(int[] qMat, int[] in, int blocksPerSlice) {
+        int prevDc = qScale(qMat, 0, in[0] - 16384);
+        int bits = codewordBits(firstDCCodebook, toGolumb(prevDc));
+
+        int code = 5, sign = 0, idx = 64;
+        for (int i = 1; i < blocksPerSlice; i++, idx += 64) {
+            int newDc = qScale(qMat, 0, in[idx] - 16384);
+            int delta = newDc - prevDc;
+            int newCode = toGolumb(getLevel(delta), diffSign(delta, sign));
+            bits += codewordBits(dcCodebooks[min(code, 6)], newCode);
+            code = newCode;
+            sign = delta >> 31;
+            prevDc = newDc;
+        }
+        return bits;
+    }
+
+    static final int countACBits(int[] qMat, int[] in, int blocksPerSlice, int[] scan, int maxCoeff) {
+        int prevRun = 4;
+        int prevLevel = 2;
+
+        int bits = 0, run = 0;
+        for (int i = 1; i < maxCoeff; i++) {
+            int indp = scan[i];
+            for (int j = 0; j < blocksPerSlice; j++) {
+                int val = qScale(qMat, indp, in[(j << 6) + indp]);
+                if (val == 0)
+                    run++;
+                else {
+                    bits += codewordBits(runCodebooks[min(prevRun, 15)], run);
+                    prevRun = run;
+                    run = 0;
+                    int level = getLevel(val);
+                    bits += codewordBits(levCodebooks[min(prevLevel, 9)], level - 1) + 1;
+                    prevLevel = level;
+                }
+            }
+        }
+        return bits;
+    }
+
     static final void encodeOnePlane(OutBits bits, int blocksPerSlice, int[] qMat, int[] scan, int[] in)
             throws IOException {
 
@@ -192,66 +272,132 @@ public class ProresEncoder {
 
     private void dctOnePlane(int blocksPerSlice, int[] in) {
         for (int i = 0; i < blocksPerSlice; i++) {
-            fdct(in, i << 6);
+            fdct10(in, i << 6);
         }
     }
 
     protected int encodeSlice(DataOutput out, int[][] scaledLuma, int[][] scaledChroma, int[] scan, int sliceMbCount,
             int mbX, int mbY, Picture result, int prevQp, int mbWidth, int mbHeight, boolean unsafe) throws IOException {
 
-        Picture striped = splitSlice(result, mbX, mbY, sliceMbCount, unsafe);
+        SliceBuffers data = buffers();
+        Picture striped = splitSlice(data, result, mbX, mbY, sliceMbCount, unsafe);
         dctOnePlane(sliceMbCount << 2, striped.getPlaneData(0));
         dctOnePlane(sliceMbCount << 1, striped.getPlaneData(1));
         dctOnePlane(sliceMbCount << 1, striped.getPlaneData(2));
 
+        int qp = rateControl(scaledLuma, scaledChroma, scan, sliceMbCount, striped, prevQp,
+                sliceBits(scaledLuma[prevQp - 1], scaledChroma[prevQp - 1], scan, sliceMbCount, striped));
+        encodeSliceData(data, scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped);
+        writeSlice(out, qp, data);
+
+        return qp;
+    }
+
+    /**
+     * @return Buffers of the calling thread
+     */
+    protected SliceBuffers buffers() {
+        return buffers.get();
+    }
+
+    protected static final void writeSlice(DataOutput out, int qp, SliceBuffers data) throws IOException {
+        out.write(6 << 3); // hdr size
+        out.write(qp); // qscale
+        out.writeShort(data.planes[0].size());
+        out.writeShort(data.planes[1].size());
+
+        data.planes[0].writeTo(out);
+        data.planes[1].writeTo(out);
+        data.planes[2].writeTo(out);
+    }
+
+    /**
+     * Picks qp for the slice given it's size in bits with qp of the previous
+     * slice. The sizes are counted without coding, the slice is then coded
+     * once with the qp picked.
+     */
+    protected int rateControl(int[][] scaledLuma, int[][] scaledChroma, int[] scan, int sliceMbCount,
+            Picture striped, int qp, int bits) {
         int est = (sliceMbCount >> 2) * profile.bitrate;
         int low = est - (est >> 3); // 12% bitrate fluctuation
         int high = est + (est >> 3);
 
-        int qp = prevQp;
-        byte[][] data = encodeSliceData(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped, qp);
-        if (bits(data) > high && qp < profile.lastQp) {
+        if (bits > high && qp < profile.lastQp) {
             do {
                 ++qp;
-                data = encodeSliceData(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped, qp);
-            } while (bits(data) > high && qp < profile.lastQp);
-        } else if (bits(data) < low && qp > profile.firstQp) {
+                bits = sliceBits(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped);
+            } while (bits > high && qp < profile.lastQp);
+        } else if (bits < low && qp > profile.firstQp) {
             do {
                 --qp;
-                data = encodeSliceData(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped, qp);
-            } while (bits(data) < low && qp > profile.firstQp);
+                bits = sliceBits(scaledLuma[qp - 1], scaledChroma[qp - 1], scan, sliceMbCount, striped);
+            } while (bits < low && qp > profile.firstQp);
         }
+        return qp;
+    }
 
-        out.write(6 << 3); // hdr size
-        out.write(qp); // qscale
-        out.writeShort(data[0].length);
-        out.writeShort(data[1].length);
+    /**
+     * @return Size of the slice data in bits, every plane is byte aligned
+     */
+    protected static final int sliceBits(int[] qmatLuma, int[] qmatChroma, int[] scan, int sliceMbCount,
+            Picture striped) {
+        return onePlaneBits(sliceMbCount << 2, qmatLuma, scan, striped.getPlaneData(0))
+                + onePlaneBits(sliceMbCount << 1, qmatChroma, scan, striped.getPlaneData(1))
+                + onePlaneBits(sliceMbCount << 1, qmatChroma, scan, striped.getPlaneData(2));
+    }
 
-        out.write(data[0]);
-        out.write(data[1]);
-        out.write(data[2]);
+    static final int onePlaneBits(int blocksPerSlice, int[] qMat, int[] scan, int[] data) {
+        int bits = countDCBits(qMat, data, blocksPerSlice) + countACBits(qMat, data, blocksPerSlice, scan, 64);
+        return (bits + 7) & ~7;
+    }
 
-        return qp;
+    protected static final void encodeSliceData(SliceBuffers data, int[] qmatLuma, int[] qmatChroma, int[] scan,
+            int sliceMbCount, Picture striped) throws IOException {
+
+        onePlane(data.planes[0], sliceMbCount << 2, qmatLuma, scan, striped.getPlaneData(0));
+        onePlane(data.planes[1], sliceMbCount << 1, qmatChroma, scan, striped.getPlaneData(1));
+        onePlane(data.planes[2], sliceMbCount << 1, qmatChroma, scan, striped.getPlaneData(2));
     }
 
-    protected int bits(byte[][] data) {
-        return (data[0].length + data[1].length + data[2].length) << 3;
+    static final void onePlane(PlaneBuffer bytes, int blocksPerSlice, int[] qmatLuma, int[] scan, int[] data)
+            throws IOException {
+        bytes.reset();
+        encodeOnePlane(bytes.bits, blocksPerSlice, qmatLuma, scan, data);
+        bytes.bits.flush();
     }
 
-    protected static final byte[][] encodeSliceData(int[] qmatLuma, int[] qmatChroma, int[] scan, int sliceMbCount,
-            Picture striped, int qp) throws IOException {
+    /**
+     * Slice being coded by a thread, the buffers are reused from slice to
+     * slice
+     */
+    protected static class SliceBuffers {
+        private PlaneBuffer[] planes = new PlaneBuffer[] { new PlaneBuffer(), new PlaneBuffer(), new PlaneBuffer() };
+        // by the slice width in macroblocks
+        private Picture[] striped = new Picture[DEFAULT_SLICE_MB_WIDTH + 1];
+        private Picture[] filled = new Picture[DEFAULT_SLICE_MB_WIDTH + 1];
+
+        protected Picture striped(int sliceMbCount) {
+            if (striped[sliceMbCount] == null)
+                striped[sliceMbCount] = Picture.create(sliceMbCount << 4, 16, YUV422_10);
+            return striped[sliceMbCount];
+        }
 
-        return new byte[][] { onePlane(sliceMbCount << 2, qmatLuma, scan, striped.getPlaneData(0)),
-                onePlane(sliceMbCount << 1, qmatChroma, scan, striped.getPlaneData(1)),
-                onePlane(sliceMbCount << 1, qmatChroma, scan, striped.getPlaneData(2)) };
+        private Picture filled(int sliceMbCount) {
+            if (filled[sliceMbCount] == null)
+                filled[sliceMbCount] = Picture.create(sliceMbCount << 4, 16, YUV422_10);
+            return filled[sliceMbCount];
+        }
     }
 
-    static final byte[] onePlane(int blocksPerSlice, int[] qmatLuma, int[] scan, int[] data) throws IOException {
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        BitstreamWriter bits = new BitstreamWriter(bytes);
-        encodeOnePlane(bits, blocksPerSlice, qmatLuma, scan, data);
-        bits.flush();
-        return bytes.toByteArray();
+    /**
+     * Coded plane of a slice
+     */
+    static class PlaneBuffer extends ByteArrayOutputStream {
+        private BitstreamWriter bits = new BitstreamWriter(this);
+
+        public void writeTo(DataOutput out) throws IOException {
+            out.write(buf, 0, count);
+        }
     }
 
     protected byte[][] encodePicture(int[][] scaledLuma, int[][] scaledChroma, int[] scan, Picture picture)
@@ -259,26 +405,22 @@ public class ProresEncoder {
 
         int mbWidth = (picture.getWidth() + 15) >> 4;
         int mbHeight = (picture.getHeight() + 15) >> 4;
-        int qp = profile.firstQp;
 
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        DataOutputStream dout = new DataOutputStream(buffer);
         TShortArrayList sliceSizes = new TShortArrayList();
-        for (int mbY = 0; mbY < mbHeight; mbY++) {
-            int mbX = 0;
-            int sliceMbCount = DEFAULT_SLICE_MB_WIDTH;
-            while (mbX < mbWidth) {
-                while (mbWidth - mbX < sliceMbCount)
-                    sliceMbCount >>= 1;
-
-                int sliceStart = buffer.size();
-                boolean unsafeBottom = (picture.getHeight() % 16) != 0 && mbY == mbHeight - 1;
-                boolean unsafeRight = (picture.getWidth() % 16) != 0 && mbX + sliceMbCount == mbWidth;
-                qp = encodeSlice(dout, scaledLuma, scaledChroma, scan, sliceMbCount, mbX, mbY, picture, qp, mbWidth,
-                        mbHeight, unsafeBottom || unsafeRight);
-                sliceSizes.add((short) (buffer.size() - sliceStart));
-
-                mbX += sliceMbCount;
+        if (executor == null) {
+            int qp = profile.firstQp;
+            for (int mbY = 0; mbY < mbHeight; mbY++)
+                qp = encodeRow(buffer, sliceSizes, scaledLuma, scaledChroma, scan, picture, mbY, qp);
+        } else {
+            List<FutureTask<RowJob>> jobs = new ArrayList<FutureTask<RowJob>>();
+            for (int mbY = 0; mbY < mbHeight; mbY++)
+                jobs.add(JobUtil.submit(executor, new RowJob(scaledLuma, scaledChroma, scan, picture, mbY)));
+            JobUtil.join(jobs);
+            for (FutureTask<RowJob> job : jobs) {
+                RowJob row = JobUtil.join(job);
+                row.buffer.writeTo(buffer);
+                sliceSizes.addAll(row.sliceSizes);
             }
         }
 
@@ -289,6 +431,58 @@ public class ProresEncoder {
         return new byte[][] { header.toByteArray(), buffer.toByteArray() };
     }
 
+    /**
+     * Encodes a row of slices into the buffer adding their sizes to the list
+     * 
+     * @return qp of the last slice
+     */
+    private int encodeRow(ByteArrayOutputStream buffer, TShortArrayList sliceSizes, int[][] scaledLuma,
+            int[][] scaledChroma, int[] scan, Picture picture, int mbY, int qp) throws IOException {
+        int mbWidth = (picture.getWidth() + 15) >> 4;
+        int mbHeight = (picture.getHeight() + 15) >> 4;
+
+        DataOutputStream dout = new DataOutputStream(buffer);
+        int mbX = 0;
+        int sliceMbCount = DEFAULT_SLICE_MB_WIDTH;
+        while (mbX < mbWidth) {
+            while (mbWidth - mbX < sliceMbCount)
+                sliceMbCount >>= 1;
+
+            int sliceStart = buffer.size();
+            boolean unsafeBottom = (picture.getHeight() % 16) != 0 && mbY == mbHeight - 1;
+            boolean unsafeRight = (picture.getWidth() % 16) != 0 && mbX + sliceMbCount == mbWidth;
+            qp = encodeSlice(dout, scaledLuma, scaledChroma, scan, sliceMbCount, mbX, mbY, picture, qp, mbWidth,
+                    mbHeight, unsafeBottom || unsafeRight);
+            sliceSizes.add((short) (buffer.size() - sliceStart));
+
+            mbX += sliceMbCount;
+        }
+        return qp;
+    }
+
+    private class RowJob implements Callable<RowJob> {
+        private int[][] scaledLuma;
+        private int[][] scaledChroma;
+        private int[] scan;
+        private Picture picture;
+        private int mbY;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private TShortArrayList sliceSizes = new TShortArrayList();
+
+        public RowJob(int[][] scaledLuma, int[][] scaledChroma, int[] scan, Picture picture, int mbY) {
+            this.scaledLuma = scaledLuma;
+            this.scaledChroma = scaledChroma;
+            this.scan = scan;
+            this.picture = picture;
+            this.mbY = mbY;
+        }
+
+        public RowJob call() throws IOException {
+            encodeRow(buffer, sliceSizes, scaledLuma, scaledChroma, scan, picture, mbY, profile.firstQp);
+            return this;
+        }
+    }
+
     public static void writePictureHeader(PictureHeader ph, DataOutput out) throws IOException {
         int headerLen = 8;
         out.write(headerLen << 3);
@@ -302,10 +496,10 @@ public class ProresEncoder {
         }
     }
 
-    private Picture splitSlice(Picture result, int mbX, int mbY, int sliceMbCount, boolean unsafe) {
-        Picture out = Picture.create(sliceMbCount << 4, 16, YUV422_10);
+    private Picture splitSlice(SliceBuffers data, Picture result, int mbX, int mbY, int sliceMbCount, boolean unsafe) {
+        Picture out = data.striped(sliceMbCount);
         if (unsafe) {
-            Picture filled = Picture.create(sliceMbCount << 4, 16, YUV422_10);
+            Picture filled = data.filled(sliceMbCount);
             ImageOP.subImageWithFill(result, filled, new Rect(mbX << 4, mbY << 4, sliceMbCount << 4, 16));
 
             split(filled, out, 0, 0, sliceMbCount);
@@ -7,6 +7,8 @@ import java.io.RandomAccessFile;
 
 import javax.imageio.ImageIO;
 
+import org.jcodec.codecs.h264.H264VideoDecoder;
+import org.jcodec.codecs.h264.mp4.AvcCBox;
 import org.jcodec.codecs.mpeg12.MPEGDecoder;
 import org.jcodec.codecs.pcm.PCMDecoder;
 import org.jcodec.codecs.ppm.PPMEncoder;
@@ -20,6 +22,8 @@ import org.jcodec.common.io.RAInputStream;
 import org.jcodec.common.model.ColorSpace;
 import org.jcodec.common.model.Picture;
 import org.jcodec.containers.mp4.MP4Demuxer;
+import org.jcodec.containers.mp4.boxes.NodeBox;
+import org.jcodec.containers.mp4.boxes.SampleEntry;
 import org.jcodec.containers.mps.MPSDemuxer;
 import org.jcodec.containers.mps.MTSDemuxer;
 import org.jcodec.player.filters.MediaInfo;
@@ -88,6 +92,18 @@ public class JCodecUtil {
             return null;
     }
 
+    /**
+     * Creates decoder for the track with this sample entry, H264 decoder gets
+     * the parameter sets of the track. Unlike the intra decoders it takes the
+     * samples of the whole track in decoding order.
+     */
+    public static VideoDecoder getVideoDecoder(SampleEntry se) {
+        AvcCBox avcC = NodeBox.findFirst(se, AvcCBox.class, AvcCBox.fourcc());
+        if ("avc1".equals(se.getFourcc()))
+            return avcC != null ? new H264VideoDecoder(avcC) : new H264VideoDecoder();
+        return getVideoDecoder(se.getFourcc());
+    }
+
     public static AudioDecoder getAudioDecoder(String fourcc, MediaInfo.AudioInfo info) {
         if ("sowt".equals(fourcc) || "in24".equals(fourcc) || "twos".equals(fourcc) || "in32".equals(fourcc))
             return new PCMDecoder(info);
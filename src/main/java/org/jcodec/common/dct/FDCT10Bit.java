@@ -0,0 +1,141 @@
+package org.jcodec.common.dct;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Fast integer forward DCT
+ *
+ * Loeffler-Ligtenberg-Moschytz factorization with 12 multiplications per
+ * row/column, as in IJG jfdctint. The output has the scale of DCTRef.fdct
+ * and is within 3 of it for 8 and 10 bit samples and for the differences of
+ * 10 bit samples. The row pass keeps only one extra bit of precision so that
+ * the column pass fits 32 bits, wider input is less precise: the error grows
+ * to 6-7 on 11 and 12 bit ranges and 12 bit differences (+-4095) overflow.
+ *
+ * @author The JCodec project
+ *
+ */
+public class FDCT10Bit {
+    private static final int CONST_BITS = 13;
+    private static final int PASS1_BITS = 1;
+    // DCTRef scale is the half of the jfdctint one
+    private static final int OUT_SHIFT = 1;
+
+    private static final int FIX_0_298631336 = 2446;
+    private static final int FIX_0_390180644 = 3196;
+    private static final int FIX_0_541196100 = 4433;
+    private static final int FIX_0_765366865 = 6270;
+    private static final int FIX_0_899976223 = 7373;
+    private static final int FIX_1_175875602 = 9633;
+    private static final int FIX_1_501321110 = 12299;
+    private static final int FIX_1_847759065 = 15137;
+    private static final int FIX_1_961570560 = 16069;
+    private static final int FIX_2_053119869 = 16819;
+    private static final int FIX_2_562915447 = 20995;
+    private static final int FIX_3_072711638 = 25172;
+
+    private static final int ROW_SHIFT = CONST_BITS - PASS1_BITS;
+    private static final int ROW_ROUND = 1 << (ROW_SHIFT - 1);
+    private static final int COL_SHIFT = CONST_BITS + PASS1_BITS + OUT_SHIFT;
+    private static final int COL_ROUND = 1 << (COL_SHIFT - 1);
+    private static final int DC_SHIFT = PASS1_BITS + OUT_SHIFT;
+    private static final int DC_ROUND = 1 << (DC_SHIFT - 1);
+
+    public static final void fdct10(int[] buf, int off) {
+        for (int i = 0; i < 8; i++)
+            fdctRow(buf, off + (i << 3));
+        for (int i = 0; i < 8; i++)
+            fdctCol(buf, off + i);
+    }
+
+    private static final void fdctRow(int[] buf, int off) {
+        int tmp0 = buf[off] + buf[off + 7];
+        int tmp7 = buf[off] - buf[off + 7];
+        int tmp1 = buf[off + 1] + buf[off + 6];
+        int tmp6 = buf[off + 1] - buf[off + 6];
+        int tmp2 = buf[off + 2] + buf[off + 5];
+        int tmp5 = buf[off + 2] - buf[off + 5];
+        int tmp3 = buf[off + 3] + buf[off + 4];
+        int tmp4 = buf[off + 3] - buf[off + 4];
+
+        // even part
+        int tmp10 = tmp0 + tmp3;
+        int tmp13 = tmp0 - tmp3;
+        int tmp11 = tmp1 + tmp2;
+        int tmp12 = tmp1 - tmp2;
+
+        buf[off] = (tmp10 + tmp11) << PASS1_BITS;
+        buf[off + 4] = (tmp10 - tmp11) << PASS1_BITS;
+
+        int z1 = (tmp12 + tmp13) * FIX_0_541196100;
+        buf[off + 2] = (z1 + tmp13 * FIX_0_765366865 + ROW_ROUND) >> ROW_SHIFT;
+        buf[off + 6] = (z1 - tmp12 * FIX_1_847759065 + ROW_ROUND) >> ROW_SHIFT;
+
+        // odd part
+        z1 = tmp4 + tmp7;
+        int z2 = tmp5 + tmp6;
+        int z3 = tmp4 + tmp6;
+        int z4 = tmp5 + tmp7;
+        int z5 = (z3 + z4) * FIX_1_175875602;
+
+        tmp4 *= FIX_0_298631336;
+        tmp5 *= FIX_2_053119869;
+        tmp6 *= FIX_3_072711638;
+        tmp7 *= FIX_1_501321110;
+        z1 *= -FIX_0_899976223;
+        z2 *= -FIX_2_562915447;
+        z3 = z3 * -FIX_1_961570560 + z5;
+        z4 = z4 * -FIX_0_390180644 + z5;
+
+        buf[off + 7] = (tmp4 + z1 + z3 + ROW_ROUND) >> ROW_SHIFT;
+        buf[off + 5] = (tmp5 + z2 + z4 + ROW_ROUND) >> ROW_SHIFT;
+        buf[off + 3] = (tmp6 + z2 + z3 + ROW_ROUND) >> ROW_SHIFT;
+        buf[off + 1] = (tmp7 + z1 + z4 + ROW_ROUND) >> ROW_SHIFT;
+    }
+
+    private static final void fdctCol(int[] buf, int off) {
+        int tmp0 = buf[off] + buf[off + 56];
+        int tmp7 = buf[off] - buf[off + 56];
+        int tmp1 = buf[off + 8] + buf[off + 48];
+        int tmp6 = buf[off + 8] - buf[off + 48];
+        int tmp2 = buf[off + 16] + buf[off + 40];
+        int tmp5 = buf[off + 16] - buf[off + 40];
+        int tmp3 = buf[off + 24] + buf[off + 32];
+        int tmp4 = buf[off + 24] - buf[off + 32];
+
+        // even part
+        int tmp10 = tmp0 + tmp3;
+        int tmp13 = tmp0 - tmp3;
+        int tmp11 = tmp1 + tmp2;
+        int tmp12 = tmp1 - tmp2;
+
+        buf[off] = (tmp10 + tmp11 + DC_ROUND) >> DC_SHIFT;
+        buf[off + 32] = (tmp10 - tmp11 + DC_ROUND) >> DC_SHIFT;
+
+        int z1 = (tmp12 + tmp13) * FIX_0_541196100;
+        buf[off + 16] = (z1 + tmp13 * FIX_0_765366865 + COL_ROUND) >> COL_SHIFT;
+        buf[off + 48] = (z1 - tmp12 * FIX_1_847759065 + COL_ROUND) >> COL_SHIFT;
+
+        // odd part
+        z1 = tmp4 + tmp7;
+        int z2 = tmp5 + tmp6;
+        int z3 = tmp4 + tmp6;
+        int z4 = tmp5 + tmp7;
+        int z5 = (z3 + z4) * FIX_1_175875602;
+
+        tmp4 *= FIX_0_298631336;
+        tmp5 *= FIX_2_053119869;
+        tmp6 *= FIX_3_072711638;
+        tmp7 *= FIX_1_501321110;
+        z1 *= -FIX_0_899976223;
+        z2 *= -FIX_2_562915447;
+        z3 = z3 * -FIX_1_961570560 + z5;
+        z4 = z4 * -FIX_0_390180644 + z5;
+
+        buf[off + 56] = (tmp4 + z1 + z3 + COL_ROUND) >> COL_SHIFT;
+        buf[off + 40] = (tmp5 + z2 + z4 + COL_ROUND) >> COL_SHIFT;
+        buf[off + 24] = (tmp6 + z2 + z3 + COL_ROUND) >> COL_SHIFT;
+        buf[off + 8] = (tmp7 + z1 + z4 + COL_ROUND) >> COL_SHIFT;
+    }
+}
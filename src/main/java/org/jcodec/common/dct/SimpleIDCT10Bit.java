@@ -19,6 +19,28 @@ public class SimpleIDCT10Bit {
     public static int ROW_SHIFT = 15;
     public static int COL_SHIFT = 20;
 
+    // 1D basis functions averaged over 2, 4 and 8 samples, [u * 4 + x]
+    private static final int[][] REDUCED = new int[4][];
+    private static final int REDUCED_BITS = 12;
+    private static final int REDUCED_SHIFT1 = REDUCED_BITS - 3;
+    private static final int REDUCED_SHIFT2 = REDUCED_BITS + 3;
+
+    static {
+        for (int downscale = 1; downscale < 4; downscale++) {
+            int size = 8 >> downscale;
+            REDUCED[downscale] = new int[16];
+            for (int u = 0; u < size; u++) {
+                double cu = u == 0 ? Math.sqrt(0.5) / 2 : 0.5;
+                for (int x = 0; x < size; x++) {
+                    double sum = 0;
+                    for (int k = 0; k < (1 << downscale); k++)
+                        sum += cu * Math.cos((2 * ((x << downscale) + k) + 1) * u * Math.PI / 16);
+                    REDUCED[downscale][(u << 2) + x] = (int) Math.round(sum * (1 << REDUCED_BITS) / (1 << downscale));
+                }
+            }
+        }
+    }
+
     public static final void idct10(int[] buf, int off) {
         for (int i = 0; i < 8; i++)
             idctRow(buf, off + (i << 3));
@@ -26,6 +48,44 @@ public class SimpleIDCT10Bit {
             idctCol(buf, off + i);
     }
 
+    /**
+     * Reconstructs the block scaled down by 2^downscale in both directions,
+     * each pixel being the average of the area of the full size block. Only
+     * the (8 >> downscale)^2 lowest frequencies are used, the result is stored
+     * row by row with the stride of (8 >> downscale) at the start of the block.
+     * The bottom half of the block holds the intermediate values, the rest of
+     * the block is left undefined.
+     */
+    public static final void idct10(int[] buf, int off, int downscale) {
+        if (downscale == 0) {
+            idct10(buf, off);
+            return;
+        }
+        int size = 8 >> downscale;
+        int[] basis = REDUCED[downscale];
+        // rows 4-7, neither read by the row pass nor written by the column one
+        int tmp = off + 32;
+
+        for (int v = 0; v < size; v++) {
+            int row = off + (v << 3);
+            for (int x = 0; x < size; x++) {
+                int sum = 0;
+                for (int u = 0; u < size; u++)
+                    sum += buf[row + u] * basis[(u << 2) + x];
+                buf[tmp + (v << 3) + x] = (sum + (1 << (REDUCED_SHIFT1 - 1))) >> REDUCED_SHIFT1;
+            }
+        }
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int sum = 0;
+                for (int v = 0; v < size; v++)
+                    sum += buf[tmp + (v << 3) + x] * basis[(v << 2) + y];
+                buf[off + y * size + x] = (sum + (1 << (REDUCED_SHIFT2 - 1))) >> REDUCED_SHIFT2;
+            }
+        }
+    }
+
     private static final void idctCol(int[] buf, int off) {
         int a0, a1, a2, a3, b0, b1, b2, b3;
 
@@ -8,6 +8,10 @@ import java.util.Arrays;
  * 
  * Performs IDCT of 8x8 block.
  * 
+ * Can reconstruct the block downscaled by 2, 4 or 8 in both directions, each
+ * pixel being the average of the area of the full size block. Averaged basis
+ * images are smaller and many of them are all zeros, at 1/8 only DC is left.
+ * 
  * See MPEGDecoder for example.
  * 
  * @author The JCodec project
@@ -18,6 +22,8 @@ public class SparseIDCT {
     public final static int[][] COEFF = new int[64][];
     public final static int PRECISION = 13;
     public final static int DC_SHIFT = PRECISION - 3;
+    // basis images averaged over 2x2, 4x4 and 8x8 areas, null if all zeros
+    public final static int[][][] COEFF_DOWN = new int[4][64][];
 
     static {
         COEFF[0] = new int[64];
@@ -29,6 +35,25 @@ public class SparseIDCT {
             COEFF[i][i] = ac;
             SimpleIDCT10Bit.idct10(COEFF[i], 0);
         }
+
+        for (int downscale = 1; downscale < 4; downscale++) {
+            int size = 8 >> downscale, area = 1 << (downscale << 1);
+            for (int i = 0; i < 64; i++) {
+                int[] down = new int[size * size];
+                boolean zero = true;
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        int sum = 0;
+                        for (int j = 0; j < (1 << downscale); j++)
+                            for (int k = 0; k < (1 << downscale); k++)
+                                sum += COEFF[i][(((y << downscale) + j) << 3) + (x << downscale) + k];
+                        down[y * size + x] = sum >= 0 ? (sum + (area >> 1)) / area : -((-sum + (area >> 1)) / area);
+                        zero &= down[y * size + x] == 0;
+                    }
+                }
+                COEFF_DOWN[downscale][i] = zero ? null : down;
+            }
+        }
     }
 
     /**
@@ -79,6 +104,41 @@ public class SparseIDCT {
         }
     }
 
+    /**
+     * Starts reconstruction of the block downscaled by 2^downscale, the block
+     * is stored row by row with the stride of (8 >> downscale)
+     */
+    public static final void start(int[] block, int dc, int downscale) {
+        if (downscale == 0) {
+            start(block, dc);
+            return;
+        }
+        dc <<= DC_SHIFT;
+        for (int i = 0; i < (64 >> (downscale << 1)); i++)
+            block[i] = dc;
+    }
+
+    public static final void coeff(int[] block, int ind, int level, int downscale) {
+        if (downscale == 0) {
+            coeff(block, ind, level);
+            return;
+        }
+        int[] basis = COEFF_DOWN[downscale][ind];
+        if (basis == null)
+            return;
+        for (int i = 0; i < basis.length; i++)
+            block[i] += basis[i] * level;
+    }
+
+    public static final void finish(int block[], int downscale) {
+        if (downscale == 0) {
+            finish(block);
+            return;
+        }
+        for (int i = 0; i < (64 >> (downscale << 1)); i++)
+            block[i] = div(block[i]);
+    }
+
     private final static int div(int x) {
         int m = x >> 31;
         int n = x >>> 31;
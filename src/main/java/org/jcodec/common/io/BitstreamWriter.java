@@ -28,6 +28,8 @@ public class BitstreamWriter implements OutBits {
             os.write(curInt >>> 24);
             curInt <<= 8;
         }
+        curInt = 0;
+        curBit = 0;
     }
 
     public final void writeNBit(int value, int n) throws IOException {
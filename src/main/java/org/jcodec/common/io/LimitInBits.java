@@ -54,7 +54,7 @@ public class LimitInBits implements InBits {
 
     public int checkNBit(int n) throws IOException {
         int nn = n < limit ? n : limit;
-        return checkNBit(nn) << (n - nn);
+        return bits.checkNBit(nn) << (n - nn);
     }
 
     public int curBit() {
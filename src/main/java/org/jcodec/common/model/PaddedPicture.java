@@ -0,0 +1,187 @@
+package org.jcodec.common.model;
+
+import static java.lang.System.arraycopy;
+
+import java.util.Arrays;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * A reference picture with edge extended planes
+ *
+ * Shares the planes of the original picture, along with them keeps a copy of
+ * the pixels surrounded by 'pad' lines of the replicated edge pixels on every
+ * side ( scaled down for the subsampled planes ). Motion compensation reads
+ * the blocks from the padded planes so it doesn't have to clip the coordinates
+ * of every pixel when the motion vector points outside of the picture.
+ *
+ * The padded planes may be filled row by row while the picture is being
+ * reconstructed on one thread and predicted from on the others, the readers
+ * wait for the rows they need with waitForRows.
+ *
+ * @author The JCodec project
+ *
+ */
+public class PaddedPicture extends Picture {
+    private Picture padded;
+    private int pad;
+    private volatile int readyRows;
+    private Throwable error;
+
+    /**
+     * @param padded
+     *            Picture to keep the padded planes in, must be exactly 2 *
+     *            pad pixels wider and taller than pic
+     */
+    public PaddedPicture(Picture pic, Picture padded, int pad) {
+        this(pic, padded, pad, true);
+    }
+
+    /**
+     * @param fill
+     *            Fill the padded planes right away, otherwise the rows are
+     *            filled with fillRows as they become final
+     */
+    public PaddedPicture(Picture pic, Picture padded, int pad, boolean fill) {
+        super(pic.getWidth(), pic.getHeight(), pic.getData(), pic.getColor(), pic.getCrop());
+        if (padded.getColor() != pic.getColor() || padded.getWidth() != pic.getWidth() + (pad << 1)
+                || padded.getHeight() != pic.getHeight() + (pad << 1))
+            throw new IllegalArgumentException("Padded picture doesn't match the source picture");
+        this.padded = padded;
+        this.pad = pad;
+
+        if (fill)
+            fill();
+    }
+
+    public static PaddedPicture create(Picture pic, int pad) {
+        return new PaddedPicture(pic, Picture.create(pic.getWidth() + (pad << 1), pic.getHeight() + (pad << 1),
+                pic.getColor()), pad);
+    }
+
+    /**
+     * Copies the pixels of the original planes into the padded planes and
+     * replicates the edges, must be called again if the original planes change
+     */
+    public void fill() {
+        readyRows = 0;
+        fillRows(getHeight());
+    }
+
+    /**
+     * Copies the rows of the original planes up to 'rows' that are not
+     * copied yet and makes them available to waitForRows. The top edge is
+     * replicated along with the first rows and the bottom edge along with the
+     * last one.
+     * 
+     * @param rows
+     *            Number of the luma rows from the top that won't change
+     *            anymore, a multiple of the chroma subsampling
+     */
+    public void fillRows(int rows) {
+        int from = readyRows;
+        if (rows <= from)
+            return;
+        for (int plane = 0; plane < getData().length; plane++) {
+            if (getPlaneData(plane) == null)
+                continue;
+            int shift = getColor().compHeight[plane];
+            fillPlane(getPlaneData(plane), getPlaneWidth(plane), getPlaneHeight(plane), padded.getPlaneData(plane),
+                    getPadX(plane), getPadY(plane), from >> shift, rows == getHeight() ? getPlaneHeight(plane)
+                            : rows >> shift);
+        }
+        synchronized (this) {
+            readyRows = rows;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the rows of the padded planes up to 'rows' are filled, the
+     * padding below the picture is only there once all the rows are
+     * 
+     * @throws RuntimeException
+     *             If the picture failed to reconstruct
+     */
+    public void waitForRows(int rows) {
+        if (readyRows >= rows)
+            return;
+        synchronized (this) {
+            while (readyRows < rows) {
+                if (error != null)
+                    throw new RuntimeException("Reference picture failed", error);
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the threads waiting for the rows that will never be filled
+     */
+    public synchronized void fail(Throwable t) {
+        error = t;
+        notifyAll();
+    }
+
+    private static void fillPlane(int[] src, int width, int height, int[] dst, int padX, int padY, int from, int to) {
+        int stride = width + (padX << 1);
+        int srcOff = from * width, dstOff = (padY + from) * stride;
+        for (int i = from; i < to; i++) {
+            Arrays.fill(dst, dstOff, dstOff + padX, src[srcOff]);
+            arraycopy(src, srcOff, dst, dstOff + padX, width);
+            Arrays.fill(dst, dstOff + padX + width, dstOff + stride, src[srcOff + width - 1]);
+            srcOff += width;
+            dstOff += stride;
+        }
+
+        if (from == 0) {
+            int firstLine = padY * stride;
+            for (int i = 0; i < padY; i++)
+                arraycopy(dst, firstLine, dst, i * stride, stride);
+        }
+        if (to == height) {
+            int lastLine = dstOff - stride;
+            for (int i = 0; i < padY; i++) {
+                arraycopy(dst, lastLine, dst, dstOff, stride);
+                dstOff += stride;
+            }
+        }
+    }
+
+    /**
+     * @return Padded plane, pixel (x, y) of the plane is at (y + padY) *
+     *         stride + x + padX
+     */
+    public int[] getPaddedPlaneData(int plane) {
+        return padded.getPlaneData(plane);
+    }
+
+    public int getPaddedStride(int plane) {
+        return padded.getPlaneWidth(plane);
+    }
+
+    public int getPadX(int plane) {
+        return pad >> getColor().compWidth[plane];
+    }
+
+    public int getPadY(int plane) {
+        return pad >> getColor().compHeight[plane];
+    }
+
+    public int getPad() {
+        return pad;
+    }
+
+    /**
+     * @return Picture that holds the padded planes, i.e. to give it back to a
+     *         pool once this picture is not used for prediction anymore
+     */
+    public Picture getPadded() {
+        return padded;
+    }
+}
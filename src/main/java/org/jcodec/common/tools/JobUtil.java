@@ -0,0 +1,78 @@
+package org.jcodec.common.tools;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Spreads the jobs of a codec across an executor. The thread that waits for
+ * the jobs runs the ones no worker took yet by itself, so a codec called from
+ * a thread of it's own executor never waits for the jobs queued behind it.
+ *
+ * @author The JCodec project
+ *
+ */
+public class JobUtil {
+
+    public static <T> FutureTask<T> submit(Executor executor, Callable<T> job) {
+        FutureTask<T> task = new FutureTask<T>(job);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs the job unless a worker took it already, then waits for it
+     *
+     * @return Result of the job
+     */
+    public static <T> T join(FutureTask<T> job) throws IOException {
+        job.run();
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Runs or waits for every job, the first failure is rethrown only once all
+     * of them are done so that none is still writing to the shared buffers
+     */
+    public static void join(List<? extends FutureTask<?>> jobs) throws IOException {
+        Throwable failure = null;
+        for (FutureTask<?> job : jobs) {
+            job.run();
+            try {
+                job.get();
+            } catch (InterruptedException e) {
+                if (failure == null)
+                    failure = e;
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause();
+            }
+        }
+        if (failure instanceof InterruptedException)
+            Thread.currentThread().interrupt();
+        if (failure != null)
+            throw rethrow(failure);
+    }
+
+    private static RuntimeException rethrow(Throwable t) throws IOException {
+        if (t instanceof IOException)
+            throw (IOException) t;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        throw new RuntimeException(t);
+    }
+}
@@ -594,6 +594,14 @@ public class MP4Demuxer {
         public long getFrameCount() {
             return sizes.length;
         }
+
+        /**
+         * @return Numbers of the sync samples starting with 1 or null if every
+         *         sample is a sync sample
+         */
+        public int[] getSyncSamples() {
+            return syncSamples;
+        }
     };
 
     public MP4Demuxer(RAInputStream input) throws IOException {
@@ -5,6 +5,10 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.jcodec.codecs.h264.AccessUnit;
+import org.jcodec.codecs.h264.annexb.NALUnitReader;
+import org.jcodec.codecs.h264.io.model.NALUnit;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+import org.jcodec.common.io.Buffer;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
@@ -12,6 +16,11 @@ import org.jcodec.codecs.h264.AccessUnit;
  * 
  * An access unit read from a container sample (MP4 like format)
  * 
+ * The sample holds NAL units prefixed with 4 byte length. Only the slices are
+ * returned, with emulation prevention removed, the rest of the NAL units go
+ * to processNonSlice. Empty units are skipped, the last one is cut at the end
+ * of the sample.
+ * 
  * @author Jay Codec
  * 
  */
@@ -24,13 +33,35 @@ public class AUFromContainerSample implements AccessUnit {
     }
 
     public InputStream nextNALUnit() throws IOException {
-        if (pos + 4 >= buffer.length)
-            return null;
-
-        int len = ((buffer[pos] & 0xff) << 24) + ((buffer[pos + 1] & 0xff) << 16) + ((buffer[pos + 2] & 0xff) << 8)
-                + (buffer[pos + 3] & 0xff);
-        ByteArrayInputStream result = new ByteArrayInputStream(buffer, pos + 4, len);
-        pos += len + 4;
-        return result;
+        while (pos + 4 < buffer.length) {
+            int len = ((buffer[pos] & 0xff) << 24) + ((buffer[pos + 1] & 0xff) << 16)
+                    + ((buffer[pos + 2] & 0xff) << 8) + (buffer[pos + 3] & 0xff);
+            int start = pos + 4;
+            if (len == 0) {
+                pos = start;
+                continue;
+            }
+            // length past the end of the sample, what's left is the unit
+            pos = len < 0 || len > buffer.length - start ? buffer.length : start + len;
+
+            Buffer nal = NALUnitReader.unescape(new Buffer(buffer, start, pos));
+            ByteArrayInputStream result = new ByteArrayInputStream(nal.buffer, nal.pos, nal.remaining());
+
+            NALUnitType type = NALUnitType.fromValue(nal.buffer[nal.pos] & 0x1f);
+            if (type == NALUnitType.IDR_SLICE || type == NALUnitType.NON_IDR_SLICE)
+                return result;
+
+            processNonSlice(NALUnit.read(result), result);
+        }
+        return null;
+    }
+
+    /**
+     * Called for every NAL unit of the sample that is not a slice
+     * 
+     * @param is
+     *            Payload of the NAL unit past the header
+     */
+    protected void processNonSlice(NALUnit nu, InputStream is) throws IOException {
     }
-}
\ No newline at end of file
+}
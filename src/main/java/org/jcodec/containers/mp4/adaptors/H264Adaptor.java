@@ -1,17 +1,26 @@
 package org.jcodec.containers.mp4.adaptors;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.jcodec.codecs.h264.AccessUnit;
-import org.jcodec.codecs.h264.H264Demuxer;
+import org.jcodec.codecs.h264.H264SeekableDemuxer;
+import org.jcodec.codecs.h264.io.model.NALUnit;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
 import org.jcodec.codecs.h264.io.model.PictureParameterSet;
 import org.jcodec.codecs.h264.io.model.SeqParameterSet;
 import org.jcodec.codecs.h264.mp4.AvcCBox;
 import org.jcodec.common.model.Packet;
 import org.jcodec.containers.mp4.MP4Demuxer;
+import org.jcodec.containers.mp4.boxes.CompositionOffsetsBox;
+import org.jcodec.containers.mp4.boxes.CompositionOffsetsBox.Entry;
 import org.jcodec.containers.mp4.boxes.NodeBox;
+import org.jcodec.containers.mp4.boxes.TimeToSampleBox;
+import org.jcodec.containers.mp4.boxes.TimeToSampleBox.TimeToSampleEntry;
 import org.jcodec.containers.mp4.boxes.VideoSampleEntry;
 
 /**
@@ -24,10 +33,12 @@ import org.jcodec.containers.mp4.boxes.VideoSampleEntry;
  * @author Jay Codec
  * 
  */
-public class H264Adaptor implements H264Demuxer {
+public class H264Adaptor implements H264SeekableDemuxer {
     private Map<Integer, SeqParameterSet> spsSet = new HashMap<Integer, SeqParameterSet>();
     private Map<Integer, PictureParameterSet> ppsSet = new HashMap<Integer, PictureParameterSet>();
     private MP4Demuxer.FramesTrack track;
+    private int[] decodeOrder;
+    private int[] displayOrder;
 
     public H264Adaptor(MP4Demuxer.FramesTrack track) {
         this.track = track;
@@ -44,6 +55,107 @@ public class H264Adaptor implements H264Demuxer {
         return new AUFromContainerSample(pkt.getData().toArray());
     }
 
+    /**
+     * Goes to the last sync sample that is an IDR picture and precedes the
+     * sample displayed at position frameNo, the sync samples that are
+     * recovery points are passed over as the decoder starts from IDR only.
+     * Display order of the samples comes from their composition time. Every
+     * sample of the group of pictures is decoded, nothing displayed before
+     * the IDR picture follows it in decoding order.
+     */
+    public int seek(int frameNo) throws IOException {
+        if (frameNo < 0 || frameNo >= track.getFrameCount())
+            return -1;
+
+        int sample = getDecodeOrder()[frameNo];
+
+        int[] syncSamples = track.getSyncSamples();
+        int i = sample;
+        if (syncSamples != null) {
+            i = Arrays.binarySearch(syncSamples, sample + 1);
+            if (i < 0)
+                i = -i - 2;
+        }
+
+        for (; i >= 0; i--) {
+            int key = syncSamples == null ? i : syncSamples[i] - 1;
+            track.gotoFrame(key);
+            Packet pkt = track.getFrames(1);
+            if (pkt != null && isIDR(pkt.getData().toArray())) {
+                track.gotoFrame(key);
+                return frameNo - displayOrder[key];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return Number of the sample displayed at each position, the samples
+     *         are ranked by the composition time i.e. decoding time plus
+     *         composition offset
+     */
+    private int[] getDecodeOrder() {
+        if (decodeOrder != null)
+            return decodeOrder;
+
+        NodeBox stbl = track.getBox().getMdia().getMinf().getStbl();
+        TimeToSampleEntry[] stts = NodeBox.findFirst(stbl, TimeToSampleBox.class, "stts").getEntries();
+        CompositionOffsetsBox ctts = NodeBox.findFirst(stbl, CompositionOffsetsBox.class, "ctts");
+
+        int count = (int) track.getFrameCount();
+        final long[] compTime = new long[count];
+        long dts = 0;
+        for (int i = 0, ent = 0, inEnt = 0; i < count; i++) {
+            compTime[i] = dts;
+            dts += stts[ent].getSampleDuration();
+            if (++inEnt == stts[ent].getSampleCount() && ent < stts.length - 1) {
+                ent++;
+                inEnt = 0;
+            }
+        }
+        if (ctts != null) {
+            Entry[] entries = ctts.getEntries();
+            for (int i = 0, ent = 0, inEnt = 0; i < count && ent < entries.length; i++) {
+                compTime[i] += entries[ent].getOffset();
+                if (++inEnt == entries[ent].getCount()) {
+                    ent++;
+                    inEnt = 0;
+                }
+            }
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return compTime[o1] < compTime[o2] ? -1 : (compTime[o1] == compTime[o2] ? 0 : 1);
+            }
+        });
+
+        decodeOrder = new int[count];
+        displayOrder = new int[count];
+        for (int i = 0; i < count; i++) {
+            decodeOrder[i] = order[i];
+            displayOrder[order[i]] = i;
+        }
+        return decodeOrder;
+    }
+
+    private boolean isIDR(byte[] sample) throws IOException {
+        AccessUnit au = new AUFromContainerSample(sample);
+        InputStream is;
+        while ((is = au.nextNALUnit()) != null) {
+            NALUnit nu = NALUnit.read(is);
+            if (nu.type == NALUnitType.IDR_SLICE)
+                return true;
+            else if (nu.type == NALUnitType.NON_IDR_SLICE)
+                return false;
+        }
+        return false;
+    }
+
     public PictureParameterSet getPPS(int id) {
         return ppsSet.get(id);
     }
@@ -0,0 +1,135 @@
+package org.jcodec.containers.mps;
+
+import static java.lang.Math.max;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.common.io.FileRAOutputStream;
+import org.jcodec.common.io.RAOutputStream;
+import org.jcodec.common.model.Packet;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Cuts the stream into MPEG TS segments for HTTP Live Streaming
+ *
+ * A segment starts with a key frame of the first video track once the current
+ * one is at least the segment duration long, with no video any frame may start
+ * a segment. The frames before the first key frame are dropped. The playlist
+ * is rewritten after every segment, so it can be served while the stream is
+ * being cut, and gets closed by finish.
+ *
+ * The target duration of the playlist is the segment duration rounded up and
+ * doesn't change while the stream is cut. The key frames should come at least
+ * as often as the segment duration, a longer segment may exceed the target.
+ *
+ * The segments are named name-N.ts and the playlist name.m3u8.
+ *
+ * @author The JCodec project
+ *
+ */
+public class HLSSegmenter {
+    private File dir;
+    private String name;
+    private long segmentDuration;
+    private int targetDuration;
+
+    private MTSMuxer muxer = new MTSMuxer(null);
+    private int cutTrack = -1;
+    private RAOutputStream out;
+    private long segmentStart;
+    private long segmentEnd;
+    private List<Double> durations = new ArrayList<Double>();
+
+    /**
+     * @param segmentDuration
+     *            Duration of the segments in seconds
+     */
+    public HLSSegmenter(File dir, String name, double segmentDuration) {
+        this.dir = dir;
+        this.name = name;
+        this.segmentDuration = Math.round(segmentDuration * 90000);
+        this.targetDuration = (int) Math.ceil(segmentDuration);
+    }
+
+    /**
+     * @see MTSMuxer#addTrack(int)
+     */
+    public int addTrack(int streamType) {
+        int track = muxer.addTrack(streamType);
+        if (cutTrack == -1 && MTSMuxer.isVideo(streamType))
+            cutTrack = track;
+        return track;
+    }
+
+    /**
+     * @see MTSMuxer#addFrame(int, Packet)
+     */
+    public void addFrame(int track, Packet pkt) throws IOException {
+        addFrame(track, pkt, pkt.getPts());
+    }
+
+    /**
+     * @see MTSMuxer#addFrame(int, Packet, long)
+     */
+    public void addFrame(int track, Packet pkt, long dts) throws IOException {
+        long pts = pkt.getPts() * 90000 / pkt.getTimescale();
+        if ((cutTrack == -1 || track == cutTrack) && (pkt.isKeyFrame() || cutTrack == -1)
+                && (out == null || pts - segmentStart >= segmentDuration)) {
+            if (out != null)
+                closeSegment(pts);
+            out = new FileRAOutputStream(new File(dir, segmentName(durations.size())));
+            muxer.setOutput(out);
+            segmentStart = segmentEnd = pts;
+        }
+        if (out == null)
+            return;
+
+        if (cutTrack == -1 || track == cutTrack)
+            segmentEnd = max(segmentEnd, pts + pkt.getDuration() * 90000 / pkt.getTimescale());
+        muxer.addFrame(track, pkt, dts);
+    }
+
+    /**
+     * Closes the last segment and the playlist
+     */
+    public void finish() throws IOException {
+        if (out != null)
+            closeSegment(segmentEnd);
+        out = null;
+        writePlaylist(true);
+    }
+
+    private void closeSegment(long end) throws IOException {
+        muxer.flush();
+        out.close();
+        durations.add((end - segmentStart) / 90000d);
+        writePlaylist(false);
+    }
+
+    private String segmentName(int i) {
+        return name + "-" + i + ".ts";
+    }
+
+    private void writePlaylist(boolean last) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:3\n");
+        sb.append("#EXT-X-TARGETDURATION:").append(targetDuration).append("\n");
+        sb.append("#EXT-X-MEDIA-SEQUENCE:0\n");
+        for (int i = 0; i < durations.size(); i++) {
+            sb.append(String.format(Locale.US, "#EXTINF:%.3f,\n", durations.get(i)));
+            sb.append(segmentName(i)).append("\n");
+        }
+        if (last)
+            sb.append("#EXT-X-ENDLIST\n");
+
+        FileUtils.writeStringToFile(new File(dir, name + ".m3u8"), sb.toString(), "UTF-8");
+    }
+}
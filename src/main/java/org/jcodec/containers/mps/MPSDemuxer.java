@@ -43,6 +43,8 @@ public class MPSDemuxer {
     private Map<Integer, PES> streams = new HashMap<Integer, PES>();
     private RAInputStream input;
     private Buffer buf;
+    // array of buf that may be appended to in place
+    private byte[] own;
 
     public MPSDemuxer(RAInputStream input) throws IOException {
         this.input = input;
@@ -181,16 +183,16 @@ public class MPSDemuxer {
     private Buffer readToMarker() throws IOException {
         int ind, pos = 0;
         do {
-            ind = buf.searchFrom(pos, 0, 0, 1);
+            ind = search(pos);
             if (ind == -1) {
-                Buffer b = fetchBuffer();
-                if (b == null)
+                // the prefix may be split between the pieces
+                pos = max(pos, buf.remaining() - 3);
+                if (!fetchMore())
                     break;
-                buf.extendWith(b);
             } else {
                 pos = ind + 4;
                 if (pos >= buf.remaining()) {
-                    buf.extendWith(fetchBuffer());
+                    fetchMore();
                 }
             }
         } while (ind == -1 || buf.get(pos - 1) < 0xB9);
@@ -208,9 +210,47 @@ public class MPSDemuxer {
     }
 
     private void fetchData(int n) throws IOException {
-        Buffer b;
-        while (buf.remaining() < n && (b = fetchBuffer()) != null)
-            buf.extendWith(b);
+        while (buf.remaining() < n && fetchMore())
+            ;
+    }
+
+    /**
+     * Appends next piece of the stream to buf, the array is grown by doubling
+     * and the data is read straight into it when it comes from the input
+     */
+    private boolean fetchMore() throws IOException {
+        Buffer b = null;
+        int size = BUFFER_SIZE;
+        if (input == null) {
+            b = fetchBuffer();
+            if (b == null)
+                return false;
+            size = b.remaining();
+        }
+
+        // views handed out before end at or before buf.limit, so the space
+        // after it is free
+        if (buf.buffer != own || buf.limit + size > own.length) {
+            own = new byte[max(BUFFER_SIZE << 4, (buf.remaining() + size) << 1)];
+            System.arraycopy(buf.buffer, buf.pos, own, 0, buf.remaining());
+            buf = new Buffer(own, 0, buf.remaining());
+        }
+
+        if (b != null) {
+            System.arraycopy(b.buffer, b.pos, own, buf.limit, size);
+            buf.limit += size;
+        } else {
+            int read = input.read(own, buf.limit, own.length - buf.limit);
+            if (read == -1)
+                return false;
+            buf.limit += read;
+        }
+        return true;
+    }
+
+    private int search(int from) {
+        int ind = MPEGES.nextStartCode(buf.buffer, buf.pos + from, buf.limit);
+        return ind == -1 ? -1 : ind - buf.pos;
     }
 
     public static PESPacket mpeg1Pes(int b0, int len, int streamId, InputStream is) throws IOException {
@@ -272,15 +312,16 @@ public class MPSDemuxer {
 
     private boolean skipToMarker() throws IOException {
         if (buf.remaining() < 4)
-            buf.extendWith(fetchBuffer());
-        int ind;
-        do {
-            ind = buf.search(0, 0, 1);
-            if (ind == -1)
-                buf.extendWith(fetchBuffer());
-        } while (ind == -1);
+            fetchMore();
+        int ind, pos = 0;
+        while ((ind = search(pos)) == -1) {
+            pos = max(0, buf.remaining() - 2);
+            if (!fetchMore())
+                return false;
+        }
         buf = buf.from(ind);
-        return true;
+        fetchData(4);
+        return buf.remaining() >= 4;
     }
 
     public List<PES> getTracks() {
@@ -310,11 +351,28 @@ public class MPSDemuxer {
 
     TreeMap<Long, Long> map = new TreeMap<Long, Long>();
 
+    private MPSIndex index;
+
+    /**
+     * Lets seek go straight to the packet found in the index, see MPSIndexer.
+     * The positions past the indexed part of the stream are searched for the
+     * usual way.
+     */
+    public void setIndex(MPSIndex index) {
+        this.index = index;
+    }
+
     public long seek(long pts) throws IOException {
         long oldPos = input.getPos();
         Buffer oldBuf = buf;
 
-        long result = trySeek(pts);
+        int entry = index != null ? index.find(pts) : -1;
+        long result;
+        if (entry != -1) {
+            input.seek(index.getOffset(entry));
+            result = index.getPts(entry);
+        } else
+            result = trySeek(pts);
         if (result == -1) {
             input.seek(oldPos);
             buf = oldBuf;
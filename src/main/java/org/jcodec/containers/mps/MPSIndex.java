@@ -0,0 +1,132 @@
+package org.jcodec.containers.mps;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Index of the video PES packets of MPEG program stream that carry PTS, sorted
+ * by PTS
+ *
+ * The binary file holds a small header followed by the PTS and the offset
+ * arrays in big endian byte order. The header keeps the position the scan
+ * stopped at, so the index of a recording that is still growing can be
+ * extended later.
+ *
+ * @author The JCodec project
+ *
+ */
+public class MPSIndex {
+    private static final int MAGIC = 0x4A4D5049; // 'JMPI'
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_SIZE = 16;
+
+    private int size;
+    private long[] pts;
+    private long[] offsets;
+    private long scanned;
+
+    /**
+     * @param pts
+     *            Sorted PTS of the packets
+     * @param offsets
+     *            Stream offsets of the packets, i.e. of their start codes
+     * @param scanned
+     *            Position in the stream the packets that follow start at
+     */
+    public MPSIndex(int size, long[] pts, long[] offsets, long scanned) {
+        this.size = size;
+        this.pts = pts;
+        this.offsets = offsets;
+        this.scanned = scanned;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getPts(int i) {
+        return pts[i];
+    }
+
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    public long getScanned() {
+        return scanned;
+    }
+
+    /**
+     * @return Index of the packet with the lowest PTS that's not less then pts
+     *         or -1 if there's no such packet
+     */
+    public int find(long pts) {
+        int i = Arrays.binarySearch(this.pts, 0, size, pts);
+        if (i < 0)
+            i = -i - 1;
+        else
+            // the first one of the equal
+            for (; i > 0 && this.pts[i - 1] == pts; i--)
+                ;
+        return i < size ? i : -1;
+    }
+
+    public void write(File file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + size * ENTRY_SIZE);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putInt(size);
+        buf.putLong(scanned);
+
+        buf.asLongBuffer().put(pts, 0, size);
+        buf.position(buf.position() + (size << 3));
+        buf.asLongBuffer().put(offsets, 0, size);
+        buf.position(buf.position() + (size << 3));
+        buf.flip();
+
+        FileChannel ch = new FileOutputStream(file).getChannel();
+        try {
+            while (buf.hasRemaining())
+                ch.write(buf);
+        } finally {
+            ch.close();
+        }
+    }
+
+    public static MPSIndex read(File file) throws IOException {
+        FileChannel ch = new FileInputStream(file).getChannel();
+        try {
+            MappedByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+                throw new IOException("Not an MPS index");
+            if (buf.getInt() != VERSION)
+                throw new IOException("Unsupported MPS index version");
+            int size = buf.getInt();
+            long scanned = buf.getLong();
+            if (buf.remaining() < (long) size * ENTRY_SIZE)
+                throw new IOException("MPS index is truncated");
+
+            long[] pts = new long[size];
+            long[] offsets = new long[size];
+
+            buf.asLongBuffer().get(pts);
+            buf.position(buf.position() + (size << 3));
+            buf.asLongBuffer().get(offsets);
+
+            return new MPSIndex(size, pts, offsets, scanned);
+        } finally {
+            ch.close();
+        }
+    }
+}
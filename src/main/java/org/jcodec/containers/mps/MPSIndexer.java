@@ -0,0 +1,254 @@
+package org.jcodec.containers.mps;
+
+import static org.jcodec.containers.mps.MPSDemuxer.videoStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+
+import org.jcodec.codecs.mpeg12.MPEGES;
+import org.jcodec.common.io.FileRAInputStream;
+import org.jcodec.common.io.RAInputStream;
+import org.jcodec.containers.mps.MPSDemuxer.PESPacket;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * Builds PTS index of MPEG program stream in one pass
+ *
+ * Only the pack and the PES headers are looked at, the payload of the packets
+ * with known length is skipped. The stream is read through a window of it's
+ * own, so the indexer can run on a thread of it's own given an input that's
+ * not shared with the demuxer.
+ *
+ * Calling update again picks up the packets appended to the stream since, the
+ * packet that's not complete yet is left for the next time.
+ *
+ * @author The JCodec project
+ *
+ */
+public class MPSIndexer implements Callable<MPSIndex> {
+    private static final int WINDOW = 1 << 20;
+    // the longest PES header, mpeg2 one with maximum header_data_length
+    private static final int MAX_HEADER = 9 + 255;
+
+    private RAInputStream input;
+    private byte[] buf = new byte[WINDOW];
+    private long bufPos;
+    private int bufLen;
+    private long length;
+
+    private int size;
+    private long[] pts = new long[1024];
+    private long[] offsets = new long[1024];
+    private long pos;
+
+    public MPSIndexer(RAInputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Continues the index built before
+     */
+    public MPSIndexer(RAInputStream input, MPSIndex index) {
+        this(input);
+        for (int i = 0; i < index.size(); i++)
+            add(index.getPts(i), index.getOffset(i));
+        pos = index.getScanned();
+    }
+
+    /**
+     * Index file is kept next to the stream
+     */
+    public static File getIndexFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".idx");
+    }
+
+    /**
+     * Reads the index stored next to the stream, extends it if the stream has
+     * grown and stores it back. The index is built from scratch if there's
+     * none.
+     */
+    public static MPSIndex index(File file) throws IOException {
+        File idxFile = getIndexFile(file);
+        MPSIndex prev = null;
+        if (idxFile.exists()) {
+            try {
+                prev = MPSIndex.read(idxFile);
+            } catch (IOException e) {
+                // broken or old index is rebuilt
+            }
+            if (prev != null && prev.getScanned() > file.length())
+                prev = null;
+        }
+
+        RAInputStream input = new FileRAInputStream(file);
+        try {
+            MPSIndex index = (prev == null ? new MPSIndexer(input) : new MPSIndexer(input, prev)).call();
+            if (prev == null || index.getScanned() != prev.getScanned())
+                index.write(idxFile);
+            return index;
+        } finally {
+            input.close();
+        }
+    }
+
+    public MPSIndex call() throws IOException {
+        update();
+        return getIndex();
+    }
+
+    /**
+     * Indexes the packets that follow the ones indexed before
+     */
+    public void update() throws IOException {
+        length = input.length();
+        bufLen = 0;
+
+        while (fill(pos, 4)) {
+            int at = (int) (pos - bufPos);
+            if (buf[at] != 0 || buf[at + 1] != 0 || buf[at + 2] != 1) {
+                long next = find(pos + 1);
+                if (next == -1)
+                    break;
+                pos = next;
+                continue;
+            }
+
+            int code = buf[at + 3] & 0xff;
+            long len, packetPts = -1;
+            if (code == 0xBA) {
+                if (!fill(pos, 14))
+                    break;
+                at = (int) (pos - bufPos);
+                len = (buf[at + 4] & 0xc0) == 0x40 ? 14 + (buf[at + 13] & 0x7) : 12;
+            } else if (code > 0xBA) {
+                if (!fill(pos, 6))
+                    break;
+                at = (int) (pos - bufPos);
+                len = 6 + (((buf[at + 4] & 0xff) << 8) | (buf[at + 5] & 0xff));
+
+                if (videoStream(code)) {
+                    int headerLen = (int) Math.min(length - pos, 6 + MAX_HEADER);
+                    if (len > 6)
+                        headerLen = (int) Math.min(len, headerLen);
+                    if (!fill(pos, headerLen))
+                        break;
+                    at = (int) (pos - bufPos);
+                    PESPacket pes = MPSDemuxer.readPES(code, new ByteArrayInputStream(buf, at + 4, headerLen - 4));
+                    packetPts = pes.pts;
+                }
+
+                // video packet of unknown length, it lasts until the next
+                // system start code
+                if (len == 6 && videoStream(code)) {
+                    long next = find(pos + 6);
+                    while (next != -1 && (buf[(int) (next - bufPos) + 3] & 0xff) < 0xB9)
+                        next = find(next + 3);
+                    if (next == -1)
+                        break;
+                    len = next - pos;
+                }
+            } else if (code == 0xB9) {
+                len = 4;
+            } else {
+                // elementary stream data outside of a packet
+                long next = find(pos + 4);
+                if (next == -1)
+                    break;
+                len = next - pos;
+            }
+
+            if (pos + len > length)
+                break;
+            if (packetPts != -1)
+                add(packetPts, pos);
+            pos += len;
+        }
+    }
+
+    private void add(long packetPts, long offset) {
+        if (size == pts.length) {
+            pts = Arrays.copyOf(pts, size << 1);
+            offsets = Arrays.copyOf(offsets, size << 1);
+        }
+        pts[size] = packetPts;
+        offsets[size] = offset;
+        ++size;
+    }
+
+    /**
+     * @return Index of the packets found so far
+     */
+    public MPSIndex getIndex() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                if (pts[a] != pts[b])
+                    return pts[a] < pts[b] ? -1 : 1;
+                return offsets[a] < offsets[b] ? -1 : (offsets[a] == offsets[b] ? 0 : 1);
+            }
+        });
+
+        long[] sortedPts = new long[size], sortedOffsets = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedPts[i] = pts[order[i]];
+            sortedOffsets[i] = offsets[order[i]];
+        }
+        return new MPSIndex(size, sortedPts, sortedOffsets, pos);
+    }
+
+    /**
+     * Makes bytes [at, at + n) of the stream available in the window
+     *
+     * @return false if the stream is shorter
+     */
+    private boolean fill(long at, int n) throws IOException {
+        if (at >= bufPos && at + n <= bufPos + bufLen)
+            return true;
+        if (at + n > length)
+            return false;
+
+        if (at >= bufPos && at < bufPos + bufLen) {
+            int keep = (int) (bufPos + bufLen - at);
+            System.arraycopy(buf, (int) (at - bufPos), buf, 0, keep);
+            bufLen = keep;
+        } else {
+            input.seek(at);
+            bufLen = 0;
+        }
+        bufPos = at;
+
+        while (bufLen < n) {
+            int read = input.read(buf, bufLen, buf.length - bufLen);
+            if (read == -1)
+                return false;
+            bufLen += read;
+        }
+        return true;
+    }
+
+    /**
+     * @return Position of the next start code with the byte that follows the
+     *         prefix in the window or -1 if there's none
+     */
+    private long find(long from) throws IOException {
+        while (fill(from, 4)) {
+            int ind = MPEGES.nextStartCode(buf, (int) (from - bufPos), bufLen - 1);
+            if (ind != -1)
+                return bufPos + ind;
+            if (bufPos + bufLen >= length)
+                return -1;
+            // the prefix may be split between the windows, the next fill
+            // moves the window past the bytes scanned
+            from = bufPos + bufLen - 3;
+        }
+        return -1;
+    }
+}
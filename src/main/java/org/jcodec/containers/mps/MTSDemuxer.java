@@ -1,75 +1,420 @@
 package org.jcodec.containers.mps;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
 
+import org.jcodec.codecs.mpeg12.MPEGES;
+import org.jcodec.codecs.mpeg12.bitstream.SequenceHeader;
 import org.jcodec.common.io.Buffer;
+import org.jcodec.common.io.FileRAInputStream;
+import org.jcodec.common.io.RAInputStream;
 import org.jcodec.common.io.ReaderBE;
+import org.jcodec.common.model.Packet;
+import org.jcodec.containers.mps.MPSDemuxer.PESPacket;
 import org.junit.Assert;
 
 /**
  * This class is part of JCodec ( www.jcodec.org ) This software is distributed
  * under FreeBSD License
- * 
+ *
  * MPEG TS demuxer
- * 
+ *
+ * The streams are found in the program association and the program map
+ * tables. The input is read in blocks of whole TS packets, a packet is looked
+ * at in place and the payload is copied only for the streams that are being
+ * read from, a stream starts collecting it's packets once it's selected or on
+ * the first call to nextPacket or getFrame. PES packets are put together in
+ * arrays that are reused once the packet is consumed, a packet broken by a
+ * continuity counter gap is dropped.
+ *
+ * A selected stream never loses a packet, it's queue grows for as long as the
+ * other streams are read ahead of it, getQueued tells how far behind it is. A
+ * stream that was only read without being selected keeps the last MAX_QUEUED
+ * packets, the older ones are dropped while the other streams are read.
+ *
  * @author The JCodec project
- * 
+ *
  */
-public class MTSDemuxer extends MPSDemuxer {
-    private InputStream is;
-    private int guid = -1;
+public class MTSDemuxer {
+    public static final int PACKET_SIZE = 188;
+    private static final int BLOCK_PACKETS = 1024;
+    // stop looking for the tables after this many packets
+    private static final int MAX_PROBE = 1 << 16;
+    private static final int MAX_SECTION = 1024 + 3;
+    // PES packets a stream that is not selected holds for the consumer
+    static final int MAX_QUEUED = 256;
+
+    private RAInputStream input;
+    private byte[] block = new byte[PACKET_SIZE * BLOCK_PACKETS];
+    private int blockPos;
+    private int blockLen;
+
+    private TIntObjectHashMap<Section> sections = new TIntObjectHashMap<Section>();
+    private TIntObjectHashMap<MTSStream> streams = new TIntObjectHashMap<MTSStream>();
+    private List<MTSProgram> programs = new ArrayList<MTSProgram>();
+    private TIntHashSet pmtPids = new TIntHashSet();
+    private boolean patRead;
 
     public MTSDemuxer(File f) throws IOException {
-        is = new BufferedInputStream(new FileInputStream(f));
+        this(new FileRAInputStream(f));
+    }
+
+    public MTSDemuxer(RAInputStream input) throws IOException {
+        this.input = input;
         findStreams();
     }
 
-    protected MTSDemuxer() throws IOException {
+    private void findStreams() throws IOException {
+        sections.put(0, new Section());
+        for (int i = 0; i < MAX_PROBE && (!patRead || pmtPids.size() > 0) && nextPacket(); i++)
+            ;
+
+        // the packets read so far are read again by the streams
+        input.seek(0);
+        blockPos = blockLen = 0;
     }
 
-    @Override
-    protected Buffer fetchBuffer() throws IOException {
-        MTSPacket packet = getPacket(is);
-        return packet != null ? packet.payload : null;
+    public static class MTSProgram {
+        private int number;
+        private List<MTSStream> streams = new ArrayList<MTSStream>();
+
+        public MTSProgram(int number) {
+            this.number = number;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public List<MTSStream> getStreams() {
+            return streams;
+        }
     }
 
-    protected MTSPacket getPacket(InputStream iis) throws IOException {
-        MTSPacket pkt;
-        do {
-            pkt = readPacket(iis);
-            if (pkt == null)
-                return null;
-        } while (pkt.pid <= 0xf || pkt.pid == 0x1fff);
+    public class MTSStream {
+        private int pid;
+        private int streamType;
+        private MTSProgram program;
+        private boolean active;
+        private boolean selected;
 
-        while (guid == -1) {
-            Buffer payload = pkt.payload;
-            if (payload.get(0) == 0 && payload.get(1) == 0 && payload.get(2) == 1) {
-                guid = pkt.pid;
-                break;
+        private LinkedList<PESPacket> ready = new LinkedList<PESPacket>();
+        private LinkedList<byte[]> free = new LinkedList<byte[]>();
+        private byte[] consumed;
+        private byte[] data;
+        private int len;
+        private int cc = -1;
+        private MPEGES es;
+
+        public MTSStream(int pid, int streamType, MTSProgram program) {
+            this.pid = pid;
+            this.streamType = streamType;
+            this.program = program;
+        }
+
+        public int getPid() {
+            return pid;
+        }
+
+        public int getStreamType() {
+            return streamType;
+        }
+
+        public MTSProgram getProgram() {
+            return program;
+        }
+
+        /**
+         * Makes the stream collect all of it's packets from now on, including
+         * the ones read while the other streams are being read from. Select
+         * all the streams that will be read before reading any of them.
+         */
+        public void select() {
+            active = true;
+            selected = true;
+        }
+
+        /**
+         * @return Number of PES packets read ahead and waiting for the
+         *         consumer
+         */
+        public int getQueued() {
+            return ready.size();
+        }
+
+        /**
+         * @return Next PES packet of the stream, the data is valid until the
+         *         next call
+         */
+        public PESPacket nextPacket() throws IOException {
+            active = true;
+            if (consumed != null) {
+                free.add(consumed);
+                consumed = null;
+            }
+            while (ready.isEmpty()) {
+                if (!MTSDemuxer.this.nextPacket()) {
+                    finish();
+                    if (ready.isEmpty())
+                        return null;
+                }
+            }
+            PESPacket pkt = ready.removeFirst();
+            consumed = pkt.data.buffer;
+            return pkt;
+        }
+
+        /**
+         * @return Next picture of MPEG video stream
+         */
+        public Packet getFrame() throws IOException {
+            if (es == null) {
+                es = new MPEGES() {
+                    protected Buffer fetchBuffer() throws IOException {
+                        PESPacket packet = nextPacket();
+                        if (packet == null)
+                            return null;
+                        if (packet.pts != -1)
+                            curPts = packet.pts;
+                        return packet.data;
+                    }
+                };
+            }
+            return es.getFrame();
+        }
+
+        public SequenceHeader getSequenceHeader() {
+            return es.getSequenceHeader();
+        }
+
+        private void payload(boolean start, int counter, boolean discontinuity, byte[] buf, int off, int end)
+                throws IOException {
+            if (counter == cc && !start)
+                return; // duplicate packet
+            boolean gap = cc != -1 && counter != ((cc + 1) & 0xf) && !discontinuity;
+            cc = counter;
+
+            if (gap && data != null) {
+                free.add(data);
+                data = null;
+            }
+            if (start)
+                finish();
+            else if (data == null)
+                return;
+
+            if (data == null) {
+                data = free.isEmpty() ? new byte[PACKET_SIZE << 6] : free.removeFirst();
+                len = 0;
+            }
+            if (len + end - off > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length << 1, len + end - off));
+            System.arraycopy(buf, off, data, len, end - off);
+            len += end - off;
+
+            // packet of known length may be finished right away
+            int pesLen = len >= 6 ? ((data[4] & 0xff) << 8) | (data[5] & 0xff) : 0;
+            if (pesLen != 0 && len >= 6 + pesLen)
+                finish();
+        }
+
+        private void finish() throws IOException {
+            if (data == null)
+                return;
+            if (len > 6 && data[0] == 0 && data[1] == 0 && data[2] == 1) {
+                PESPacket pkt = MPSDemuxer.readPES(data[3] & 0xff, new ByteArrayInputStream(data, 4, len - 4));
+                int from = 4 + pkt.headerLen;
+                int to = pkt.length > 0 ? Math.min(len, from + pkt.length) : len;
+                if (from <= to) {
+                    pkt.data = new Buffer(data, from, to);
+                    // the stream is not selected, the oldest packet goes
+                    if (!selected && ready.size() == MAX_QUEUED)
+                        free.add(ready.removeFirst().data.buffer);
+                    ready.add(pkt);
+                    data = null;
+                    return;
+                }
+            }
+            free.add(data);
+            data = null;
+        }
+    }
+
+    private static class Section {
+        private byte[] data = new byte[MAX_SECTION];
+        private int len = -1;
+
+        private boolean add(byte[] buf, int off, int end) {
+            if (len == -1)
+                return false;
+            int n = Math.min(end - off, MAX_SECTION - len);
+            System.arraycopy(buf, off, data, len, n);
+            len += n;
+            return len >= 3 && len >= 3 + (((data[1] & 0xf) << 8) | (data[2] & 0xff));
+        }
+    }
+
+    /**
+     * Reads next TS packet and passes the payload to where it belongs
+     *
+     * @return false if the stream is over
+     */
+    private boolean nextPacket() throws IOException {
+        if (!syncPacket())
+            return false;
+        int p = blockPos;
+        blockPos += PACKET_SIZE;
+
+        int pid = ((block[p + 1] & 0x1f) << 8) | (block[p + 2] & 0xff);
+        boolean start = (block[p + 1] & 0x40) != 0;
+        int flags = block[p + 3];
+        int off = p + 4, end = p + PACKET_SIZE;
+        boolean discontinuity = false;
+        if ((flags & 0x20) != 0) {
+            int adaptLen = block[off] & 0xff;
+            discontinuity = adaptLen > 0 && (block[off + 1] & 0x80) != 0;
+            off += 1 + adaptLen;
+        }
+        if ((flags & 0x10) == 0 || off >= end)
+            return true;
+
+        Section section = sections.get(pid);
+        if (section != null) {
+            section(pid, section, start, off, end);
+            return true;
+        }
+
+        MTSStream stream = streams.get(pid);
+        if (stream != null && stream.active)
+            stream.payload(start, flags & 0xf, discontinuity, block, off, end);
+        return true;
+    }
+
+    private void section(int pid, Section section, boolean start, int off, int end) {
+        if (start) {
+            off += 1 + (block[off] & 0xff);
+            if (off >= end)
+                return;
+            section.len = 0;
+        }
+        if (!section.add(block, off, end))
+            return;
+        section.len = -1;
+
+        byte[] data = section.data;
+        int sectionEnd = 3 + (((data[1] & 0xf) << 8) | (data[2] & 0xff)) - 4;
+        if (pid == 0 && data[0] == 0)
+            readPAT(data, sectionEnd);
+        else if (data[0] == 2)
+            readPMT(pid, data, sectionEnd);
+    }
+
+    private void readPAT(byte[] data, int end) {
+        if (patRead)
+            return;
+        patRead = true;
+        for (int i = 8; i + 4 <= end; i += 4) {
+            int number = ((data[i] & 0xff) << 8) | (data[i + 1] & 0xff);
+            int pmtPid = ((data[i + 2] & 0x1f) << 8) | (data[i + 3] & 0xff);
+            if (number != 0 && !sections.containsKey(pmtPid)) {
+                sections.put(pmtPid, new Section());
+                pmtPids.add(pmtPid);
+            }
+        }
+    }
+
+    private void readPMT(int pid, byte[] data, int end) {
+        if (!pmtPids.remove(pid))
+            return;
+        MTSProgram program = new MTSProgram(((data[3] & 0xff) << 8) | (data[4] & 0xff));
+        programs.add(program);
+
+        int infoLen = ((data[10] & 0xf) << 8) | (data[11] & 0xff);
+        for (int i = 12 + infoLen; i + 5 <= end;) {
+            int streamType = data[i] & 0xff;
+            int esPid = ((data[i + 1] & 0x1f) << 8) | (data[i + 2] & 0xff);
+            if (!streams.containsKey(esPid)) {
+                MTSStream stream = new MTSStream(esPid, streamType, program);
+                streams.put(esPid, stream);
+                program.streams.add(stream);
             }
-            pkt = readPacket(iis);
-            if (pkt == null)
-                return null;
+            i += 5 + (((data[i + 3] & 0xf) << 8) | (data[i + 4] & 0xff));
         }
+    }
 
-        while (pkt.pid != guid) {
-            pkt = readPacket(iis);
-            if (pkt == null)
-                return null;
+    /**
+     * Makes sure there's a whole packet starting with the sync byte at
+     * blockPos, the block is refilled in whole packets
+     */
+    private boolean syncPacket() throws IOException {
+        while (true) {
+            if (blockLen - blockPos < PACKET_SIZE) {
+                int tail = blockLen - blockPos;
+                System.arraycopy(block, blockPos, block, 0, tail);
+                blockPos = 0;
+                blockLen = tail;
+                int read;
+                while (blockLen < block.length && (read = input.read(block, blockLen, block.length - blockLen)) != -1)
+                    blockLen += read;
+                if (blockLen < PACKET_SIZE)
+                    return false;
+            }
+            if (block[blockPos] == 0x47)
+                return true;
+            ++blockPos;
         }
+    }
 
-        // pkt.payload.print(System.out);
-        // System.out.println(",");
+    public List<MTSProgram> getPrograms() {
+        return programs;
+    }
+
+    public List<MTSStream> getTracks() {
+        List<MTSStream> result = new ArrayList<MTSStream>();
+        for (MTSProgram program : programs)
+            result.addAll(program.streams);
+        return result;
+    }
+
+    public List<MTSStream> getVideoTracks() {
+        List<MTSStream> result = new ArrayList<MTSStream>();
+        for (MTSStream stream : getTracks()) {
+            if (videoStreamType(stream.streamType))
+                result.add(stream);
+        }
+        return result;
+    }
+
+    public List<MTSStream> getAudioTracks() {
+        List<MTSStream> result = new ArrayList<MTSStream>();
+        for (MTSStream stream : getTracks()) {
+            if (audioStreamType(stream.streamType))
+                result.add(stream);
+        }
+        return result;
+    }
+
+    public static boolean videoStreamType(int streamType) {
+        return streamType == 0x01 || streamType == 0x02 || streamType == 0x10 || streamType == 0x1b
+                || streamType == 0x24;
+    }
+
+    public static boolean audioStreamType(int streamType) {
+        return streamType == 0x03 || streamType == 0x04 || streamType == 0x0f || streamType == 0x11
+                || streamType == 0x81;
+    }
 
-        return pkt;
+    public void close() throws IOException {
+        input.close();
     }
 
     public static class MTSPacket {
@@ -133,4 +478,4 @@ public class MTSDemuxer extends MPSDemuxer {
         }
         return maxScore;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,324 @@
+package org.jcodec.containers.mps;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.io.IOException;
+
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.io.RAOutputStream;
+import org.jcodec.common.model.Packet;
+
+/**
+ * This class is part of JCodec ( www.jcodec.org ) This software is distributed
+ * under FreeBSD License
+ *
+ * MPEG TS muxer
+ *
+ * Writes one program with a PES stream per track. The TS packets are put
+ * together in place in one block that is written out when full, so nothing
+ * is allocated per frame. The program tables are repeated before every key
+ * frame of the PCR track and at least twice a second, this track is the
+ * first video track or the first track if there's no video. The first TS
+ * packet of a key frame has the random access indicator set.
+ *
+ * Frames go in decoding order. A frame given a DTS that differs from it's PTS
+ * gets both in the PES header, the PCR follows the DTS of the PCR track.
+ *
+ * H.264 is expected as Annex B byte stream with the SPS and PPS in band, in
+ * front of every key frame, MPEG video with the sequence headers in band.
+ * Audio is expected as ADTS frames for AAC and as BD style LPCM frames for
+ * PCM.
+ *
+ * @author The JCodec project
+ *
+ */
+public class MTSMuxer {
+    public static final int MPEG2_VIDEO = 0x02;
+    public static final int H264 = 0x1b;
+    public static final int AAC = 0x0f;
+    public static final int LPCM = 0x80;
+
+    private static final int PACKET_SIZE = 188;
+    private static final int BLOCK_PACKETS = 64;
+    private static final int PMT_PID = 0x1000;
+    private static final int FIRST_PID = 0x100;
+    private static final int MAX_TRACKS = 32;
+    // DTS is ahead of PCR by 0.7 sec, the time to fill decoder buffer
+    private static final long DELAY = 63000;
+    private static final long TABLE_INTERVAL = 45000;
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 24;
+            for (int j = 0; j < 8; j++)
+                crc = (crc << 1) ^ (crc < 0 ? 0x04c11db7 : 0);
+            CRC_TABLE[i] = crc;
+        }
+    }
+
+    private RAOutputStream out;
+    private byte[] block = new byte[PACKET_SIZE * BLOCK_PACKETS];
+    private int blockLen;
+    private int[] cc = new int[0x2000];
+
+    private int[] streamTypes = new int[MAX_TRACKS];
+    private int[] streamIds = new int[MAX_TRACKS];
+    private int nTracks;
+    private int pcrTrack = -1;
+    private long pcr = -1;
+    private long lastTables = -1;
+
+    private byte[] section = new byte[PACKET_SIZE];
+    private byte[] pesHeader = new byte[19];
+
+    public MTSMuxer(RAOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @param streamType
+     *            One of MPEG2_VIDEO, H264, AAC, LPCM
+     * @return Track number to pass to addFrame
+     */
+    public int addTrack(int streamType) {
+        if (pcrTrack != -1)
+            throw new IllegalStateException("Tracks can't be added once the frames are written");
+        if (nTracks == MAX_TRACKS)
+            throw new IllegalStateException("Too many tracks");
+
+        int sameKind = 0;
+        for (int i = 0; i < nTracks; i++)
+            if (isVideo(streamTypes[i]) == isVideo(streamType))
+                ++sameKind;
+        streamTypes[nTracks] = streamType;
+        streamIds[nTracks] = isVideo(streamType) ? 0xe0 + sameKind : (streamType == LPCM ? 0xbd : 0xc0 + sameKind);
+        return nTracks++;
+    }
+
+    public static boolean isVideo(int streamType) {
+        return streamType == MPEG2_VIDEO || streamType == H264;
+    }
+
+    /**
+     * Adds a frame that's decoded when it's presented
+     */
+    public void addFrame(int track, Packet pkt) throws IOException {
+        addFrame(track, pkt, pkt.getPts());
+    }
+
+    /**
+     * @param dts
+     *            Decoding time of the frame in the timescale of the packet
+     */
+    public void addFrame(int track, Packet pkt, long dts) throws IOException {
+        if (pcrTrack == -1) {
+            pcrTrack = 0;
+            for (int i = nTracks - 1; i >= 0; i--)
+                if (isVideo(streamTypes[i]))
+                    pcrTrack = i;
+        }
+
+        long pts = pkt.getPts() * 90000 / pkt.getTimescale();
+        long dts90k = dts * 90000 / pkt.getTimescale();
+        long framePcr = -1;
+        if (track == pcrTrack)
+            pcr = framePcr = max(pcr, dts90k);
+
+        if (lastTables == -1 || track == pcrTrack && (pkt.isKeyFrame() || pcr - lastTables >= TABLE_INTERVAL)) {
+            writeTables();
+            lastTables = max(pcr, 0);
+        }
+
+        writePES(track, pts + DELAY, dts90k + DELAY, pkt.getData(), framePcr, pkt.isKeyFrame());
+    }
+
+    /**
+     * Writes out the packets put together so far, to be called before the
+     * output is closed or changed
+     */
+    public void flush() throws IOException {
+        if (blockLen > 0)
+            out.write(block, 0, blockLen);
+        blockLen = 0;
+    }
+
+    /**
+     * Makes the muxer continue into another output, the program tables are
+     * written first there
+     */
+    public void setOutput(RAOutputStream out) throws IOException {
+        flush();
+        this.out = out;
+        lastTables = -1;
+    }
+
+    private void writePES(int track, long pts, long dts, Buffer data, long pcr, boolean key) throws IOException {
+        boolean withDts = dts != pts;
+        int size = data.remaining();
+        int hLen = withDts ? 19 : 14;
+        int pesLen = size + hLen - 6;
+        // unbounded video packet
+        if (pesLen > 0xffff)
+            pesLen = 0;
+
+        byte[] h = pesHeader;
+        h[0] = 0;
+        h[1] = 0;
+        h[2] = 1;
+        h[3] = (byte) streamIds[track];
+        h[4] = (byte) (pesLen >> 8);
+        h[5] = (byte) pesLen;
+        h[6] = (byte) 0x84;
+        h[7] = (byte) (withDts ? 0xc0 : 0x80);
+        h[8] = (byte) (hLen - 9);
+        writeTs(h, 9, withDts ? 0x3 : 0x2, pts);
+        if (withDts)
+            writeTs(h, 14, 0x1, dts);
+
+        int pid = FIRST_PID + track;
+        int pos = data.pos, left = hLen + size;
+        for (boolean first = true; left > 0; first = false) {
+            int adapt = !first ? 0 : pcr != -1 ? 8 : key ? 2 : 0;
+            int payload = min(PACKET_SIZE - 4 - adapt, left);
+            // the last packet is stuffed
+            adapt = PACKET_SIZE - 4 - payload;
+
+            int p = packetHeader(pid, first, adapt, first ? pcr : -1, first && key);
+            if (first) {
+                System.arraycopy(h, 0, block, p, hLen);
+                p += hLen;
+                payload -= hLen;
+                left -= hLen;
+            }
+            System.arraycopy(data.buffer, pos, block, p, payload);
+            pos += payload;
+            left -= payload;
+        }
+    }
+
+    /**
+     * Writes 33 bit timestamp of the PES header
+     *
+     * @param prefix
+     *            The 4 bits in front of it, 2 for PTS alone, 3 for PTS
+     *            followed by DTS and 1 for the DTS
+     */
+    private static void writeTs(byte[] h, int off, int prefix, long ts) {
+        h[off] = (byte) ((prefix << 4) | ((ts >> 29) & 0xe) | 1);
+        h[off + 1] = (byte) (ts >> 22);
+        h[off + 2] = (byte) ((ts >> 14) | 1);
+        h[off + 3] = (byte) (ts >> 7);
+        h[off + 4] = (byte) ((ts << 1) | 1);
+    }
+
+    /**
+     * Starts next TS packet in the block
+     *
+     * @param adapt
+     *            Size of the adaptation field
+     * @param randomAccess
+     *            The packet starts a key frame
+     * @return Position of the payload
+     */
+    private int packetHeader(int pid, boolean start, int adapt, long pcr, boolean randomAccess) throws IOException {
+        if (blockLen == block.length)
+            flush();
+        int p = blockLen;
+        blockLen += PACKET_SIZE;
+
+        block[p] = 0x47;
+        block[p + 1] = (byte) ((start ? 0x40 : 0) | (pid >> 8));
+        block[p + 2] = (byte) pid;
+        block[p + 3] = (byte) ((adapt > 0 ? 0x30 : 0x10) | cc[pid]);
+        cc[pid] = (cc[pid] + 1) & 0xf;
+
+        if (adapt > 0) {
+            block[p + 4] = (byte) (adapt - 1);
+            int q = p + 5, end = p + 4 + adapt;
+            if (adapt > 1) {
+                block[q++] = (byte) ((randomAccess ? 0x40 : 0) | (pcr != -1 ? 0x10 : 0));
+                if (pcr != -1) {
+                    block[q++] = (byte) (pcr >> 25);
+                    block[q++] = (byte) (pcr >> 17);
+                    block[q++] = (byte) (pcr >> 9);
+                    block[q++] = (byte) (pcr >> 1);
+                    block[q++] = (byte) (((pcr & 1) << 7) | 0x7e);
+                    block[q++] = 0;
+                }
+            }
+            for (; q < end; q++)
+                block[q] = (byte) 0xff;
+        }
+        return p + 4 + adapt;
+    }
+
+    private void writeTables() throws IOException {
+        byte[] s = section;
+        // program association, program 1 only
+        s[0] = 0;
+        s[3] = 0;
+        s[4] = 1;
+        s[5] = (byte) 0xc1;
+        s[6] = 0;
+        s[7] = 0;
+        s[8] = 0;
+        s[9] = 1;
+        s[10] = (byte) (0xe0 | (PMT_PID >> 8));
+        s[11] = (byte) PMT_PID;
+        writeSection(0, 12);
+
+        // program map
+        int pcrPid = FIRST_PID + pcrTrack;
+        s[0] = 2;
+        s[3] = 0;
+        s[4] = 1;
+        s[5] = (byte) 0xc1;
+        s[6] = 0;
+        s[7] = 0;
+        s[8] = (byte) (0xe0 | (pcrPid >> 8));
+        s[9] = (byte) pcrPid;
+        s[10] = (byte) 0xf0;
+        s[11] = 0;
+        int len = 12;
+        for (int i = 0; i < nTracks; i++, len += 5) {
+            int pid = FIRST_PID + i;
+            s[len] = (byte) streamTypes[i];
+            s[len + 1] = (byte) (0xe0 | (pid >> 8));
+            s[len + 2] = (byte) pid;
+            s[len + 3] = (byte) 0xf0;
+            s[len + 4] = 0;
+        }
+        writeSection(PMT_PID, len);
+    }
+
+    /**
+     * Writes the section that's in the beginning of section array adding
+     * length and CRC
+     */
+    private void writeSection(int pid, int len) throws IOException {
+        int sectionLen = len - 3 + 4;
+        section[1] = (byte) (0xb0 | (sectionLen >> 8));
+        section[2] = (byte) sectionLen;
+        int crc = crc32(section, 0, len);
+        section[len] = (byte) (crc >> 24);
+        section[len + 1] = (byte) (crc >> 16);
+        section[len + 2] = (byte) (crc >> 8);
+        section[len + 3] = (byte) crc;
+
+        int p = packetHeader(pid, true, 0, -1, false);
+        // pointer field
+        block[p] = 0;
+        System.arraycopy(section, 0, block, p + 1, len + 4);
+        for (int i = p + 1 + len + 4; i < p + PACKET_SIZE - 4; i++)
+            block[i] = (byte) 0xff;
+    }
+
+    public static int crc32(byte[] data, int off, int len) {
+        int crc = 0xffffffff;
+        for (int i = off; i < off + len; i++)
+            crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ data[i]) & 0xff];
+        return crc;
+    }
+}
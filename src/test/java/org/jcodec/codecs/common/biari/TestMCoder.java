@@ -1,7 +1,9 @@
 package org.jcodec.codecs.common.biari;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -406,6 +408,72 @@ public class TestMCoder extends TestCase {
 		doOneTestEncodeFinal(encodedBigFinal, decodedBig, finalFlagBig);
 	}
 
+	@Test
+	public void testDecodePackedBig() throws Exception {
+		MDecoder mDecoder = createDecoder(encodedBigBypass);
+
+		byte[] models = new byte[2];
+		for (int i = 0; i < decodedBig.length; i++) {
+			int decodeBin;
+			if (bypassFlagBig[i] == 0)
+				decodeBin = mDecoder.decodeBin(models, 1);
+			else
+				decodeBin = mDecoder.decodeBinBypass();
+
+			assertEquals("Bin " + i, decodedBig[i], decodeBin);
+		}
+		assertEquals(0, models[0]);
+	}
+
+	@Test
+	public void testDecodeBypassRun() throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		MEncoder encoder = new MEncoder(baos);
+		Context cm = new Context(0, 0);
+		for (int i = 0; i < decodedBig.length; i++)
+			encoder.encodeBin(decodedBig[i], cm);
+		for (int i = 0; i < decodedBig.length; i++)
+			encoder.encodeBinBypass(decodedBig[i]);
+		encoder.encodeBinFinal(1);
+		encoder.finishEncoding();
+
+		MDecoder mDecoder = new MDecoder(baos.toByteArray());
+		byte[] models = new byte[1];
+		for (int i = 0; i < decodedBig.length; i++)
+			assertEquals("Bin " + i, decodedBig[i], mDecoder.decodeBin(models, 0));
+
+		for (int i = 0, n = 1; i < decodedBig.length; i += n, n = n % 31 + 1) {
+			int len = Math.min(n, decodedBig.length - i);
+			int expected = 0;
+			for (int j = 0; j < len; j++)
+				expected = (expected << 1) | decodedBig[i + j];
+			assertEquals("Bins " + i, expected, mDecoder.decodeBypass(len));
+		}
+		assertEquals(1, mDecoder.decodeFinalBin());
+	}
+
+	@Test
+	public void testDecodeStreamed() throws Exception {
+		Random rnd = new Random(42);
+		int[] bins = new int[100000];
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		MEncoder encoder = new MEncoder(baos);
+		Context cm = new Context(0, 0);
+		for (int i = 0; i < bins.length; i++) {
+			bins[i] = rnd.nextInt(4) == 0 ? 1 : 0;
+			encoder.encodeBin(bins[i], cm);
+		}
+		encoder.encodeBinFinal(1);
+		encoder.finishEncoding();
+		assertTrue(baos.size() > 8192);
+
+		MDecoder mDecoder = new MDecoder(new ByteArrayInputStream(baos.toByteArray()));
+		cm = new Context(0, 0);
+		for (int i = 0; i < bins.length; i++)
+			assertEquals("Bin " + i, bins[i], mDecoder.decodeBin(cm));
+		assertEquals(1, mDecoder.decodeFinalBin());
+	}
+
 	private void doOneTestDecodeFinal(int[] encoded, int[] decoded, int[] fb)
 			throws IOException {
 		MDecoder mDecoder = createDecoder(encoded);
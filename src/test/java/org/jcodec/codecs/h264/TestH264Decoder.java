@@ -3,17 +3,29 @@ package org.jcodec.codecs.h264;
 import static org.jcodec.codecs.h264.io.model.NALUnitType.IDR_SLICE;
 import static org.jcodec.codecs.h264.io.model.NALUnitType.NON_IDR_SLICE;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.jcodec.codecs.h264.annexb.AnnexBDemuxer;
 import org.jcodec.codecs.h264.annexb.NALUnitReader;
+import org.jcodec.codecs.h264.decode.BlockInterpolator;
+import org.jcodec.codecs.h264.decode.DecodePolicy;
 import org.jcodec.codecs.h264.decode.PictureDecoder;
 import org.jcodec.codecs.h264.decode.aso.MBlockMapper;
 import org.jcodec.codecs.h264.decode.aso.MapManager;
@@ -33,6 +45,7 @@ import org.jcodec.codecs.util.PGMIO;
 import org.jcodec.common.io.BitstreamReader;
 import org.jcodec.common.io.InBits;
 import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 
 public class TestH264Decoder extends JAVCTestCase {
@@ -278,7 +291,7 @@ public class TestH264Decoder extends JAVCTestCase {
 		String pathForCbPred = basePath + "ref_d23cb.pgm";
 		String pathForCrPred = basePath + "ref_d23cr.pgm";
 
-		Picture pic1 = readFrame(pathForYPred, pathForCbPred, pathForCrPred);
+		Picture pic1 = PaddedPicture.create(readFrame(pathForYPred, pathForCbPred, pathForCrPred), BlockInterpolator.PAD);
 
 		DecodedPicture[] predFrame = new DecodedPicture[] { new DecodedPicture(
 				pic1, 46, true, true, 23, false, false) };
@@ -300,7 +313,7 @@ public class TestH264Decoder extends JAVCTestCase {
 		String pathForCbPred = basePath + "ref_d149cb.pgm";
 		String pathForCrPred = basePath + "ref_d149cr.pgm";
 
-		Picture pic1 = readFrame(pathForYPred, pathForCbPred, pathForCrPred);
+		Picture pic1 = PaddedPicture.create(readFrame(pathForYPred, pathForCbPred, pathForCrPred), BlockInterpolator.PAD);
 
 		DecodedPicture[] predFrame = new DecodedPicture[] { new DecodedPicture(
 				pic1, 298, true, true, 149, false, false) };
@@ -322,7 +335,7 @@ public class TestH264Decoder extends JAVCTestCase {
 		String pathForCbPred = basePath + "ref_d158cb.pgm";
 		String pathForCrPred = basePath + "ref_d158cr.pgm";
 
-		Picture pic1 = readFrame(pathForYPred, pathForCbPred, pathForCrPred);
+		Picture pic1 = PaddedPicture.create(readFrame(pathForYPred, pathForCbPred, pathForCrPred), BlockInterpolator.PAD);
 		DecodedPicture[] predFrame = new DecodedPicture[] { new DecodedPicture(
 				pic1, 316, true, true, 158, false, false) };
 		Picture frame = decodePFrame(basePath + "test.264", predFrame, 159);
@@ -343,7 +356,7 @@ public class TestH264Decoder extends JAVCTestCase {
 		String pathForCbPred = basePath + "ref_d470cb.pgm";
 		String pathForCrPred = basePath + "ref_d470cr.pgm";
 
-		Picture pic1 = readFrame(pathForYPred, pathForCbPred, pathForCrPred);
+		Picture pic1 = PaddedPicture.create(readFrame(pathForYPred, pathForCbPred, pathForCrPred), BlockInterpolator.PAD);
 		DecodedPicture[] predFrame = new DecodedPicture[] { new DecodedPicture(
 				pic1, 940, true, true, 470, false, false) };
 		Picture frame = decodePFrame(basePath + "test.264", predFrame, 471);
@@ -369,8 +382,8 @@ public class TestH264Decoder extends JAVCTestCase {
 		String pathForCbPred1 = basePath + "ref_d0cb.pgm";
 		String pathForCrPred1 = basePath + "ref_d0cr.pgm";
 
-		Picture pic1 = readFrame(pathForYPred0, pathForCbPred0, pathForCrPred0);
-		Picture pic2 = readFrame(pathForYPred1, pathForCbPred1, pathForCrPred1);
+		Picture pic1 = PaddedPicture.create(readFrame(pathForYPred0, pathForCbPred0, pathForCrPred0), BlockInterpolator.PAD);
+		Picture pic2 = PaddedPicture.create(readFrame(pathForYPred1, pathForCbPred1, pathForCrPred1), BlockInterpolator.PAD);
 		DecodedPicture[] predFrame = new DecodedPicture[] {
 				new DecodedPicture(pic1, 2, true, true, 1, false, false),
 				new DecodedPicture(pic2, 0, true, true, 0, false, false) };
@@ -476,6 +489,184 @@ public class TestH264Decoder extends JAVCTestCase {
 		}
 	}
 
+	public void testPOC0FrameThreaded() throws Exception {
+
+		String basePath = "src/test/resources/h264/seq_poc0/";
+		String h264Path = basePath + "test.264";
+
+		FileInputStream is = null;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			is = new FileInputStream(h264Path);
+			H264Decoder decoder = new H264Decoder(new AnnexBDemuxer(is),
+					executor);
+
+			Picture frame = null;
+			for (int i = 0;; i++) {
+				frame = decoder.nextPicture();
+				if (frame == null)
+					break;
+
+				String pathForY = basePath + "ref_d" + i + "y.pgm";
+				String pathForCb = basePath + "ref_d" + i + "cb.pgm";
+				String pathForCr = basePath + "ref_d" + i + "cr.pgm";
+				try {
+					Picture ref = readFrame(pathForY, pathForCb, pathForCr);
+					compare(ref, frame);
+				} catch (IOException e) {
+				}
+			}
+		} finally {
+			executor.shutdown();
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	public void testPOC0ReleasePicture() throws Exception {
+
+		String basePath = "src/test/resources/h264/seq_poc0/";
+		String h264Path = basePath + "test.264";
+
+		FileInputStream is = null;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			is = new FileInputStream(h264Path);
+			H264Decoder decoder = new H264Decoder(new AnnexBDemuxer(is),
+					executor);
+
+			// released buffers come back from the pool, so only a few
+			// distinct ones are ever returned
+			Set<int[]> buffers = Collections
+					.newSetFromMap(new IdentityHashMap<int[], Boolean>());
+			Picture frame = null;
+			int i;
+			for (i = 0;; i++) {
+				frame = decoder.nextPicture();
+				if (frame == null)
+					break;
+
+				String pathForY = basePath + "ref_d" + i + "y.pgm";
+				String pathForCb = basePath + "ref_d" + i + "cb.pgm";
+				String pathForCr = basePath + "ref_d" + i + "cr.pgm";
+				try {
+					Picture ref = readFrame(pathForY, pathForCb, pathForCr);
+					compare(ref, frame);
+				} catch (IOException e) {
+				}
+
+				buffers.add(frame.getPlaneData(0));
+				decoder.releasePicture(frame);
+			}
+			assertTrue(i > 10);
+			assertTrue("Distinct buffers: " + buffers.size(), buffers.size() <= 2);
+		} finally {
+			executor.shutdown();
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	public void testDecodePolicyAll() throws Exception {
+		String basePath = "src/test/resources/h264/seq_poc0/";
+		List<Picture> frames = decodeWithPolicy(basePath + "test.264", DecodePolicy.ALL, false);
+
+		assertEquals(43, frames.size());
+		for (int i = 0; i < frames.size(); i++) {
+			String pathForY = basePath + "ref_d" + i + "y.pgm";
+			String pathForCb = basePath + "ref_d" + i + "cb.pgm";
+			String pathForCr = basePath + "ref_d" + i + "cr.pgm";
+			if (new File(pathForY).exists())
+				compare(readFrame(pathForY, pathForCb, pathForCr), frames.get(i));
+		}
+	}
+
+	public void testDecodePolicyReference() throws Exception {
+		String h264Path = "src/test/resources/h264/seq_poc0/test.264";
+		List<Picture> all = decodeWithPolicy(h264Path, DecodePolicy.ALL, false);
+		List<Picture> frames = decodeWithPolicy(h264Path, DecodePolicy.REFERENCE, false);
+
+		// the reference pictures come out in the same order and decode the
+		// same as when everything is decoded
+		assertEquals(22, frames.size());
+		int j = 0;
+		for (Picture frame : frames) {
+			while (j < all.size() && !samePixels(all.get(j), frame))
+				j++;
+			assertTrue("Reference picture not found in the full sequence", j < all.size());
+			j++;
+		}
+	}
+
+	public void testDecodePolicyIntra() throws Exception {
+		String h264Path = "src/test/resources/h264/seq_poc0/test.264";
+		List<Picture> all = decodeWithPolicy(h264Path, DecodePolicy.ALL, false);
+		List<Picture> frames = decodeWithPolicy(h264Path, DecodePolicy.INTRA, false);
+
+		assertEquals(1, frames.size());
+		assertTrue(samePixels(all.get(0), frames.get(0)));
+	}
+
+	public void testDecodePolicyIntraThenAll() throws Exception {
+		// the sequence twice, the second copy starts with an IDR picture
+		byte[] seq = FileUtils.readFileToByteArray(new File("src/test/resources/h264/seq_poc0/test.264"));
+		byte[] stream = new byte[seq.length * 2];
+		System.arraycopy(seq, 0, stream, 0, seq.length);
+		System.arraycopy(seq, 0, stream, seq.length, seq.length);
+		List<Picture> all = decodeWithPolicy(stream, DecodePolicy.ALL, false);
+		assertEquals(86, all.size());
+
+		List<Picture> intra = decodeWithPolicy(stream, DecodePolicy.INTRA, false);
+		assertEquals(2, intra.size());
+		assertTrue(samePixels(all.get(0), intra.get(0)));
+		assertTrue(samePixels(all.get(43), intra.get(1)));
+
+		// the pictures after the switch predict from the skipped reference
+		// pictures, they must be concealed rather than fail, starting with
+		// the next IDR picture they decode exactly
+		List<Picture> frames = decodeWithPolicy(stream, DecodePolicy.INTRA, true);
+		assertTrue(samePixels(all.get(0), frames.get(0)));
+		int n = frames.size();
+		assertTrue("Pictures: " + n, n > 43);
+		for (int i = 0; i < 43; i++)
+			assertTrue("Picture " + i + " after the IDR", samePixels(all.get(43 + i), frames.get(n - 43 + i)));
+	}
+
+	/**
+	 * @param switchToAll
+	 *            Decode everything once the first picture comes out
+	 */
+	private List<Picture> decodeWithPolicy(String h264Path, DecodePolicy policy, boolean switchToAll)
+			throws IOException {
+		return decodeWithPolicy(FileUtils.readFileToByteArray(new File(h264Path)), policy, switchToAll);
+	}
+
+	private List<Picture> decodeWithPolicy(byte[] stream, DecodePolicy policy, boolean switchToAll)
+			throws IOException {
+		InputStream is = null;
+		try {
+			is = new ByteArrayInputStream(stream);
+			H264Decoder decoder = new H264Decoder(new AnnexBDemuxer(is));
+			decoder.setDecodePolicy(policy);
+			List<Picture> result = new ArrayList<Picture>();
+			Picture frame;
+			while ((frame = decoder.nextPicture()) != null) {
+				result.add(frame);
+				if (switchToAll)
+					decoder.setDecodePolicy(DecodePolicy.ALL);
+			}
+			return result;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	private boolean samePixels(Picture a, Picture b) {
+		for (int i = 0; i < 3; i++) {
+			if (!Arrays.equals(a.getPlaneData(i), b.getPlaneData(i)))
+				return false;
+		}
+		return true;
+	}
+
 	private Picture decodePFrame(String h264Path, DecodedPicture[] refFrame,
 			int frameNo) throws IOException {
 
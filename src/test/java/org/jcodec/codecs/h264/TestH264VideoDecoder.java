@@ -0,0 +1,70 @@
+package org.jcodec.codecs.h264;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.codecs.h264.annexb.AnnexBDemuxer;
+import org.jcodec.codecs.h264.annexb.NALUnitReader;
+import org.jcodec.codecs.h264.index.H264Index;
+import org.jcodec.codecs.h264.index.H264Indexer;
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.model.Picture;
+
+public class TestH264VideoDecoder extends TestCase {
+
+	public void testReorder() throws Exception {
+		byte[] data = FileUtils.readFileToByteArray(new File("src/test/resources/h264/seq_poc0/test.264"));
+
+		List<Integer> expected = new ArrayList<Integer>();
+		H264Decoder sequential = new H264Decoder(new AnnexBDemuxer(new ByteArrayInputStream(data)));
+		Picture pic;
+		while ((pic = sequential.nextPicture()) != null)
+			expected.add(Arrays.hashCode(pic.getPlaneData(0)));
+
+		H264VideoDecoder decoder = new H264VideoDecoder();
+		assertEquals(0, decoder.probe(new Buffer(data)));
+
+		int[][] buf = new int[][] { new int[640 * 360], new int[320 * 180], new int[320 * 180] };
+		List<Integer> actual = new ArrayList<Integer>();
+		for (Buffer sample : toSamples(data)) {
+			assertEquals(50, decoder.probe(sample));
+			if ((pic = decoder.decodeFrame(sample, buf)) != null)
+				actual.add(Arrays.hashCode(pic.getPlaneData(0)));
+		}
+		while ((pic = decoder.decodeFrame(null, buf)) != null)
+			actual.add(Arrays.hashCode(pic.getPlaneData(0)));
+
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * Repacks access units of Annex B stream into length prefixed samples
+	 */
+	private List<Buffer> toSamples(byte[] data) throws Exception {
+		H264Index index = H264Indexer.index(new Buffer(data));
+		List<Buffer> result = new ArrayList<Buffer>();
+		for (int i = 0; i < index.size(); i++) {
+			int end = i < index.size() - 1 ? (int) index.getOffset(i + 1) : data.length;
+			NALUnitReader reader = new NALUnitReader(new Buffer(data, (int) index.getOffset(i), end));
+			ByteArrayOutputStream sample = new ByteArrayOutputStream();
+			Buffer nal;
+			while ((nal = reader.nextNALUnitBuffer()) != null) {
+				// zero byte of the next 4 byte start code
+				int len = nal.remaining();
+				while (nal.buffer[nal.pos + len - 1] == 0)
+					--len;
+				sample.write(new byte[] { (byte) (len >> 24), (byte) (len >> 16), (byte) (len >> 8), (byte) len });
+				sample.write(nal.buffer, nal.pos, len);
+			}
+			result.add(new Buffer(sample.toByteArray()));
+		}
+		return result;
+	}
+}
@@ -4,11 +4,13 @@ import static org.jcodec.codecs.h264.io.model.SubMBType.L0_4x4;
 import static org.jcodec.codecs.h264.io.model.SubMBType.L0_4x8;
 import static org.jcodec.codecs.h264.io.model.SubMBType.L0_8x8;
 
+import org.jcodec.codecs.h264.decode.BlockInterpolator;
 import org.jcodec.codecs.h264.decode.InterPredictionBuilder;
 import org.jcodec.codecs.h264.decode.Interpolator;
 import org.jcodec.codecs.h264.io.model.SubMBType;
 import org.jcodec.codecs.h264.io.model.Vector;
 import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Point;
 import org.junit.Test;
@@ -112,8 +114,8 @@ public class TestInterPredictionBuilder extends JAVCTestCase {
 		int[] interpolated = interpolator.interpolateLuma(ref2, 32, 32);
 
 		InterPredictionBuilder builder = new InterPredictionBuilder();
-		Picture[] reference = new Picture[] { new Picture(256,
-				256, new int[][] {interpolated}, ColorSpace.YUV420) };
+		Picture[] reference = new Picture[] { PaddedPicture.create(new Picture(256,
+				256, new int[][] {interpolated}, ColorSpace.YUV420), BlockInterpolator.PAD) };
 		int[] actual = builder.predict16x16(reference, mVectors, new Point(0, 0));
 		assertArrayEquals(expected, actual);
 	}
@@ -145,8 +147,8 @@ public class TestInterPredictionBuilder extends JAVCTestCase {
 		int[] interpolated = interpolator.interpolateLuma(ref2, 32, 32);
 
 		InterPredictionBuilder builder = new InterPredictionBuilder();
-		Picture[] reference = new Picture[] { new Picture(256,
-				256, new int[][] {interpolated}, ColorSpace.YUV420) };
+		Picture[] reference = new Picture[] { PaddedPicture.create(new Picture(256,
+				256, new int[][] {interpolated}, ColorSpace.YUV420), BlockInterpolator.PAD) };
 		int[] actual = builder.predict16x8(reference, mVectors, new Point(0, 0));
 		assertArrayEquals(expected, actual);
 	}
@@ -179,8 +181,8 @@ public class TestInterPredictionBuilder extends JAVCTestCase {
 		int[] interpolated = interpolator.interpolateLuma(ref1, 32, 32);
 
 		InterPredictionBuilder builder = new InterPredictionBuilder();
-		Picture[] reference = new Picture[] { new Picture(256,
-				256, new int[][] {interpolated}, ColorSpace.YUV420) };
+		Picture[] reference = new Picture[] { PaddedPicture.create(new Picture(256,
+				256, new int[][] {interpolated}, ColorSpace.YUV420), BlockInterpolator.PAD) };
 		int[] actual = builder
 				.predict8x16(reference, mVectors, new Point(0, 0));
 		assertArrayEquals(expected, actual);
@@ -219,8 +221,8 @@ public class TestInterPredictionBuilder extends JAVCTestCase {
 		Interpolator interpolator = new Interpolator();
 		int[] interpolated = interpolator.interpolateLuma(ref1, 32, 32);
 
-		Picture[] reference = new Picture[] { new Picture(256,
-				256, new int[][] {interpolated}, ColorSpace.YUV420) };
+		Picture[] reference = new Picture[] { PaddedPicture.create(new Picture(256,
+				256, new int[][] {interpolated}, ColorSpace.YUV420), BlockInterpolator.PAD) };
 		int[] actual = builder.predict8x8(reference, subPred, mVectors,
 				new Point(16, 0));
 		assertArrayEquals(expected, actual);
@@ -1,12 +1,13 @@
 package org.jcodec.codecs.h264;
 
 import org.jcodec.codecs.h264.decode.MBlockDecoderI16x16;
-import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
 import org.jcodec.codecs.h264.decode.model.NearbyPixels;
 import org.jcodec.codecs.h264.decode.model.NearbyPixels.Plane;
 import org.jcodec.codecs.h264.io.model.CodedChroma;
 import org.jcodec.codecs.h264.io.model.MBlockIntra16x16;
 import org.jcodec.codecs.h264.io.model.ResidualBlock;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture;
 import org.junit.Test;
 
 public class TestMBlockDecoder16x16 extends JAVCTestCase {
@@ -126,9 +127,10 @@ public class TestMBlockDecoder16x16 extends JAVCTestCase {
 
 		NearbyPixels near = new NearbyPixels(new NearbyPixels.Plane(mb87, mb77,
 				mb76, null), chromaPlane, chromaPlane);
-		DecodedMBlock decodeI16x16 = mbDecoder.decodeI16x16(mBlock, 28, near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mbDecoder.decodeI16x16(mBlock, 28, near, out, 0, 0);
 
-		assertArrayEquals(expected, decodeI16x16.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 	
 	
@@ -177,9 +179,10 @@ public class TestMBlockDecoder16x16 extends JAVCTestCase {
 				null);
 		NearbyPixels near = new NearbyPixels(plane, plane, plane);
 
-		DecodedMBlock decodeI16x16 = mbDecoder.decodeI16x16(mBlock, 28, near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mbDecoder.decodeI16x16(mBlock, 28, near, out, 0, 0);
 
-		assertArrayEquals(expected, decodeI16x16.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 	
 	@Test
@@ -246,9 +249,10 @@ public class TestMBlockDecoder16x16 extends JAVCTestCase {
 
 		MBlockDecoderI16x16 mbDecoder = new MBlockDecoderI16x16(new int[] { 0,
 				0 }, 8, 8);
-		DecodedMBlock decodeI16x16 = mbDecoder.decodeI16x16(mBlock, 28, near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mbDecoder.decodeI16x16(mBlock, 28, near, out, 0, 0);
 
-		assertArrayEquals(expected, decodeI16x16.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 	
 	public void testMB80() throws Exception {
@@ -374,8 +378,9 @@ public class TestMBlockDecoder16x16 extends JAVCTestCase {
 
 		NearbyPixels near = new NearbyPixels(new NearbyPixels.Plane(mb79, mb69,
 				mb68, null), chromaPlane, chromaPlane);
-		DecodedMBlock decodeI16x16 = mbDecoder.decodeI16x16(mBlock, 27, near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mbDecoder.decodeI16x16(mBlock, 27, near, out, 0, 0);
 
-		assertArrayEquals(expected, decodeI16x16.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 }
\ No newline at end of file
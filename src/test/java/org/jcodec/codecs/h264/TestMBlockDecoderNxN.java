@@ -1,7 +1,6 @@
 package org.jcodec.codecs.h264;
 
 import org.jcodec.codecs.h264.decode.MBlockDecoderI4x4;
-import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
 import org.jcodec.codecs.h264.decode.model.NearbyPixels;
 import org.jcodec.codecs.h264.decode.model.NearbyPixels.Plane;
 import org.jcodec.codecs.h264.io.model.CodedChroma;
@@ -9,6 +8,8 @@ import org.jcodec.codecs.h264.io.model.IntraNxNPrediction;
 import org.jcodec.codecs.h264.io.model.MBlockIntraNxN;
 import org.jcodec.codecs.h264.io.model.MBlockWithResidual;
 import org.jcodec.codecs.h264.io.model.ResidualBlock;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture;
 
 public class TestMBlockDecoderNxN extends JAVCTestCase {
 
@@ -195,10 +196,11 @@ public class TestMBlockDecoderNxN extends JAVCTestCase {
 
 		NearbyPixels near = new NearbyPixels(new NearbyPixels.Plane(mb57, mb47,
 				mb46, mb48), chromaPlane, chromaPlane);
-		DecodedMBlock actual = mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
-				near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
+				near, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 	
 	public void testMB154() throws Exception {
@@ -350,10 +352,11 @@ public class TestMBlockDecoderNxN extends JAVCTestCase {
 				mb114, mb113, mb115), chromaPlane, chromaPlane);
 		MBlockDecoderI4x4 mBlockDecoder = new MBlockDecoderI4x4(new int[] { 0,
 				0 }, 8, 8);
-		DecodedMBlock actual = mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
-				near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
+				near, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 	
 	public void testMB593() throws Exception {
@@ -501,10 +504,11 @@ public class TestMBlockDecoderNxN extends JAVCTestCase {
 				mb553, mb552, mb554), chromaPlane, chromaPlane);
 		MBlockDecoderI4x4 mBlockDecoder = new MBlockDecoderI4x4(new int[] { 0,
 				0 }, 8, 8);
-		DecodedMBlock actual = mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
-				near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
+				near, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 	
 	public void testMBlock18() throws Exception {
@@ -616,10 +620,11 @@ public class TestMBlockDecoderNxN extends JAVCTestCase {
 		NearbyPixels near = new NearbyPixels(new NearbyPixels.Plane(mb17, null,
 				null, null), chromaPlane, chromaPlane);
 
-		DecodedMBlock actual = mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
-				near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
+				near, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 	
 	public void testMB719() throws Exception {
@@ -746,9 +751,10 @@ public class TestMBlockDecoderNxN extends JAVCTestCase {
 				chromaPels, chromaPels);
 		NearbyPixels near = new NearbyPixels(new NearbyPixels.Plane(mb718,
 				mb679, mb678, null), chromaPlane, chromaPlane);
-		DecodedMBlock actual = mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
-				near);
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		mBlockDecoder.decodeINxN(mBlockIntraNxN, qp,
+				near, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma(), 256);
+		assertArrayEquals(expected, out.getPlaneData(0), 256);
 	}
 }
\ No newline at end of file
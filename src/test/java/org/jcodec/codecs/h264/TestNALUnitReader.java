@@ -0,0 +1,53 @@
+package org.jcodec.codecs.h264;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.jcodec.codecs.h264.annexb.NALUnitReader;
+import org.jcodec.common.io.Buffer;
+
+public class TestNALUnitReader extends TestCase {
+
+	public void testSplit() throws Exception {
+		byte[] stream = new byte[] { 0, 0, 0, 1, 0x67, 1, 2, 0, 0, 1, 0x68,
+				3, 0, 0, 0, 1, 0x65, 0, 0, 3, 1, 5 };
+
+		NALUnitReader reader = new NALUnitReader(stream);
+
+		Buffer sps = reader.nextNALUnitBuffer();
+		assertTrue(Arrays.equals(new byte[] { 0x67, 1, 2 }, sps.toArray()));
+		assertSame(stream, sps.buffer);
+		assertEquals(1, reader.getUnitOffset());
+
+		Buffer pps = reader.nextNALUnitBuffer();
+		assertTrue(Arrays.equals(new byte[] { 0x68, 3 }, pps.toArray()));
+		assertEquals(7, reader.getUnitOffset());
+
+		Buffer slice = reader.nextNALUnitBuffer();
+		assertEquals(13, reader.getUnitOffset());
+		assertTrue(Arrays.equals(new byte[] { 0x65, 0, 0, 3, 1, 5 },
+				slice.toArray()));
+		assertTrue(Arrays.equals(new byte[] { 0x65, 0, 0, 1, 5 },
+				NALUnitReader.unescape(slice).toArray()));
+
+		assertNull(reader.nextNALUnitBuffer());
+	}
+
+	public void testFindStartCode() {
+		byte[] buf = new byte[] { 5, 0, 0, 2, 0, 0, 0, 0, 1, 7 };
+		assertEquals(6, NALUnitReader.findStartCode(buf, 0, buf.length));
+		assertEquals(-1, NALUnitReader.findStartCode(buf, 0, 8));
+		assertEquals(-1, NALUnitReader.findStartCode(buf, 7, buf.length));
+	}
+
+	public void testUnescape() {
+		Buffer escaped = new Buffer(new byte[] { 0, 0, 3, 0, 0, 3, 0, 3, 1,
+				0, 0, 3 });
+		assertTrue(Arrays.equals(new byte[] { 0, 0, 0, 0, 0, 3, 1, 0, 0 },
+				NALUnitReader.unescape(escaped).toArray()));
+
+		Buffer clean = new Buffer(new byte[] { 1, 0, 0, 2, 3 });
+		assertSame(clean, NALUnitReader.unescape(clean));
+	}
+}
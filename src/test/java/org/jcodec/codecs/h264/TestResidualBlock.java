@@ -2,6 +2,7 @@ package org.jcodec.codecs.h264;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.jcodec.codecs.h264.io.model.ChromaFormat;
 import org.jcodec.codecs.h264.io.model.CoeffToken;
@@ -64,7 +65,10 @@ public class TestResidualBlock extends JAVCTestCase {
 
 		ResidualCoeffsCAVLCReader residualReader = new ResidualCoeffsCAVLCReader(
 				ChromaFormat.YUV_420);
-		int[] actual = residualReader.readCoeffs(reader, blockType, token);
+		// stale values left by the previous block
+		int[] actual = new int[expected.length];
+		Arrays.fill(actual, 1);
+		residualReader.readCoeffs(reader, blockType, token, actual);
 
 		assertArrayEquals(expected, actual);
 	}
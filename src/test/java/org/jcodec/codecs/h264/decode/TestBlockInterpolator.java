@@ -3,6 +3,7 @@ package org.jcodec.codecs.h264.decode;
 import org.jcodec.codecs.h264.JAVCTestCase;
 import org.jcodec.codecs.h264.decode.model.PixelBuffer;
 import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Rect;
 import org.junit.Test;
@@ -68,7 +69,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 			173, 173, 173, 165, 209,  51, 209,  58, 190,   3, 240,  33, 233, 177, 183, 140
 		};
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels},  ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels},  ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -98,7 +99,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 			128,  95, 215, 242, 211, 158, 244, 196, 241, 155, 148, 150, 232,  29, 171, 129
 		};
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -128,7 +129,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -150,7 +151,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -180,7 +181,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -202,7 +203,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -232,7 +233,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -254,7 +255,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -284,7 +285,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -306,7 +307,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -336,7 +337,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -358,7 +359,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -388,7 +389,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -410,7 +411,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -441,7 +442,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -463,7 +464,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -493,7 +494,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -515,7 +516,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -545,7 +546,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -567,7 +568,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -597,7 +598,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -619,7 +620,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -649,7 +650,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -671,7 +672,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -701,7 +702,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -723,7 +724,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -753,7 +754,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -775,7 +776,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -805,7 +806,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -828,7 +829,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -859,7 +860,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -881,7 +882,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY);
+		Picture pic = PaddedPicture.create(new Picture(16, 16, new int[][] {lumaPels}, ColorSpace.GREY), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -912,7 +913,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		int[] actual = new int[256];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 4), new Rect(
@@ -936,7 +937,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -960,7 +961,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -980,7 +981,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 	
 		int[] actual = new int[16];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 2), new Rect(
@@ -1004,7 +1005,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -1024,7 +1025,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		int[] actual = new int[16];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 2), new Rect(
@@ -1048,7 +1049,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		int[] actual = new int[64];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 3), new Rect(
@@ -1068,7 +1069,7 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		};
 		
 		BlockInterpolator interpolator = new BlockInterpolator();
-		Picture pic = new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420);
+		Picture pic = PaddedPicture.create(new Picture(32, 32, new int[][] {null, chromaPels, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		int[] actual = new int[16];
 		interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 2), new Rect(
@@ -1076,4 +1077,45 @@ public class TestBlockInterpolator extends JAVCTestCase {
 		assertArrayEquals(expected, actual);
 		
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testNotPadded() throws Exception {
+		Picture pic = new Picture(16, 16, new int[][] { lumaPels }, ColorSpace.GREY);
+		Picture padded = PaddedPicture.create(pic, BlockInterpolator.PAD);
+		BlockInterpolator interpolator = new BlockInterpolator();
+
+		int[][] blocks = new int[][] { { 4, 4, 16, 16 }, { 8, 4, 8, 8 },
+				{ -10, 23, 8, 4 }, { 47, -70, 4, 8 }, { -300, 200, 16, 8 } };
+		for (int[] b : blocks) {
+			for (int frac = 0; frac < 16; frac++) {
+				Rect rect = new Rect((b[0] << 2) + (frac & 3),
+						(b[1] << 2) + (frac >> 2), b[2], b[3]);
+				int[] expected = new int[256];
+				int[] actual = new int[256];
+				interpolator.getBlockLuma(padded, new PixelBuffer(expected, 0, 4), rect);
+				interpolator.getBlockLuma(pic, new PixelBuffer(actual, 0, 4), rect);
+				assertArrayEquals(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testChromaNotPadded() throws Exception {
+		Picture pic = new Picture(32, 32, new int[][] { null, chromaPels, null }, ColorSpace.YUV420);
+		Picture padded = PaddedPicture.create(pic, BlockInterpolator.PAD);
+		BlockInterpolator interpolator = new BlockInterpolator();
+
+		int[][] blocks = new int[][] { { 2, 3, 8, 8 }, { -5, 12, 4, 4 }, { 14, -3, 8, 4 } };
+		for (int[] b : blocks) {
+			for (int frac = 0; frac < 64; frac += 3) {
+				Rect rect = new Rect((b[0] << 3) + (frac & 7),
+						(b[1] << 3) + (frac >> 3), b[2], b[3]);
+				int[] expected = new int[64];
+				int[] actual = new int[64];
+				interpolator.getBlockCb(padded, new PixelBuffer(expected, 0, 3), rect);
+				interpolator.getBlockCb(pic, new PixelBuffer(actual, 0, 3), rect);
+				assertArrayEquals(expected, actual);
+			}
+		}
+	}
+}
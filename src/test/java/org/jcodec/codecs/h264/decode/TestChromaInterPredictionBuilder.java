@@ -7,6 +7,7 @@ import org.jcodec.codecs.h264.decode.model.MVMatrix;
 import org.jcodec.codecs.h264.io.model.Vector;
 import org.jcodec.codecs.util.PGMIO;
 import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Point;
 import org.junit.Test;
@@ -37,8 +38,8 @@ public class TestChromaInterPredictionBuilder extends JAVCTestCase {
 		int[] interpolated = interpolator.interpolateChroma(rawRef.getPlaneData(0),
 				refWidth, refHeight);
 
-		Picture reference = new Picture(refWidth * 8 + 128,
-				refHeight * 8 + 128, new int[][] {null, interpolated, null}, ColorSpace.YUV420);
+		Picture reference = PaddedPicture.create(new Picture(refWidth * 8 + 128,
+				refHeight * 8 + 128, new int[][] {null, interpolated, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		ChromaInterPredictionBuilder predictionBuilder = new ChromaInterPredictionBuilder();
 
@@ -80,8 +81,8 @@ public class TestChromaInterPredictionBuilder extends JAVCTestCase {
 		int[] interpolated = interpolator.interpolateChroma(rawRef.getPlaneData(0),
 				refWidth, refHeight);
 
-		Picture reference = new Picture(refWidth * 8 + 128,
-				refHeight * 8 + 128, new int[][] {null, interpolated, null}, ColorSpace.YUV420);
+		Picture reference = PaddedPicture.create(new Picture(refWidth * 8 + 128,
+				refHeight * 8 + 128, new int[][] {null, interpolated, null}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		ChromaInterPredictionBuilder predictionBuilder = new ChromaInterPredictionBuilder();
 
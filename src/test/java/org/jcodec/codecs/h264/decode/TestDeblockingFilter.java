@@ -1,5 +1,11 @@
 package org.jcodec.codecs.h264.decode;
 
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import org.jcodec.codecs.h264.JAVCTestCase;
 import org.jcodec.codecs.h264.decode.deblock.DeblockingFilter;
 import org.jcodec.codecs.h264.decode.deblock.FilterParameter;
@@ -213,8 +219,95 @@ public class TestDeblockingFilter extends JAVCTestCase {
 		// FrameUtil.displayFrame(blocky, true);
 		DeblockingFilter deblockingFilter = new DeblockingFilter(2, 2, 8, 8);
 
-		deblockingFilter.applyDeblocking(decoded, params);
+		deblockingFilter.applyDeblocking(blocky, params);
 
 		assertFrameEquals(smooth, blocky);
 	}
+
+	@Test
+	public void testWavefront() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int i = 0; i < 10; i++) {
+				Random rand = new Random(i);
+				int mbW = 1 + rand.nextInt(12), mbH = 2 + rand.nextInt(8);
+				Picture serial = randomPicture(rand, mbW, mbH);
+				Picture parallel = copy(serial);
+				FilterParameter[] params = randomParams(rand, mbW, mbH);
+
+				new DeblockingFilter(mbW, mbH, 8, 8).applyDeblocking(serial, params);
+				new DeblockingFilter(mbW, mbH, 8, 8, executor).applyDeblocking(parallel, params);
+
+				assertFrameEquals(serial, parallel);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * The caller occupies the only thread of the executor the filter submits
+	 * to
+	 */
+	@Test
+	public void testWavefrontFromPoolThread() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Random rand = new Random(42);
+			final Picture serial = randomPicture(rand, 8, 6);
+			final Picture parallel = copy(serial);
+			final FilterParameter[] params = randomParams(rand, 8, 6);
+
+			new DeblockingFilter(8, 6, 8, 8).applyDeblocking(serial, params);
+			executor.submit(new Callable<Object>() {
+				public Object call() {
+					new DeblockingFilter(8, 6, 8, 8, executor).applyDeblocking(parallel, params);
+					return null;
+				}
+			}).get(10, TimeUnit.SECONDS);
+
+			assertFrameEquals(serial, parallel);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private Picture randomPicture(Random rand, int mbW, int mbH) {
+		Picture pic = Picture.create(mbW << 4, mbH << 4, ColorSpace.YUV420);
+		for (int p = 0; p < 3; p++) {
+			int[] plane = pic.getPlaneData(p);
+			for (int i = 0; i < plane.length; i++)
+				plane[i] = 100 + rand.nextInt(40);
+		}
+		return pic;
+	}
+
+	private Picture copy(Picture pic) {
+		Picture result = Picture.create(pic.getWidth(), pic.getHeight(), ColorSpace.YUV420);
+		for (int p = 0; p < 3; p++)
+			System.arraycopy(pic.getPlaneData(p), 0, result.getPlaneData(p), 0, pic.getPlaneData(p).length);
+		return result;
+	}
+
+	private FilterParameter[] randomParams(Random rand, int mbW, int mbH) {
+		FilterParameter[] params = new FilterParameter[mbW * mbH];
+		for (int i = 0; i < params.length; i++) {
+			int[] bsH = new int[16], bsV = new int[16];
+			for (int j = 0; j < 16; j++) {
+				bsH[j] = rand.nextInt(5);
+				bsV[j] = rand.nextInt(5);
+			}
+			params[i] = new FilterParameter(i % mbW > 0, i >= mbW, true, randomThresh(rand), randomThresh(rand),
+					randomThresh(rand), bsH, bsV);
+		}
+		return params;
+	}
+
+	private FilterParameter.Threshold randomThresh(Random rand) {
+		int[][] idx = new int[4][4];
+		for (int i = 0; i < 4; i++)
+			for (int j = 0; j < 4; j++)
+				idx[i][j] = 16 + rand.nextInt(36);
+		return new FilterParameter.Threshold(idx[0], idx[1], idx[2], idx[3]);
+	}
 }
@@ -11,7 +11,6 @@ import java.io.InputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.jcodec.codecs.h264.JAVCTestCase;
-import org.jcodec.codecs.h264.decode.model.DecodedMBlock;
 import org.jcodec.codecs.h264.decode.model.NearbyMotionVectors;
 import org.jcodec.codecs.h264.io.model.CodedChroma;
 import org.jcodec.codecs.h264.io.model.Inter8x8Prediction;
@@ -24,6 +23,7 @@ import org.jcodec.codecs.h264.io.model.Vector;
 import org.jcodec.codecs.h264.io.model.MBlockInter.Type;
 import org.jcodec.codecs.util.PGMIO;
 import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Point;
 import org.junit.Test;
@@ -176,11 +176,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 				new Vector(-12, 1, 0), new Vector(-7, 6, 0) }, null, null,
 				true, true, false, true);
 
-		DecodedMBlock actual = decoder.decodeP8x8(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodeP8x8(
 				new Picture[] { reference }, mb, nearMV,
-				new Point(16, 16), qp);
+				new Point(16, 16), qp, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 
 	@Test
@@ -249,11 +250,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 				new Vector[] { null, null, null, null }, null, null, true,
 				true, false, true);
 
-		DecodedMBlock actual = decoder.decodeP16x8(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodeP16x8(
 				new Picture[] { reference }, mb, nearMV, new Point(0, 0),
-				qp);
+				qp, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 	
 	@Test
@@ -324,11 +326,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 				new Vector(-6, 3, 0), new Vector(-6, 3, 0) }, null, null, true,
 				true, false, true);
 
-		DecodedMBlock actual = decoder.decodeP8x16(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodeP8x16(
 				new Picture[] { reference }, mb, nearMV,
-				new Point(16, 16), qp);
+				new Point(16, 16), qp, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 
 	@Test
@@ -405,11 +408,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 				new Vector(-7, 3, 0), new Vector(-7, 3, 0) }, null, new Vector(
 				-2, 1, 0), true, true, false, true);
 
-		DecodedMBlock actual = decoder.decodeP16x16(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodeP16x16(
 				new Picture[] { reference }, mb, nearMV,
-				new Point(16, 16), qp);
+				new Point(16, 16), qp, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 	
 	private Picture buildReferenceImage(int[] luma) {
@@ -418,7 +422,8 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 		int[] interpolated = interpolator.interpolateLuma(luma, 32, 32);
 		int[] chroma = new int[256*64];
 	
-		return new Picture(256, 256, new int[][] {interpolated, chroma, chroma}, ColorSpace.YUV420);
+		return PaddedPicture.create(new Picture(256, 256, new int[][] {interpolated, chroma, chroma}, ColorSpace.YUV420),
+				BlockInterpolator.PAD);
 	}
 	
 	@Test
@@ -472,11 +477,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 				new Vector(-183, -6, 0), new Vector(-183, -6, 0) }, null, null,
 				null, true, false, false, false);
 
-		DecodedMBlock actual = decoder.decodeP16x8(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodeP16x8(
 				new Picture[] { reference }, mb, nearMV,
-				new Point(608, 0), qp);
+				new Point(608, 0), qp, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 	
 	@Test
@@ -547,11 +553,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 						new Vector(-183, -8, 0) }, null,
 				new Vector(-183, -6, 0), true, true, true, true);
 
-		DecodedMBlock actual = decoder.decodeP16x16(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodeP16x16(
 				new Picture[] { reference }, mb, nearMV,
-				new Point(608, 16), qp);
+				new Point(608, 16), qp, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 	
 	@Test
@@ -585,11 +592,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 				new Vector(39, 17, 0), new Vector(39, 17, 0), true, true, true,
 				true);
 
-		DecodedMBlock actual = decoder.decodePSkip(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodePSkip(
 				new Picture[] { reference }, nearMV, new Point(240, 48),
-				28);
+				28, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 	
 	@Test
@@ -652,11 +660,12 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 		NearbyMotionVectors nearMV = new NearbyMotionVectors(null, null, null,
 				new Vector(-171, -11, 0), true, true, false, true);
 
-		DecodedMBlock actual = decoder.decodeP16x8(
+		Picture out = Picture.create(16, 16, ColorSpace.YUV420);
+		decoder.decodeP16x8(
 				new Picture[] { reference }, mb, nearMV, new Point(624,
-						112), qp);
+						112), qp, out, 0, 0);
 
-		assertArrayEquals(expected, actual.getLuma());
+		assertArrayEquals(expected, out.getPlaneData(0));
 	}
 
 	private Picture readReferenceImage(String fileName) throws IOException {
@@ -676,7 +685,8 @@ public class TestMBlockDecoderInter extends JAVCTestCase {
 			int[] interpolated = interpolator.interpolateLuma(frame.getPlaneData(0), lumaW, lumaH);
 			int[] chroma = new int[chromaRefW * chromaRefH];
 		
-			return new Picture(lumaRefW, lumaRefH, new int[][] {interpolated, chroma, chroma}, ColorSpace.YUV420);
+			return PaddedPicture.create(new Picture(lumaRefW, lumaRefH, new int[][] {interpolated, chroma, chroma},
+					ColorSpace.YUV420), BlockInterpolator.PAD);
 			
 		} finally {
 			IOUtils.closeQuietly(is);
@@ -15,6 +15,7 @@ import org.jcodec.codecs.h264.io.model.SliceHeader;
 import org.jcodec.codecs.h264.io.model.Vector;
 import org.jcodec.codecs.h264.io.model.MBlockInter.Type;
 import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
 import org.jcodec.common.model.Picture;
 import org.jcodec.common.model.Point;
 
@@ -29,7 +30,7 @@ public class TestSliceDecoder extends JAVCTestCase {
 			private int i;
 
 			public DecodedMBlock decodeINxN(MBlockIntraNxN coded, int qp,
-					NearbyPixels neighbours) {
+					NearbyPixels neighbours, Picture out, int mbX, int mbY) {
 				actual[i++] = qp;
 
 				return new DecodedMBlock(null, new DecodedChroma(null, null, 0,
@@ -51,7 +52,8 @@ public class TestSliceDecoder extends JAVCTestCase {
 
 		CodedSlice slice = new CodedSlice(sliceHeader, mblocks);
 
-		sliceDecoder.decodeSlice(slice, null, new FlatMBlockMapper(3, 0));
+		sliceDecoder.decodeSlice(slice, null, new FlatMBlockMapper(3, 0),
+				Picture.create(48, 16, ColorSpace.YUV420));
 
 		assertArrayEquals(new int[] { 26, 28, 28 }, actual);
 	}
@@ -65,7 +67,8 @@ public class TestSliceDecoder extends JAVCTestCase {
 
 			@Override
 			public DecodedMBlock decodeP(Picture[] reference, MBlockInter mb,
-					NearbyMotionVectors nearMV, Point origin, int qp) {
+					NearbyMotionVectors nearMV, Point origin, int qp,
+					Picture out, int mbX, int mbY) {
 
 				InterPrediction prediction = mb.getPrediction();
 				Vector[] decodedMVsL0;
@@ -82,12 +85,14 @@ public class TestSliceDecoder extends JAVCTestCase {
 
 			@Override
 			public DecodedMBlock decodePSkip(Picture[] reference,
-					NearbyMotionVectors nearMV, Point origin, int qp) {
+					NearbyMotionVectors nearMV, Point origin, int qp,
+					Picture out, int mbX, int mbY) {
 				if (i == 48) {
 					actual[0] = nearMV.getA()[0];
 				}
 				++i;
-				return super.decodePSkip(reference, nearMV, origin, qp);
+				return super.decodePSkip(reference, nearMV, origin, qp, out,
+						mbX, mbY);
 			}
 
 		};
@@ -135,11 +140,12 @@ public class TestSliceDecoder extends JAVCTestCase {
 		int chromaRefH = chromaH * 8;
 
 		int[] chroma = new int[chromaRefW * chromaRefH];
-		Picture ref = new Picture(lumaRefW, lumaRefH, new int[][] {new int[lumaRefW
-				* lumaRefH], chroma, chroma}, ColorSpace.YUV420);
+		Picture ref = PaddedPicture.create(new Picture(lumaRefW, lumaRefH, new int[][] {new int[lumaRefW
+				* lumaRefH], chroma, chroma}, ColorSpace.YUV420), BlockInterpolator.PAD);
 
 		Picture[] refList = new Picture[] { ref };
-		sliceDecoder.decodeSlice(slice, refList, new FlatMBlockMapper(40, 0));
+		sliceDecoder.decodeSlice(slice, refList, new FlatMBlockMapper(40, 0),
+				Picture.create(lumaW, lumaH, ColorSpace.YUV420));
 
 		assertEquals(new Vector(38, 17, 0), actual[0]);
 	}
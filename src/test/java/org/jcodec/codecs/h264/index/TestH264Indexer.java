@@ -0,0 +1,72 @@
+package org.jcodec.codecs.h264.index;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.codecs.h264.io.model.SliceType;
+import org.jcodec.common.io.Buffer;
+
+public class TestH264Indexer extends TestCase {
+
+	public void testReorder() throws Exception {
+		File file = new File("src/test/resources/h264/seq_reorder/test.264");
+		byte[] data = FileUtils.readFileToByteArray(file);
+		H264Index index = H264Indexer.index(new Buffer(data));
+
+		assertEquals(30, index.size());
+		assertEquals(30, index.getDisplayCount());
+		assertTrue(index.isIDR(0));
+		assertEquals(SliceType.I, index.getSliceType(0));
+		assertEquals(0, index.getKeyFrame(29));
+
+		for (int i = 0; i < index.size(); i++) {
+			int offset = (int) index.getOffset(i);
+			assertEquals(0, data[offset]);
+			assertEquals(0, data[offset + 1]);
+			assertEquals(1, data[offset + 2]);
+			assertEquals(i, index.getDecodeOrder(index.getDisplayOrder(i)));
+		}
+		for (int i = 1; i < index.getDisplayCount(); i++) {
+			assertTrue(index.getPOC(index.getDecodeOrder(i - 1)) < index.getPOC(index.getDecodeOrder(i)));
+		}
+
+		// pictures 3 and 4 are coded out of order
+		assertEquals(4, index.getDisplayOrder(3));
+		assertEquals(3, index.getDisplayOrder(4));
+	}
+
+	public void testStreamOffsets() throws Exception {
+		File file = new File("src/test/resources/h264/test_cat1.h264");
+		H264Index fromMemory = H264Indexer.index(new Buffer(FileUtils.readFileToByteArray(file)));
+		H264Index fromStream = H264Indexer.index(new FileInputStream(file));
+
+		assertEquals(46, fromStream.size());
+		for (int i = 0; i < fromStream.size(); i++)
+			assertEquals(fromMemory.getOffset(i), fromStream.getOffset(i));
+	}
+
+	public void testPersist() throws Exception {
+		H264Index index = H264Indexer.index(new FileInputStream("src/test/resources/h264/seq_poc0/test.264"));
+
+		File file = File.createTempFile("index", ".bin");
+		try {
+			index.write(file);
+			H264Index read = H264Index.read(file);
+
+			assertEquals(index.size(), read.size());
+			for (int i = 0; i < index.size(); i++) {
+				assertEquals(index.getOffset(i), read.getOffset(i));
+				assertEquals(index.getNALType(i), read.getNALType(i));
+				assertEquals(index.getSliceType(i), read.getSliceType(i));
+				assertEquals(index.getPOC(i), read.getPOC(i));
+				assertEquals(index.isRef(i), read.isRef(i));
+				assertEquals(index.getDisplayOrder(i), read.getDisplayOrder(i));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package org.jcodec.codecs.h264.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.codecs.h264.H264Decoder;
+import org.jcodec.codecs.h264.annexb.AnnexBDemuxer;
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.io.ByteArrayRAInputStream;
+import org.jcodec.common.model.Picture;
+
+public class TestIndexedAnnexBDemuxer extends TestCase {
+
+	public void testSeek() throws Exception {
+		byte[] data = FileUtils.readFileToByteArray(new File("src/test/resources/h264/seq_poc0/test.264"));
+
+		List<Integer> hashes = new ArrayList<Integer>();
+		H264Decoder sequential = new H264Decoder(new AnnexBDemuxer(new ByteArrayInputStream(data)));
+		Picture pic;
+		while ((pic = sequential.nextPicture()) != null)
+			hashes.add(Arrays.hashCode(pic.getPlaneData(0)));
+
+		H264Index index = H264Indexer.index(new Buffer(data));
+		H264Decoder decoder = new H264Decoder(new IndexedAnnexBDemuxer(new ByteArrayRAInputStream(data), index));
+
+		for (int frameNo : new int[] { 30, 3, 42, 0, 17, 18 }) {
+			assertTrue(decoder.seek(frameNo));
+			pic = decoder.nextPicture();
+			assertEquals(hashes.get(frameNo).intValue(), Arrays.hashCode(pic.getPlaneData(0)));
+			decoder.releasePicture(pic);
+		}
+
+		assertFalse(decoder.seek(hashes.size()));
+	}
+}
@@ -35,6 +35,32 @@ public class TestCoeffTokenReader extends TestCase {
 		testRead(code, new CoeffToken(3, 3), 0);
 	}
 
+	@Test
+	public void testAllCodes() throws Exception {
+		testTable(CoeffTokenReader.nc0_2, 0);
+		testTable(CoeffTokenReader.nc2_4, 2);
+		testTable(CoeffTokenReader.nc4_8, 4);
+		testTable(CoeffTokenReader.nc8p, 8);
+		testTable(CoeffTokenReader.ncm1, -1);
+		testTable(CoeffTokenReader.ncm2, -2);
+	}
+
+	private void testTable(CoeffTokenReader.Item[] items, int nC)
+			throws Exception {
+		for (CoeffTokenReader.Item item : items) {
+			// the code followed by a marker to check the number of bits
+			// consumed
+			InBits reader = new BitstreamReader(new ByteArrayInputStream(
+					BinUtil.binaryStringToBytes(item.str + "1011")));
+
+			CoeffToken actual = CoeffTokenReader.read(reader, nC);
+
+			assertEquals(item.str, new CoeffToken(item.totalCoeff,
+					item.trailingOnes), actual);
+			assertEquals(item.str, 11, reader.readNBit(4));
+		}
+	}
+
 	public void testEstimate() throws Exception {
 		assertTrue(true);
 	}
@@ -0,0 +1,184 @@
+package org.jcodec.codecs.mpeg12;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.common.io.Buffer;
+
+public class TestMPEGDecoder extends TestCase {
+
+	// I, P, B, B, P, B, B in coding order, 352x288, some rows are split into
+	// two slices
+	private static final String IPB = "src/test/resources/mpeg12/ipb.m1v";
+	// two intra frames 128x80 coded with one slice per row and with the every
+	// other row split into two slices
+	private static final String INTRA_ROWS = "src/test/resources/mpeg12/intra_rows.m1v";
+	private static final String INTRA_SPLIT = "src/test/resources/mpeg12/intra_split.m1v";
+
+	public void testParallelSlices() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<int[][]> serial = decode(IPB, new MPEGDecoder(), 7, 352, 288);
+			for (int i = 0; i < 10; i++)
+				assertSamePictures(serial, decode(IPB, new MPEGDecoder(executor), 7, 352, 288));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testSliceInTheMiddleOfRow() throws Exception {
+		List<int[][]> rows = decode(INTRA_ROWS, new MPEGDecoder(), 2, 128, 80);
+		assertSamePictures(rows, decode(INTRA_SPLIT, new MPEGDecoder(), 2, 128, 80));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertSamePictures(rows, decode(INTRA_SPLIT, new MPEGDecoder(executor), 2, 128, 80));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testCalledFromExecutorThread() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<List<int[][]>> job = executor.submit(new Callable<List<int[][]>>() {
+				public List<int[][]> call() throws Exception {
+					return decode(IPB, new MPEGDecoder(executor), 7, 352, 288);
+				}
+			});
+			assertSamePictures(decode(IPB, new MPEGDecoder(), 7, 352, 288), job.get(30, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public void testTwoFramesInARow() throws Exception {
+		byte[] data = FileUtils.readFileToByteArray(new File(INTRA_SPLIT));
+		int[][] pic = new int[][] { new int[128 * 80], new int[128 * 80], new int[128 * 80] };
+		MPEGDecoder decoder = new MPEGDecoder();
+		Buffer buf = new Buffer(data);
+		decoder.decodeFrame(buf, pic);
+		decoder.decodeFrame(buf, pic);
+
+		// sequence header followed by the second picture
+		int first = pictureStart(data, 0), second = pictureStart(data, first + 4);
+		byte[] secondOnly = new byte[data.length - second + first];
+		System.arraycopy(data, 0, secondOnly, 0, first);
+		System.arraycopy(data, second, secondOnly, first, data.length - second);
+		int[][] expected = new int[][] { new int[128 * 80], new int[128 * 80], new int[128 * 80] };
+		new MPEGDecoder().decodeFrame(new Buffer(secondOnly), expected);
+
+		assertSamePictures(Arrays.asList(new int[][][] { expected }), Arrays.asList(new int[][][] { pic }));
+	}
+
+	/**
+	 * Decoding past the first frames doesn't allocate on per macroblock basis
+	 */
+	public void testAllocation() throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return;
+		com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+		if (!counter.isThreadAllocatedMemorySupported() || !counter.isThreadAllocatedMemoryEnabled())
+			return;
+
+		byte[] data = FileUtils.readFileToByteArray(new File(IPB));
+		int[][] pic = new int[][] { new int[352 * 288], new int[352 * 288], new int[352 * 288] };
+		MPEGDecoder decoder = new MPEGDecoder();
+		Buffer buf = new Buffer(data);
+		for (int i = 0; i < 7; i++)
+			decoder.decodeFrame(buf, pic);
+
+		buf = new Buffer(data);
+		long before = counter.getThreadAllocatedBytes(Thread.currentThread().getId());
+		for (int i = 0; i < 7; i++)
+			decoder.decodeFrame(buf, pic);
+		long perFrame = (counter.getThreadAllocatedBytes(Thread.currentThread().getId()) - before) / 7;
+
+		// 396 macroblocks per frame, used to be about 2KB each
+		assertTrue("Allocated " + perFrame + " bytes per frame", perFrame < 32 * 1024);
+	}
+
+	/**
+	 * The downscaled pictures are close to the full size ones averaged over
+	 * the areas of the downscaled pixels. The predicted ones lose the sub-pel
+	 * detail of the noise the stream is made of and drift through the group,
+	 * still they are way closer than the other pictures of the group are
+	 */
+	public void testDownscaledPSNR() throws Exception {
+		// by the downscale, the other pictures are under 18dB
+		double[] minPredicted = new double[] { 0, 25, 20, 19 };
+		List<int[][]> full = decode(IPB, new MPEGDecoder(), 7, 352, 288);
+		for (int downscale = 1; downscale < 4; downscale++) {
+			MPEGDecoder decoder = new MPEGDecoder();
+			decoder.setDownscale(downscale);
+			List<int[][]> down = decode(IPB, decoder, 7, 352, 288);
+
+			for (int frame = 0; frame < 7; frame++) {
+				for (int plane = 0; plane < 3; plane++) {
+					int width = plane == 0 ? 352 : 176, height = plane == 0 ? 288 : 144;
+					double psnr = psnr(full.get(frame)[plane], width, height, down.get(frame)[plane], downscale);
+					assertTrue("Downscale " + downscale + " frame " + frame + " plane " + plane + " PSNR " + psnr,
+							psnr > (frame == 0 ? 45 : minPredicted[downscale]));
+				}
+			}
+		}
+	}
+
+	private static double psnr(int[] full, int width, int height, int[] down, int downscale) {
+		int n = 1 << downscale, w = width >> downscale, h = height >> downscale;
+		double se = 0;
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				int sum = 0;
+				for (int i = 0; i < n; i++)
+					for (int j = 0; j < n; j++)
+						sum += full[((y << downscale) + i) * width + (x << downscale) + j];
+				double diff = (double) sum / (n * n) - down[y * w + x];
+				se += diff * diff;
+			}
+		}
+		return 10 * Math.log10(255 * 255 * w * h / se);
+	}
+
+	private static int pictureStart(byte[] data, int from) {
+		for (int i = from; i < data.length - 3; i++) {
+			if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1 && data[i + 3] == 0)
+				return i;
+		}
+		return -1;
+	}
+
+	private static List<int[][]> decode(String path, MPEGDecoder decoder, int frames, int width, int height)
+			throws IOException {
+		Buffer buf = new Buffer(FileUtils.readFileToByteArray(new File(path)));
+		List<int[][]> result = new ArrayList<int[][]>();
+		for (int i = 0; i < frames; i++) {
+			int[][] pic = new int[][] { new int[width * height], new int[width * height], new int[width * height] };
+			assertNotNull(decoder.decodeFrame(buf, pic));
+			result.add(pic);
+		}
+		return result;
+	}
+
+	private static void assertSamePictures(List<int[][]> expected, List<int[][]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			for (int plane = 0; plane < 3; plane++)
+				assertTrue("Frame " + i + " plane " + plane, Arrays.equals(expected.get(i)[plane], actual.get(i)[plane]));
+		}
+	}
+}
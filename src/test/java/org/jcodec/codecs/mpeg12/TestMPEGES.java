@@ -0,0 +1,134 @@
+package org.jcodec.codecs.mpeg12;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.model.Packet;
+
+public class TestMPEGES extends TestCase {
+
+	public void testSplitStartCodes() throws Exception {
+		byte[] es = FileUtils.readFileToByteArray(new File("src/test/resources/mpeg12/ipb.m1v"));
+		List<byte[]> expected = pictures(es);
+		assertEquals(7, expected.size());
+
+		// the first piece moves the start codes to every offset within the
+		// pieces, the short pieces split every start code across the refills
+		for (int first = 0; first < 4; first++) {
+			for (int size : new int[] { 1, 2, 3, 4, 5, 7, 4096 }) {
+				List<Packet> frames = readAll(new PieceES(es, first, size));
+				assertPictures("first " + first + " size " + size, expected, frames);
+			}
+		}
+	}
+
+	public void testGrowing() throws Exception {
+		// a picture many times larger than the initial buffer in the middle
+		byte[] es = stream(1000, 300000, 5000, 70000);
+		List<byte[]> expected = pictures(es);
+		assertEquals(4, expected.size());
+
+		assertPictures("pieces", expected, readAll(new PieceES(es, 0, 1000)));
+
+		File file = File.createTempFile("growing", ".m2v");
+		try {
+			FileUtils.writeByteArrayToFile(file, es);
+			assertPictures("file", expected, readAll(new MPEGES(file)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Reads all the pictures first, so that the checks catch the data of the
+	 * earlier pictures overwritten by the later reads
+	 */
+	private static List<Packet> readAll(MPEGES es) throws IOException {
+		List<Packet> result = new ArrayList<Packet>();
+		Packet frame;
+		while ((frame = es.getFrame()) != null)
+			result.add(frame);
+		return result;
+	}
+
+	private static void assertPictures(String message, List<byte[]> expected, List<Packet> actual) {
+		assertEquals(message, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+			assertTrue(message + " picture " + i, Arrays.equals(expected.get(i), actual.get(i).getData().toArray()));
+	}
+
+	/**
+	 * Splits the stream at the picture start codes, the headers before the
+	 * first picture are not a part of any
+	 */
+	public static List<byte[]> pictures(byte[] es) {
+		List<Integer> starts = new ArrayList<Integer>();
+		for (int i = 0; i < es.length - 3; i++) {
+			if (es[i] == 0 && es[i + 1] == 0 && es[i + 2] == 1 && es[i + 3] == 0)
+				starts.add(i);
+		}
+		starts.add(es.length);
+
+		List<byte[]> result = new ArrayList<byte[]>();
+		for (int i = 0; i < starts.size() - 1; i++)
+			result.add(Arrays.copyOfRange(es, starts.get(i), starts.get(i + 1)));
+		return result;
+	}
+
+	/**
+	 * Sequence header followed by the pictures of one slice each, the slice
+	 * data has no start code emulation
+	 */
+	public static byte[] stream(int... sliceSizes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { 0, 0, 1, (byte) 0xb3, 0x08, 0x00, 0x50, 0x13, (byte) 0xff, (byte) 0xff, (byte) 0xe0,
+				0x18 });
+		for (int i = 0; i < sliceSizes.length; i++) {
+			out.write(new byte[] { 0, 0, 1, 0, (byte) (i >> 2), (byte) (((i & 3) << 6) | 0x0f), (byte) 0xff,
+					(byte) 0xf8 });
+			out.write(new byte[] { 0, 0, 1, 1 });
+			byte[] slice = new byte[sliceSizes[i]];
+			for (int j = 0; j < slice.length; j++)
+				slice[j] = (byte) (0x80 | (j * 7 + i));
+			out.write(slice);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Hands out the stream in the pieces of the given size, the first piece
+	 * may be shorter
+	 */
+	private static class PieceES extends MPEGES {
+		private byte[] es;
+		private int pos;
+		private int first;
+		private int size;
+		private byte[] piece;
+
+		public PieceES(byte[] es, int first, int size) throws IOException {
+			this.es = es;
+			this.first = first;
+			this.size = size;
+			this.piece = new byte[Math.max(first, size)];
+		}
+
+		protected Buffer fetchBuffer() throws IOException {
+			if (pos == es.length)
+				return null;
+			int len = Math.min(pos == 0 && first > 0 ? first : size, es.length - pos);
+			// the same array every time, the reader must copy the data out
+			System.arraycopy(es, pos, piece, 0, len);
+			pos += len;
+			return new Buffer(piece, 0, len);
+		}
+	}
+}
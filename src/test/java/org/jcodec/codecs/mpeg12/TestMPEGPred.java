@@ -0,0 +1,119 @@
+package org.jcodec.codecs.mpeg12;
+
+import static org.jcodec.codecs.mpeg12.bitstream.SequenceExtension.Chroma420;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.PaddedPicture;
+import org.jcodec.common.model.Picture;
+
+public class TestMPEGPred extends TestCase {
+	private static final int W = 48, H = 32;
+
+	public void testFramePrediction() {
+		PaddedPicture ref = randomReference(1);
+		MPEGPred pred = new MPEGPred(new int[][] { { 1, 1 }, { 1, 1 } }, Chroma420, true);
+
+		for (int refY = -80; refY <= 2 * H + 40; refY += 3) {
+			for (int refX = -60; refX <= 2 * W + 40; refX += 7) {
+				int[] actual = new int[256];
+				pred.predictPlane(ref, 0, refX, refY, 0, 0, actual, 0, 16, 16, 0);
+				assertArrayEquals(predictClipped(ref, refX, refY, 0, 0, 16, 16), actual);
+			}
+		}
+	}
+
+	public void testFieldPrediction() {
+		PaddedPicture ref = randomReference(2);
+		MPEGPred pred = new MPEGPred(new int[][] { { 1, 1 }, { 1, 1 } }, Chroma420, true);
+
+		for (int field = 0; field < 2; field++) {
+			for (int refY = -40; refY <= H + 20; refY++) {
+				for (int refX = -60; refX <= 2 * W + 40; refX += 7) {
+					int[] actual = new int[256];
+					pred.predictPlane(ref, 0, refX, refY, 1, field, actual, 0, 16, 8, 1);
+					int[] expected = predictClipped(ref, refX, refY, 1, field, 16, 8);
+					for (int i = 0; i < 8; i++) {
+						for (int j = 0; j < 16; j++)
+							assertEquals(field + " " + refX + "x" + refY, expected[i * 16 + j],
+									actual[(i << 5) + j]);
+					}
+				}
+			}
+		}
+	}
+
+	public void testDownscaledHalves() {
+		PaddedPicture ref = randomReference(3);
+		MPEGPred pred = new MPEGPred(null, Chroma420, true);
+		pred.init(null, Chroma420, true, 3);
+
+		// 8x4 chroma halves of 16x8 partitions are less than a line at 1/8,
+		// they share one
+		for (int refX = 0; refX < 16; refX++) {
+			int[] upper = new int[1], lower = new int[1], actual = new int[1];
+			pred.predictPlane(ref, 1, refX << 3, 0, 0, 0, upper, 0, 8, 4, 0);
+			pred.predictPlane(ref, 1, 0, refX << 3, 0, 0, lower, 0, 8, 4, 0);
+
+			pred.predictPlane(ref, 1, refX << 3, 0, 0, 0, actual, 0, 8, 4, 0);
+			pred.predictPlane(ref, 1, 0, refX << 3, 0, 0, actual, 4, 8, 4, 0);
+			assertEquals((upper[0] + lower[0] + 1) >> 1, actual[0]);
+
+			// field blocks of a frame macroblock
+			pred.predictPlane(ref, 1, refX << 3, 0, 1, 0, actual, 0, 8, 4, 1);
+			pred.predictPlane(ref, 1, 0, refX << 3, 1, 1, actual, 1, 8, 4, 1);
+			pred.predictPlane(ref, 1, refX << 3, 0, 1, 0, upper, 0, 8, 4, 1);
+			pred.predictPlane(ref, 1, 0, refX << 3, 1, 1, lower, 0, 8, 4, 1);
+			assertEquals((upper[0] + lower[0] + 1) >> 1, actual[0]);
+		}
+	}
+
+	/**
+	 * Reference prediction that clips every pixel position to it's own field
+	 */
+	private int[] predictClipped(Picture ref, int refX, int refY, int refVertStep, int refVertOff, int blkW, int blkH) {
+		int[] plane = ref.getPlaneData(0);
+		int lines = ref.getHeight() >> refVertStep;
+		int[] result = new int[blkW * blkH];
+		for (int i = 0; i < blkH; i++) {
+			for (int j = 0; j < blkW; j++) {
+				int x1 = clip((refX >> 1) + j, W), x2 = clip((refX >> 1) + j + (refX & 1), W);
+				int y1 = (clip((refY >> 1) + i, lines) << refVertStep) + refVertOff;
+				int y2 = (clip((refY >> 1) + i + (refY & 1), lines) << refVertStep) + refVertOff;
+				int a = plane[y1 * W + x1], b = plane[y1 * W + x2], c = plane[y2 * W + x1], d = plane[y2 * W + x2];
+				if ((refX & 1) == 0 && (refY & 1) == 0)
+					result[i * blkW + j] = a;
+				else if ((refY & 1) == 0)
+					result[i * blkW + j] = (a + b + 1) >> 1;
+				else if ((refX & 1) == 0)
+					result[i * blkW + j] = (a + c + 1) >> 1;
+				else
+					result[i * blkW + j] = (a + b + c + d + 3) >> 2;
+			}
+		}
+		return result;
+	}
+
+	private static int clip(int val, int size) {
+		return val < 0 ? 0 : (val >= size ? size - 1 : val);
+	}
+
+	private PaddedPicture randomReference(long seed) {
+		Random rnd = new Random(seed);
+		Picture pic = Picture.create(W, H, ColorSpace.YUV420);
+		for (int plane = 0; plane < 3; plane++) {
+			int[] data = pic.getPlaneData(plane);
+			for (int i = 0; i < data.length; i++)
+				data[i] = rnd.nextInt(256);
+		}
+		return PaddedPicture.create(pic, MPEGPred.PAD);
+	}
+
+	private static void assertArrayEquals(int[] expected, int[] actual) {
+		for (int i = 0; i < expected.length; i++)
+			assertEquals("Pixel " + i, expected[i], actual[i]);
+	}
+}
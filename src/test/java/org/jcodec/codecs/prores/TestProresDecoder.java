@@ -0,0 +1,134 @@
+package org.jcodec.codecs.prores;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.jcodec.codecs.prores.ProresEncoder.Profile;
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.model.ColorSpace;
+import org.jcodec.common.model.Picture;
+
+public class TestProresDecoder extends TestCase {
+
+    public void testParallel() throws Exception {
+        byte[] frame = encode(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int[][] expected = decode(new ProresDecoder(), frame);
+            int[][] actual = decode(new ProresDecoder(executor), frame);
+            for (int i = 0; i < 3; i++)
+                assertTrue(Arrays.equals(expected[i], actual[i]));
+
+            frame = encode(true);
+            expected = decode(new ProresDecoder(), frame);
+            actual = decode(new ProresDecoder(executor), frame);
+            for (int i = 0; i < 3; i++)
+                assertTrue(Arrays.equals(expected[i], actual[i]));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testCalledFromExecutorThread() throws Exception {
+        final byte[] frame = encode(false);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<int[][]> job = executor.submit(new Callable<int[][]>() {
+                public int[][] call() throws Exception {
+                    return decode(new ProresDecoder(executor), frame);
+                }
+            });
+            int[][] expected = decode(new ProresDecoder(), frame);
+            int[][] actual = job.get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < 3; i++)
+                assertTrue(Arrays.equals(expected[i], actual[i]));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testDownscale() throws Exception {
+        int[][] planes = new int[][] { new int[320 * 96], new int[160 * 96], new int[160 * 96] };
+        for (int p = 0; p < 3; p++) {
+            int width = p == 0 ? 320 : 160;
+            for (int i = 0; i < planes[p].length; i++)
+                planes[p][i] = 512 + (int) (300 * Math.sin((i % width) / (11.0 - p) + (i / width) / 7.0));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ProresEncoder(Profile.HQ).encodeFrame(out, new Picture(320, 96, planes, ColorSpace.YUV422_10));
+        byte[] frame = out.toByteArray();
+
+        int[][] full = decode(new ProresDecoder(), frame);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int downscale = 1; downscale < 4; downscale++) {
+                ProresDecoder decoder = new ProresDecoder();
+                decoder.setDownscale(downscale);
+                int[][] target = new int[][] { new int[320 * 96], new int[160 * 96], new int[160 * 96] };
+                Picture pic = decoder.decodeFrame(new Buffer(frame), target);
+                assertEquals(320 >> downscale, pic.getWidth());
+                assertEquals(96 >> downscale, pic.getHeight());
+
+                for (int p = 0; p < 3; p++) {
+                    int width = p == 0 ? 320 : 160, size = 1 << downscale;
+                    int rw = width >> downscale, rh = 96 >> downscale;
+                    // the frequencies dropped make a small difference
+                    int diff = 0;
+                    for (int y = 0; y < rh; y++) {
+                        for (int x = 0; x < rw; x++) {
+                            int sum = 0;
+                            for (int i = 0; i < size; i++)
+                                for (int j = 0; j < size; j++)
+                                    sum += full[p][(y * size + i) * width + x * size + j];
+                            int avg = sum / (size * size);
+                            assertTrue(Math.abs(target[p][y * rw + x] - avg) <= 8);
+                            diff += Math.abs(target[p][y * rw + x] - avg);
+                        }
+                    }
+                    assertTrue(diff <= 2 * rw * rh);
+                }
+
+                ProresDecoder parallel = new ProresDecoder(executor);
+                parallel.setDownscale(downscale);
+                int[][] actual = new int[][] { new int[320 * 96], new int[160 * 96], new int[160 * 96] };
+                parallel.decodeFrame(new Buffer(frame), actual);
+                for (int p = 0; p < 3; p++)
+                    assertTrue(Arrays.equals(target[p], actual[p]));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private int[][] decode(ProresDecoder decoder, byte[] frame) {
+        int[][] target = new int[][] { new int[320 * 96], new int[160 * 96], new int[160 * 96] };
+        decoder.decodeFrame(new Buffer(frame), target);
+        return target;
+    }
+
+    private byte[] encode(boolean interlaced) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProresEncoder encoder = new ProresEncoder(Profile.HQ);
+        if (interlaced)
+            encoder.encodeFrame(out, picture(320, 48, 1), picture(320, 48, 2));
+        else
+            encoder.encodeFrame(out, picture(320, 96, 0));
+        return out.toByteArray();
+    }
+
+    private Picture picture(int width, int height, int seed) {
+        int[][] planes = new int[][] { new int[width * height], new int[width * height / 2],
+                new int[width * height / 2] };
+        for (int p = 0; p < 3; p++)
+            for (int i = 0; i < planes[p].length; i++)
+                planes[p][i] = 4 + (i * (7 + p) + seed * 131 + (i / width) * 13) % 1015;
+        return new Picture(width, height, planes, ColorSpace.YUV422_10);
+    }
+}
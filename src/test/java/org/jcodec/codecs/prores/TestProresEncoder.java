@@ -4,6 +4,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.jcodec.codecs.prores.ProresEncoder.Profile;
 import org.jcodec.common.dct.DCTRef;
@@ -100,6 +106,99 @@ public class TestProresEncoder {
         // Assert.assertArrayEquals(V, result.getCr());
     }
 
+    @Test
+    public void testParallel() throws Exception {
+        int[][] planes = new int[][] { new int[320 * 96], new int[160 * 96], new int[160 * 96] };
+        for (int p = 0; p < 3; p++)
+            for (int i = 0; i < planes[p].length; i++)
+                planes[p][i] = 512 + (int) (200 * Math.sin(i / 17.0 + p));
+        Picture picture = new Picture(320, 96, planes, ColorSpace.YUV422_10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new ProresEncoder(Profile.HQ, executor).encodeFrame(out, picture);
+            ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+            new ProresEncoder(Profile.HQ, single).encodeFrame(out1, picture);
+            Assert.assertArrayEquals(out1.toByteArray(), out.toByteArray());
+
+            Picture result = new ProresDecoder().decodeFrame(new Buffer(out.toByteArray()), new int[][] {
+                    new int[320 * 96], new int[160 * 96], new int[160 * 96] });
+            for (int p = 0; p < 3; p++) {
+                long diff = 0;
+                for (int i = 0; i < planes[p].length; i++)
+                    diff += Math.abs(planes[p][i] - result.getPlaneData(p)[i]);
+                Assert.assertTrue(diff < 4 * planes[p].length);
+            }
+        } finally {
+            executor.shutdown();
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testCalledFromExecutorThread() throws Exception {
+        int[][] planes = new int[][] { new int[320 * 96], new int[160 * 96], new int[160 * 96] };
+        for (int p = 0; p < 3; p++)
+            for (int i = 0; i < planes[p].length; i++)
+                planes[p][i] = 512 + (int) (200 * Math.sin(i / 17.0 + p));
+        final Picture picture = new Picture(320, 96, planes, ColorSpace.YUV422_10);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> job = executor.submit(new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    new ProresEncoder(Profile.HQ, executor).encodeFrame(out, picture);
+                    return out.toByteArray();
+                }
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new ProresEncoder(Profile.HQ, executor).encodeFrame(out, picture);
+            Assert.assertArrayEquals(out.toByteArray(), job.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCodewordBits() throws Exception {
+        Codebook[] codebooks = new Codebook[] { ProresConsts.firstDCCodebook, ProresConsts.dcCodebooks[0],
+                ProresConsts.dcCodebooks[6], ProresConsts.runCodebooks[0], ProresConsts.runCodebooks[15],
+                ProresConsts.levCodebooks[0], ProresConsts.levCodebooks[9] };
+        for (Codebook codebook : codebooks) {
+            for (int val = 0; val < 2000; val++) {
+                // 8 codewords take as many bytes as one takes bits
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                BitstreamWriter writer = new BitstreamWriter(out);
+                for (int i = 0; i < 8; i++)
+                    ProresEncoder.writeCodeword(writer, codebook, val);
+                writer.flush();
+                Assert.assertEquals(ProresEncoder.codewordBits(codebook, val), out.size());
+            }
+        }
+    }
+
+    @Test
+    public void testPlaneBits() throws Exception {
+        Random random = new Random(7);
+        int[] qMat = new int[64];
+        for (int q = 1; q < 8; q++) {
+            Arrays.fill(qMat, 4 * q);
+            for (int i = 0; i < 100; i++) {
+                int[] coeffs = new int[8 << 6];
+                for (int j = 0; j < coeffs.length; j++)
+                    coeffs[j] = (j & 63) == 0 ? 16384 + random.nextInt(4000) - 2000 : (int) (random.nextGaussian()
+                            * (400 >> (j & 7)));
+                ProresEncoder.PlaneBuffer bytes = new ProresEncoder.PlaneBuffer();
+                ProresEncoder.onePlane(bytes, 8, qMat, ProresConsts.progressive_scan, coeffs);
+                Assert.assertEquals(bytes.size() << 3,
+                        ProresEncoder.onePlaneBits(8, qMat, ProresConsts.progressive_scan, coeffs));
+            }
+        }
+    }
+
     private int[] randomArray(int size, int off, int max) {
         int width = max - off;
         int[] result = new int[size];
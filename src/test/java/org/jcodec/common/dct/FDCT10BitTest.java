@@ -0,0 +1,64 @@
+package org.jcodec.common.dct;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FDCT10BitTest {
+
+    @Test
+    public void testFlat() {
+        int[] block = new int[64];
+        Arrays.fill(block, 512);
+        FDCT10Bit.fdct10(block, 0);
+
+        int[] expected = new int[64];
+        expected[0] = 16384;
+        assertArrayEquals(expected, block);
+    }
+
+    @Test
+    public void testPrecision8Bit() {
+        precision(0, 255);
+    }
+
+    @Test
+    public void testPrecision10Bit() {
+        precision(0, 1023);
+    }
+
+    @Test
+    public void testPrecisionSigned() {
+        precision(-1023, 1023);
+    }
+
+    private void precision(int min, int max) {
+        Random random = new Random(42);
+        long sqErr = 0, n = 0;
+        int maxErr = 0;
+        for (int i = 0; i < 10000; i++) {
+            int[] ref = new int[128];
+            for (int j = 0; j < 64; j++)
+                ref[j + 64] = min + random.nextInt(max - min + 1);
+            int[] block = Arrays.copyOfRange(ref, 64, 128);
+
+            DCTRef.fdct(ref, 64);
+            FDCT10Bit.fdct10(block, 0);
+
+            for (int j = 0; j < 64; j++) {
+                int err = block[j] - ref[j + 64];
+                maxErr = Math.max(maxErr, Math.abs(err));
+                sqErr += err * err;
+                n++;
+            }
+        }
+        // DCTRef rounds the negative coefficients up, that's most of the
+        // difference
+        assertTrue("max error " + maxErr, maxErr <= 3);
+        assertTrue("mean square error " + (double) sqErr / n, sqErr < n);
+    }
+}
@@ -0,0 +1,75 @@
+package org.jcodec.common.dct;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseIDCTTest {
+
+    @Test
+    public void testDownscaledDC() {
+        for (int dc = -2048; dc < 2048; dc += 7) {
+            int[] full = idct(new int[] { 0 }, new int[] { dc }, 0);
+            for (int downscale = 1; downscale < 4; downscale++)
+                assertArrayEquals(decimate(full, downscale), idct(new int[] { 0 }, new int[] { dc }, downscale));
+        }
+    }
+
+    @Test
+    public void testDownscaled() {
+        Random rnd = new Random(17);
+        for (int i = 0; i < 10000; i++) {
+            int n = 1 + rnd.nextInt(8);
+            int[] ind = new int[n], level = new int[n];
+            ind[0] = 0;
+            level[0] = rnd.nextInt(4096) - 1024;
+            for (int j = 1; j < n; j++) {
+                // coefficients of a natural picture get smaller towards high
+                // frequencies
+                ind[j] = 1 + rnd.nextInt(63);
+                level[j] = (rnd.nextInt(512) - 256) / (1 + (ind[j] >> 3) + (ind[j] & 7));
+            }
+
+            int[] full = idct(ind, level, 0);
+            for (int downscale = 1; downscale < 4; downscale++) {
+                int[] expected = decimate(full, downscale), actual = idct(ind, level, downscale);
+                for (int j = 0; j < expected.length; j++)
+                    assertTrue("Block " + i + " downscale " + downscale + " pixel " + j + ": " + expected[j] + " vs "
+                            + actual[j], Math.abs(expected[j] - actual[j]) <= 1);
+            }
+        }
+    }
+
+    private static int[] idct(int[] ind, int[] level, int downscale) {
+        int[] block = new int[64];
+        SparseIDCT.start(block, level[0], downscale);
+        for (int i = 1; i < ind.length; i++)
+            SparseIDCT.coeff(block, ind[i], level[i], downscale);
+        SparseIDCT.finish(block, downscale);
+
+        int[] result = new int[64 >> (downscale << 1)];
+        System.arraycopy(block, 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Averages full size block over 2^downscale x 2^downscale areas
+     */
+    private static int[] decimate(int[] block, int downscale) {
+        int size = 8 >> downscale, area = 1 << (downscale << 1);
+        int[] result = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int sum = 0;
+                for (int j = 0; j < (1 << downscale); j++)
+                    for (int k = 0; k < (1 << downscale); k++)
+                        sum += block[(((y << downscale) + j) << 3) + (x << downscale) + k];
+                result[y * size + x] = (int) Math.floor((double) sum / area + 0.5);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package org.jcodec.common.model;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class TestPaddedPicture extends TestCase {
+
+	public void testEdgeExtension() {
+		int[] luma = new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+		int[] cb = new int[] { 21, 22, 23, 24 };
+		int[] cr = new int[] { 31, 32, 33, 34 };
+		Picture pic = new Picture(4, 4, new int[][] { luma, cb, cr }, ColorSpace.YUV420);
+
+		PaddedPicture padded = PaddedPicture.create(pic, 4);
+		assertSame(luma, padded.getPlaneData(0));
+		assertEquals(12, padded.getPaddedStride(0));
+		assertEquals(6, padded.getPaddedStride(1));
+
+		int[][] expected = new int[][] { { 1, 1, 1, 2, 3, 4, 4, 4 }, { 1, 1, 1, 2, 3, 4, 4, 4 },
+				{ 5, 5, 5, 6, 7, 8, 8, 8 }, { 13, 13, 13, 14, 15, 16, 16, 16 },
+				{ 13, 13, 13, 14, 15, 16, 16, 16 } };
+		int[] lines = new int[] { 0, 3, 5, 7, 11 };
+		int[] plane = padded.getPaddedPlaneData(0);
+		for (int i = 0; i < lines.length; i++) {
+			for (int j = 0; j < 8; j++)
+				assertEquals(expected[i][j], plane[lines[i] * 12 + j + 2]);
+		}
+
+		int[] chroma = padded.getPaddedPlaneData(2);
+		assertEquals(31, chroma[0]);
+		assertEquals(32, chroma[5]);
+		assertEquals(33, chroma[30]);
+		assertEquals(34, chroma[35]);
+		assertEquals(32, chroma[2 * 6 + 3]);
+	}
+
+	public void testFillRows() {
+		int[] luma = new int[64];
+		for (int i = 0; i < luma.length; i++)
+			luma[i] = i;
+		Picture pic = new Picture(8, 8, new int[][] { luma, new int[16], new int[16] }, ColorSpace.YUV420);
+
+		PaddedPicture full = PaddedPicture.create(pic, 4);
+		PaddedPicture rows = new PaddedPicture(pic, Picture.create(16, 16, ColorSpace.YUV420), 4, false);
+		rows.fillRows(4);
+		rows.waitForRows(4);
+		rows.fillRows(8);
+		rows.waitForRows(8);
+		for (int plane = 0; plane < 3; plane++)
+			assertTrue(Arrays.equals(full.getPaddedPlaneData(plane), rows.getPaddedPlaneData(plane)));
+	}
+
+	public void testWaitForFailedRows() {
+		Picture pic = Picture.create(8, 8, ColorSpace.YUV420);
+		PaddedPicture padded = new PaddedPicture(pic, Picture.create(16, 16, ColorSpace.YUV420), 4, false);
+		padded.fillRows(4);
+		padded.fail(new IllegalStateException());
+		padded.waitForRows(4);
+		try {
+			padded.waitForRows(8);
+			fail();
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
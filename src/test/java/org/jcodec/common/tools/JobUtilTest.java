@@ -0,0 +1,64 @@
+package org.jcodec.common.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class JobUtilTest {
+
+    @Test
+    public void testJoinRunsEveryJobBeforeRethrowing() throws Exception {
+        final AtomicInteger done = new AtomicInteger();
+        List<FutureTask<Object>> jobs = new ArrayList<FutureTask<Object>>();
+        for (int i = 0; i < 4; i++) {
+            final int n = i;
+            jobs.add(new FutureTask<Object>(new Callable<Object>() {
+                public Object call() throws Exception {
+                    done.incrementAndGet();
+                    if (n == 1)
+                        throw new IOException("slice " + n);
+                    return null;
+                }
+            }));
+        }
+        try {
+            JobUtil.join(jobs);
+            fail();
+        } catch (IOException e) {
+            assertEquals("slice 1", e.getMessage());
+        }
+        assertEquals(4, done.get());
+    }
+
+    @Test
+    public void testJoinFromWorkerOfSamePool() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            FutureTask<Integer> outer = JobUtil.submit(executor, new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    FutureTask<Integer> inner = JobUtil.submit(executor, new Callable<Integer>() {
+                        public Integer call() {
+                            return 42;
+                        }
+                    });
+                    return JobUtil.join(inner);
+                }
+            });
+            assertEquals(42, (int) JobUtil.join(outer));
+            assertTrue(outer.isDone());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
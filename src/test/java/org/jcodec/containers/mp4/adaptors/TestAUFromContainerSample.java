@@ -0,0 +1,64 @@
+package org.jcodec.containers.mp4.adaptors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.jcodec.codecs.h264.io.model.NALUnit;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+
+public class TestAUFromContainerSample extends TestCase {
+
+	private static final byte[] SPS = new byte[] { 0x67, 0x42, 0x00, 0x1e };
+	private static final byte[] IDR = new byte[] { 0x65, (byte) 0x88, 0x00, 0x00, 0x03, 0x01, 0x20 };
+	private static final byte[] IDR_RBSP = new byte[] { 0x65, (byte) 0x88, 0x00, 0x00, 0x01, 0x20 };
+	private static final byte[] SLICE = new byte[] { 0x41, (byte) 0x9a, 0x11, 0x22 };
+
+	public void testSlices() throws IOException {
+		final List<NALUnitType> nonSlice = new ArrayList<NALUnitType>();
+		AUFromContainerSample au = new AUFromContainerSample(sample(SPS, IDR, SLICE)) {
+			protected void processNonSlice(NALUnit nu, InputStream is) throws IOException {
+				nonSlice.add(nu.type);
+			}
+		};
+
+		assertTrue(Arrays.equals(IDR_RBSP, IOUtils.toByteArray(au.nextNALUnit())));
+		assertTrue(Arrays.equals(SLICE, IOUtils.toByteArray(au.nextNALUnit())));
+		assertNull(au.nextNALUnit());
+		assertEquals(Arrays.asList(NALUnitType.SPS), nonSlice);
+	}
+
+	public void testEmptyUnit() throws IOException {
+		AUFromContainerSample au = new AUFromContainerSample(sample(IDR, new byte[0], SLICE));
+
+		assertTrue(Arrays.equals(IDR_RBSP, IOUtils.toByteArray(au.nextNALUnit())));
+		assertTrue(Arrays.equals(SLICE, IOUtils.toByteArray(au.nextNALUnit())));
+		assertNull(au.nextNALUnit());
+	}
+
+	public void testTruncatedUnit() throws IOException {
+		byte[] data = sample(IDR, SLICE);
+		AUFromContainerSample au = new AUFromContainerSample(Arrays.copyOf(data, data.length - 1));
+
+		assertTrue(Arrays.equals(IDR_RBSP, IOUtils.toByteArray(au.nextNALUnit())));
+		assertTrue(Arrays.equals(Arrays.copyOf(SLICE, SLICE.length - 1), IOUtils.toByteArray(au.nextNALUnit())));
+		assertNull(au.nextNALUnit());
+	}
+
+	private static byte[] sample(byte[]... units) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		for (byte[] unit : units) {
+			out.writeInt(unit.length);
+			out.write(unit);
+		}
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,131 @@
+package org.jcodec.containers.mp4.adaptors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.codecs.h264.H264Decoder;
+import org.jcodec.codecs.h264.annexb.AnnexBDemuxer;
+import org.jcodec.codecs.h264.annexb.NALUnitReader;
+import org.jcodec.codecs.h264.index.H264Index;
+import org.jcodec.codecs.h264.index.H264Indexer;
+import org.jcodec.codecs.h264.io.model.NALUnitType;
+import org.jcodec.codecs.h264.io.model.PictureParameterSet;
+import org.jcodec.codecs.h264.io.model.SeqParameterSet;
+import org.jcodec.codecs.h264.mp4.AvcCBox;
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.io.FileRAInputStream;
+import org.jcodec.common.io.FileRAOutputStream;
+import org.jcodec.common.model.Picture;
+import org.jcodec.common.model.Size;
+import org.jcodec.containers.mp4.MP4Demuxer;
+import org.jcodec.containers.mp4.MP4Muxer;
+import org.jcodec.containers.mp4.MP4Muxer.CompressedTrack;
+import org.jcodec.containers.mp4.MP4Packet;
+
+public class TestH264Adaptor extends TestCase {
+
+	public void testSeek() throws Exception {
+		byte[] data = FileUtils.readFileToByteArray(new File("src/test/resources/h264/seq_poc0/test.264"));
+
+		List<Integer> hashes = new ArrayList<Integer>();
+		H264Decoder sequential = new H264Decoder(new AnnexBDemuxer(new ByteArrayInputStream(data)));
+		Picture pic;
+		while ((pic = sequential.nextPicture()) != null)
+			hashes.add(Arrays.hashCode(pic.getPlaneData(0)));
+
+		File mp4 = File.createTempFile("seek", ".mp4");
+		try {
+			H264Index index = H264Indexer.index(new Buffer(data));
+			writeMP4(data, index, mp4);
+
+			FileRAInputStream input = new FileRAInputStream(mp4);
+			try {
+				MP4Demuxer demuxer = new MP4Demuxer(input);
+				H264Decoder decoder = new H264Decoder(new H264Adaptor(
+						(MP4Demuxer.FramesTrack) demuxer.getVideoTrack()));
+
+				// the stream has B pictures, so the samples are stored out of
+				// display order
+				for (int frameNo : new int[] { 30, 3, 42, 0, 17, 18 }) {
+					assertTrue(decoder.seek(frameNo));
+					pic = decoder.nextPicture();
+					assertEquals("Frame " + frameNo, hashes.get(frameNo).intValue(),
+							Arrays.hashCode(pic.getPlaneData(0)));
+					decoder.releasePicture(pic);
+				}
+
+				assertFalse(decoder.seek(hashes.size()));
+			} finally {
+				input.close();
+			}
+		} finally {
+			mp4.delete();
+		}
+	}
+
+	/**
+	 * Puts every access unit of the Annex B stream into a sample, the
+	 * composition time of the sample is its position in display order
+	 */
+	private void writeMP4(byte[] data, H264Index index, File file) throws Exception {
+		List<SeqParameterSet> spsList = new ArrayList<SeqParameterSet>();
+		List<PictureParameterSet> ppsList = new ArrayList<PictureParameterSet>();
+		List<byte[]> samples = new ArrayList<byte[]>();
+
+		for (int i = 0; i < index.size(); i++) {
+			int end = i < index.size() - 1 ? (int) index.getOffset(i + 1) : data.length;
+			NALUnitReader reader = new NALUnitReader(new Buffer(data, (int) index.getOffset(i), end));
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			DataOutputStream sample = new DataOutputStream(baos);
+			Buffer nal;
+			while ((nal = reader.nextNALUnitBuffer()) != null) {
+				// the last unit ends with the leading zero of the next 4 byte
+				// start code
+				while (nal.buffer[nal.limit - 1] == 0)
+					nal.limit--;
+				NALUnitType type = NALUnitType.fromValue(nal.buffer[nal.pos] & 0x1f);
+				if (type == NALUnitType.SPS) {
+					spsList.add(SeqParameterSet.read(payload(nal)));
+				} else if (type == NALUnitType.PPS) {
+					ppsList.add(PictureParameterSet.read(payload(nal)));
+				} else {
+					sample.writeInt(nal.remaining());
+					sample.write(nal.buffer, nal.pos, nal.remaining());
+				}
+			}
+			samples.add(baos.toByteArray());
+		}
+
+		FileRAOutputStream out = new FileRAOutputStream(file);
+		try {
+			SeqParameterSet sps = spsList.get(0);
+			MP4Muxer muxer = new MP4Muxer(out);
+			CompressedTrack track = muxer.addVideoTrack("avc1", new Size((sps.pic_width_in_mbs_minus1 + 1) << 4,
+					(sps.pic_height_in_map_units_minus1 + 1) << 4), "jcodec", 25);
+			track.getEntries().get(0).add(new AvcCBox(spsList, ppsList));
+
+			for (int i = 0; i < samples.size(); i++) {
+				int pts = index.getDisplayOrder(i) + 2;
+				track.addFrame(new MP4Packet(new Buffer(samples.get(i)), pts, 25, 1, i, index.isIDR(i), null, pts,
+						0));
+			}
+			muxer.writeHeader();
+		} finally {
+			out.close();
+		}
+	}
+
+	private InputStream payload(Buffer nal) {
+		Buffer unescaped = NALUnitReader.unescape(nal);
+		return new ByteArrayInputStream(unescaped.buffer, unescaped.pos + 1, unescaped.remaining() - 1);
+	}
+}
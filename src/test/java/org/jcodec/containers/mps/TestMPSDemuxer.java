@@ -0,0 +1,84 @@
+package org.jcodec.containers.mps;
+
+import static org.jcodec.codecs.mpeg12.TestMPEGES.pictures;
+import static org.jcodec.codecs.mpeg12.TestMPEGES.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.common.io.ByteArrayRAInputStream;
+import org.jcodec.common.model.Packet;
+import org.jcodec.containers.mps.MPSDemuxer.PES;
+
+public class TestMPSDemuxer extends TestCase {
+
+	public void testSplitStartCodes() throws Exception {
+		byte[] es = FileUtils.readFileToByteArray(new File("src/test/resources/mpeg12/ipb.m1v"));
+
+		// the first packet moves the start codes to every offset within the
+		// packets, the short packets split every start code between two
+		for (int first = 0; first < 4; first++) {
+			for (int size : new int[] { 1, 2, 3, 5, 7, 2000 })
+				assertPictures("first " + first + " size " + size, pictures(es), es, first, size);
+		}
+	}
+
+	public void testGrowing() throws Exception {
+		// a picture many times larger than the initial buffer in the middle
+		byte[] es = stream(1000, 300000, 5000, 70000);
+		assertPictures("growing", pictures(es), es, 0, 60000);
+	}
+
+	private static void assertPictures(String message, List<byte[]> expected, byte[] es, int first, int size)
+			throws IOException {
+		MPSDemuxer demuxer = new MPSDemuxer(new ByteArrayRAInputStream(programStream(es, first, size)));
+		PES video = demuxer.getVideoTracks().get(0);
+
+		// the pictures are all read first, so that the data of the earlier
+		// ones overwritten by the later reads is caught
+		Packet[] frames = new Packet[expected.size()];
+		for (int i = 0; i < frames.length; i++) {
+			frames[i] = video.getFrame();
+			assertNotNull(message + " picture " + i, frames[i]);
+		}
+		assertNull(message, video.getFrame());
+
+		for (int i = 0; i < frames.length; i++)
+			assertTrue(message + " picture " + i, Arrays.equals(expected.get(i), frames[i].getData().toArray()));
+	}
+
+	/**
+	 * Program stream carrying the elementary stream in the video packets of
+	 * the given size with an audio packet and a pack header in between
+	 */
+	private static byte[] programStream(byte[] es, int first, int size) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		for (int pos = 0; pos < es.length;) {
+			int len = Math.min(pos == 0 && first > 0 ? first : size, es.length - pos);
+
+			out.writeInt(0x1ba);
+			out.write(new byte[] { 0x44, 0, 4, 0, 4, 1, 1, (byte) 0x89, (byte) 0xc3, (byte) 0xf8 });
+
+			out.writeInt(0x1c0);
+			out.writeShort(3 + 10);
+			out.write(new byte[] { (byte) 0x80, 0, 0 });
+			out.write(new byte[10]);
+
+			out.writeInt(0x1e0);
+			out.writeShort(3 + len);
+			out.write(new byte[] { (byte) 0x80, 0, 0 });
+			out.write(es, pos, len);
+			pos += len;
+		}
+		out.writeInt(0x1b9);
+		return bos.toByteArray();
+	}
+}
@@ -0,0 +1,102 @@
+package org.jcodec.containers.mps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.jcodec.common.io.ByteArrayRAInputStream;
+
+public class TestMPSIndexer extends TestCase {
+
+	public void testIndex() throws Exception {
+		long[] offsets = new long[6];
+		byte[] stream = stream(new long[] { 9000, 3000, 6000, -1, 15000, 12000 }, offsets);
+		MPSIndex index = new MPSIndexer(new ByteArrayRAInputStream(stream)).call();
+
+		assertEquals(5, index.size());
+		assertEquals(stream.length, index.getScanned());
+		assertEquals(3000, index.getPts(0));
+		assertEquals(offsets[1], index.getOffset(0));
+		assertEquals(offsets[0], index.getOffset(2));
+		assertEquals(offsets[4], index.getOffset(4));
+
+		assertEquals(0, index.find(0));
+		assertEquals(1, index.find(6000));
+		assertEquals(3, index.find(10000));
+		assertEquals(-1, index.find(15001));
+	}
+
+	public void testGrowing() throws Exception {
+		long[] offsets = new long[6];
+		byte[] stream = stream(new long[] { 3000, 6000, 9000, 12000, 15000, 18000 }, offsets);
+
+		// the recording is cut in the middle of the fourth packet
+		byte[] part = Arrays.copyOf(stream, (int) offsets[3] + 20);
+		MPSIndex first = new MPSIndexer(new ByteArrayRAInputStream(part)).call();
+		assertEquals(3, first.size());
+		assertEquals(offsets[3], first.getScanned());
+
+		MPSIndex index = new MPSIndexer(new ByteArrayRAInputStream(stream), first).call();
+		assertEquals(6, index.size());
+		for (int i = 0; i < 6; i++) {
+			assertEquals(3000 * (i + 1), index.getPts(i));
+			assertEquals(offsets[i], index.getOffset(i));
+		}
+	}
+
+	public void testPersist() throws Exception {
+		MPSIndex index = new MPSIndexer(new ByteArrayRAInputStream(stream(new long[] { 3000, 6000, 9000 },
+				new long[3]))).call();
+
+		File file = File.createTempFile("index", ".bin");
+		try {
+			index.write(file);
+			MPSIndex read = MPSIndex.read(file);
+
+			assertEquals(index.size(), read.size());
+			assertEquals(index.getScanned(), read.getScanned());
+			for (int i = 0; i < index.size(); i++) {
+				assertEquals(index.getPts(i), read.getPts(i));
+				assertEquals(index.getOffset(i), read.getOffset(i));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Program stream with a pack header and an audio packet before each video
+	 * packet, -1 marks the packet without PTS
+	 */
+	private static byte[] stream(long[] pts, long[] offsets) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		for (int i = 0; i < pts.length; i++) {
+			out.writeInt(0x1ba);
+			out.write(new byte[] { 0x44, 0, 4, 0, 4, 1, 1, (byte) 0x89, (byte) 0xc3, (byte) 0xf8 });
+
+			out.writeInt(0x1c0);
+			out.writeShort(3 + 50);
+			out.write(new byte[] { (byte) 0x80, 0, 0 });
+			out.write(new byte[50]);
+
+			offsets[i] = out.size();
+			int headerLen = pts[i] == -1 ? 0 : 5;
+			out.writeInt(0x1e0);
+			out.writeShort(3 + headerLen + 100);
+			out.write(new byte[] { (byte) 0x80, (byte) (pts[i] == -1 ? 0 : 0x80), (byte) headerLen });
+			if (pts[i] != -1) {
+				out.write((int) (0x21 | ((pts[i] >> 29) & 0xe)));
+				out.writeShort((int) (((pts[i] >> 14) & 0xfffe) | 1));
+				out.writeShort((int) (((pts[i] << 1) & 0xfffe) | 1));
+			}
+			out.write(new byte[100]);
+		}
+		out.writeInt(0x1b9);
+		return bos.toByteArray();
+	}
+}
@@ -0,0 +1,202 @@
+package org.jcodec.containers.mps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jcodec.common.io.ByteArrayRAInputStream;
+import org.jcodec.containers.mps.MPSDemuxer.PESPacket;
+import org.jcodec.containers.mps.MTSDemuxer.MTSProgram;
+import org.jcodec.containers.mps.MTSDemuxer.MTSStream;
+
+public class TestMTSDemuxer extends TestCase {
+	private ByteArrayOutputStream out = new ByteArrayOutputStream();
+	private int[] cc = new int[8192];
+
+	public void testPrograms() throws Exception {
+		tables();
+		for (int i = 0; i < 4; i++) {
+			pes(0x101, 0xe0, 3000 * i, payload(i, 1000), false);
+			pes(0x201, 0xe0, 3000 * i, payload(i + 10, 400), true);
+		}
+
+		MTSDemuxer demuxer = new MTSDemuxer(new ByteArrayRAInputStream(out.toByteArray()));
+		List<MTSProgram> programs = demuxer.getPrograms();
+		assertEquals(2, programs.size());
+		assertEquals(2, demuxer.getVideoTracks().size());
+		assertEquals(1, demuxer.getAudioTracks().size());
+
+		MTSStream second = programs.get(1).getStreams().get(0);
+		assertEquals(0x201, second.getPid());
+		for (int i = 0; i < 4; i++) {
+			PESPacket pkt = second.nextPacket();
+			assertEquals(3000 * i, pkt.pts);
+			assertTrue(Arrays.equals(payload(i + 10, 400), pkt.data.toArray()));
+		}
+		assertNull(second.nextPacket());
+	}
+
+	public void testContinuityGap() throws Exception {
+		tables();
+		pes(0x101, 0xe0, 0, payload(0, 1000), false);
+		// the last packet of this PES is lost
+		cc[0x101] = (cc[0x101] + 1) & 0xf;
+		pes(0x101, 0xe0, 3000, payload(1, 1000), false);
+		pes(0x101, 0xe0, 6000, payload(2, 1000), false);
+
+		MTSStream video = new MTSDemuxer(new ByteArrayRAInputStream(out.toByteArray())).getVideoTracks().get(0);
+		PESPacket pkt = video.nextPacket();
+		assertEquals(3000, pkt.pts);
+		assertTrue(Arrays.equals(payload(1, 1000), pkt.data.toArray()));
+		assertEquals(6000, video.nextPacket().pts);
+		assertNull(video.nextPacket());
+	}
+
+	public void testSelected() throws Exception {
+		tables();
+		for (int i = 0; i < 10; i++) {
+			pes(0x201, 0xe0, 3000 * i, payload(i, 1000), false);
+			pes(0x202, 0xc0, 3000 * i, payload(i + 10, 300), true);
+		}
+
+		MTSDemuxer demuxer = new MTSDemuxer(new ByteArrayRAInputStream(out.toByteArray()));
+		MTSStream video = demuxer.getPrograms().get(1).getStreams().get(0);
+		MTSStream audio = demuxer.getPrograms().get(1).getStreams().get(1);
+		video.select();
+		audio.select();
+
+		// the audio packets passed by while reading video are kept
+		for (int i = 0; i < 10; i++)
+			assertEquals(3000 * i, video.nextPacket().pts);
+		assertNull(video.nextPacket());
+		for (int i = 0; i < 10; i++) {
+			PESPacket pkt = audio.nextPacket();
+			assertEquals(3000 * i, pkt.pts);
+			assertTrue(Arrays.equals(payload(i + 10, 300), pkt.data.toArray()));
+		}
+		assertNull(audio.nextPacket());
+	}
+
+	public void testSelectedStreamQueue() throws Exception {
+		tables();
+		int count = MTSDemuxer.MAX_QUEUED + 50;
+		for (int i = 0; i < count; i++) {
+			pes(0x201, 0xe0, 3000 * i, payload(i, 200), true);
+			pes(0x202, 0xc0, 3000 * i, payload(i + 10, 100), true);
+		}
+
+		MTSDemuxer demuxer = new MTSDemuxer(new ByteArrayRAInputStream(out.toByteArray()));
+		MTSStream video = demuxer.getPrograms().get(1).getStreams().get(0);
+		MTSStream audio = demuxer.getPrograms().get(1).getStreams().get(1);
+		audio.select();
+
+		for (int i = 0; i < count; i++)
+			assertEquals(3000 * i, video.nextPacket().pts);
+		assertNull(video.nextPacket());
+
+		// the queue of the selected stream grows past the limit
+		assertEquals(count, audio.getQueued());
+		for (int i = 0; i < count; i++) {
+			PESPacket pkt = audio.nextPacket();
+			assertEquals(3000 * i, pkt.pts);
+			assertTrue(Arrays.equals(payload(i + 10, 100), pkt.data.toArray()));
+		}
+		assertNull(audio.nextPacket());
+	}
+
+	public void testUnselectedStreamQueue() throws Exception {
+		tables();
+		int count = MTSDemuxer.MAX_QUEUED + 50;
+		for (int i = 0; i < count; i++) {
+			pes(0x201, 0xe0, 3000 * i, payload(i, 200), true);
+			pes(0x202, 0xc0, 3000 * i, payload(i + 10, 100), true);
+		}
+
+		MTSDemuxer demuxer = new MTSDemuxer(new ByteArrayRAInputStream(out.toByteArray()));
+		MTSStream video = demuxer.getPrograms().get(1).getStreams().get(0);
+		MTSStream audio = demuxer.getPrograms().get(1).getStreams().get(1);
+		video.select();
+
+		// read without being selected, then left behind
+		assertEquals(0, audio.nextPacket().pts);
+		for (int i = 0; i < count; i++)
+			assertEquals(3000 * i, video.nextPacket().pts);
+		assertNull(video.nextPacket());
+
+		// only the latest packets of the stream left behind are kept
+		assertEquals(MTSDemuxer.MAX_QUEUED, audio.getQueued());
+		for (int i = count - MTSDemuxer.MAX_QUEUED; i < count; i++) {
+			PESPacket pkt = audio.nextPacket();
+			assertEquals(3000 * i, pkt.pts);
+			assertTrue(Arrays.equals(payload(i + 10, 100), pkt.data.toArray()));
+		}
+		assertNull(audio.nextPacket());
+	}
+
+	private static byte[] payload(int seed, int len) {
+		byte[] result = new byte[len];
+		for (int i = 0; i < len; i++)
+			result[i] = (byte) (seed + i * 7);
+		return result;
+	}
+
+	private void tables() throws IOException {
+		section(0, new byte[] { 0, (byte) 0xb0, 17, 0, 1, (byte) 0xc1, 0, 0, 0, 1, (byte) 0xe1, 0x00, 0, 2,
+				(byte) 0xe2, 0x00, 0, 0, 0, 0 });
+		section(0x100, new byte[] { 2, (byte) 0xb0, 18, 0, 1, (byte) 0xc1, 0, 0, (byte) 0xe1, 0x01, (byte) 0xf0, 0,
+				2, (byte) 0xe1, 0x01, (byte) 0xf0, 0, 0, 0, 0, 0 });
+		section(0x200, new byte[] { 2, (byte) 0xb0, 23, 0, 2, (byte) 0xc1, 0, 0, (byte) 0xe2, 0x01, (byte) 0xf0, 0,
+				0x1b, (byte) 0xe2, 0x01, (byte) 0xf0, 0, 0x0f, (byte) 0xe2, 0x02, (byte) 0xf0, 0, 0, 0, 0, 0 });
+	}
+
+	private void section(int pid, byte[] section) throws IOException {
+		byte[] payload = new byte[184];
+		Arrays.fill(payload, (byte) 0xff);
+		payload[0] = 0;
+		System.arraycopy(section, 0, payload, 1, section.length);
+		packet(pid, true, payload, 0, 184);
+	}
+
+	private void pes(int pid, int streamId, long pts, byte[] data, boolean bounded) throws IOException {
+		byte[] pes = new byte[14 + data.length];
+		pes[2] = 1;
+		pes[3] = (byte) streamId;
+		if (bounded) {
+			pes[4] = (byte) ((data.length + 8) >> 8);
+			pes[5] = (byte) (data.length + 8);
+		}
+		pes[6] = (byte) 0x80;
+		pes[7] = (byte) 0x80;
+		pes[8] = 5;
+		pes[9] = (byte) (0x21 | ((pts >> 29) & 0xe));
+		pes[10] = (byte) (pts >> 22);
+		pes[11] = (byte) ((pts >> 14) | 1);
+		pes[12] = (byte) (pts >> 7);
+		pes[13] = (byte) ((pts << 1) | 1);
+		System.arraycopy(data, 0, pes, 14, data.length);
+
+		for (int i = 0; i < pes.length; i += 184)
+			packet(pid, i == 0, pes, i, Math.min(184, pes.length - i));
+	}
+
+	private void packet(int pid, boolean start, byte[] data, int off, int len) throws IOException {
+		byte[] packet = new byte[188];
+		packet[0] = 0x47;
+		packet[1] = (byte) ((start ? 0x40 : 0) | (pid >> 8));
+		packet[2] = (byte) pid;
+		if (len < 184) {
+			// adaptation field made of stuffing
+			packet[3] = (byte) (0x30 | cc[pid]);
+			packet[4] = (byte) (183 - len);
+			Arrays.fill(packet, 6, 188 - len, (byte) 0xff);
+		} else {
+			packet[3] = (byte) (0x10 | cc[pid]);
+		}
+		System.arraycopy(data, off, packet, 188 - len, len);
+		cc[pid] = (cc[pid] + 1) & 0xf;
+		out.write(packet);
+	}
+}
@@ -0,0 +1,176 @@
+package org.jcodec.containers.mps;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.jcodec.common.io.Buffer;
+import org.jcodec.common.io.ByteArrayRAInputStream;
+import org.jcodec.common.io.ByteRAOutputStream;
+import org.jcodec.common.model.Packet;
+import org.jcodec.containers.mps.MPSDemuxer.PESPacket;
+import org.jcodec.containers.mps.MTSDemuxer.MTSStream;
+
+public class TestMTSMuxer extends TestCase {
+
+	public void testRoundTrip() throws Exception {
+		ByteRAOutputStream out = new ByteRAOutputStream();
+		MTSMuxer muxer = new MTSMuxer(out);
+		int video = muxer.addTrack(MTSMuxer.MPEG2_VIDEO);
+		int audio = muxer.addTrack(MTSMuxer.AAC);
+		for (int i = 0; i < 10; i++) {
+			muxer.addFrame(video, packet(payload(i, 500 + 1000 * i), 3003 * i, i % 5 == 0));
+			muxer.addFrame(audio, packet(payload(i + 100, 300), 3003 * i, true));
+		}
+		muxer.flush();
+		byte[] ts = out.toByteArray();
+		assertEquals(0, ts.length % 188);
+
+		MTSDemuxer demuxer = new MTSDemuxer(new ByteArrayRAInputStream(ts));
+		assertEquals(1, demuxer.getPrograms().size());
+		MTSStream v = demuxer.getVideoTracks().get(0);
+		assertEquals(MTSMuxer.MPEG2_VIDEO, v.getStreamType());
+		for (int i = 0; i < 10; i++) {
+			PESPacket pkt = v.nextPacket();
+			assertEquals(0xe0, pkt.streamId);
+			assertEquals(3003 * i + 63000, pkt.pts);
+			assertTrue(Arrays.equals(payload(i, 500 + 1000 * i), pkt.data.toArray()));
+		}
+		assertNull(v.nextPacket());
+
+		MTSStream a = new MTSDemuxer(new ByteArrayRAInputStream(ts)).getAudioTracks().get(0);
+		for (int i = 0; i < 10; i++) {
+			PESPacket pkt = a.nextPacket();
+			assertEquals(0xc0, pkt.streamId);
+			assertTrue(Arrays.equals(payload(i + 100, 300), pkt.data.toArray()));
+		}
+		assertNull(a.nextPacket());
+	}
+
+	public void testTableCrc() throws Exception {
+		ByteRAOutputStream out = new ByteRAOutputStream();
+		MTSMuxer muxer = new MTSMuxer(out);
+		muxer.addFrame(muxer.addTrack(MTSMuxer.H264), packet(payload(0, 100), 0, true));
+		muxer.flush();
+		byte[] ts = out.toByteArray();
+
+		// PAT and PMT, CRC of a section with it's CRC is 0
+		for (int p = 0; p < 376; p += 188) {
+			int len = 3 + (((ts[p + 6] & 0xf) << 8) | (ts[p + 7] & 0xff));
+			assertEquals(0, MTSMuxer.crc32(ts, p + 5, len));
+		}
+	}
+
+	public void testRandomAccess() throws Exception {
+		ByteRAOutputStream out = new ByteRAOutputStream();
+		MTSMuxer muxer = new MTSMuxer(out);
+		int video = muxer.addTrack(MTSMuxer.H264);
+		int audio = muxer.addTrack(MTSMuxer.AAC);
+		boolean[] key = new boolean[] { true, false, false, true, false };
+		for (int i = 0; i < key.length; i++) {
+			muxer.addFrame(video, packet(payload(i, 1000), 3003 * i, key[i]));
+			muxer.addFrame(audio, packet(payload(i, 100), 3003 * i, false));
+		}
+		muxer.flush();
+		byte[] ts = out.toByteArray();
+
+		// the first packets of the video frames, in order
+		int frame = 0;
+		for (int p = 0; p < ts.length; p += 188) {
+			int pid = ((ts[p + 1] & 0x1f) << 8) | (ts[p + 2] & 0xff);
+			boolean start = (ts[p + 1] & 0x40) != 0, adapt = (ts[p + 3] & 0x20) != 0;
+			boolean randomAccess = adapt && ts[p + 4] > 0 && (ts[p + 5] & 0x40) != 0;
+			if (pid == 0x100 && start)
+				assertEquals("Frame " + frame, key[frame++], randomAccess);
+			else
+				assertFalse(randomAccess);
+		}
+		assertEquals(key.length, frame);
+	}
+
+	public void testDts() throws Exception {
+		ByteRAOutputStream out = new ByteRAOutputStream();
+		MTSMuxer muxer = new MTSMuxer(out);
+		int video = muxer.addTrack(MTSMuxer.H264);
+		// I P B B in decoding order
+		long[] pts = new long[] { 3003, 12012, 6006, 9009 };
+		long[] dts = new long[] { 0, 3003, 6006, 9009 };
+		for (int i = 0; i < pts.length; i++)
+			muxer.addFrame(video, packet(payload(i, 1000), pts[i], i == 0), dts[i]);
+		muxer.flush();
+		byte[] ts = out.toByteArray();
+
+		int frame = 0;
+		for (int p = 0; p < ts.length; p += 188) {
+			int pid = ((ts[p + 1] & 0x1f) << 8) | (ts[p + 2] & 0xff);
+			if (pid != 0x100 || (ts[p + 1] & 0x40) == 0)
+				continue;
+			int adapt = (ts[p + 3] & 0x20) != 0 ? 1 + (ts[p + 4] & 0xff) : 0;
+			// PCR of the frame is it's DTS
+			assertTrue(adapt > 6 && (ts[p + 5] & 0x10) != 0);
+			long pcr = ((ts[p + 6] & 0xffL) << 25) | ((ts[p + 7] & 0xff) << 17) | ((ts[p + 8] & 0xff) << 9)
+					| ((ts[p + 9] & 0xff) << 1) | ((ts[p + 10] & 0xff) >> 7);
+			assertEquals(dts[frame], pcr);
+
+			int h = p + 4 + adapt;
+			boolean withDts = pts[frame] != dts[frame];
+			assertEquals(withDts ? 0xc0 : 0x80, ts[h + 7] & 0xff);
+			assertEquals(withDts ? 10 : 5, ts[h + 8]);
+			assertEquals(withDts ? 3 : 2, (ts[h + 9] & 0xff) >> 4);
+			assertEquals(pts[frame] + 63000, readTs(ts, h + 9));
+			if (withDts) {
+				assertEquals(1, (ts[h + 14] & 0xff) >> 4);
+				assertEquals(dts[frame] + 63000, readTs(ts, h + 14));
+			}
+			++frame;
+		}
+		assertEquals(pts.length, frame);
+
+		MTSStream v = new MTSDemuxer(new ByteArrayRAInputStream(ts)).getVideoTracks().get(0);
+		for (int i = 0; i < pts.length; i++) {
+			PESPacket pkt = v.nextPacket();
+			assertEquals(pts[i] + 63000, pkt.pts);
+			assertTrue(Arrays.equals(payload(i, 1000), pkt.data.toArray()));
+		}
+		assertNull(v.nextPacket());
+	}
+
+	public void testHLSTargetDuration() throws Exception {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "hls" + System.nanoTime());
+		dir.mkdirs();
+		try {
+			HLSSegmenter segmenter = new HLSSegmenter(dir, "test", 2.5);
+			int video = segmenter.addTrack(MTSMuxer.H264);
+			// key frame every second, the segments are 3 seconds
+			for (int i = 0; i < 300; i++)
+				segmenter.addFrame(video, new Packet(new Buffer(payload(i, 100)), 3000 * i, 90000, 3000, i, i % 30 == 0,
+						null));
+			segmenter.finish();
+
+			String playlist = FileUtils.readFileToString(new File(dir, "test.m3u8"));
+			assertTrue(playlist, playlist.contains("#EXT-X-TARGETDURATION:3\n"));
+			assertTrue(playlist, playlist.contains("#EXTINF:3.000,\ntest-0.ts\n"));
+			assertTrue(playlist, playlist.endsWith("#EXT-X-ENDLIST\n"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	private static long readTs(byte[] b, int off) {
+		return (((long) b[off] & 0xe) << 29) | ((b[off + 1] & 0xff) << 22) | ((b[off + 2] & 0xfe) << 14)
+				| ((b[off + 3] & 0xff) << 7) | ((b[off + 4] & 0xff) >> 1);
+	}
+
+	private static Packet packet(byte[] data, long pts, boolean key) {
+		return new Packet(new Buffer(data), pts, 90000, 3003, 0, key, null);
+	}
+
+	private static byte[] payload(int seed, int len) {
+		byte[] result = new byte[len];
+		for (int i = 0; i < len; i++)
+			result[i] = (byte) (seed * 31 + i);
+		return result;
+	}
+}